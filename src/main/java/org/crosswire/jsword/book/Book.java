@@ -96,6 +96,36 @@ public interface Book extends Activatable, Comparable<Book> {
      */
     Key createEmptyKeyList();
 
+    /**
+     * Get the keys whose names begin with the prefix, ignoring case, as would
+     * be needed to complete what a user is typing. At most maxCount keys are
+     * returned, in the order of the book.
+     * 
+     * @param prefix
+     *            The beginning of the names to find
+     * @param maxCount
+     *            The most keys to return
+     * @return The matching keys, which may be empty
+     */
+    Key getKeysWithPrefix(String prefix, int maxCount);
+
+    /**
+     * Get the keys whose names are at or after from and before to, ignoring
+     * case. At most maxCount keys are returned, in the order of the book. This
+     * is only meaningful for books whose keys have a meaningful sort, such as
+     * dictionaries. It is not true of keys that are numeric or contain numbers
+     * (unless the numbers are 0 filled.)
+     * 
+     * @param from
+     *            The first name to find
+     * @param to
+     *            The name before which to stop
+     * @param maxCount
+     *            The most keys to return
+     * @return The matching keys, which may be empty
+     */
+    Key getKeysInRange(String from, String to, int maxCount);
+
     /**
      * Meta-Information: What version of the Bible is this?
      * 
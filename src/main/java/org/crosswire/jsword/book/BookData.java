@@ -414,7 +414,7 @@ public class BookData implements BookProvider {
                 //of perhaps we've somehow come across previous content. Either way, it clearly doesn't
                 //belong to the current verse.
                 if (contents.size() > 0) {
-                    Verse previousVerse = new Verse(currentVerse.getVersification(), currentVerse.getOrdinal() - 1);
+                    Verse previousVerse = currentVerse.getVersification().decodeOrdinal(currentVerse.getOrdinal() - 1);
                     contentsByOsisID.put(previousVerse, contents);
                     contents = new ArrayList<Content>();
                 }
@@ -20,6 +20,7 @@
 package org.crosswire.jsword.book.basic;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -44,6 +45,7 @@ import org.crosswire.jsword.index.search.SearchRequest;
 import org.crosswire.jsword.index.search.Searcher;
 import org.crosswire.jsword.index.search.SearcherFactory;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
 import org.jdom2.Content;
 import org.jdom2.Document;
 
@@ -75,6 +77,24 @@ public abstract class AbstractBook implements Book {
         return getGlobalKeyList();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.Book#getKeysWithPrefix(java.lang.String, int)
+     */
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        // In Unicode \uFFFF is reserved for internal use
+        // and is greater than every character defined in Unicode
+        return getKeysInRange(prefix, prefix + '\uffff', maxCount);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.Book#getKeysInRange(java.lang.String, java.lang.String, int)
+     */
+    public Key getKeysInRange(String from, String to, int maxCount) {
+        // Need to use the locale of the book so that we can find stuff in the
+        // proper order
+        return KeyUtil.getKeysInRange(getGlobalKeyList(), from, to, maxCount, new Locale(getLanguage().getCode()));
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.Book#getBookMetaData()
      */
@@ -116,15 +136,19 @@ public abstract class AbstractBook implements Book {
      * @see org.crosswire.jsword.book.Book#find(org.crosswire.jsword.index.search.SearchRequest)
      */
     public Key find(SearchRequest request) throws BookException {
-        if (searcher == null) {
+        // Searches may run on several threads at once and the searcher may
+        // be reset meanwhile, so only look at the field once.
+        Searcher current = searcher;
+        if (current == null) {
             try {
-                searcher = SearcherFactory.createSearcher(this);
+                current = SearcherFactory.createSearcher(this);
             } catch (InstantiationException ex) {
                 throw new BookException(JSOtherMsg.lookupText("Failed to initialize the search index"), ex);
             }
+            searcher = current;
         }
 
-        return searcher.search(request);
+        return current.search(request);
     }
 
     public void resetSearcher() {
@@ -469,7 +493,7 @@ public abstract class AbstractBook implements Book {
     /**
      * How do we perform searches
      */
-    private Searcher searcher;
+    private volatile Searcher searcher;
 
     /**
      * The meta data for this book
@@ -21,6 +21,7 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -247,13 +248,34 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
             VerseRange range = rit.next();
             processor.preRange(range, content);
 
-            // FIXME(CJB): can this now be optimized since we can calculate
-            // the buffer size of what to read?
+            // Read the whole range at once, so that the backend can read
+            // the index and the text for the range in as few reads as possible.
+            String[] rawTexts = null;
+            try {
+                rawTexts = readRawContents(openFileState, range);
+            } catch (IOException e) {
+                // Fall back to reading one verse at a time,
+                // so that a bad verse does not lose the whole range.
+                LOGGER.warn("Unable to read {} at once", range.getOsisRef(), e);
+            } catch (RuntimeException e) {
+                // A corrupt index can send a bulk read out of bounds,
+                // but anything else is a bug that should not be hidden.
+                if (!isCorruptEntry(e)) {
+                    throw e;
+                }
+                LOGGER.warn("Unable to read {} at once", range.getOsisRef(), e);
+            }
+            if (rawTexts != null && rawTexts.length != range.getCardinality()) {
+                LOGGER.debug("Read {} verses of {} at once", Integer.toString(rawTexts.length), range.getOsisRef());
+                rawTexts = null;
+            }
+
             // now iterate through all verses in range
+            int i = 0;
             for (Key verseInRange : range) {
                 currentVerse = KeyUtil.getVerse(verseInRange);
                 try {
-                    String rawText = readRawContent(openFileState, currentVerse);
+                    String rawText = rawTexts != null ? rawTexts[i] : readRawVerse(openFileState, currentVerse);
                     processor.postVerse(verseInRange, content, rawText);
                 } catch (IOException e) {
                     if(!ignoreReadErrors) {
@@ -264,12 +286,62 @@ public abstract class AbstractBackend<T extends OpenFileState> implements Statef
                         LOGGER.error(e.getMessage(), e);
                     }
                 }
+                i++;
             }
         }
 
         return currentVerse;
     }
 
+    /**
+     * Get the raw text of a verse, treating a corrupt entry as one that could
+     * not be read.
+     */
+    private String readRawVerse(T state, Verse verse) throws BookException, IOException {
+        try {
+            return readRawContent(state, verse);
+        } catch (RuntimeException e) {
+            if (!isCorruptEntry(e)) {
+                throw e;
+            }
+            IOException ex = new IOException("Unable to read " + verse.getOsisID());
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+
+    /**
+     * Is this the kind of exception that reading a truncated or corrupt entry
+     * produces, as opposed to a programming error?
+     */
+    private static boolean isCorruptEntry(RuntimeException e) {
+        return e instanceof IndexOutOfBoundsException
+                || e instanceof BufferUnderflowException
+                || e instanceof NegativeArraySizeException;
+    }
+
+    /**
+     * Get the raw text of every verse in a range. Backends that can read a
+     * range more efficiently than verse by verse should override this.
+     * 
+     * @param state
+     *            the state object containing all the open random access files
+     * @param range
+     *            the verses that are sought
+     * @return the raw text of each verse in the range, in order
+     * @throws BookException
+     * @throws IOException
+     *             something went wrong when reading the verses
+     */
+    public String[] readRawContents(T state, VerseRange range) throws BookException, IOException {
+        String[] rawTexts = new String[range.getCardinality()];
+        int i = 0;
+        for (Key verse : range) {
+            rawTexts[i++] = readRawContent(state, verse);
+        }
+        return rawTexts;
+    }
+
     private boolean ignoreReadErrors = true;
 
     public void setIgnoreReadErrors(boolean ignoreReadErrors) {
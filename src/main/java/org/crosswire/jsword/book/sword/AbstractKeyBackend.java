@@ -21,11 +21,13 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.sword.state.OpenFileState;
 import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.RestrictionType;
 
 /**
@@ -67,6 +69,36 @@ public abstract class AbstractKeyBackend<T extends OpenFileState> extends Abstra
         return getCardinality() == 0;
     }
 
+    /**
+     * Get the keys whose names are at or after from and before to, ignoring
+     * case. By default every key is looked at.
+     * 
+     * @param from the first name to find
+     * @param to the name before which to stop
+     * @param maxCount the most keys to return
+     * @return the matching keys
+     * @see org.crosswire.jsword.book.Book#getKeysInRange(String, String, int)
+     */
+    public Key getKeysInRange(String from, String to, int maxCount) {
+        return KeyUtil.getKeysInRange(this, from, to, maxCount, new Locale(getBookMetaData().getLanguage().getCode()));
+    }
+
+    /**
+     * Get the keys whose names begin with the prefix, ignoring case. By
+     * default these are the keys in the range from the prefix up to, but not
+     * including, the prefix followed by the greatest character.
+     * 
+     * @param prefix the beginning of the names to find
+     * @param maxCount the most keys to return
+     * @return the matching keys
+     * @see org.crosswire.jsword.book.Book#getKeysWithPrefix(String, int)
+     */
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        // In Unicode \uFFFF is reserved for internal use
+        // and is greater than every character defined in Unicode
+        return getKeysInRange(prefix, prefix + '\uffff', maxCount);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.AbstractBackend#contains(org.crosswire.jsword.passage.Key)
      */
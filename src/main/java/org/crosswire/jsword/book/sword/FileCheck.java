@@ -0,0 +1,87 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when something held in memory should be checked against the files
+ * of the book from which it was read. Looking at a file costs a system call,
+ * which is too much to pay on every lookup, so the files are looked at when
+ * a book has been installed or deleted since the last look, and otherwise
+ * at most once an interval.
+ *
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class FileCheck {
+    /**
+     * Whether it is time to look at the files again. When it is, the look is
+     * counted as done.
+     *
+     * @return true if the files should be looked at
+     */
+    boolean isDue() {
+        long now = System.currentTimeMillis();
+        int seen = CHANGES.get();
+        // A clock set back also makes the check due
+        if (seen == checkedChanges && now >= checkedAt && now - checkedAt < interval) {
+            return false;
+        }
+        checkedChanges = seen;
+        checkedAt = now;
+        return true;
+    }
+
+    /**
+     * Note that the files of a book have been installed, replaced or
+     * deleted, so that every check is due.
+     */
+    static void filesChanged() {
+        CHANGES.incrementAndGet();
+    }
+
+    /**
+     * @return the longest time in milliseconds between looks at the files
+     */
+    static long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval the longest time in milliseconds between looks at the
+     *            files, 0 to look on every check
+     */
+    static void setInterval(long interval) {
+        FileCheck.interval = interval;
+    }
+
+    private static final long DEFAULT_INTERVAL = 1000L;
+
+    private static final AtomicInteger CHANGES = new AtomicInteger();
+    private static volatile long interval = DEFAULT_INTERVAL;
+
+    /**
+     * When the files were last looked at, and the count of changes then.
+     * Racing threads at worst both look.
+     */
+    private volatile long checkedAt;
+    private volatile int checkedChanges = -1;
+}
@@ -69,20 +69,15 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     @Override
     public int getRawTextLength(Key key) {
         try {
-            TreeNode node = find(key);
-
-            if (node == null) {
-                return 0;
-            }
-
-            byte[] userData = node.getUserData();
+            ResidentTreeIndex tree = getTree();
+            int node = find(tree, key);
 
             // Some entries may be empty.
-            if (userData.length == 8) {
-                return SwordUtil.decodeLittleEndian32(userData, 4);
+            if (node == -1 || tree.getDataSize(node) == -1) {
+                return 0;
             }
 
-            return 0;
+            return tree.getDataSize(node);
 
         } catch (IOException e) {
             return 0;
@@ -93,9 +88,10 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
      * @see org.crosswire.jsword.book.sword.StatefulFileBackedBackend#readRawContent(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.Key)
      */
     public String readRawContent(GenBookBackendState state, Key key) throws IOException, BookException {
-        TreeNode node = find(key);
+        ResidentTreeIndex tree = getTree();
+        int node = find(tree, key);
 
-        if (node == null) {
+        if (node == -1) {
             // TRANSLATOR: Error condition: Indicates that something could
             // not be found in the book.
             // {0} is a placeholder for the unknown key.
@@ -103,12 +99,10 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
             throw new BookException(JSMsg.gettext("No entry for '{0}' in {1}.", key.getName(), getBookMetaData().getInitials()));
         }
 
-        byte[] userData = node.getUserData();
-
         // Some entries may be empty.
-        if (userData.length == 8) {
-            int start = SwordUtil.decodeLittleEndian32(userData, 0);
-            int size = SwordUtil.decodeLittleEndian32(userData, 4);
+        int size = tree.getDataSize(node);
+        if (size != -1) {
+            int start = tree.getDataStart(node);
             byte[] data = SwordUtil.readRAF(state.getBdtRaf(), start, size);
             decipher(data);
             return SwordUtil.decode(key.getName(), data, getBookMetaData().getBookCharset());
@@ -118,14 +112,15 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     }
 
     /**
-     * Given a Key, find the TreeNode for it.
+     * Given a Key, find the node for it.
      * 
+     * @param tree
+     *            The tree of the book
      * @param key
      *            The key to use for searching
-     * @return the found node, null otherwise
-     * @throws IOException
+     * @return the found node, -1 otherwise
      */
-    private TreeNode find(Key key) throws IOException {
+    private int find(ResidentTreeIndex tree, Key key) {
         // We need to search from the root, so navigate to the root, saving as
         // we go.
         List<String> path = new ArrayList<String>();
@@ -133,37 +128,41 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
             path.add(parentKey.getName());
         }
 
-        TreeNode node = index.getRoot();
+        int node = tree.getRoot();
+        for (int i = path.size() - 1; i >= 0 && node != -1; i--) {
+            node = tree.getChild(node, path.get(i));
+        }
 
-        node = index.getFirstChild(node);
+        if (node == -1) {
+            log.error("Could not find {}", key.getName());
+        }
 
-        for (int i = path.size() - 1; i >= 0; i--) {
-            String name = path.get(i);
+        return node;
+    }
 
-            // Search among the siblings for the current level.
-            while (node != null && !name.equals(node.getName())) {
-                if (node.hasNextSibling()) {
-                    node = index.getNextSibling(node);
-                } else {
-                    log.error("Could not find {}", name);
-                    node = null;
+    /**
+     * Get the tree of this book, reading it on first use and again whenever
+     * the book has been re-installed or changed.
+     * 
+     * @return the tree
+     * @throws IOException
+     */
+    private ResidentTreeIndex getTree() throws IOException {
+        ResidentTreeIndex reply = tree;
+        if (reply == null || !index.isCurrent(reply)) {
+            synchronized (this) {
+                reply = tree;
+                if (reply != null && !index.isCurrent(reply)) {
+                    log.debug("The tree of {} is out of date", getBookMetaData().getInitials());
+                    reply = null;
+                }
+                if (reply == null) {
+                    reply = index.readTree();
+                    tree = reply;
                 }
-            }
-
-            // If we have found it but have not exhausted the path
-            // we need to get more
-            if (node != null && name.equals(node.getName()) && i > 0) {
-                node = index.getFirstChild(node);
             }
         }
-
-        // At this point we have either found it, returning it or have not,
-        // returning null
-        if (node != null && node.getName().equals(key.getName())) {
-            return node;
-        }
-
-        return null;
+        return reply;
     }
 
     @Override
@@ -172,9 +171,12 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
         Key reply = new DefaultKeyList(null, bmd.getName());
 
         try {
-            TreeNode node = index.getRoot();
-            reply = new TreeKey(node.getName(), null);
-            doReadIndex(node, reply);
+            ResidentTreeIndex tree = getTree();
+            int root = tree.getRoot();
+            if (root != -1) {
+                reply = new TreeKey(tree.getName(root), null);
+                doReadIndex(tree, root, reply);
+            }
         } catch (IOException e) {
             log.error("Could not get read GenBook index", e);
         }
@@ -199,28 +201,19 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
     /**
      * A helper function to recursively read the entire tree.
      * 
+     * @param tree
+     *            the tree of the book
      * @param parentNode
      *            the current node whose children are being sought
      * @param parentKey
-     * @throws IOException
      */
-    private void doReadIndex(TreeNode parentNode, Key parentKey) throws IOException {
-        TreeNode currentNode = parentNode;
-        if (currentNode.hasChildren()) {
-            TreeNode childNode = index.getFirstChild(currentNode);
-            do {
-                TreeKey childKey = new TreeKey(childNode.getName(), parentKey);
-                parentKey.addAll(childKey);
-
-                // Build the tree as deep as possible
-                doReadIndex(childNode, childKey);
-
-                if (!childNode.hasNextSibling()) {
-                    break;
-                }
+    private void doReadIndex(ResidentTreeIndex tree, int parentNode, Key parentKey) {
+        for (int childNode = tree.getFirstChild(parentNode); childNode != -1; childNode = tree.getNextSibling(childNode)) {
+            TreeKey childKey = new TreeKey(tree.getName(childNode), parentKey);
+            parentKey.addAll(childKey);
 
-                childNode = index.getNextSibling(childNode);
-            } while (true);
+            // Build the tree as deep as possible
+            doReadIndex(tree, childNode, childKey);
         }
     }
 
@@ -229,6 +222,11 @@ public class GenBookBackend extends AbstractBackend<GenBookBackendState> {
      */
     private final TreeKeyIndex index;
 
+    /**
+     * The tree read from the index, once it is needed
+     */
+    private volatile ResidentTreeIndex tree;
+
     /**
      * The log stream
      */
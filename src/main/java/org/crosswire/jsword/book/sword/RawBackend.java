@@ -21,17 +21,18 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.BitSet;
 
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawBackendState;
-import org.crosswire.jsword.passage.BitwisePassage;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
-import org.crosswire.jsword.passage.RocketPassage;
 import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
@@ -58,6 +59,7 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
         super(sbmd);
         this.datasize = datasize;
         this.entrysize = OFFSETSIZE + datasize;
+        this.presence = new VersePresence(sbmd);
 
         assert datasize == 2 || datasize == 4;
     }
@@ -67,7 +69,13 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      */
     @Override
     public boolean contains(Key key) {
-        return getRawTextLength(key) > 0;
+        try {
+            return presence.get(presenceReader).get(KeyUtil.getVerse(key).getOrdinal());
+        } catch (IOException e) {
+            return getRawTextLength(key) > 0;
+        } catch (BookException e) {
+            return getRawTextLength(key) > 0;
+        }
     }
 
     /* (non-Javadoc)
@@ -106,6 +114,30 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
 
     @Override
     public Key getGlobalKeyList() throws BookException {
+        try {
+            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
+            Versification v11n = Versifications.instance().getVersification(v11nName);
+            return VersePresence.toPassage(presence.get(presenceReader), v11n);
+        } catch (IOException e) {
+            throw new BookException(JSMsg.gettext("Unable to read key list from book."));
+        }
+    }
+
+    /**
+     * Forget which verses have content, as the book has been changed.
+     */
+    protected void clearPresence() {
+        presence.clear();
+    }
+
+    /**
+     * Read the ordinals of the verses that have content from the index files.
+     * 
+     * @return the verses that have content
+     * @throws IOException
+     * @throws BookException
+     */
+    private BitSet readPresence() throws IOException, BookException {
         RawBackendState rafBook = null;
         try {
             rafBook = initState();
@@ -117,9 +149,7 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
                     Testament.OLD, Testament.NEW
             };
 
-            BitwisePassage passage = new RocketPassage(v11n);
-            passage.raiseEventSuppresion();
-            passage.raiseNormalizeProtection();
+            BitSet verses = new BitSet(v11n.maximumOrdinal() + 1);
 
             for (Testament currentTestament : testaments) {
                 RandomAccessFile idxRaf = rafBook.getIdxRaf(currentTestament);
@@ -146,7 +176,7 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
                         // if (verseSize > 0) {
                         if (temp[ii + 4] != 0 || temp[ii + 5] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            verses.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 } else { // datasize == 4
@@ -156,18 +186,13 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
                         // if (verseSize > 0) {
                         if (temp[ii + 4] != 0 || temp[ii + 5] != 0 || temp[ii + 6] != 0 || temp[ii + 7] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            verses.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 }
             }
 
-            passage.lowerNormalizeProtection();
-            passage.lowerEventSuppressionAndTest();
-
-            return passage;
-        } catch (IOException e) {
-            throw new BookException(JSMsg.gettext("Unable to read key list from book."));
+            return verses;
         } finally {
             OpenFileStateManager.instance().release(rafBook);
         }
@@ -204,6 +229,35 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
         }
     }
 
+    /**
+     * Read all the verses of a range with one read of the index.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractBackend#readRawContents(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.VerseRange)
+     */
+    @Override
+    public String[] readRawContents(RawBackendState state, VerseRange range) throws BookException, IOException {
+        String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
+        Versification v11n = Versifications.instance().getVersification(v11nName);
+
+        int start = range.getStart().getOrdinal();
+        int end = range.getEnd().getOrdinal();
+        Testament testament = v11n.getTestament(start);
+        RandomAccessFile idxRaf = state.getIdxRaf(testament);
+
+        // It may be that this is a single testament Bible
+        if (idxRaf == null || testament != v11n.getTestament(end)) {
+            return super.readRawContents(state, range);
+        }
+
+        DataIndex[] indexes = getIndexes(idxRaf, v11n.getTestamentOrdinal(start), end - start + 1);
+        String[] names = new String[indexes.length];
+        int i = 0;
+        for (Key verse : range) {
+            names[i++] = verse.getName();
+        }
+        return getEntries(state, names, testament, indexes);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.AbstractBackend#setRawText(org.crosswire.jsword.passage.Key, java.lang.String)
      */
@@ -247,14 +301,49 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
             return new DataIndex(0, 0);
         }
 
-        int entryOffset = SwordUtil.decodeLittleEndian32(buffer, 0);
+        return decodeIndex(buffer, 0);
+    }
+
+    /**
+     * Get the Indexes (that is offset and size) for consecutive entries, with
+     * a single read of the index.
+     * 
+     * @param raf the index file
+     * @param first the first entry to get
+     * @param count the number of entries to get
+     * @return the index for each entry, entries beyond the end of the file are empty
+     * @throws IOException
+     */
+    protected DataIndex[] getIndexes(RandomAccessFile raf, long first, int count) throws IOException {
+        byte[] buffer = SwordUtil.readRAF(raf, first * entrysize, count * entrysize);
+        DataIndex[] indexes = new DataIndex[count];
+        for (int i = 0; i < count; i++) {
+            int entryStart = i * entrysize;
+            if (buffer == null || entryStart + entrysize > buffer.length) {
+                indexes[i] = new DataIndex(0, 0);
+            } else {
+                indexes[i] = decodeIndex(buffer, entryStart);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Decode an index entry from a buffer holding one or more entries.
+     * 
+     * @param buffer the read entries
+     * @param entryStart the start of the entry in the buffer
+     * @return the decoded entry
+     */
+    private DataIndex decodeIndex(byte[] buffer, int entryStart) {
+        int entryOffset = SwordUtil.decodeLittleEndian32(buffer, entryStart);
         int entrySize = -1;
         switch (datasize) {
         case 2:
-            entrySize = SwordUtil.decodeLittleEndian16(buffer, 4);
+            entrySize = SwordUtil.decodeLittleEndian16(buffer, entryStart + 4);
             break;
         case 4:
-            entrySize = SwordUtil.decodeLittleEndian32(buffer, 4);
+            entrySize = SwordUtil.decodeLittleEndian32(buffer, entryStart + 4);
             break;
         default:
             assert false : datasize;
@@ -277,18 +366,31 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      *             on a IO problem
      */
     protected String getEntry(RawBackendState state, String name, Testament testament, long index) throws IOException {
-        final RandomAccessFile idxRaf;
-        final RandomAccessFile txtRaf;
-        idxRaf = state.getIdxRaf(testament);
-        txtRaf = state.getTextRaf(testament);
+        final RandomAccessFile idxRaf = state.getIdxRaf(testament);
 
         // It may be that this is a single testament Bible
         if (idxRaf == null) {
             return "";
         }
 
-        DataIndex dataIndex = getIndex(idxRaf, index);
+        return getEntry(state, name, testament, getIndex(idxRaf, index));
+    }
 
+    /**
+     * Get the text for an entry in the book, whose index has been read.
+     * 
+     * @param state the open files of the book
+     * @param name
+     *            name of the entry
+     * @param testament
+     *            the testament for the entry
+     * @param dataIndex
+     *            the offset and size of the entry
+     * @return the text for the entry.
+     * @throws IOException
+     *             on a IO problem
+     */
+    protected String getEntry(RawBackendState state, String name, Testament testament, DataIndex dataIndex) throws IOException {
         int size = dataIndex.getSize();
         if (size == 0) {
             return "";
@@ -299,13 +401,75 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
             return "";
         }
 
-        byte[] data = SwordUtil.readRAF(txtRaf, dataIndex.getOffset(), size);
+        byte[] data = SwordUtil.readRAF(state.getTextRaf(testament), dataIndex.getOffset(), size);
 
         decipher(data);
 
         return SwordUtil.decode(name, data, getBookMetaData().getBookCharset());
     }
 
+    /**
+     * Get the text for consecutive indexed entries in the book. The verses of a
+     * range are usually stored together, so when they are, they are fetched
+     * with a single read of the text file.
+     * 
+     * @param state the open files of the book
+     * @param names the names of the entries
+     * @param testament the testament for the entries
+     * @param indexes the index of each entry
+     * @return the text for each entry
+     * @throws IOException
+     *             on a IO problem
+     */
+    protected String[] getEntries(RawBackendState state, String[] names, Testament testament, DataIndex[] indexes) throws IOException {
+        String[] texts = new String[indexes.length];
+        Arrays.fill(texts, "");
+
+        // Find the span of the text file that holds all the entries
+        long spanStart = Long.MAX_VALUE;
+        long spanEnd = 0;
+        long total = 0;
+        for (int i = 0; i < indexes.length; i++) {
+            int size = indexes[i].getSize();
+            if (size < 0) {
+                LOGGER.error("In {}: Verse {} has a bad index size of {}", getBookMetaData().getInitials(), names[i], Integer.toString(size));
+            } else if (size > 0) {
+                spanStart = Math.min(spanStart, indexes[i].getOffset());
+                spanEnd = Math.max(spanEnd, (long) indexes[i].getOffset() + size);
+                total += size;
+            }
+        }
+
+        if (total == 0) {
+            return texts;
+        }
+
+        // If the entries are scattered, a single read would fetch too much that is not wanted.
+        if (spanEnd - spanStart > 2 * total + SPAN_SLACK) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i].getSize() > 0) {
+                    texts[i] = getEntry(state, names[i], testament, indexes[i]);
+                }
+            }
+            return texts;
+        }
+
+        byte[] span = SwordUtil.readRAF(state.getTextRaf(testament), spanStart, (int) (spanEnd - spanStart));
+        for (int i = 0; i < indexes.length; i++) {
+            int size = indexes[i].getSize();
+            int offset = (int) (indexes[i].getOffset() - spanStart);
+            if (size > 0 && offset + size <= span.length) {
+                byte[] data = new byte[size];
+                System.arraycopy(span, offset, data, 0, size);
+
+                decipher(data);
+
+                texts[i] = SwordUtil.decode(names[i], data, getBookMetaData().getBookCharset());
+            }
+        }
+        return texts;
+    }
+
     /**
      * How many bytes in the size count in the index
      */
@@ -316,11 +480,27 @@ public class RawBackend<T extends RawBackendState> extends AbstractBackend<RawBa
      */
     protected final int entrysize;
 
+    /**
+     * The verses that have content
+     */
+    private final VersePresence presence;
+    private final VersePresence.Reader presenceReader = new VersePresence.Reader() {
+        public BitSet read() throws IOException, BookException {
+            return readPresence();
+        }
+    };
+
     /**
      * How many bytes in the offset pointers in the index
      */
     protected static final int OFFSETSIZE = 4;
 
+    /**
+     * How many unwanted bytes may be read, beyond twice the wanted bytes,
+     * when reading a range of entries at once.
+     */
+    private static final int SPAN_SLACK = 4096;
+
     /**
      * The log stream
      */
@@ -77,16 +77,12 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
     }
 
     /* (non-Javadoc)
-     * @see org.crosswire.jsword.book.sword.RawBackend#getEntry(java.lang.String, org.crosswire.jsword.versification.Testament, long)
+     * @see org.crosswire.jsword.book.sword.RawBackend#getEntry(org.crosswire.jsword.book.sword.state.RawBackendState, java.lang.String, org.crosswire.jsword.versification.Testament, org.crosswire.jsword.book.sword.DataIndex)
      */
     @Override
-    protected String getEntry(RawBackendState state, String name, Testament testament, long index) throws IOException {
-        RandomAccessFile idxRaf;
-        RandomAccessFile txtRaf;
-        idxRaf = state.getIdxRaf(testament);
-        txtRaf = state.getTextRaf(testament);
+    protected String getEntry(RawBackendState state, String name, Testament testament, DataIndex dataIndex) throws IOException {
+        RandomAccessFile txtRaf = state.getTextRaf(testament);
 
-        DataIndex dataIndex = getIndex(idxRaf, index);
         int size = dataIndex.getSize();
         if (size == 0) {
             return "";
@@ -107,6 +103,21 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
         }
     }
 
+    /**
+     * Each verse is stored in its own file, so beyond reading the index all at
+     * once, the entries are read one by one.
+     * 
+     * @see org.crosswire.jsword.book.sword.RawBackend#getEntries(org.crosswire.jsword.book.sword.state.RawBackendState, java.lang.String[], org.crosswire.jsword.versification.Testament, org.crosswire.jsword.book.sword.DataIndex[])
+     */
+    @Override
+    protected String[] getEntries(RawBackendState state, String[] names, Testament testament, DataIndex[] indexes) throws IOException {
+        String[] texts = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            texts[i] = getEntry(state, names[i], testament, indexes[i]);
+        }
+        return texts;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.RawBackend#setRawText(org.crosswire.jsword.passage.Key, java.lang.String)
      * 
@@ -138,6 +149,7 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
         byte[] textData = text.getBytes("UTF-8");
         encipher(textData);
         writeTextDataFile(dataFile, textData);
+        clearPresence();
     }
 
     public void setAliasKey(RawFileBackendState state, Key alias, Key source) throws IOException {
@@ -157,6 +169,7 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
         // Only the index is updated to point to the same place as what is
         // linked.
         updateIndexFile(idxRaf, aliasIndex, dataIndex.getOffset());
+        clearPresence();
     }
 
     private File createDataTextFile(int index) throws BookException, IOException {
@@ -280,6 +293,7 @@ public class RawFileBackend extends RawBackend<RawFileBackendState> {
         } finally {
             OpenFileStateManager.instance().release(state);
         }
+        clearPresence();
     }
 
     private void createDataFiles() throws IOException, BookException {
@@ -19,6 +19,7 @@
  */
 package org.crosswire.jsword.book.sword;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.UnsupportedEncodingException;
@@ -40,8 +41,11 @@ import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.FeatureType;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawLDBackendState;
+import org.crosswire.jsword.passage.DefaultKeyList;
 import org.crosswire.jsword.passage.DefaultLeafKeyList;
 import org.crosswire.jsword.passage.Key;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * An implementation AbstractKeyBackend to read RAW format files.
@@ -78,9 +82,10 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         if (key == null || key.length() == 0) {
             return "";
         }
-        int pos = search(state, key);
+        ResidentKeyIndex keys = getKeyIndex(state);
+        int pos = search(state, keys, key);
         if (pos >= 0) {
-            DataIndex index = getIndex(state, pos);
+            DataIndex index = getIndex(state, keys, pos);
             DataEntry entry = getEntry(state, key, index);
             entry = getEntry(state, entry);
             if (entry.isLinkEntry()) {
@@ -115,6 +120,12 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         try {
             state = initState();
 
+            // The size of a pooled state is not updated when the dictionary changes
+            ResidentKeyIndex keys = getKeyIndex(state);
+            if (keys != null) {
+                return keys.size();
+            }
+
             if (state.getSize() == -1) {
                 state.setSize((int) (state.getIdxRaf().length() / entrysize));
             }
@@ -137,6 +148,11 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
             state = initState();
 
             if (index < getCardinality()) {
+                ResidentKeyIndex keys = getKeyIndex(state);
+                if (keys != null) {
+                    return new DefaultLeafKeyList(internal2external(keys.getKey(index)));
+                }
+
                 DataIndex dataIndex = getIndex(state, index);
                 DataEntry entry = getEntry(state, getBookMetaData().getInitials(), dataIndex);
                 String keytitle = internal2external(entry.getKey());
@@ -161,7 +177,7 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         RawLDBackendState state = null;
         try {
             state = initState();
-            return search(state, that.getName());
+            return search(state, getKeyIndex(state), that.getName());
         } catch (IOException e) {
             return -getCardinality() - 1;
         } catch (BookException e) {
@@ -171,6 +187,154 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         }
     }
 
+    /**
+     * Find the keys in the range with a binary search for the first of them.
+     * The bounds are converted and folded the way a key is when it is looked
+     * up, so that they agree with the order of the index file. Dictionaries
+     * whose keys are case sensitive are not sorted without regard to case, so
+     * they, like daily devotionals, are scanned.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractKeyBackend#getKeysInRange(java.lang.String, java.lang.String, int)
+     */
+    @Override
+    public Key getKeysInRange(String from, String to, int maxCount) {
+        if (!isSorted()) {
+            return super.getKeysInRange(from, to, maxCount);
+        }
+
+        Key result = new DefaultKeyList();
+        RawLDBackendState state = null;
+        try {
+            state = initState();
+            ResidentKeyIndex keys = getKeyIndex(state);
+            String pattern = getPattern(state, keys);
+            if (pattern != null) {
+                addKeysInRange(state, keys, external2internal(from, pattern), external2internal(to, pattern), maxCount, result);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to find keys in {}", getBookMetaData().getInitials(), e);
+        } catch (BookException e) {
+            LOGGER.warn("Unable to find keys in {}", getBookMetaData().getInitials(), e);
+        } finally {
+            OpenFileStateManager.instance().release(state);
+        }
+        return result;
+    }
+
+    /**
+     * Find the keys that begin with the prefix. A prefix that is a Strong's
+     * Number is converted as it would be when looked up, so G1 finds G00001
+     * in a dictionary with padded numbers. The keys that begin with the
+     * prefix as given follow.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractKeyBackend#getKeysWithPrefix(java.lang.String, int)
+     */
+    @Override
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        if (!isSorted()) {
+            return super.getKeysWithPrefix(prefix, maxCount);
+        }
+
+        Key result = new DefaultKeyList();
+        RawLDBackendState state = null;
+        try {
+            state = initState();
+            ResidentKeyIndex keys = getKeyIndex(state);
+            String pattern = getPattern(state, keys);
+            if (pattern != null) {
+                String internal = external2internal(prefix, pattern);
+                addKeysInRange(state, keys, internal, internal + '\uffff', maxCount, result);
+                if (!internal.equals(prefix)) {
+                    addKeysInRange(state, keys, prefix, prefix + '\uffff', maxCount, result);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to find keys in {}", getBookMetaData().getInitials(), e);
+        } catch (BookException e) {
+            LOGGER.warn("Unable to find keys in {}", getBookMetaData().getInitials(), e);
+        } finally {
+            OpenFileStateManager.instance().release(state);
+        }
+        return result;
+    }
+
+    /**
+     * Whether the keys of the dictionary are sorted by their folded names.
+     */
+    private boolean isSorted() {
+        BookMetaData bmd = getBookMetaData();
+        // The keys of daily devotionals are dates, which are not ordered by their names
+        return !BookCategory.DAILY_DEVOTIONS.equals(bmd.getBookCategory())
+                && !"true".equalsIgnoreCase(bmd.getProperty(SwordBookMetaData.KEY_CASE_SENSITIVE_KEYS));
+    }
+
+    /**
+     * Get the key of the last entry, which is never the introductory entry,
+     * as the pattern for converting Strong's Numbers.
+     * 
+     * @return the pattern or null if the dictionary is empty
+     */
+    private String getPattern(RawLDBackendState state, ResidentKeyIndex keys) throws IOException {
+        int total = getCardinality();
+        if (total == 0) {
+            return null;
+        }
+        return getKey(state, keys, getBookMetaData().getInitials(), total - 1, getIndex(state, keys, total - 1));
+    }
+
+    /**
+     * Add the keys whose folded names are at or after from and before to,
+     * until there are maxCount keys in the result. Keys already in the result
+     * are not added again.
+     * 
+     * @param from the internal form of the first name to find
+     * @param to the internal form of the name before which to stop
+     */
+    private void addKeysInRange(RawLDBackendState state, ResidentKeyIndex keys, String from, String to, int maxCount, Key result) throws IOException {
+        int count = result.getCardinality();
+        if (count >= maxCount) {
+            return;
+        }
+
+        String initials = getBookMetaData().getInitials();
+        String start = normalizeForSearch(from);
+        String end = normalizeForSearch(to);
+        int total = getCardinality();
+
+        // Many dictionaries have an introductory entry, which is out of order.
+        DataIndex dataIndex = getIndex(state, keys, 0);
+        String entryKey = getKey(state, keys, initials, 0, dataIndex);
+        String normalized = normalizeForSearch(entryKey);
+        if (dataIndex.getSize() != 0 && normalized.compareTo(start) >= 0 && normalized.compareTo(end) < 0) {
+            count += addKey(result, entryKey);
+        }
+
+        for (int i = lowerBound(state, keys, start, total); i < total && count < maxCount; i++) {
+            dataIndex = getIndex(state, keys, i);
+            // Skip bogus index entries
+            if (dataIndex.getSize() == 0) {
+                continue;
+            }
+            entryKey = getKey(state, keys, initials, i, dataIndex);
+            if (normalizeForSearch(entryKey).compareTo(end) >= 0) {
+                break;
+            }
+            count += addKey(result, entryKey);
+        }
+    }
+
+    /**
+     * @return the number of keys added, 0 if it was already in the result
+     */
+    private int addKey(Key result, String entryKey) {
+        Key key = new DefaultLeafKeyList(internal2external(entryKey));
+        if (result.contains(key)) {
+            return 0;
+        }
+        result.addAll(key);
+        return 1;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.sword.AbstractBackend#size(org.crosswire.jsword.passage.Key)
      */
@@ -179,7 +343,12 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         RawLDBackendState state = null;
         try {
             state = initState();
-            int entry = search(state, key.getName());
+            ResidentKeyIndex keys = getKeyIndex(state);
+            int entry = search(state, keys, key.getName());
+            if (keys != null) {
+                return entry >= 0 ? keys.getSize(entry) : 0;
+            }
+
             // Read the offset and size for this key from the index
             byte[] buffer = SwordUtil.readRAF(state.getIdxRaf(), entry * entrysize, entrysize);
             int entrySize = 0;
@@ -229,6 +398,94 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         return new DataIndex(entryOffset, entrySize);
     }
 
+    /**
+     * Get the Index (that is offset and size) for an entry, from the resident
+     * key index if there is one.
+     */
+    private DataIndex getIndex(RawLDBackendState state, ResidentKeyIndex keys, int entry) throws IOException {
+        if (keys != null) {
+            return keys.getIndex(entry);
+        }
+        return getIndex(state, entry);
+    }
+
+    /**
+     * Get the key of an entry, from the resident key index if there is one.
+     */
+    private String getKey(RawLDBackendState state, ResidentKeyIndex keys, String reply, int entry, DataIndex dataIndex) throws IOException {
+        if (keys != null) {
+            return keys.getKey(entry);
+        }
+        return getEntry(state, reply, dataIndex).getKey();
+    }
+
+    /**
+     * Get the resident key index of this dictionary, loading or building it
+     * on first use. It is built again when the dictionary has been written to
+     * or re-installed since.
+     * 
+     * @param state the state used to build the index
+     * @return the index or null if dictionaries do not keep their keys in memory
+     */
+    private ResidentKeyIndex getKeyIndex(RawLDBackendState state) {
+        File idxFile = state.getIdxFile();
+        ResidentKeyIndex keys = keyIndex;
+        if (keys != null ? keys.isCurrent(idxFile) : keyIndexFailed || !ResidentKeyIndex.isEnabled()) {
+            return keys;
+        }
+
+        synchronized (this) {
+            keys = keyIndex;
+            if (keys != null && !keys.isCurrent(idxFile)) {
+                LOGGER.debug("The key index of {} is out of date", getBookMetaData().getInitials());
+                keys = null;
+            }
+            if (keys == null && !keyIndexFailed && ResidentKeyIndex.isEnabled()) {
+                keys = ResidentKeyIndex.load(getBookMetaData(), idxFile);
+                if (keys == null) {
+                    try {
+                        keys = buildKeyIndex(state);
+                        keys.store(getBookMetaData());
+                    } catch (IOException e) {
+                        LOGGER.warn("Unable to build the key index for {}", getBookMetaData().getInitials(), e);
+                        keyIndexFailed = true;
+                    }
+                }
+            }
+            keyIndex = keys;
+            return keys;
+        }
+    }
+
+    /**
+     * Read every key of this dictionary. The index file is read at once, and
+     * then the key of each entry from the data file.
+     * 
+     * @param state the state for the storage
+     * @return the resident key index
+     * @throws IOException on a IO problem
+     */
+    private ResidentKeyIndex buildKeyIndex(RawLDBackendState state) throws IOException {
+        File idxFile = state.getIdxFile();
+        long length = idxFile.length();
+        long modified = idxFile.lastModified();
+        int count = (int) (state.getIdxRaf().length() / entrysize);
+        byte[] buffer = SwordUtil.readRAF(state.getIdxRaf(), 0, count * entrysize);
+        String[] keys = new String[count];
+        int[] offsets = new int[count];
+        int[] sizes = new int[count];
+        String initials = getBookMetaData().getInitials();
+        for (int i = 0; i < count; i++) {
+            int pos = i * entrysize;
+            offsets[i] = SwordUtil.decodeLittleEndian32(buffer, pos);
+            sizes[i] = datasize == 2 ? SwordUtil.decodeLittleEndian16(buffer, pos + OFFSETSIZE) : SwordUtil.decodeLittleEndian32(buffer, pos + OFFSETSIZE);
+            keys[i] = getEntry(state, initials, new DataIndex(offsets[i], sizes[i])).getKey();
+        }
+        ResidentKeyIndex index = new ResidentKeyIndex(keys, offsets, sizes);
+        index.setSource(length, modified);
+        return index;
+    }
+
     /**
      * Get the text for an indexed entry in the book.
      * 
@@ -264,11 +521,13 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * Find a matching entry, returning it's index. Otherwise return &lt; 0, such
      * that (-pos - 1) gives the insertion index.
      * 
+     * @param state
+     * @param keys the resident key index, if any
      * @param key
      * @return the match
      * @throws IOException
      */
-    private int search(RawLDBackendState state, String key) throws IOException {
+    private int search(RawLDBackendState state, ResidentKeyIndex keys, String key) throws IOException {
         // Note: In some dictionaries, the first element is out of order and
         // represents the title of the work.
         // So, do the bin search from 1 to end and if not found, check the
@@ -288,7 +547,7 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
             int mid = (low + high) >>> 1;
 
             // Get the key for the item at "mid"
-            dataIndex = getIndex(state, mid);
+            dataIndex = getIndex(state, keys, mid);
             // Occasionally there's a bogus index entry (size == 0)
             // in the middle of the index. It needs to be skipped.
             while (dataIndex.getSize() == 0) {
@@ -298,9 +557,9 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
                 if (mid < low || mid > high) {
                     break;
                 }
-                dataIndex = getIndex(state, mid);
+                dataIndex = getIndex(state, keys, mid);
             }
-            String entryKey = normalizeForSearch(getEntry(state, key, dataIndex).getKey());
+            String entryKey = normalizeForSearch(getKey(state, keys, key, mid, dataIndex));
             // Normalize the key based upon the first entry looked at.
             if (suppliedKey == null) {
                 suppliedKey = normalizeForSearch(external2internal(key, entryKey));
@@ -322,8 +581,8 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         }
 
         // Many dictionaries have an introductory entry, so check it for a match.
-        dataIndex = getIndex(state, 0);
-        String entryKey = normalizeForSearch(getEntry(state, key, dataIndex).getKey());
+        dataIndex = getIndex(state, keys, 0);
+        String entryKey = normalizeForSearch(getKey(state, keys, key, 0, dataIndex));
         if (suppliedKey == null) {
             suppliedKey = normalizeForSearch(external2internal(key, entryKey));
         }
@@ -334,8 +593,8 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         // It wasn't found so see if it is present in a linear search if case sensitive keys are used.
         if ("true".equalsIgnoreCase(getBookMetaData().getProperty(SwordBookMetaData.KEY_CASE_SENSITIVE_KEYS))) {
            for (int i = 0; i < total; i++) {
-               dataIndex = getIndex(state, i);
-               if (getEntry(state, key, dataIndex).getKey().compareTo(key) == 0) {
+               dataIndex = getIndex(state, keys, i);
+               if (getKey(state, keys, key, i, dataIndex).compareTo(key) == 0) {
                    return i;
                }
            }
@@ -344,6 +603,42 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         return -(high + 1);
     }
 
+    /**
+     * Find the first entry, after the introductory entry, whose normalized key
+     * is at or after the target.
+     * 
+     * @param state the state for the storage
+     * @param keys the resident key index, if any
+     * @param target the normalized key to find
+     * @param total the number of entries
+     * @return the position of the entry, or total if there is none
+     * @throws IOException
+     */
+    private int lowerBound(RawLDBackendState state, ResidentKeyIndex keys, String target, int total) throws IOException {
+        // Entries at or before low are before the target, those at or after high are not.
+        int low = 0;
+        int high = total;
+        String initials = getBookMetaData().getInitials();
+        while (high - low > 1) {
+            // use >>> to keep mid always in range
+            int mid = (low + high) >>> 1;
+
+            // Skip bogus index entries toward the end
+            int probe = mid;
+            DataIndex dataIndex = getIndex(state, keys, probe);
+            while (dataIndex.getSize() == 0 && probe + 1 < high) {
+                dataIndex = getIndex(state, keys, ++probe);
+            }
+
+            if (dataIndex.getSize() != 0 && normalizeForSearch(getKey(state, keys, initials, probe, dataIndex)).compareTo(target) < 0) {
+                low = probe;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
     /**
      * Convert the supplied key to something that can be understood by the module.
      * Use firstKey to determine the pattern for Strong's numbers.
@@ -485,6 +780,10 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
         return keytitle;
     }
 
+    /**
+     * Fold a key as the module is sorted. The sort of a SWORD module does not
+     * depend on a locale, so neither does the fold.
+     */
     private String normalizeForSearch(String internalKey) {
         BookMetaData bmd = getBookMetaData();
         String keytitle = internalKey;
@@ -627,6 +926,12 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      */
     private static final Pattern DEVOTION_PATTERN = Pattern.compile("^\\d\\d\\.\\d\\d$");
 
+    /**
+     * The resident keys of this dictionary, built on first use.
+     */
+    private transient volatile ResidentKeyIndex keyIndex;
+    private transient volatile boolean keyIndexFailed;
+
     /**
      * The number of bytes in the size count in the index
      */
@@ -646,4 +951,9 @@ public class RawLDBackend<T extends RawLDBackendState> extends AbstractKeyBacken
      * Serialization ID
      */
     private static final long serialVersionUID = 818089833394450383L;
+
+    /**
+     * The log stream
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RawLDBackend.class);
 }
@@ -0,0 +1,324 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.BookMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A resident copy of the keys of a dictionary, along with where each entry
+ * can be found in the data file. With it, finding a key in a RawLD or ZLD
+ * dictionary needs no reads of either the index or the data file.
+ * 
+ * <p>The index is built on first use and stored in the writable project
+ * area, so that it is only built once for each installation of the book.
+ * The keys are front coded when stored, as neighbouring keys of a sorted
+ * dictionary share much of their beginning.</p>
+ * 
+ * <p>The index notes the length and modification time of the index file
+ * from which it was built. When the dictionary is written to or
+ * re-installed the index is out of date and is built again. So that a lookup
+ * does not cost a look at the file, the file is only looked at again after a
+ * book has been installed or deleted, or once the check interval has
+ * passed.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class ResidentKeyIndex {
+    /**
+     * Create a resident index from the entries of a dictionary.
+     * 
+     * @param keys the key of each entry, in the order of the index file
+     * @param offsets the offset of each entry in the data file
+     * @param sizes the size of each entry in the data file
+     */
+    ResidentKeyIndex(String[] keys, int[] offsets, int[] sizes) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Whether dictionaries keep a resident copy of their keys.
+     * 
+     * @return true if dictionaries keep their keys in memory
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether dictionaries keep a resident copy of their keys. This only
+     * affects dictionaries that have not yet been used.
+     * 
+     * @param enabled whether dictionaries keep their keys in memory
+     */
+    public static void setEnabled(boolean enabled) {
+        ResidentKeyIndex.enabled = enabled;
+    }
+
+    /**
+     * Note the index file from which this index was built. This is noted
+     * before the file is read, so that a change while it is read is seen
+     * later.
+     * 
+     * @param length the length of the index file
+     * @param modified the modification time of the index file
+     */
+    void setSource(long length, long modified) {
+        sourceLength = length;
+        sourceModified = modified;
+    }
+
+    /**
+     * Whether the index file is the one from which this index was built. The
+     * file is only looked at when the last look is out of date, so a change
+     * may not be seen until the check interval has passed.
+     * 
+     * @param idxFile the index file of the book
+     * @return false if the file has changed since
+     */
+    boolean isCurrent(File idxFile) {
+        if (stale) {
+            return false;
+        }
+        if (!check.isDue()) {
+            return true;
+        }
+        stale = idxFile.length() != sourceLength || idxFile.lastModified() != sourceModified;
+        return !stale;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * @param entry the position of the entry in the index file
+     * @return the key of the entry
+     */
+    String getKey(int entry) {
+        return keys[entry];
+    }
+
+    /**
+     * @param entry the position of the entry in the index file
+     * @return where the entry is in the data file
+     */
+    DataIndex getIndex(int entry) {
+        return new DataIndex(offsets[entry], sizes[entry]);
+    }
+
+    /**
+     * @param entry the position of the entry in the index file
+     * @return the size of the entry in the data file
+     */
+    int getSize(int entry) {
+        return sizes[entry];
+    }
+
+    /**
+     * Load the stored index for the book, provided it was built from the
+     * current index file.
+     * 
+     * @param bmd the book
+     * @param idxFile the index file of the book
+     * @return the index or null if there is none, or it is out of date
+     */
+    static ResidentKeyIndex load(BookMetaData bmd, File idxFile) {
+        File store = getStore(bmd);
+        if (store == null || !store.canRead()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(store)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.debug("Stale key index for {}", bmd.getInitials());
+                return null;
+            }
+            long length = in.readLong();
+            long modified = in.readLong();
+            if (length != idxFile.length() || modified != idxFile.lastModified()) {
+                LOGGER.debug("Stale key index for {}", bmd.getInitials());
+                return null;
+            }
+
+            int count = in.readInt();
+            String[] keys = new String[count];
+            int[] offsets = new int[count];
+            int[] sizes = new int[count];
+            String last = "";
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.readInt();
+                sizes[i] = in.readInt();
+                int prefix = in.readUnsignedShort();
+                last = last.substring(0, prefix) + in.readUTF();
+                keys[i] = last;
+            }
+            ResidentKeyIndex index = new ResidentKeyIndex(keys, offsets, sizes);
+            index.sourceLength = length;
+            index.sourceModified = modified;
+            return index;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load the key index for {}", bmd.getInitials(), e);
+            return null;
+        } catch (StringIndexOutOfBoundsException e) {
+            LOGGER.warn("Corrupt key index for {}", bmd.getInitials(), e);
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Store the index for the book, marked with the index file from which it
+     * was built. Failure to store is logged, as the index can be rebuilt.
+     * 
+     * @param bmd the book
+     */
+    void store(BookMetaData bmd) {
+        File store = getStore(bmd);
+        if (store == null) {
+            return;
+        }
+
+        // Write to the side so that a reader never sees a partial index
+        File temp = new File(store.getPath() + ".tmp");
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceLength);
+            out.writeLong(sourceModified);
+            out.writeInt(keys.length);
+            String last = "";
+            for (int i = 0; i < keys.length; i++) {
+                String key = keys[i];
+                int prefix = Math.min(commonPrefix(last, key), MAX_PREFIX);
+                out.writeInt(offsets[i]);
+                out.writeInt(sizes[i]);
+                out.writeShort(prefix);
+                out.writeUTF(key.substring(prefix));
+                last = key;
+            }
+            out.close();
+            out = null;
+            written = true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the key index for {}", bmd.getInitials(), e);
+        } finally {
+            IOUtil.close(out);
+        }
+
+        if (!written || !(temp.renameTo(store) || (store.delete() && temp.renameTo(store)))) {
+            if (!temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Remove the stored index of a book, for example when the book is deleted.
+     * 
+     * @param bmd the book
+     */
+    public static void remove(BookMetaData bmd) {
+        File store = getStore(bmd);
+        if (store != null && store.exists() && !store.delete()) {
+            LOGGER.warn("Unable to delete {}", store.getPath());
+        }
+    }
+
+    /**
+     * @return the file in which the index of the book is stored, or null if
+     *         there is no writable area
+     */
+    private static File getStore(BookMetaData bmd) {
+        try {
+            File dir = new File(CWProject.instance().getWritableProjectSubdir(DIR_KEYS, true));
+            return new File(dir, bmd.getInitials() + SUFFIX_KEYS);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to find the key index storage area", e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            // The project area is not a file: URI
+            return null;
+        }
+    }
+
+    private static int commonPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static final int MAGIC = 0x4A534B49;
+    private static final int VERSION = 1;
+    private static final int MAX_PREFIX = 0xFFFF;
+    private static final String DIR_KEYS = "keys";
+    private static final String SUFFIX_KEYS = ".keys";
+
+    private static volatile boolean enabled = true;
+
+    private final String[] keys;
+    private final int[] offsets;
+    private final int[] sizes;
+
+    /**
+     * The length and modification time of the index file from which this was built.
+     */
+    private long sourceLength = -1;
+    private long sourceModified = -1;
+
+    /**
+     * When the index file is next looked at, and whether it was found to have
+     * changed.
+     */
+    private final FileCheck check = new FileCheck();
+    private volatile boolean stale;
+
+    /**
+     * The log stream
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResidentKeyIndex.class);
+}
@@ -0,0 +1,264 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A resident copy of the tree of a General Book, read from the .idx and .dat
+ * files at once. Each node is known by its position in the .idx file, and the
+ * children of a node can be found by name, so finding a key needs no I/O and
+ * takes time in proportion to its depth.
+ * 
+ * <p>
+ * The tree remembers the length and the time of last modification of the
+ * files it was read from, so that a book that has been re-installed or
+ * changed is read again.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class ResidentTreeIndex {
+    /**
+     * Build the tree from the whole of the index and data files.
+     * 
+     * @param idx the content of the .idx file
+     * @param dat the content of the .dat file
+     * @param charset the character set of the names
+     * @param diagnostic a name for the book, used for diagnostics
+     * @throws IOException if the files are not a tree
+     */
+    ResidentTreeIndex(byte[] idx, byte[] dat, String charset, String diagnostic) throws IOException {
+        int count = idx.length / 4;
+        parents = new int[count];
+        nextSiblings = new int[count];
+        firstChildren = new int[count];
+        names = new String[count];
+        dataStarts = new int[count];
+        dataSizes = new int[count];
+        children = new HashMap<ChildKey, Integer>(count * 4 / 3 + 1);
+
+        // Many names, such as chapter numbers, are repeated
+        Map<String, String> namePool = new HashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            int offset = SwordUtil.decodeLittleEndian32(idx, i * 4);
+            if (offset < 0 || offset + 12 > dat.length) {
+                throw new IOException("Bad offset " + offset + " for node " + i + " in " + diagnostic);
+            }
+            parents[i] = toNode(SwordUtil.decodeLittleEndian32(dat, offset));
+            nextSiblings[i] = toNode(SwordUtil.decodeLittleEndian32(dat, offset + 4));
+            firstChildren[i] = toNode(SwordUtil.decodeLittleEndian32(dat, offset + 8));
+
+            int nameStart = offset + 12;
+            int nameEnd = SwordUtil.findByte(dat, nameStart, (byte) 0);
+            if (nameEnd < 0) {
+                nameEnd = dat.length;
+            }
+            // Some of the keys have extraneous whitespace, so remove it.
+            String name = SwordUtil.decode(diagnostic, dat, nameStart, nameEnd - nameStart, charset).trim();
+            String pooled = namePool.get(name);
+            if (pooled == null) {
+                namePool.put(name, name);
+                pooled = name;
+            }
+            names[i] = pooled;
+
+            // Some entries may be empty.
+            int userData = nameEnd + 1;
+            dataStarts[i] = -1;
+            dataSizes[i] = -1;
+            if (userData + 2 <= dat.length && SwordUtil.decodeLittleEndian16(dat, userData) == 8 && userData + 10 <= dat.length) {
+                dataStarts[i] = SwordUtil.decodeLittleEndian32(dat, userData + 2);
+                dataSizes[i] = SwordUtil.decodeLittleEndian32(dat, userData + 6);
+            }
+        }
+
+        // Index the children by name, keeping the first of any duplicates
+        for (int i = 0; i < count; i++) {
+            if (parents[i] >= 0) {
+                ChildKey key = new ChildKey(parents[i], names[i]);
+                if (!children.containsKey(key)) {
+                    children.put(key, Integer.valueOf(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remember the files the tree was read from, as they were before they
+     * were read.
+     * 
+     * @param idxLength the length of the .idx file
+     * @param idxModified the time the .idx file was last modified
+     * @param datLength the length of the .dat file
+     * @param datModified the time the .dat file was last modified
+     */
+    void setSource(long idxLength, long idxModified, long datLength, long datModified) {
+        sourceIdxLength = idxLength;
+        sourceIdxModified = idxModified;
+        sourceDatLength = datLength;
+        sourceDatModified = datModified;
+    }
+
+    /**
+     * Whether the tree was read from the files as they are now. The files
+     * are only looked at when the last look is out of date, so a change may
+     * not be seen until the check interval has passed.
+     * 
+     * @param idxFile the .idx file of the book
+     * @param datFile the .dat file of the book
+     * @return whether the tree was read from the files as they are now
+     */
+    boolean isCurrent(File idxFile, File datFile) {
+        if (stale) {
+            return false;
+        }
+        if (!check.isDue()) {
+            return true;
+        }
+        stale = idxFile.length() != sourceIdxLength || idxFile.lastModified() != sourceIdxModified
+                || datFile.length() != sourceDatLength || datFile.lastModified() != sourceDatModified;
+        return !stale;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the root node or -1 if there are no nodes
+     */
+    int getRoot() {
+        return names.length > 0 ? 0 : -1;
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the parent of the node, or -1 if there is none
+     */
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the first child of the node, or -1 if there is none
+     */
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the next sibling of the node, or -1 if there is none
+     */
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the name of the node
+     */
+    String getName(int node) {
+        return names[node];
+    }
+
+    /**
+     * @param parent the node whose child is wanted
+     * @param name the name of the child
+     * @return the first child of the node with the name, or -1 if there is none
+     */
+    int getChild(int parent, String name) {
+        Integer child = children.get(new ChildKey(parent, name));
+        return child == null ? -1 : child.intValue();
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the start of the node's text in the .bdt file, or -1 if it has none
+     */
+    int getDataStart(int node) {
+        return dataStarts[node];
+    }
+
+    /**
+     * @param node the node being worked upon
+     * @return the size of the node's text in the .bdt file, or -1 if it has none
+     */
+    int getDataSize(int node) {
+        return dataSizes[node];
+    }
+
+    /**
+     * The .dat file refers to other nodes by their offset in the .idx file.
+     */
+    private static int toNode(int idxOffset) {
+        return idxOffset < 0 ? -1 : idxOffset / 4;
+    }
+
+    /**
+     * The name of a node under its parent.
+     */
+    private static final class ChildKey {
+        ChildKey(int parent, String name) {
+            this.parent = parent;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ChildKey)) {
+                return false;
+            }
+            ChildKey that = (ChildKey) obj;
+            return parent == that.parent && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * parent + name.hashCode();
+        }
+
+        private final int parent;
+        private final String name;
+    }
+
+    private final int[] parents;
+    private final int[] nextSiblings;
+    private final int[] firstChildren;
+    private final String[] names;
+    private final int[] dataStarts;
+    private final int[] dataSizes;
+    private final Map<ChildKey, Integer> children;
+    private long sourceIdxLength = -1;
+    private long sourceIdxModified = -1;
+    private long sourceDatLength = -1;
+    private long sourceDatModified = -1;
+    private final FileCheck check = new FileCheck();
+    private volatile boolean stale;
+}
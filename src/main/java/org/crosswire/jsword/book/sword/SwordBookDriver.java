@@ -37,6 +37,8 @@ import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.Books;
 import org.crosswire.jsword.book.basic.AbstractBookDriver;
+import org.crosswire.jsword.book.sword.state.BlockCache;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexManagerFactory;
 import org.crosswire.jsword.index.IndexStatus;
@@ -169,6 +171,7 @@ public class SwordBookDriver extends AbstractBookDriver {
                 File bookDir = new File(loc.getPath());
                 failures = FileUtil.delete(bookDir);
                 Books.installed().removeBook(dead);
+                forget(sbmd);
             }
 
         }
@@ -233,12 +236,31 @@ public class SwordBookDriver extends AbstractBookDriver {
             return;
         }
 
+        // This may be a new version installed over an old one,
+        // so nothing remembered about the old one can be trusted.
+        forget(bmd);
+
         SwordBookDriver d = (SwordBookDriver) sbmd.getDriver();
         bmd.setDriver(d);
         Book book = d.createBook(bmd);
         Books.installed().addBook(book);
     }
 
+    /**
+     * Drop everything held in memory that was read from the files of a book,
+     * because the files have been deleted or replaced.
+     *
+     * @param sbmd
+     *            the book whose files have changed
+     */
+    private static void forget(SwordBookMetaData sbmd) {
+        BlockCache.instance().remove(sbmd);
+        OpenFileStateManager.instance().removeMappings(sbmd);
+        ResidentKeyIndex.remove(sbmd);
+        VersePresence.remove(sbmd);
+        FileCheck.filesChanged();
+    }
+
     /**
      * Create a Book appropriate for the BookMetaData
      */
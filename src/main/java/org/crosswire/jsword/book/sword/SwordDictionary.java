@@ -131,6 +131,22 @@ public class SwordDictionary extends AbstractBook {
         return (AbstractKeyBackend) getBackend();
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.basic.AbstractBook#getKeysInRange(java.lang.String, java.lang.String, int)
+     */
+    @Override
+    public Key getKeysInRange(String from, String to, int maxCount) {
+        return ((AbstractKeyBackend<?>) getBackend()).getKeysInRange(from, to, maxCount);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.basic.AbstractBook#getKeysWithPrefix(java.lang.String, int)
+     */
+    @Override
+    public Key getKeysWithPrefix(String prefix, int maxCount) {
+        return ((AbstractKeyBackend<?>) getBackend()).getKeysWithPrefix(prefix, maxCount);
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.book.Book#getValidKey(java.lang.String)
      */
@@ -19,10 +19,15 @@
  */
 package org.crosswire.jsword.book.sword;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.crosswire.common.util.NetUtil;
 import org.crosswire.jsword.JSOtherMsg;
@@ -45,7 +50,9 @@ public final class SwordUtil {
     }
 
     /**
-     * Read a RandomAccessFile
+     * Read a RandomAccessFile. The read does not depend upon the file pointer,
+     * so the file may be shared by threads that only read it this way. The
+     * file pointer is neither used nor moved.
      * 
      * @param raf
      *            The file to read
@@ -58,8 +65,51 @@ public final class SwordUtil {
      *             on error
      */
     protected static byte[] readRAF(RandomAccessFile raf, long offset, int theSize) throws IOException {
-        raf.seek(offset);
-        return readNextRAF(raf, theSize);
+        int size = theSize;
+        long rafSize = raf.length();
+
+        // It is common to have an entry that points to nothing.
+        // That is the equivalent of an empty string.
+        if (size == 0) {
+            return new byte[0];
+        }
+
+        if (size < 0) {
+            log.error("Nothing to read at offset = {} returning empty because negative size={}", Long.toString(offset), Integer.toString(size));
+            return new byte[0];
+        }
+
+        // As RandomAccessFile.seek would
+        if (offset < 0) {
+            throw new IOException("Negative seek offset");
+        }
+
+        if (offset >= rafSize) {
+            log.error("Attempt to read beyond end. offset={} size={} but raf.length={}", Long.toString(offset), Integer.toString(size), Long.toString(rafSize));
+            return new byte[0];
+        }
+
+        if (offset + size > rafSize) {
+            log.error("Need to reduce size to avoid EOFException. offset={} size={} but raf.length={}", Long.toString(offset), Integer.toString(size), Long.toString(rafSize));
+            size = (int) (rafSize - offset);
+        }
+
+        // A positional read does not use the file pointer,
+        // so any number of threads can read the file at once.
+        byte[] read = new byte[size];
+        ByteBuffer dst = ByteBuffer.wrap(read);
+        FileChannel channel = raf.getChannel();
+        long position = offset;
+        while (dst.hasRemaining()) {
+            int count = channel.read(dst, position);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            position += count;
+        }
+
+        // The file pointer is not moved, as it may be shared with other threads.
+        return read;
     }
 
     /**
@@ -105,6 +155,53 @@ public final class SwordUtil {
         return read;
     }
 
+    /**
+     * Read from a memory mapped file. This behaves just like
+     * {@link #readRAF(RandomAccessFile, long, int)}. The buffer's position is
+     * not changed, so the buffer may be shared between threads.
+     * 
+     * @param buffer
+     *            The mapped file to read
+     * @param offset
+     *            The start of the record to read
+     * @param theSize
+     *            The number of bytes to read
+     * @return the read data
+     */
+    protected static byte[] readBuffer(ByteBuffer buffer, long offset, int theSize) {
+        int size = theSize;
+        long bufferSize = buffer.limit();
+
+        // It is common to have an entry that points to nothing.
+        // That is the equivalent of an empty string.
+        if (size == 0) {
+            return new byte[0];
+        }
+
+        if (size < 0) {
+            log.error("Nothing to read at offset = {} returning empty because negative size={}", Long.toString(offset), Integer.toString(size));
+            return new byte[0];
+        }
+
+        if (offset < 0 || offset >= bufferSize) {
+            log.error("Attempt to read beyond end. offset={} size={} but buffer.limit={}", Long.toString(offset), Integer.toString(size), Long.toString(bufferSize));
+            return new byte[0];
+        }
+
+        if (offset + size > bufferSize) {
+            log.error("Need to reduce size to avoid BufferUnderflowException. offset={} size={} but buffer.limit={}", Long.toString(offset), Integer.toString(size), Long.toString(bufferSize));
+            size = (int) (bufferSize - offset);
+        }
+
+        // Read from a view so that the buffer itself is not changed
+        byte[] read = new byte[size];
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offset);
+        view.get(read);
+
+        return read;
+    }
+
     /**
      * Writes "data" to a RandomAccessFile at the "offset" position
      * 
@@ -291,8 +388,7 @@ public final class SwordUtil {
 
     /**
      * Transform a byte array into a string given the encoding. If the encoding
-     * is bad then it just does it as a string.
-     * Note: this may modify data. Don't use it to examine data.
+     * is bad then it just does it as a string. The data is not modified.
      * 
      * @param key the key
      * @param data
@@ -307,8 +403,8 @@ public final class SwordUtil {
 
     /**
      * Transform a portion of a byte array into a string given the encoding. If
-     * the encoding is bad then it just does it as a string.
-     * Note: this may modify data. Don't use it to examine data.
+     * the encoding is bad then it just does it as a string. The data is not
+     * modified.
      * 
      * @param key the key
      * @param data
@@ -326,7 +422,17 @@ public final class SwordUtil {
     /**
      * Transform a portion of a byte array starting at an offset into a string
      * given the encoding. If the encoding is bad then it just does it as a
-     * string. Note: this may modify data. Don't use it to examine data.
+     * string.
+     * <p>
+     * The bytes are decoded straight out of the supplied array, so a caller
+     * holding a whole decompressed block can decode a single entry without
+     * first copying it out. The data is never modified, which makes it safe
+     * to decode from a block that is shared with other readers.
+     * </p>
+     * <p>
+     * A range that does not lie within the data is a sign of a corrupt book.
+     * It is logged as an error and decoded as an empty string.
+     * </p>
      * 
      * @param key the key
      * @param data
@@ -340,44 +446,82 @@ public final class SwordUtil {
      * @return a string that is UTF-8 internally
      */
     public static String decode(String key, byte[] data, int offset, int length, String charset) {
-         if ("WINDOWS-1252".equals(charset)) {
-            clean1252(key, data, offset, length);
-         }
-        String txt = "";
-        try {
-            if (offset + length <= data.length) {
-                txt = new String(data, offset, length, charset);
+        if (length == 0) {
+            return "";
+        }
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            log.error("{}: Attempt to decode beyond end. offset={} length={} but data.length={}", key, Integer.toString(offset), Integer.toString(length), Integer.toString(data.length));
+            return "";
+        }
+
+        byte[] source = data;
+        int start = offset;
+        if ("WINDOWS-1252".equals(charset)) {
+            byte[] cleaned = clean1252(key, data, offset, length);
+            if (cleaned != null) {
+                source = cleaned;
+                start = 0;
             }
-        } catch (UnsupportedEncodingException ex) {
+        }
+
+        Charset cs = lookupCharset(key, charset);
+        if (cs == null) {
             // It is impossible! In case, use system default...
-            log.error("{}: Encoding {} not supported.", key, charset, ex);
-            txt = new String(data, offset, length);
+            return new String(source, start, length);
         }
+        return new String(source, start, length, cs);
+    }
 
-        return txt;
+    /**
+     * Get the Charset for an encoding name, remembering it so that the
+     * lookup by name is only done once per encoding.
+     * 
+     * @param key the key being decoded, for reporting
+     * @param charset the name of the encoding
+     * @return the Charset or null if the encoding is not supported
+     */
+    private static Charset lookupCharset(String key, String charset) {
+        Charset cs = charsets.get(charset);
+        if (cs == null) {
+            try {
+                cs = Charset.forName(charset);
+            } catch (IllegalArgumentException ex) {
+                log.error("{}: Encoding {} not supported.", key, charset, ex);
+                return null;
+            }
+            charsets.putIfAbsent(charset, cs);
+        }
+        return cs;
     }
 
     /**
      * Remove rogue characters in the source. These are characters that are not
      * valid in cp1252 aka WINDOWS-1252 and in UTF-8 or are non-printing control
      * characters in the range of 0-32.
+     * <p>
+     * The source is left untouched. If it is clean, null is returned and the
+     * caller can decode it directly; otherwise a cleaned copy of the range is
+     * returned.
+     * </p>
      */
-    private static void clean1252(String key, byte[] data, int offset, int length) {
+    private static byte[] clean1252(String key, byte[] data, int offset, int length) {
+        byte[] cleaned = null;
         int end = offset + length;
-        // make sure it doesn't go off the end
-        if (end > data.length) {
-            end = data.length;
-        }
         for (int i = offset; i < end; i++) {
             // between 0-32 only allow whitespace: \t, \n, \r, ' '
             // characters 0x81, 0x8D, 0x8F, 0x90 and 0x9D are undefined in
             // cp1252
             int c = data[i] & 0xFF;
             if ((c >= 0x00 && c < 0x20 && c != 0x09 && c != 0x0A && c != 0x0D) || (c == 0x81 || c == 0x8D || c == 0x8F || c == 0x90 || c == 0x9D)) {
-                data[i] = 0x20;
+                if (cleaned == null) {
+                    cleaned = new byte[length];
+                    System.arraycopy(data, offset, cleaned, 0, length);
+                }
+                cleaned[i - offset] = 0x20;
                 log.error("{} has bad character 0x{} at position {} in input.", key, Integer.toString(c, 16), Integer.toString(i));
             }
         }
+        return cleaned;
     }
 
     /**
@@ -397,6 +541,11 @@ public final class SwordUtil {
         return loc;
     }
 
+    /**
+     * The Charsets that have been looked up so far, by name.
+     */
+    private static final ConcurrentMap<String, Charset> charsets = new ConcurrentHashMap<String, Charset>();
+
     /**
      * The log stream
      */
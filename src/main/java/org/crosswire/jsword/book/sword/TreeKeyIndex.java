@@ -100,6 +100,43 @@ public class TreeKeyIndex implements Activatable {
         return getTreeNode(getOffset(node.getNextSibling()));
     }
 
+    /**
+     * Read the whole tree at once.
+     * 
+     * @return the resident tree
+     * @throws IOException
+     */
+    ResidentTreeIndex readTree() throws IOException {
+        // The files may have been replaced since they were opened
+        Activator.deactivate(this);
+        checkActive();
+        if (idxRaf == null || datRaf == null) {
+            throw new IOException("GenBook index is not open for " + bmd.getInitials());
+        }
+
+        long idxLength = idxFile.length();
+        long idxModified = idxFile.lastModified();
+        long datLength = datFile.length();
+        long datModified = datFile.lastModified();
+        byte[] idx = SwordUtil.readRAF(idxRaf, 0, (int) idxRaf.length());
+        byte[] dat = SwordUtil.readRAF(datRaf, 0, (int) datRaf.length());
+        ResidentTreeIndex tree = new ResidentTreeIndex(idx, dat, bmd.getBookCharset(), bmd.getName());
+        tree.setSource(idxLength, idxModified, datLength, datModified);
+        return tree;
+    }
+
+    /**
+     * Whether a tree read by {@link #readTree()} is still that of the files.
+     * 
+     * @param tree
+     *            the resident tree
+     * @return false if the files have changed since the tree was read
+     */
+    boolean isCurrent(ResidentTreeIndex tree) {
+        // The files are known once the tree has been read, even when closed
+        return idxFile != null && datFile != null && tree.isCurrent(idxFile, datFile);
+    }
+
     /**
      * The idx file contains offsets into the dat file.
      * 
@@ -139,7 +176,8 @@ public class TreeKeyIndex implements Activatable {
         node.setNextSibling(SwordUtil.decodeLittleEndian32(buffer, 4));
         node.setFirstChild(SwordUtil.decodeLittleEndian32(buffer, 8));
 
-        buffer = SwordUtil.readUntilRAF(datRaf, (byte) 0);
+        // readRAF does not move the file pointer, the rest of the record is read from it
+        buffer = SwordUtil.readUntilRAF(datRaf, offset + 12, (byte) 0);
         int size = buffer.length;
         if (buffer[size - 1] == 0) {
             size--;
@@ -0,0 +1,258 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.RocketPassage;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The set of verses of a Bible or Commentary that have content, as a bitmap
+ * of their ordinals in the book's versification. It is read from the book's
+ * index files on first use and is kept in the writable project area, so that
+ * it is only read again when the files of the book change. After that,
+ * whether the book has a verse and the book's global key list are known
+ * without I/O.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class VersePresence {
+    /**
+     * Reads the set of verses that have content from the book's files.
+     */
+    interface Reader {
+        /**
+         * @return the ordinals of the verses that have content
+         * @throws IOException
+         * @throws BookException
+         */
+        BitSet read() throws IOException, BookException;
+    }
+
+    /**
+     * @param bmd the book
+     */
+    VersePresence(BookMetaData bmd) {
+        this.bmd = bmd;
+    }
+
+    /**
+     * Get the verses that have content, loading or reading them on first use.
+     * The set must not be changed.
+     * 
+     * @param reader reads the verses from the book's files if they are not stored
+     * @return the ordinals of the verses that have content
+     * @throws IOException
+     * @throws BookException
+     */
+    BitSet get(Reader reader) throws IOException, BookException {
+        BitSet reply = present;
+        if (reply == null) {
+            synchronized (this) {
+                reply = present;
+                if (reply == null) {
+                    long stamp = getStamp();
+                    reply = load(stamp);
+                    if (reply == null) {
+                        reply = reader.read();
+                        store(reply, stamp);
+                    }
+                    present = reply;
+                }
+            }
+        }
+        return reply;
+    }
+
+    /**
+     * Forget the verses, as the book has been changed.
+     */
+    void clear() {
+        present = null;
+    }
+
+    /**
+     * Create a passage of the verses.
+     * 
+     * @param verses the ordinals of the verses
+     * @param v11n the versification of the book
+     * @return a new passage of the verses
+     */
+    static BitwisePassage toPassage(BitSet verses, Versification v11n) {
+        BitwisePassage passage = new RocketPassage(v11n);
+        passage.raiseEventSuppresion();
+        passage.raiseNormalizeProtection();
+        for (int ordinal = verses.nextSetBit(0); ordinal >= 0; ordinal = verses.nextSetBit(ordinal + 1)) {
+            passage.addVersifiedOrdinal(ordinal);
+        }
+        passage.lowerNormalizeProtection();
+        passage.lowerEventSuppressionAndTest();
+        return passage;
+    }
+
+    /**
+     * The stamp changes whenever any file of the book is changed.
+     */
+    long getStamp() throws BookException {
+        File[] files = new File(SwordUtil.getExpandedDataPath(bmd)).listFiles();
+        long stamp = 0;
+        if (files != null) {
+            // The order of a listing is not given, but the stamp depends on it
+            Arrays.sort(files);
+            for (File file : files) {
+                stamp = 31 * stamp + file.getName().hashCode();
+                stamp = 31 * stamp + file.length();
+                stamp = 31 * stamp + file.lastModified();
+            }
+        }
+        return stamp;
+    }
+
+    private BitSet load(long stamp) {
+        File store = getStore();
+        if (store == null || !store.canRead()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(store)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != stamp) {
+                LOGGER.debug("Stale verse list for {}", bmd.getInitials());
+                return null;
+            }
+
+            int length = in.readInt();
+            byte[] bytes = new byte[(length + 7) / 8];
+            in.readFully(bytes);
+            BitSet verses = new BitSet(length);
+            for (int i = 0; i < length; i++) {
+                if ((bytes[i >> 3] & (1 << (i & 7))) != 0) {
+                    verses.set(i);
+                }
+            }
+            return verses;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to load the verse list for {}", bmd.getInitials(), e);
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    private void store(BitSet verses, long stamp) {
+        File store = getStore();
+        if (store == null) {
+            return;
+        }
+
+        // Write to the side so that a reader never sees a partial list
+        File temp = new File(store.getPath() + ".tmp");
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            int length = verses.length();
+            byte[] bytes = new byte[(length + 7) / 8];
+            for (int i = verses.nextSetBit(0); i >= 0; i = verses.nextSetBit(i + 1)) {
+                bytes[i >> 3] |= 1 << (i & 7);
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(stamp);
+            out.writeInt(length);
+            out.write(bytes);
+            out.close();
+            out = null;
+            written = true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to store the verse list for {}", bmd.getInitials(), e);
+        } finally {
+            IOUtil.close(out);
+        }
+
+        if (!written || !(temp.renameTo(store) || (store.delete() && temp.renameTo(store)))) {
+            if (!temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Remove the stored verse list of a book, for example when the book is deleted.
+     * 
+     * @param bmd the book
+     */
+    static void remove(BookMetaData bmd) {
+        File store = new VersePresence(bmd).getStore();
+        if (store != null && store.exists() && !store.delete()) {
+            LOGGER.warn("Unable to delete {}", store.getPath());
+        }
+    }
+
+    /**
+     * @return the file in which the verses of the book are stored, or null if
+     *         there is no writable area
+     */
+    private File getStore() {
+        try {
+            File dir = new File(CWProject.instance().getWritableProjectSubdir(DIR_VERSES, true));
+            return new File(dir, bmd.getInitials() + SUFFIX_VERSES);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to find the verse list storage area", e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            // The project area is not a file: URI
+            return null;
+        }
+    }
+
+    private static final int MAGIC = 0x4A535650;
+    private static final int VERSION = 1;
+    private static final String DIR_VERSES = "verses";
+    private static final String SUFFIX_VERSES = ".verses";
+
+    private final BookMetaData bmd;
+    private volatile BitSet present;
+
+    /**
+     * The log stream
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(VersePresence.class);
+}
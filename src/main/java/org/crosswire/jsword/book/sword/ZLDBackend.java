@@ -24,6 +24,7 @@ import java.io.ObjectInputStream;
 
 import org.crosswire.common.compress.CompressorType;
 import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.state.BlockCache;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.RawLDBackendState;
 import org.crosswire.jsword.book.sword.state.ZLDBackendState;
@@ -72,33 +73,44 @@ public class ZLDBackend extends RawLDBackend<ZLDBackendState> {
         long blockNum = blockIndex.getOffset();
         int blockEntry = blockIndex.getSize();
 
-        // Can we get the data from the cache
+        // Can we get the data from the cache. A shared state has none, as
+        // another thread could change it between the check and the get.
         byte[] uncompressed = null;
-        if (blockNum == state.getLastBlockNum()) {
+        boolean shared = state.isShared();
+        if (!shared && blockNum == state.getLastBlockNum()) {
             uncompressed = state.getLastUncompressed();
         } else {
-            byte[] temp;
-            try {
-                temp = SwordUtil.readRAF(state.getZdxRaf(), blockNum * ZDX_ENTRY_SIZE, ZDX_ENTRY_SIZE);
-                if (temp == null || temp.length == 0) {
-                    return new DataEntry(entry.getName(), new byte[0], entry.getCharset());
-                }
+            // Has another file state for this book already uncompressed it
+            uncompressed = BlockCache.instance().get(getBookMetaData(), null, blockNum);
+            if (uncompressed == null) {
+                byte[] temp;
+                try {
+                    temp = SwordUtil.readRAF(state.getZdxRaf(), blockNum * ZDX_ENTRY_SIZE, ZDX_ENTRY_SIZE);
+                    if (temp == null || temp.length == 0) {
+                        return new DataEntry(entry.getName(), new byte[0], entry.getCharset());
+                    }
 
-                int blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
-                int blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
+                    int blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
+                    int blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
 
-                temp = SwordUtil.readRAF(state.getZdtRaf(), blockStart, blockSize);
+                    temp = SwordUtil.readRAF(state.getZdtRaf(), blockStart, blockSize);
 
-                decipher(temp);
+                    decipher(temp);
 
-                String compressType = getBookMetaData().getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
-                uncompressed = CompressorType.fromString(compressType).getCompressor(temp).uncompress().toByteArray();
+                    String compressType = getBookMetaData().getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
+                    uncompressed = CompressorType.fromString(compressType).getCompressor(temp).uncompress().toByteArray();
+                } catch (IOException e) {
+                    return new DataEntry(entry.getName(), new byte[0], entry.getCharset());
+                }
+
+                // share the uncompressed data with the other file states
+                BlockCache.instance().put(getBookMetaData(), null, blockNum, uncompressed);
+            }
 
-                // cache the uncompressed data for next time
+            // cache the uncompressed data for next time
+            if (!shared) {
                 state.setLastBlockNum(blockNum);
                 state.setLastUncompressed(uncompressed);
-            } catch (IOException e) {
-                return new DataEntry(entry.getName(), new byte[0], entry.getCharset());
             }
         }
 
@@ -21,18 +21,22 @@ package org.crosswire.jsword.book.sword;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
 
 import org.crosswire.common.compress.CompressorType;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.state.BlockCache;
 import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
 import org.crosswire.jsword.book.sword.state.ZVerseBackendState;
-import org.crosswire.jsword.passage.BitwisePassage;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
-import org.crosswire.jsword.passage.RocketPassage;
 import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
@@ -141,6 +145,7 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
         this.blockType = blockType;
         this.datasize = datasize;
         this.entrysize = OFFSETSIZE + datasize;
+        this.presence = new VersePresence(sbmd);
 
         assert datasize == 2 || datasize == 4;
     }
@@ -153,7 +158,13 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
      */
     @Override
     public boolean contains(Key key) {
-        return getRawTextLength(key) > 0;
+        try {
+            return presence.get(presenceReader).get(KeyUtil.getVerse(key).getOrdinal());
+        } catch (IOException e) {
+            return getRawTextLength(key) > 0;
+        } catch (BookException e) {
+            return getRawTextLength(key) > 0;
+        }
     }
 
     /* (non-Javadoc)
@@ -173,6 +184,22 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
             Testament testament = v11n.getTestament(index);
             index = v11n.getTestamentOrdinal(index);
 
+            if (rafBook.isMapped()) {
+                ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
+
+                // If Bible does not contain the desired testament or verse, then false
+                int entryStart = index * entrysize;
+                if (idxBuffer == null || entryStart + entrysize > idxBuffer.limit()) {
+                    return 0;
+                }
+
+                if (datasize == 2) {
+                    return idxBuffer.getShort(entryStart + 8) & 0xFFFF;
+                }
+                // datasize == 4:
+                return idxBuffer.getInt(entryStart + 8);
+            }
+
             RandomAccessFile idxRaf = rafBook.getIdxRaf(testament);
 
             // If Bible does not contain the desired testament, then false
@@ -214,6 +241,23 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
      */
     @Override
     public Key getGlobalKeyList() throws BookException {
+        try {
+            String v11nName = getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION);
+            Versification v11n = Versifications.instance().getVersification(v11nName);
+            return VersePresence.toPassage(presence.get(presenceReader), v11n);
+        } catch (IOException e) {
+            throw new BookException(JSMsg.gettext("Unable to read key list from book."));
+        }
+    }
+
+    /**
+     * Read the ordinals of the verses that have content from the index files.
+     * 
+     * @return the verses that have content
+     * @throws IOException
+     * @throws BookException
+     */
+    private BitSet readPresence() throws IOException, BookException {
         ZVerseBackendState rafBook = null;
         try {
             rafBook = initState();
@@ -225,15 +269,14 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
                     Testament.OLD, Testament.NEW
             };
 
-            BitwisePassage passage = new RocketPassage(v11n);
-            passage.raiseEventSuppresion();
-            passage.raiseNormalizeProtection();
+            BitSet verses = new BitSet(v11n.maximumOrdinal() + 1);
 
             for (Testament currentTestament : testaments) {
                 RandomAccessFile idxRaf = rafBook.getIdxRaf(currentTestament);
+                ByteBuffer idxBuffer = rafBook.getIdxBuffer(currentTestament);
 
                 // If Bible does not contain the desired testament, then false
-                if (idxRaf == null) {
+                if (idxRaf == null && idxBuffer == null) {
                     // no keys in this testament
                     continue;
                 }
@@ -243,7 +286,12 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
                 int maxCount = v11n.getCount(currentTestament)  + 1;
 
                 // Read in the whole index, a few hundred Kb at most.
-                byte[] temp = SwordUtil.readRAF(idxRaf, 0, entrysize * maxCount);
+                byte[] temp;
+                if (rafBook.isMapped()) {
+                    temp = SwordUtil.readBuffer(idxBuffer, 0, entrysize * maxCount);
+                } else {
+                    temp = SwordUtil.readRAF(idxRaf, 0, entrysize * maxCount);
+                }
 
                 // For each entry of entrysize bytes, the length of the verse in bytes
                 // is in the last datasize bytes. If both bytes are 0, then there is no content.
@@ -256,7 +304,7 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
                         // if (verseSize > 0) {
                         if (temp[ii + 8] != 0 || temp[ii + 9] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            verses.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 } else { // datasize == 4
@@ -266,18 +314,13 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
                         // if (verseSize > 0) {
                         if (temp[ii + 8] != 0 || temp[ii + 9] != 0 || temp[ii + 10] != 0 || temp[ii + 11] != 0) {
                             int ordinal = ii / entrysize;
-                            passage.addVersifiedOrdinal(v11n.getOrdinal(currentTestament, ordinal));
+                            verses.set(v11n.getOrdinal(currentTestament, ordinal));
                         }
                     }
                 }
             }
 
-            passage.lowerNormalizeProtection();
-            passage.lowerEventSuppressionAndTest();
-
-            return passage;
-        } catch (IOException e) {
-            throw new BookException(JSMsg.gettext("Unable to read key list from book."));
+            return verses;
         } finally {
             OpenFileStateManager.instance().release(rafBook);
         }
@@ -306,77 +349,241 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
         int index = verse.getOrdinal();
         final Testament testament = v11n.getTestament(index);
         index = v11n.getTestamentOrdinal(index);
-        final RandomAccessFile idxRaf;
-        final RandomAccessFile compRaf;
-        final RandomAccessFile textRaf;
 
-        idxRaf = rafBook.getIdxRaf(testament);
-        compRaf = rafBook.getCompRaf(testament);
-        textRaf = rafBook.getTextRaf(testament);
+        final long blockNum;
+        final int verseStart;
+        final int verseSize;
+        if (rafBook.isMapped()) {
+            // The index entry is read in place, without a copy.
+            final ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
 
-        // If Bible does not contain the desired testament, return nothing.
-        if (idxRaf == null) {
-            return "";
-        }
+            // If Bible does not contain the desired testament, return nothing.
+            if (idxBuffer == null) {
+                return "";
+            }
+
+            // If the Bible does not contain the desired verse, return nothing.
+            // Some Bibles have different versification, so the requested verse
+            // may not exist.
+            final int entryStart = index * entrysize;
+            if (entryStart + entrysize > idxBuffer.limit()) {
+                return "";
+            }
 
-        //dumpIdxRaf(v11n, 0, compRaf);
-        //dumpCompRaf(idxRaf);
-        // entrysize because the index is entrysize bytes long for each verse
-        byte[] temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, entrysize);
+            blockNum = idxBuffer.getInt(entryStart);
+            verseStart = idxBuffer.getInt(entryStart + 4);
+            if (datasize == 2) {
+                verseSize = idxBuffer.getShort(entryStart + 8) & 0xFFFF;
+            } else { // datasize == 4:
+                verseSize = idxBuffer.getInt(entryStart + 8);
+            }
+        } else {
+            final RandomAccessFile idxRaf = rafBook.getIdxRaf(testament);
+
+            // If Bible does not contain the desired testament, return nothing.
+            if (idxRaf == null) {
+                return "";
+            }
+
+            //dumpIdxRaf(v11n, 0, compRaf);
+            //dumpCompRaf(idxRaf);
+            // entrysize because the index is entrysize bytes long for each verse
+            byte[] temp = SwordUtil.readRAF(idxRaf, 1L * index * entrysize, entrysize);
+
+            // If the Bible does not contain the desired verse, return nothing.
+            // Some Bibles have different versification, so the requested verse
+            // may not exist.
+            if (temp == null || temp.length == 0) {
+                return "";
+            }
+
+            // The data is little endian - extract the blockNum, verseStart
+            // and
+            // verseSize
+            blockNum = SwordUtil.decodeLittleEndian32(temp, 0);
+            verseStart = SwordUtil.decodeLittleEndian32(temp, 4);
+            if (datasize == 2) {
+                verseSize = SwordUtil.decodeLittleEndian16(temp, 8);
+            } else { // datasize == 4:
+                verseSize = SwordUtil.decodeLittleEndian32(temp, 8);
+            }
+        }
 
-        // If the Bible does not contain the desired verse, return nothing.
-        // Some Bibles have different versification, so the requested verse
-        // may not exist.
-        if (temp == null || temp.length == 0) {
+        final byte[] uncompressed = getBlock(rafBook, testament, blockNum, compressType);
+        if (uncompressed == null) {
             return "";
         }
 
-        // The data is little endian - extract the blockNum, verseStart
-        // and
-        // verseSize
-        final long blockNum = SwordUtil.decodeLittleEndian32(temp, 0);
-        final int verseStart = SwordUtil.decodeLittleEndian32(temp, 4);
-        final int verseSize;
-        if (datasize == 2) {
-            verseSize = SwordUtil.decodeLittleEndian16(temp, 8);
-        } else { // datasize == 4:
-            verseSize = SwordUtil.decodeLittleEndian32(temp, 8);
+        // and decode the required section straight out of the block.
+        return SwordUtil.decode(key.getName(), uncompressed, verseStart, verseSize, charset);
+
+    }
+
+    /**
+     * Read all the verses of a range with one read of the index. The verses
+     * are then cut out of their blocks, with each block being uncompressed
+     * just once.
+     * 
+     * @see org.crosswire.jsword.book.sword.AbstractBackend#readRawContents(org.crosswire.jsword.book.sword.state.OpenFileState, org.crosswire.jsword.passage.VerseRange)
+     */
+    @Override
+    public String[] readRawContents(ZVerseBackendState rafBook, VerseRange range) throws BookException, IOException {
+        BookMetaData bookMetaData = getBookMetaData();
+        final String charset = bookMetaData.getBookCharset();
+        final String compressType = bookMetaData.getProperty(SwordBookMetaData.KEY_COMPRESS_TYPE);
+
+        final String v11nName = bookMetaData.getProperty(BookMetaData.KEY_VERSIFICATION);
+        final Versification v11n = Versifications.instance().getVersification(v11nName);
+
+        final int start = range.getStart().getOrdinal();
+        final int end = range.getEnd().getOrdinal();
+        final Testament testament = v11n.getTestament(start);
+        if (testament != v11n.getTestament(end)) {
+            return super.readRawContents(rafBook, range);
         }
 
-        // Can we get the data from the cache
-        byte[] uncompressed = null;
-        if (blockNum == rafBook.getLastBlockNum() && testament == rafBook.getLastTestament()) {
-            uncompressed = rafBook.getLastUncompressed();
+        final int count = end - start + 1;
+        final String[] texts = new String[count];
+        Arrays.fill(texts, "");
+
+        // Read the index entries for the whole range at once.
+        final long first = v11n.getTestamentOrdinal(start);
+        final byte[] entries;
+        if (rafBook.isMapped()) {
+            ByteBuffer idxBuffer = rafBook.getIdxBuffer(testament);
+            // If Bible does not contain the desired testament, return nothing.
+            if (idxBuffer == null) {
+                return texts;
+            }
+            entries = SwordUtil.readBuffer(idxBuffer, first * entrysize, count * entrysize);
         } else {
-            // Then seek using this index into the idx file
-            temp = SwordUtil.readRAF(compRaf, blockNum * COMP_ENTRY_SIZE, COMP_ENTRY_SIZE);
-            if (temp == null || temp.length == 0) {
-                return "";
+            RandomAccessFile idxRaf = rafBook.getIdxRaf(testament);
+            // If Bible does not contain the desired testament, return nothing.
+            if (idxRaf == null) {
+                return texts;
+            }
+            entries = SwordUtil.readRAF(idxRaf, first * entrysize, count * entrysize);
+        }
+
+        // Verses that are beyond the end of a short index are left empty.
+        final int available = Math.min(count, entries.length / entrysize);
+        final Iterator<Key> iter = range.iterator();
+        for (int i = 0; i < available; i++) {
+            final Key key = iter.next();
+            final int entryStart = i * entrysize;
+            final long blockNum = SwordUtil.decodeLittleEndian32(entries, entryStart);
+            final int verseStart = SwordUtil.decodeLittleEndian32(entries, entryStart + 4);
+            final int verseSize;
+            if (datasize == 2) {
+                verseSize = SwordUtil.decodeLittleEndian16(entries, entryStart + 8);
+            } else { // datasize == 4:
+                verseSize = SwordUtil.decodeLittleEndian32(entries, entryStart + 8);
             }
 
-            final int blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
-            final int blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
-            final int uncompressedSize = SwordUtil.decodeLittleEndian32(temp, 8);
+            // There is no need to uncompress a block for an empty verse.
+            if (verseSize <= 0) {
+                continue;
+            }
 
-            // Read from the data file.
-            final byte[] data = SwordUtil.readRAF(textRaf, blockStart, blockSize);
+            final byte[] uncompressed = getBlock(rafBook, testament, blockNum, compressType);
+            if (uncompressed == null) {
+                continue;
+            }
+
+            // and decode the required section straight out of the block.
+            texts[i] = SwordUtil.decode(key.getName(), uncompressed, verseStart, verseSize, charset);
+        }
 
-            decipher(data);
+        return texts;
+    }
+
+    /**
+     * Get an uncompressed block, from this state's cache, from the shared
+     * cache or else from disk.
+     * 
+     * @param rafBook the open files of the book
+     * @param testament the testament containing the block
+     * @param blockNum the number of the block in the comp file
+     * @param compressType how the book is compressed
+     * @return the uncompressed block, or null if the comp file has no such block
+     * @throws IOException on a IO problem
+     */
+    private byte[] getBlock(ZVerseBackendState rafBook, Testament testament, long blockNum, String compressType) throws IOException {
+        // Can we get the data from the cache. A shared state has none, as
+        // another thread could change it between the check and the get.
+        boolean shared = rafBook.isShared();
+        if (!shared && blockNum == rafBook.getLastBlockNum() && testament == rafBook.getLastTestament()) {
+            return rafBook.getLastUncompressed();
+        }
 
-            uncompressed = CompressorType.fromString(compressType).getCompressor(data).uncompress(uncompressedSize).toByteArray();
+        // Has another file state for this book already uncompressed it
+        byte[] uncompressed = BlockCache.instance().get(getBookMetaData(), testament, blockNum);
+        if (uncompressed == null) {
+            uncompressed = readBlock(rafBook, testament, blockNum, compressType);
+            if (uncompressed == null) {
+                return null;
+            }
 
-            // cache the uncompressed data for next time
+            // share the uncompressed data with the other file states
+            BlockCache.instance().put(getBookMetaData(), testament, blockNum, uncompressed);
+        }
+
+        // cache the uncompressed data for next time
+        if (!shared) {
             rafBook.setLastBlockNum(blockNum);
             rafBook.setLastTestament(testament);
             rafBook.setLastUncompressed(uncompressed);
         }
+        return uncompressed;
+    }
 
-        // and cut out the required section.
-        final byte[] chopped = new byte[verseSize];
-        System.arraycopy(uncompressed, verseStart, chopped, 0, verseSize);
+    /**
+     * Read a block from the text file and uncompress it.
+     * 
+     * @param rafBook the open files of the book
+     * @param testament the testament containing the block
+     * @param blockNum the number of the block in the comp file
+     * @param compressType how the book is compressed
+     * @return the uncompressed block, or null if the comp file has no such block
+     * @throws IOException on a IO problem
+     */
+    private byte[] readBlock(ZVerseBackendState rafBook, Testament testament, long blockNum, String compressType) throws IOException {
+        final int blockStart;
+        final int blockSize;
+        final int uncompressedSize;
+        final byte[] data;
+        if (rafBook.isMapped()) {
+            // Then use this index into the comp file, in place
+            final ByteBuffer compBuffer = rafBook.getCompBuffer(testament);
+            final long compStart = blockNum * COMP_ENTRY_SIZE;
+            if (compStart < 0 || compStart + COMP_ENTRY_SIZE > compBuffer.limit()) {
+                return null;
+            }
 
-        return SwordUtil.decode(key.getName(), chopped, charset);
+            blockStart = compBuffer.getInt((int) compStart);
+            blockSize = compBuffer.getInt((int) compStart + 4);
+            uncompressedSize = compBuffer.getInt((int) compStart + 8);
 
+            // Read from the data file.
+            data = SwordUtil.readBuffer(rafBook.getTextBuffer(testament), blockStart, blockSize);
+        } else {
+            // Then seek using this index into the idx file
+            final byte[] temp = SwordUtil.readRAF(rafBook.getCompRaf(testament), blockNum * COMP_ENTRY_SIZE, COMP_ENTRY_SIZE);
+            if (temp == null || temp.length == 0) {
+                return null;
+            }
+
+            blockStart = SwordUtil.decodeLittleEndian32(temp, 0);
+            blockSize = SwordUtil.decodeLittleEndian32(temp, 4);
+            uncompressedSize = SwordUtil.decodeLittleEndian32(temp, 8);
+
+            // Read from the data file.
+            data = SwordUtil.readRAF(rafBook.getTextRaf(testament), blockStart, blockSize);
+        }
+
+        decipher(data);
+
+        return CompressorType.fromString(compressType).getCompressor(data).uncompress(uncompressedSize).toByteArray();
     }
 
     /* (non-Javadoc)
@@ -513,6 +720,16 @@ public class ZVerseBackend extends AbstractBackend<ZVerseBackendState> {
      */
     protected final int entrysize;
 
+    /**
+     * The verses that have content
+     */
+    private final VersePresence presence;
+    private final VersePresence.Reader presenceReader = new VersePresence.Reader() {
+        public BitSet read() throws IOException, BookException {
+            return readPresence();
+        }
+    };
+
     /**
      * How many bytes in the offset pointers in the index
      */
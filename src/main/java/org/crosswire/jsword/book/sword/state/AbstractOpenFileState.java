@@ -19,6 +19,9 @@
  */
 package org.crosswire.jsword.book.sword.state;
 
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.crosswire.jsword.book.BookMetaData;
 
 /**
@@ -37,7 +40,7 @@ public abstract class AbstractOpenFileState implements OpenFileState {
         lastAccess = System.currentTimeMillis();
     }
 
-    private long lastAccess = System.currentTimeMillis();
+    private volatile long lastAccess = System.currentTimeMillis();
 
     /**
      * Allows us to decide whether to release the resources or continue using them
@@ -68,8 +71,93 @@ public abstract class AbstractOpenFileState implements OpenFileState {
         this.lastAccess = lastAccess;
     }
 
+    /**
+     * Whether this state is being used by many threads at once, rather than
+     * being handed out to one thread at a time. A shared state must not keep
+     * anything between reads.
+     * 
+     * @return true if this state is shared
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Whether the files of this state are still open. A read that is
+     * interrupted closes the file it was reading, so a shared state is checked
+     * before it is handed out.
+     * 
+     * @return true if the files are open
+     */
+    public boolean isOpen() {
+        return true;
+    }
+
+    /**
+     * @param files the files to check, any of which may be null
+     * @return true if none of the files have been closed
+     */
+    protected static boolean isOpen(RandomAccessFile... files) {
+        for (RandomAccessFile file : files) {
+            if (file != null && !file.getChannel().isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Mark this state as shared, with one user.
+     */
+    void setShared() {
+        shared = true;
+        users.set(1);
+    }
+
+    /**
+     * Add a user of a shared state.
+     * 
+     * @return false if the state has been retired
+     */
+    boolean acquire() {
+        while (true) {
+            int count = users.get();
+            if (count < 0) {
+                return false;
+            }
+            if (users.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove a user of a shared state.
+     * 
+     * @return the number of remaining users
+     */
+    int releaseShared() {
+        return users.decrementAndGet();
+    }
+
+    /**
+     * Prevent a shared state from getting more users, so that it can be closed.
+     * 
+     * @return true if the state had no users
+     */
+    boolean retire() {
+        return users.compareAndSet(0, -1);
+    }
+
     /**
      * The BookMetaData for this OpenFileState. Used to locate files.
      */
     private BookMetaData bookMetaData;
+
+    private volatile boolean shared;
+
+    /**
+     * The number of users of a shared state, or -1 once it has been retired.
+     */
+    private final AtomicInteger users = new AtomicInteger();
 }
@@ -0,0 +1,230 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword.state;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.versification.Testament;
+
+/**
+ * A process wide cache of uncompressed blocks of compressed books. Every
+ * pooled file state of a book shares this cache, so that a block that is
+ * being read by many threads is only uncompressed once. The cache is bounded
+ * by the total number of bytes held and evicts the least recently used block.
+ * 
+ * <p>
+ * The cached blocks are shared. The caller must not modify them.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class BlockCache {
+    /**
+     * Prevent instantiation
+     */
+    private BlockCache() {
+        blocks = new LinkedHashMap<BlockKey, byte[]>(16, 0.75f, true);
+        maxBytes = DEFAULT_MAX_BYTES;
+    }
+
+    /**
+     * Singleton instance method to return the one and only block cache.
+     * 
+     * @return the singleton
+     */
+    public static BlockCache instance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get an uncompressed block from the cache.
+     * 
+     * @param bmd the book containing the block
+     * @param testament the testament of the block, or null if the book is not a Bible
+     * @param blockNum the number of the block
+     * @return the uncompressed block or null if it is not cached
+     */
+    public synchronized byte[] get(BookMetaData bmd, Testament testament, long blockNum) {
+        byte[] block = blocks.get(new BlockKey(bmd, testament, blockNum));
+        if (block == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return block;
+    }
+
+    /**
+     * Add an uncompressed block to the cache, evicting the least recently used
+     * blocks until the cache fits within its bounds. A block that is larger
+     * than the cache can hold is not cached.
+     * 
+     * @param bmd the book containing the block
+     * @param testament the testament of the block, or null if the book is not a Bible
+     * @param blockNum the number of the block
+     * @param block the uncompressed block
+     */
+    public synchronized void put(BookMetaData bmd, Testament testament, long blockNum, byte[] block) {
+        if (block.length > maxBytes) {
+            return;
+        }
+
+        byte[] old = blocks.put(new BlockKey(bmd, testament, blockNum), block);
+        if (old != null) {
+            size -= old.length;
+        }
+        size += block.length;
+        trim();
+    }
+
+    /**
+     * Remove all the blocks of a book, for example when it is deleted.
+     * 
+     * @param bmd the book whose blocks are no longer wanted
+     */
+    public synchronized void remove(BookMetaData bmd) {
+        Iterator<Map.Entry<BlockKey, byte[]>> iter = blocks.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<BlockKey, byte[]> entry = iter.next();
+            if (entry.getKey().bmd.equals(bmd)) {
+                size -= entry.getValue().length;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the blocks from the cache. The statistics are retained.
+     */
+    public synchronized void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    /**
+     * @return the maximum number of bytes the cache may hold
+     */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Set the maximum number of bytes that the cache may hold. A value of 0
+     * turns off caching.
+     * 
+     * @param maxBytes the maximum number of bytes the cache may hold
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    /**
+     * @return the number of bytes currently held by the cache
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found a block
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a block
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of blocks that were evicted to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Evict the least recently used blocks until the cache is within bounds.
+     */
+    private void trim() {
+        Iterator<byte[]> iter = blocks.values().iterator();
+        while (size > maxBytes && iter.hasNext()) {
+            size -= iter.next().length;
+            iter.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * The key of a block is the book, the testament and the number of the block.
+     */
+    private static final class BlockKey {
+        BlockKey(BookMetaData bmd, Testament testament, long blockNum) {
+            this.bmd = bmd;
+            this.testament = testament;
+            this.blockNum = blockNum;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BlockKey)) {
+                return false;
+            }
+            BlockKey that = (BlockKey) obj;
+            return blockNum == that.blockNum && testament == that.testament && bmd.equals(that.bmd);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = bmd.hashCode();
+            result = 31 * result + (testament == null ? 0 : testament.hashCode());
+            return 31 * result + (int) (blockNum ^ (blockNum >>> 32));
+        }
+
+        private final BookMetaData bmd;
+        private final Testament testament;
+        private final long blockNum;
+    }
+
+    /**
+     * By default, hold up to 8MB of uncompressed text.
+     */
+    private static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024;
+
+    private static final BlockCache INSTANCE = new BlockCache();
+
+    /**
+     * The blocks, in least recently used order.
+     */
+    private final LinkedHashMap<BlockKey, byte[]> blocks;
+    private long maxBytes;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+}
@@ -84,6 +84,11 @@ public class GenBookBackendState extends AbstractOpenFileState {
         }
     }
 
+    @Override
+    public boolean isOpen() {
+        return isOpen(bdtRaf);
+    }
+
     public void releaseResources() {
         IOUtil.close(bdtRaf);
         bdtRaf = null;
@@ -19,19 +19,37 @@
  */
 package org.crosswire.jsword.book.sword.state;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.sword.BlockType;
+import org.crosswire.jsword.book.sword.StatefulFileBackedBackend;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,19 +70,24 @@ import org.slf4j.LoggerFactory;
  * In order to avoid many file references piling up in memory, we implement a background cleaning thread which will clean
  * up redundant keys every so often.
  *
- *
+ * Each open file state holds several open files. So that a burst of requests
+ * across many books does not run out of file descriptors, the number of open
+ * file states can be capped, both overall and for each book. When a cap is
+ * reached, idle states of other books are closed to make room, otherwise the
+ * request waits for a state to be released. The pool's counters can be
+ * watched through JMX, see {@link #registerMBean()}.
  * 
  * @see gnu.lgpl.License The GNU Lesser General Public License for details.
  * 
  * @author DM Smith
  * @author Chris Burrell
  */
-public final class OpenFileStateManager {
+public final class OpenFileStateManager implements OpenFileStateManagerMBean {
     /**
      * prevent instantiation
      */
     private OpenFileStateManager(final int cleanupIntervalSeconds, final int maxExpiry) {
-        // no op
+        this.maxExpiry = maxExpiry * 1000L;
         this.monitoringThread = Executors.newScheduledThreadPool(1, new ThreadFactory() {
             public Thread newThread(Runnable r) {
                 Thread t = new Thread(r);
@@ -74,26 +97,39 @@ public final class OpenFileStateManager {
 
         }).scheduleWithFixedDelay(new Runnable() {
             public void run() {
-                // check the state of the maps and queues... The queues may have too much in them and that will in turn max out
-                // the heap.
-                long currentTime = System.currentTimeMillis();
-
-                for (Queue<OpenFileState> e : OpenFileStateManager.this.metaToStates.values()) {
-                    for (Iterator<OpenFileState> iterator = e.iterator(); iterator.hasNext(); ) {
-                        final OpenFileState state = iterator.next();
-                        if (state.getLastAccess() + maxExpiry * 1000 < currentTime) {
-                            //release resources
-                            state.releaseResources();
-
-                            //remove from the queues
-                            iterator.remove();
-                        }
-                    }
-                }
+                expire(System.currentTimeMillis());
             }
         }, 0, cleanupIntervalSeconds, TimeUnit.SECONDS);
     }
 
+    /**
+     * Close the states that have not been used for longer than the expiry
+     * time. Idle states could otherwise pile up and in turn max out the heap.
+     * 
+     * @param currentTime the time against which the last use of a state is compared
+     */
+    void expire(long currentTime) {
+        for (Queue<OpenFileState> e : metaToStates.values()) {
+            for (Iterator<OpenFileState> iterator = e.iterator(); iterator.hasNext(); ) {
+                final OpenFileState state = iterator.next();
+                // Only close the state if it has not been handed out in the meantime
+                if (state.getLastAccess() + maxExpiry < currentTime && e.remove(state)) {
+                    closeState(state);
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+
+        // Shared states are only closed when no one is using them
+        for (AbstractOpenFileState state : sharedStates.values()) {
+            if (state.getLastAccess() + maxExpiry < currentTime && state.retire()) {
+                sharedStates.remove(state.getBookMetaData(), state);
+                closeState(state);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
     /**
      * Allow the caller to initialize with their own settings. Should the OpenFileStateManager already be initialized
      * a no-op will occur. No need for double-checked locking here
@@ -124,110 +160,498 @@ public final class OpenFileStateManager {
         return manager;
     }
 
-    public RawBackendState getRawBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
+    public RawBackendState getRawBackendState(final BookMetaData metadata) throws BookException {
+        return getState(metadata, shareStates, new StateFactory<RawBackendState>() {
+            public RawBackendState create() throws BookException {
+                return new RawBackendState(metadata);
+            }
+        });
+    }
 
-        RawBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawBackendState(metadata);
-        }
+    public RawFileBackendState getRawFileBackendState(final BookMetaData metadata) throws BookException {
+        return getState(metadata, false, new StateFactory<RawFileBackendState>() {
+            public RawFileBackendState create() throws BookException {
+                return new RawFileBackendState(metadata);
+            }
+        });
+    }
 
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    public GenBookBackendState getGenBookBackendState(final BookMetaData metadata) throws BookException {
+        return getState(metadata, false, new StateFactory<GenBookBackendState>() {
+            public GenBookBackendState create() throws BookException {
+                return new GenBookBackendState(metadata);
+            }
+        });
     }
 
-    public RawFileBackendState getRawFileBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
+    public RawLDBackendState getRawLDBackendState(final BookMetaData metadata) throws BookException {
+        return getState(metadata, shareStates, new StateFactory<RawLDBackendState>() {
+            public RawLDBackendState create() throws BookException {
+                return new RawLDBackendState(metadata);
+            }
+        });
+    }
 
-        RawFileBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawFileBackendState(metadata);
+    public ZLDBackendState getZLDBackendState(final BookMetaData metadata) throws BookException {
+        return getState(metadata, shareStates, new StateFactory<ZLDBackendState>() {
+            public ZLDBackendState create() throws BookException {
+                return new ZLDBackendState(metadata);
+            }
+        });
+    }
+
+    public ZVerseBackendState getZVerseBackendState(final BookMetaData metadata, final BlockType blockType) throws BookException {
+        return getState(metadata, shareStates, new StateFactory<ZVerseBackendState>() {
+            public ZVerseBackendState create() throws BookException {
+                return new ZVerseBackendState(metadata, blockType, memoryMapped);
+            }
+        });
+    }
+
+    /**
+     * Open a number of file states for a book ahead of time, so that the first
+     * requests for a popular book do not pay for opening its files. The states
+     * count toward the caps.
+     * 
+     * @param backend the backend of the book
+     * @param count the number of states to have ready
+     * @throws BookException if the states could not be opened
+     */
+    public void prewarm(StatefulFileBackedBackend<?> backend, int count) throws BookException {
+        OpenFileState[] states = new OpenFileState[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                states[i] = backend.initState();
+            }
+        } finally {
+            for (OpenFileState state : states) {
+                release(state);
+            }
         }
+    }
 
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    /**
+     * Whether newly created file states should memory map their files rather
+     * than read them through a RandomAccessFile. Currently only
+     * {@link ZVerseBackendState} honors this setting.
+     * 
+     * @return true if files are to be memory mapped
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
     }
 
-    public GenBookBackendState getGenBookBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
+    /**
+     * Set whether newly created file states should memory map their files.
+     * States that are already pooled are unaffected and are used until they
+     * expire.
+     * 
+     * @param memoryMapped true if files are to be memory mapped
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
 
-        GenBookBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new GenBookBackendState(metadata);
+    /**
+     * Whether readers of a book share a single open file state, rather than
+     * each being handed a state of their own. The files of a shared state are
+     * read with positional reads, which do not use the file pointer, so one
+     * set of open files serves any number of threads. Only the states of the
+     * read-only Raw, RawLD, ZLD and ZVerse backends are shared.
+     * 
+     * @return true if states are shared
+     */
+    public boolean isShareStates() {
+        return shareStates;
+    }
+
+    /**
+     * Set whether readers of a book share a single open file state. States
+     * that are already pooled are used until they expire.
+     * 
+     * @param shareStates true if states are to be shared
+     */
+    public void setShareStates(boolean shareStates) {
+        this.shareStates = shareStates;
+    }
+
+    /**
+     * Get a read-only, little endian view of a memory mapped file. Each file
+     * is only mapped once, no matter how many states use it. Every call
+     * returns a new view, with its own position. No file handle is held open
+     * for the mapping. When the file has changed since it was mapped, as when
+     * the book is re-installed, the old mapping is dropped and the file is
+     * mapped again.
+     * 
+     * @param bmd the book to which the file belongs
+     * @param file the file to map
+     * @return a private view of the mapped file
+     * @throws IOException if the file cannot be mapped, as when it is larger
+     *             than a ByteBuffer can address
+     */
+    ByteBuffer getMappedBuffer(BookMetaData bmd, File file) throws IOException {
+        String path = file.getPath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        MappedFile mapped = null;
+        synchronized (mappedFiles) {
+            mapped = mappedFiles.get(path);
+            if (mapped == null || mapped.lastModified != lastModified || mapped.length != length) {
+                if (length > Integer.MAX_VALUE) {
+                    mappedFiles.remove(path);
+                    throw new IOException("Unable to map " + path + ", it is too large");
+                }
+                RandomAccessFile raf = null;
+                try {
+                    raf = new RandomAccessFile(file, FileUtil.MODE_READ);
+                    FileChannel channel = raf.getChannel();
+                    mapped = new MappedFile(bmd, lastModified, length, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                } catch (IOException e) {
+                    mappedFiles.remove(path);
+                    throw e;
+                } finally {
+                    IOUtil.close(raf);
+                }
+                mappedFiles.put(path, mapped);
+            }
         }
+        return mapped.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
 
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    /**
+     * Drop the mappings of the files of a book, for example when it is
+     * deleted. States that still use the mappings keep their views until they
+     * are closed.
+     * 
+     * @param bmd the book whose mappings are no longer wanted
+     */
+    public void removeMappings(BookMetaData bmd) {
+        synchronized (mappedFiles) {
+            Iterator<MappedFile> iter = mappedFiles.values().iterator();
+            while (iter.hasNext()) {
+                if (iter.next().bmd.equals(bmd)) {
+                    iter.remove();
+                }
+            }
+        }
     }
 
-    public RawLDBackendState getRawLDBackendState(BookMetaData metadata) throws BookException {
+    /**
+     * @return the number of files that are currently mapped
+     */
+    int getMappedFileCount() {
+        synchronized (mappedFiles) {
+            return mappedFiles.size();
+        }
+    }
+
+    /**
+     * Get a pooled state for the book, or create one if none are available.
+     * If the caps do not allow another state to be opened, then idle states
+     * of other books are closed, otherwise this waits for a state of this
+     * book to be released.
+     * 
+     * This is package private so that states can be pooled in tests without
+     * opening files.
+     */
+    @SuppressWarnings("unchecked")
+    <T extends OpenFileState> T getState(BookMetaData metadata, boolean shareable, StateFactory<T> factory) throws BookException {
         ensureNotShuttingDown();
 
-        RawLDBackendState state = getInstance(metadata);
+        if (shareable) {
+            T state = (T) getSharedState(metadata);
+            if (state != null) {
+                return state;
+            }
+        }
+
+        Queue<OpenFileState> availableStates = getQueueForMeta(metadata);
+        T state = (T) pollOpen(availableStates);
         if (state == null) {
+            state = (T) reserveOrWait(metadata, availableStates);
+        }
+
+        if (state == null) {
+            // A slot has been reserved for a new state
             LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new RawLDBackendState(metadata);
+            boolean created = false;
+            try {
+                state = factory.create();
+                created = true;
+            } finally {
+                if (!created) {
+                    unreserve(metadata);
+                }
+            }
+            creations.incrementAndGet();
+
+            if (shareable && state instanceof AbstractOpenFileState) {
+                AbstractOpenFileState newState = (AbstractOpenFileState) state;
+                newState.setShared();
+                while (true) {
+                    AbstractOpenFileState current = sharedStates.putIfAbsent(metadata, newState);
+                    if (current == null) {
+                        break;
+                    }
+                    if (current.acquire()) {
+                        // Another thread got there first
+                        newState.releaseShared();
+                        newState.retire();
+                        closeState(newState);
+                        return (T) current;
+                    }
+                    // The other one is being closed
+                    sharedStates.remove(metadata, current);
+                }
+            }
+            return state;
         }
 
+        //while not strictly necessary, the documentation suggests that iterating through the collection
+        //gives you a snapshot at some point in time, though not necessarily consistent, so just in case this remains
+        //in access of the iterator() functionality, we update the last access date to avoid it being destroyed while we
+        //use it
+        state.setLastAccess(System.currentTimeMillis());
+        poolHits.incrementAndGet();
         LOGGER.trace("Reusing: {}", metadata.getInitials());
         return state;
     }
 
-    public ZLDBackendState getZLDBackendState(BookMetaData metadata) throws BookException {
-        ensureNotShuttingDown();
+    /**
+     * Get the state that is shared by all the readers of the book, if there
+     * is one that is still open.
+     * 
+     * @return the shared state or null if a new one is to be created
+     */
+    private AbstractOpenFileState getSharedState(BookMetaData metadata) {
+        while (true) {
+            AbstractOpenFileState state = sharedStates.get(metadata);
+            if (state == null) {
+                return null;
+            }
 
-        ZLDBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new ZLDBackendState(metadata);
+            if (state.acquire()) {
+                if (state.isOpen()) {
+                    state.setLastAccess(System.currentTimeMillis());
+                    poolHits.incrementAndGet();
+                    return state;
+                }
+
+                // An interrupted read has closed one of its files, so replace it.
+                // The last user closes it.
+                LOGGER.debug("Replacing closed state: {}", metadata.getInitials());
+                sharedStates.remove(metadata, state);
+                release(state);
+            } else {
+                // It has expired and is being closed
+                sharedStates.remove(metadata, state);
+            }
         }
+    }
 
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
+    /**
+     * Reserve room for a new state of the book. If there is no room, idle
+     * states of other books are closed, otherwise wait for a state of this
+     * book to be released.
+     * 
+     * @return a released state, or null if room was reserved for a new one
+     */
+    private OpenFileState reserveOrWait(BookMetaData metadata, Queue<OpenFileState> availableStates) throws BookException {
+        AtomicInteger bookCount = getCountForMeta(metadata);
+        long deadline = System.currentTimeMillis() + maxWait;
+        boolean waited = false;
+        while (true) {
+            if (tryReserve(bookCount)) {
+                return null;
+            }
+
+            // Closing an idle state of another book only helps when the global cap was hit
+            if (bookCount.get() < maxOpenStatesPerBook && evictIdle(metadata)) {
+                continue;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                timeouts.incrementAndGet();
+                throw new BookException("Unable to read book, too many open files for " + metadata.getInitials());
+            }
+
+            if (!waited) {
+                waited = true;
+                waits.incrementAndGet();
+            }
+
+            // Room may also be made by another book's state expiring, so do not wait too long for this book
+            try {
+                OpenFileState state = awaitRelease(availableStates, Math.min(remaining, WAIT_SLICE));
+                if (state != null) {
+                    if (isOpen(state)) {
+                        return state;
+                    }
+                    // Closing it makes room for a new one
+                    discard(state);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BookException("Unable to read book, interrupted while waiting for " + metadata.getInitials(), e);
+            }
+        }
+    }
+
+    /**
+     * Take an idle state from the queue, discarding any whose files have been
+     * closed while it was idle.
+     * 
+     * @return an open idle state, or null if there is none
+     */
+    private OpenFileState pollOpen(Queue<OpenFileState> availableStates) {
+        OpenFileState state = availableStates.poll();
+        while (state != null && !isOpen(state)) {
+            discard(state);
+            state = availableStates.poll();
+        }
         return state;
     }
 
-    public ZVerseBackendState getZVerseBackendState(BookMetaData metadata, BlockType blockType) throws BookException {
-        ensureNotShuttingDown();
+    /**
+     * Whether the files of the state can still be read. An interrupted read
+     * closes the file it was reading, and with it the state.
+     */
+    private static boolean isOpen(OpenFileState state) {
+        return !(state instanceof AbstractOpenFileState) || ((AbstractOpenFileState) state).isOpen();
+    }
 
-        ZVerseBackendState state = getInstance(metadata);
-        if (state == null) {
-            LOGGER.trace("Initializing: {}", metadata.getInitials());
-            return new ZVerseBackendState(metadata, blockType);
+    /**
+     * Close a state whose files have been closed under it, so that it is not
+     * handed out again.
+     */
+    private void discard(OpenFileState state) {
+        LOGGER.debug("Discarding closed state: {}", state.getBookMetaData().getInitials());
+        closeState(state);
+    }
+
+    /**
+     * Wait a while for a state to be released to the queue. The queue itself
+     * does not lock, so only those that have to wait use its monitor.
+     * 
+     * @return a released state, or null if none was released in time
+     */
+    private OpenFileState awaitRelease(Queue<OpenFileState> availableStates, long timeout) throws InterruptedException {
+        synchronized (availableStates) {
+            waiting.incrementAndGet();
+            try {
+                // Look again now that a releaser will see that we are waiting
+                OpenFileState state = availableStates.poll();
+                if (state == null) {
+                    availableStates.wait(timeout);
+                    state = availableStates.poll();
+                }
+                return state;
+            } finally {
+                waiting.decrementAndGet();
+            }
         }
+    }
 
-        LOGGER.trace("Reusing: {}", metadata.getInitials());
-        return state;
+    /**
+     * Wake a thread that is waiting for a state of the book, if there are any.
+     */
+    private void signalRelease(Queue<OpenFileState> availableStates) {
+        if (waiting.get() > 0) {
+            synchronized (availableStates) {
+                availableStates.notify();
+            }
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends OpenFileState> T getInstance(BookMetaData metadata) {
-        Queue<OpenFileState> availableStates = getQueueForMeta(metadata);
-        final T state = (T) availableStates.poll();
+    /**
+     * Count a new state against the global and per book caps.
+     * 
+     * @return true if there is room for the state
+     */
+    private boolean tryReserve(AtomicInteger bookCount) {
+        while (true) {
+            int open = openStates.get();
+            if (open >= maxOpenStates) {
+                return false;
+            }
+            if (openStates.compareAndSet(open, open + 1)) {
+                break;
+            }
+        }
 
-        //while not strictly necessary, the documentation suggests that iterating through the collection
-        //gives you a snapshot at some point in time, though not necessarily consistent, so just in case this remains
-        //in access of the iterator() functionality, we update the last access date to avoid it being destroyed while we
-        //use it
-        if (state != null) {
-            state.setLastAccess(System.currentTimeMillis());
+        while (true) {
+            int open = bookCount.get();
+            if (open >= maxOpenStatesPerBook) {
+                openStates.decrementAndGet();
+                return false;
+            }
+            if (bookCount.compareAndSet(open, open + 1)) {
+                return true;
+            }
         }
-        return state;
+    }
+
+    /**
+     * Give back the room that was reserved for a state of the book.
+     */
+    private void unreserve(BookMetaData metadata) {
+        getCountForMeta(metadata).decrementAndGet();
+        openStates.decrementAndGet();
+    }
+
+    /**
+     * Close an idle state of a book other than the given one.
+     * 
+     * @return true if a state was closed
+     */
+    private boolean evictIdle(BookMetaData metadata) {
+        for (Map.Entry<BookMetaData, Queue<OpenFileState>> entry : metaToStates.entrySet()) {
+            if (!entry.getKey().equals(metadata)) {
+                OpenFileState state = entry.getValue().poll();
+                if (state != null) {
+                    closeState(state);
+                    evictions.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release the resources of a state that is no longer pooled
+     */
+    private void closeState(OpenFileState state) {
+        LOGGER.trace("Released: {}", state.getBookMetaData().getInitials());
+        state.releaseResources();
+        unreserve(state.getBookMetaData());
     }
 
     private Queue<OpenFileState> getQueueForMeta(BookMetaData metadata) {
         Queue<OpenFileState> availableStates = metaToStates.get(metadata);
         if (availableStates == null) {
-            synchronized (OpenFileState.class) {
-                availableStates = new ConcurrentLinkedQueue<OpenFileState>();
-                metaToStates.put(metadata, availableStates);
+            Queue<OpenFileState> newStates = new ConcurrentLinkedQueue<OpenFileState>();
+            availableStates = metaToStates.putIfAbsent(metadata, newStates);
+            if (availableStates == null) {
+                availableStates = newStates;
             }
         }
         return availableStates;
     }
 
+    private AtomicInteger getCountForMeta(BookMetaData metadata) {
+        AtomicInteger count = metaToCounts.get(metadata);
+        if (count == null) {
+            AtomicInteger newCount = new AtomicInteger();
+            count = metaToCounts.putIfAbsent(metadata, newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        return count;
+    }
+
     public void release(OpenFileState fileState) {
         if (fileState == null) {
             // can't release anything. JSword has failed to open a file state,
@@ -237,6 +661,31 @@ public final class OpenFileStateManager {
 
         fileState.setLastAccess(System.currentTimeMillis());
 
+        // A shared state stays open for the next reader, unless it has been
+        // replaced and this is its last user
+        if (fileState instanceof AbstractOpenFileState && ((AbstractOpenFileState) fileState).isShared()) {
+            AbstractOpenFileState sharedState = (AbstractOpenFileState) fileState;
+            if (sharedState.releaseShared() == 0
+                    && sharedStates.get(sharedState.getBookMetaData()) != sharedState
+                    && sharedState.retire())
+            {
+                closeState(sharedState);
+            }
+            return;
+        }
+
+        // states released after shutdown are not pooled
+        if (shuttingDown) {
+            closeState(fileState);
+            return;
+        }
+
+        // An interrupted read has closed one of its files, so it cannot be used again
+        if (!isOpen(fileState)) {
+            discard(fileState);
+            return;
+        }
+
         // instead of releasing, we add to our queue
         BookMetaData bmd = fileState.getBookMetaData();
         Queue<OpenFileState> queueForMeta = getQueueForMeta(bmd);
@@ -245,9 +694,10 @@ public final class OpenFileStateManager {
 
         // ignore if we couldn't offer to the queue
         if (!offered) {
-            LOGGER.trace("Released: {}", bmd.getInitials());
-            fileState.releaseResources();
+            closeState(fileState);
+            return;
         }
+        signalRelease(queueForMeta);
     }
 
     /**
@@ -259,9 +709,127 @@ public final class OpenFileStateManager {
         for (Queue<OpenFileState> e : metaToStates.values()) {
             OpenFileState state = null;
             while ((state = e.poll()) != null) {
-                state.releaseResources();
+                closeState(state);
+            }
+        }
+        // Shared states that are still in use are closed by their last user
+        for (AbstractOpenFileState state : sharedStates.values()) {
+            sharedStates.remove(state.getBookMetaData(), state);
+            if (state.retire()) {
+                closeState(state);
             }
         }
+        synchronized (mappedFiles) {
+            mappedFiles.clear();
+        }
+    }
+
+    /**
+     * Make the pool's counters and caps available through the platform's
+     * MBean server, as org.crosswire.jsword:type=OpenFileStateManager. This
+     * is not done by default as not all platforms have JMX.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            LOGGER.warn("Unable to register {}", MBEAN_NAME, e);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getOpenStates()
+     */
+    public int getOpenStates() {
+        return openStates.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getIdleStates()
+     */
+    public int getIdleStates() {
+        int idle = 0;
+        for (Queue<OpenFileState> e : metaToStates.values()) {
+            idle += e.size();
+        }
+        return idle;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getPoolHits()
+     */
+    public long getPoolHits() {
+        return poolHits.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getCreations()
+     */
+    public long getCreations() {
+        return creations.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getEvictions()
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getWaits()
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getTimeouts()
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getMaxOpenStates()
+     */
+    public int getMaxOpenStates() {
+        return maxOpenStates;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#setMaxOpenStates(int)
+     */
+    public void setMaxOpenStates(int maxOpenStates) {
+        this.maxOpenStates = maxOpenStates;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getMaxOpenStatesPerBook()
+     */
+    public int getMaxOpenStatesPerBook() {
+        return maxOpenStatesPerBook;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#setMaxOpenStatesPerBook(int)
+     */
+    public void setMaxOpenStatesPerBook(int maxOpenStatesPerBook) {
+        this.maxOpenStatesPerBook = maxOpenStatesPerBook;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#getMaxWait()
+     */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.book.sword.state.OpenFileStateManagerMBean#setMaxWait(long)
+     */
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
     }
 
     private void ensureNotShuttingDown() throws BookException {
@@ -270,8 +838,74 @@ public final class OpenFileStateManager {
         }
     }
 
+    /**
+     * Creates a state of a particular type when there is room for one.
+     */
+    interface StateFactory<T extends OpenFileState> {
+        T create() throws BookException;
+    }
+
+    /**
+     * A memory mapped file, along with what is needed to tell whether the
+     * file has changed since it was mapped.
+     */
+    private static final class MappedFile {
+        MappedFile(BookMetaData bmd, long lastModified, long length, MappedByteBuffer buffer) {
+            this.bmd = bmd;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.buffer = buffer;
+        }
+
+        final BookMetaData bmd;
+        final long lastModified;
+        final long length;
+        final MappedByteBuffer buffer;
+    }
+
+    /**
+     * How long, in milliseconds, to wait for a state of the book before checking whether there is room again.
+     */
+    private static final long WAIT_SLICE = 50;
+    private static final String MBEAN_NAME = "org.crosswire.jsword:type=OpenFileStateManager";
+
     private final ScheduledFuture<?> monitoringThread;
-    private final Map<BookMetaData, Queue<OpenFileState>> metaToStates = new HashMap<BookMetaData, Queue<OpenFileState>>();
+
+    /**
+     * How long, in milliseconds, an idle state is kept open.
+     */
+    private final long maxExpiry;
+    private final ConcurrentMap<BookMetaData, Queue<OpenFileState>> metaToStates = new ConcurrentHashMap<BookMetaData, Queue<OpenFileState>>();
+    private final ConcurrentMap<BookMetaData, AbstractOpenFileState> sharedStates = new ConcurrentHashMap<BookMetaData, AbstractOpenFileState>();
+    private final ConcurrentMap<BookMetaData, AtomicInteger> metaToCounts = new ConcurrentHashMap<BookMetaData, AtomicInteger>();
+    /**
+     * The memory mapped files, by path.
+     */
+    private final Map<String, MappedFile> mappedFiles = new HashMap<String, MappedFile>();
+
+    /**
+     * The number of states that are open, whether in use or idle.
+     */
+    private final AtomicInteger openStates = new AtomicInteger();
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong creations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * The number of threads waiting for a state to be released.
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * By default there are no caps
+     */
+    private volatile int maxOpenStates = Integer.MAX_VALUE;
+    private volatile int maxOpenStatesPerBook = Integer.MAX_VALUE;
+    private volatile long maxWait = 10000;
+    private volatile boolean memoryMapped;
+    private volatile boolean shareStates;
     private volatile boolean shuttingDown;
 
     private static volatile OpenFileStateManager manager;
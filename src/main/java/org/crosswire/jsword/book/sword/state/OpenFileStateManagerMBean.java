@@ -0,0 +1,96 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword.state;
+
+/**
+ * The management interface of the {@link OpenFileStateManager}, exposing the
+ * pool's counters and caps.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * 
+ * @author agent
+ */
+public interface OpenFileStateManagerMBean {
+    /**
+     * @return the number of file states that are open, whether in use or idle
+     */
+    int getOpenStates();
+
+    /**
+     * @return the number of file states that are open and waiting to be reused
+     */
+    int getIdleStates();
+
+    /**
+     * @return the number of requests that were given a pooled file state
+     */
+    long getPoolHits();
+
+    /**
+     * @return the number of file states that have been opened
+     */
+    long getCreations();
+
+    /**
+     * @return the number of idle file states that have been closed, either
+     *         because they expired or to make room for another book
+     */
+    long getEvictions();
+
+    /**
+     * @return the number of requests that had to wait for a file state
+     */
+    long getWaits();
+
+    /**
+     * @return the number of requests that gave up waiting for a file state
+     */
+    long getTimeouts();
+
+    /**
+     * @return the maximum number of file states that may be open at once
+     */
+    int getMaxOpenStates();
+
+    /**
+     * @param maxOpenStates the maximum number of file states that may be open at once
+     */
+    void setMaxOpenStates(int maxOpenStates);
+
+    /**
+     * @return the maximum number of file states that may be open at once for a single book
+     */
+    int getMaxOpenStatesPerBook();
+
+    /**
+     * @param maxOpenStatesPerBook the maximum number of file states that may be open at once for a single book
+     */
+    void setMaxOpenStatesPerBook(int maxOpenStatesPerBook);
+
+    /**
+     * @return the time, in milliseconds, a request waits for a file state before failing
+     */
+    long getMaxWait();
+
+    /**
+     * @param maxWait the time, in milliseconds, a request waits for a file state before failing
+     */
+    void setMaxWait(long maxWait);
+}
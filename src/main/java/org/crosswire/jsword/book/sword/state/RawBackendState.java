@@ -131,6 +131,11 @@ public class RawBackendState extends AbstractOpenFileState {
         return otIdxFile.canRead() || ntIdxFile.canRead();
     }
 
+    @Override
+    public boolean isOpen() {
+        return isOpen(otIdxRaf, otTextRaf, ntIdxRaf, ntTextRaf);
+    }
+
     public void releaseResources() {
         IOUtil.close(ntIdxRaf);
         IOUtil.close(ntTextRaf);
@@ -106,6 +106,11 @@ public class RawLDBackendState extends AbstractOpenFileState  {
         }
     }
 
+    @Override
+    public boolean isOpen() {
+        return isOpen(idxRaf, datRaf);
+    }
+
     public void releaseResources() {
         size = -1;
         IOUtil.close(idxRaf);
@@ -153,7 +158,7 @@ public class RawLDBackendState extends AbstractOpenFileState  {
     /**
      * The number of entries in the book.
      */
-    private int size = -1;
+    private volatile int size = -1;
 
     /**
      * The index file
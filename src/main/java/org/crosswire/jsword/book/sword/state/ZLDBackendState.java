@@ -103,6 +103,11 @@ public class ZLDBackendState extends RawLDBackendState {
         }
     }
 
+    @Override
+    public boolean isOpen() {
+        return super.isOpen() && isOpen(zdxRaf, zdtRaf);
+    }
+
     @Override
     public void releaseResources() {
         super.releaseResources();
@@ -21,8 +21,10 @@ package org.crosswire.jsword.book.sword.state;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 import org.crosswire.common.util.FileUtil;
 import org.crosswire.common.util.IOUtil;
@@ -54,8 +56,10 @@ public class ZVerseBackendState extends AbstractOpenFileState {
      * would result in leakage
      * 
      * @param bookMetaData the appropriate metadata for the book
+     * @param blockType the block size of the book
+     * @param memoryMapped whether to memory map the files instead of opening them
      */
-    ZVerseBackendState(BookMetaData bookMetaData, BlockType blockType) throws BookException {
+    ZVerseBackendState(BookMetaData bookMetaData, BlockType blockType, boolean memoryMapped) throws BookException {
         super(bookMetaData);
         URI path = SwordUtil.getExpandedDataPath(bookMetaData);
         String otAllButLast = NetUtil.lengthenURI(path, File.separator + SwordConstants.FILE_OT + '.' + blockType.getIndicator() + SUFFIX_PART1).getPath();
@@ -68,6 +72,35 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         File ntTextFile = new File(ntAllButLast + SUFFIX_TEXT);
         File ntCompFile = new File(ntAllButLast + SUFFIX_COMP);
 
+        if (memoryMapped) {
+            // Files that cannot be mapped are opened as before.
+            mapped = true;
+            if (otIdxFile.canRead()) {
+                try {
+                    otCompBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, otIdxFile);
+                    otTextBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, otTextFile);
+                    otIdxBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, otCompFile);
+                } catch (IOException ex) {
+                    LOGGER.warn("Could not map OT, falling back to RandomAccessFile", ex);
+                    mapped = false;
+                }
+            }
+            if (ntIdxFile.canRead()) {
+                try {
+                    ntCompBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, ntIdxFile);
+                    ntTextBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, ntTextFile);
+                    ntIdxBuffer = OpenFileStateManager.instance().getMappedBuffer(bookMetaData, ntCompFile);
+                } catch (IOException ex) {
+                    LOGGER.warn("Could not map NT, falling back to RandomAccessFile", ex);
+                    mapped = false;
+                }
+            }
+            if (mapped) {
+                return;
+            }
+            releaseBuffers();
+        }
+
         // check whether exists to swallow any exception as before
         if (otIdxFile.canRead()) {
             try {
@@ -104,6 +137,11 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         }
     }
 
+    @Override
+    public boolean isOpen() {
+        return isOpen(otCompRaf, otTextRaf, otIdxRaf, ntCompRaf, ntTextRaf, ntIdxRaf);
+    }
+
     public void releaseResources() {
         IOUtil.close(ntCompRaf);
         IOUtil.close(ntTextRaf);
@@ -117,6 +155,31 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         otCompRaf = null;
         otTextRaf = null;
         otIdxRaf = null;
+        releaseBuffers();
+    }
+
+    /**
+     * Drop the views of the mapped files. The mappings themselves are shared
+     * and belong to the OpenFileStateManager.
+     */
+    private void releaseBuffers() {
+        ntCompBuffer = null;
+        ntTextBuffer = null;
+        ntIdxBuffer = null;
+        otCompBuffer = null;
+        otTextBuffer = null;
+        otIdxBuffer = null;
+        mapped = false;
+    }
+
+    /**
+     * Whether this state reads from memory mapped files. When it does, the
+     * buffer getters are to be used as there are no open RandomAccessFiles.
+     * 
+     * @return true if the files are memory mapped
+     */
+    public boolean isMapped() {
+        return mapped;
     }
 
     /**
@@ -149,6 +212,36 @@ public class ZVerseBackendState extends AbstractOpenFileState {
         return testament == Testament.NEW ? ntIdxRaf : otIdxRaf;
     }
 
+    /**
+     * Get the mapped compression file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped index for the testament
+     */
+    public ByteBuffer getCompBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntCompBuffer : otCompBuffer;
+    }
+
+    /**
+     * Get the mapped text file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped text for the testament
+     */
+    public ByteBuffer getTextBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntTextBuffer : otTextBuffer;
+    }
+
+    /**
+     * Get the mapped index file for the given testament.
+     * 
+     * @param testament the testament for the index
+     * @return the mapped index for the testament
+     */
+    public ByteBuffer getIdxBuffer(Testament testament) {
+        return testament == Testament.NEW ? ntIdxBuffer : otIdxBuffer;
+    }
+
     /**
      * @return the lastTestament
      */
@@ -216,6 +309,19 @@ public class ZVerseBackendState extends AbstractOpenFileState {
      */
     private RandomAccessFile otIdxRaf;
     private RandomAccessFile ntIdxRaf;
+
+    /**
+     * This state's views of the memory mapped files, used instead of the
+     * random access files when mapped is true.
+     */
+    private ByteBuffer otCompBuffer;
+    private ByteBuffer ntCompBuffer;
+    private ByteBuffer otTextBuffer;
+    private ByteBuffer ntTextBuffer;
+    private ByteBuffer otIdxBuffer;
+    private ByteBuffer ntIdxBuffer;
+    private boolean mapped;
+
     private Testament lastTestament;
     private long lastBlockNum = -1;
     private byte[] lastUncompressed;
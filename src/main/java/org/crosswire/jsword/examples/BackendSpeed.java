@@ -0,0 +1,124 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.examples;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * BackendSpeed compares how fast the verses of a book can be read when its
+ * files are read through a RandomAccessFile, are memory mapped, or are read
+ * through one set of open files shared by all threads. Each run measures one
+ * mode, so that the pooled file states of one mode do not
+ * pollute the other. Run it once for each mode with the same arguments and
+ * compare the times.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class BackendSpeed {
+    /**
+     * Prevent instantiation
+     */
+    private BackendSpeed() {
+    }
+
+    /**
+     * Read every verse of a book a number of times from a number of threads.
+     * 
+     * @param args the book, the mode (raf, mmap or shared), the number of threads and the number of passes
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            usage();
+            return;
+        }
+
+        final Book book = Books.installed().getBook(args[0]);
+        if (book == null) {
+            System.out.println("Unknown book: " + args[0]);
+            return;
+        }
+
+        String mode = args[1];
+        boolean mapped = "mmap".equals(mode);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        final int passes = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        OpenFileStateManager.instance().setMemoryMapped(mapped);
+        OpenFileStateManager.instance().setShareStates("shared".equals(mode));
+
+        final Key keys = book.getGlobalKeyList();
+
+        // One untimed pass to warm up the JIT and the OS file cache.
+        readAll(book, keys, 1);
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Thread(new Runnable() {
+                public void run() {
+                    readAll(book, keys, passes);
+                }
+            }));
+        }
+
+        long start = System.currentTimeMillis();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long time = System.currentTimeMillis() - start;
+
+        long verses = (long) keys.getCardinality() * passes * threads;
+        System.out.println(book.getInitials() + " [" + mode + "] " + threads + " thread(s): " + time + "ms, " + (verses * 1000 / Math.max(time, 1)) + " verses/s");
+    }
+
+    /**
+     * Read the raw text of each key several times
+     */
+    static void readAll(Book book, Key keys, int passes) {
+        try {
+            for (int i = 0; i < passes; i++) {
+                for (Key key : keys) {
+                    book.getRawText(key);
+                }
+            }
+        } catch (BookException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Print a usage message to stdout
+     */
+    private static void usage() {
+        System.out.println("Usage: BackendSpeed <book> raf|mmap|shared [<threads> [<passes>]]");
+        System.out.println("  where <book> is the initials of an installed, compressed Bible,");
+        System.out.println("  raf reads the book's files with RandomAccessFile and mmap memory maps them,");
+        System.out.println("  shared reads them with RandomAccessFile, sharing one set of open files across threads.");
+    }
+}
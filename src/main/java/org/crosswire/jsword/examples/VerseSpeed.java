@@ -0,0 +1,185 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.examples;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * VerseSpeed measures how much is allocated while walking every verse of a
+ * Versification. It compares creating a new Verse for each ordinal with
+ * asking the Versification for its shared Verse, and then walks the whole
+ * Bible as a VerseRange and as a BitwisePassage, which both get their Verses
+ * from the Versification. Allocation is estimated from the growth of the
+ * heap over a pass during which no garbage collection ran.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class VerseSpeed {
+    /**
+     * Prevent instantiation
+     */
+    private VerseSpeed() {
+    }
+
+    /**
+     * Walk every verse of a versification a number of times in several ways.
+     * 
+     * @param args the versification (default KJV) and the number of passes
+     */
+    public static void main(String[] args) {
+        Versification v11n = Versifications.instance().getVersification(args.length > 0 ? args[0] : Versifications.DEFAULT_V11N);
+        int passes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final Versification rs = v11n;
+        final int max = v11n.maximumOrdinal();
+        final VerseRange all = v11n.getAllVerses();
+        final BitwisePassage passage = new BitwisePassage(v11n);
+        passage.addAll(all);
+
+        Walk[] walks = new Walk[] {
+            new Walk("new Verse(v11n, ordinal)") {
+                @Override
+                int walk() {
+                    int found = 0;
+                    for (int i = 0; i <= max; i++) {
+                        found += new Verse(rs, i).getVerse();
+                    }
+                    return found;
+                }
+            },
+            new Walk("v11n.decodeOrdinal(ordinal)") {
+                @Override
+                int walk() {
+                    int found = 0;
+                    for (int i = 0; i <= max; i++) {
+                        found += rs.decodeOrdinal(i).getVerse();
+                    }
+                    return found;
+                }
+            },
+            new Walk("VerseRange iterator") {
+                @Override
+                int walk() {
+                    return sum(all.iterator());
+                }
+            },
+            new Walk("BitwisePassage iterator") {
+                @Override
+                int walk() {
+                    return sum(passage.iterator());
+                }
+            },
+        };
+
+        for (Walk walk : walks) {
+            // One untimed pass to warm up the JIT and fill the cache.
+            walk.walk();
+            walk.measure(passes, max + 1);
+        }
+    }
+
+    /**
+     * Add up the verse numbers so that the walk cannot be optimized away.
+     */
+    static int sum(Iterator<Key> it) {
+        int found = 0;
+        while (it.hasNext()) {
+            found += ((Verse) it.next()).getVerse();
+        }
+        return found;
+    }
+
+    /**
+     * One way of walking all the verses of a versification.
+     */
+    private abstract static class Walk {
+        Walk(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Visit every verse once.
+         * 
+         * @return a value derived from the verses
+         */
+        abstract int walk();
+
+        /**
+         * Time the walk and report what it allocated.
+         */
+        void measure(int passes, int verses) {
+            long time = 0;
+            long bytes = 0;
+            int measured = 0;
+            int found = 0;
+            for (int i = 0; i < passes; i++) {
+                long collections = collections();
+                long before = used();
+                long start = System.nanoTime();
+                found += walk();
+                time += System.nanoTime() - start;
+                long after = used();
+                // A collection during the pass makes the growth meaningless
+                if (collections() == collections) {
+                    bytes += after - before;
+                    measured++;
+                }
+            }
+
+            StringBuilder buf = new StringBuilder();
+            buf.append(name).append(": ").append(time / 1000000).append("ms");
+            if (measured > 0) {
+                buf.append(", ").append(bytes / ((long) measured * verses)).append(" bytes/verse");
+            }
+            buf.append(" [").append(found).append(']');
+            System.out.println(buf);
+        }
+
+        private String name;
+    }
+
+    /**
+     * The number of bytes of heap in use.
+     */
+    static long used() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * The number of garbage collections so far, over all collectors.
+     */
+    static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(bean.getCollectionCount(), 0);
+        }
+        return count;
+    }
+}
@@ -45,6 +45,22 @@ public interface Index {
      */
     Key find(String query) throws BookException;
 
+    /**
+     * Find the set of references that satisfy the query, modified as
+     * requested. The modifier applies to this search alone and is not
+     * remembered by the index, so any number of threads may search the same
+     * index at once. As with {@link #find(String)}, a null query gives an
+     * empty Key.
+     * 
+     * @param query
+     *            The text to search for
+     * @param modifier
+     *            how to modify the search and its results, or null
+     * @return The references to the word
+     * @throws BookException 
+     */
+    Key find(String query, SearchModifier modifier) throws BookException;
+
     /**
      * An index must be able to create KeyLists for users in a similar way to
      * the Book that it is indexing.
@@ -64,14 +80,19 @@ public interface Index {
      * 
      * @param modifier
      *            how to modify the search and its results.
+     * @deprecated the modifier is shared by every search of the index; pass
+     *             it to {@link #find(String, SearchModifier)} instead
      */
+    @Deprecated
     void setSearchModifier(SearchModifier modifier);
 
     /**
      * Get the current SearchModifier. If there is none then return null.
      * 
      * @return the current search modifier, or null if there is not one.
+     * @deprecated pass the modifier to {@link #find(String, SearchModifier)}
      */
+    @Deprecated
     SearchModifier getSearchModifier();
 
     /**
@@ -0,0 +1,48 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index;
+
+/**
+ * An Enumeration of the ways an index can be read while it is searched.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public enum IndexAccess {
+    /**
+     * Read the index from disk in whatever way suits the platform best
+     */
+    FILE,
+
+    /**
+     * Read the index from disk with positional NIO reads
+     */
+    NIO,
+
+    /**
+     * Map the index files into memory and let the operating system page them
+     */
+    MMAP,
+
+    /**
+     * Load the whole index into memory when it is opened
+     */
+    RAM
+}
@@ -19,6 +19,8 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.Book;
+
 /**
  * An IndexPolicy allows for controlling the overall behavior
  * of Index creation. This class will change from time to time
@@ -86,4 +88,46 @@ public interface IndexPolicy {
      * @return whether there can only be one Book indexed at a time.
      */
     boolean isSerial();
+
+    /**
+     * The number of threads that may be used to read and prepare the
+     * entries of a single Book while its index is being created. A value of
+     * 1 or less indexes the Book on the calling thread alone. An application
+     * that can spare the processors and memory may return, for example,
+     * Runtime.getRuntime().availableProcessors(); the index is the same
+     * whatever the number of threads. Adapter default: 1.
+     * 
+     * @return the number of threads to use to create one index.
+     */
+    int getThreadCount();
+
+    /**
+     * How the index of a Book is to be read while it is searched. Books that
+     * are searched often can be held in RAM or memory mapped.
+     * Adapter default: IndexAccess.FILE.
+     * 
+     * @param book the Book whose index is being opened
+     * @return how to read the index of the Book.
+     */
+    IndexAccess getIndexAccess(Book book);
+
+    /**
+     * Indicates whether the terms and postings of the index of a Book
+     * should be read through when the index is opened, so that the first
+     * searches do not wait on the disk. Adapter default: false.
+     * 
+     * @param book the Book whose index is being opened
+     * @return true if the index should be warmed up when opened
+     */
+    boolean isWarmedUp(Book book);
+
+    /**
+     * The number of bytes of index that may be loaded into RAM for the Books
+     * that are searched most often, whatever their IndexAccess. The choice
+     * of Books follows how often they are searched. A value of 0 or less
+     * leaves each index as it was opened. Adapter default: 0.
+     * 
+     * @return the most bytes of index to hold in RAM.
+     */
+    long getResidentBudget();
 }
@@ -18,6 +18,8 @@
  */
 package org.crosswire.jsword.index;
 
+import org.crosswire.jsword.book.Book;
+
 /**
  * The IndexPolicyAdapter provides for application resilience against
  * change to IndexPolicy. It defines a reasonable set of defaults for
@@ -80,4 +82,32 @@ public class IndexPolicyAdapter implements IndexPolicy {
         return false;
     }
 
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getThreadCount()
+     */
+    public int getThreadCount() {
+        return 1;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getIndexAccess(org.crosswire.jsword.book.Book)
+     */
+    public IndexAccess getIndexAccess(Book book) {
+        return IndexAccess.FILE;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#isWarmedUp(org.crosswire.jsword.book.Book)
+     */
+    public boolean isWarmedUp(Book book) {
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.IndexPolicy#getResidentBudget()
+     */
+    public long getResidentBudget() {
+        return 0;
+    }
+
 }
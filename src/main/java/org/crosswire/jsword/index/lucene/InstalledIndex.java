@@ -47,6 +47,9 @@ public final class InstalledIndex {
     // Book's property key format
     // Installed.Index.Version.Book.Initial[module-version]
     public static final String PREFIX_INSTALLED_INDEX_VERSION_BOOK_OVERRIDE = "Installed.Index.Version.Book.";
+    // Book's property key format for an unfinished index build
+    // Index.Checkpoint.Book.Initial[module-version]
+    public static final String PREFIX_INDEX_CHECKPOINT_BOOK = "Index.Checkpoint.Book.";
     // TODO(Sijo): change this value on lucene upgrade
     /** The Index version for new indexes */
     public static final float DEFAULT_INSTALLED_INDEX_VERSION = IndexMetadata.INDEX_VERSION_1_2;
@@ -175,6 +178,53 @@ public final class InstalledIndex {
         }
     }
 
+    /**
+     * Get how far an unfinished index build of a book got.
+     *
+     * @param b the book being indexed
+     * @return the checkpoint or null if there is none
+     */
+    public String getIndexCheckpoint(Book b) {
+        return props.get(PREFIX_INDEX_CHECKPOINT_BOOK + IndexMetadata.getBookIdentifierPropSuffix(b.getBookMetaData()));
+    }
+
+    /**
+     * Record how far an index build of a book has got, so that it can be
+     * resumed if it is interrupted.
+     *
+     * @param b the book being indexed
+     * @param checkpoint where the build has got to
+     */
+    public void storeIndexCheckpoint(Book b, String checkpoint) {
+        synchronized (writeLock) {
+            props.put(PREFIX_INDEX_CHECKPOINT_BOOK + IndexMetadata.getBookIdentifierPropSuffix(b.getBookMetaData()), checkpoint);
+            try {
+                NetUtil.storeProperties(props, getPropertyFileURI(), metadataFileComment);
+            } catch (IOException e) {
+                log.error("Failed to store index checkpoint ", e);
+            }
+        }
+    }
+
+    /**
+     * Forget where an index build of a book got to, because it finished or
+     * cannot be resumed.
+     *
+     * @param b the book being indexed
+     */
+    public void removeIndexCheckpoint(Book b) {
+        synchronized (writeLock) {
+            if (props.remove(PREFIX_INDEX_CHECKPOINT_BOOK + IndexMetadata.getBookIdentifierPropSuffix(b.getBookMetaData())) == null) {
+                return;
+            }
+            try {
+                NetUtil.storeProperties(props, getPropertyFileURI(), metadataFileComment);
+            } catch (IOException e) {
+                log.error("Failed to store removed index checkpoint ", e);
+            }
+        }
+    }
+
     public void removeFromInstalledIndexMetadata(Book b) throws IOException {
 
         synchronized (writeLock) {
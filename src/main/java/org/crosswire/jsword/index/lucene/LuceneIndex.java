@@ -24,14 +24,32 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexCommit;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.Filter;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -39,6 +57,9 @@ import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
 import org.apache.lucene.util.Version;
 import org.crosswire.common.progress.JobManager;
 import org.crosswire.common.progress.Progress;
@@ -50,14 +71,18 @@ import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
 import org.crosswire.jsword.book.FeatureType;
 import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.book.basic.AbstractPassageBook;
 import org.crosswire.jsword.index.AbstractIndex;
+import org.crosswire.jsword.index.IndexAccess;
 import org.crosswire.jsword.index.IndexPolicy;
 import org.crosswire.jsword.index.IndexStatus;
 import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
 import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.AbstractPassage;
+import org.crosswire.jsword.passage.DefaultLeafKeyList;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.crosswire.jsword.passage.NoSuchVerseException;
@@ -150,7 +175,24 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      *             If we fail to read the index files
      */
     public LuceneIndex(Book book, URI storage) throws BookException {
+        this(book, storage, IndexAccess.FILE, false);
+    }
+
+    /**
+     * Read an existing index and use it, reading it in the given way.
+     * 
+     * @param book the book
+     * @param storage where the index is
+     * @param access how to read the index
+     * @param warm whether to read through the index once it is open
+     * @throws BookException
+     *             If we fail to read the index files
+     */
+    public LuceneIndex(Book book, URI storage, IndexAccess access, boolean warm) throws BookException {
         this.book = book;
+        this.preferredAccess = access;
+        this.access = access;
+        this.warm = warm;
 
         try {
             this.path = NetUtil.getAsFile(storage).getCanonicalPath();
@@ -181,6 +223,9 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
             // TRANSLATOR: Error condition: Could not initialize a search index. Lucene is the name of the search technology being used.
             throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), ex);
         }
+        this.preferredAccess = policy.getIndexAccess(book);
+        this.access = preferredAccess;
+        this.warm = policy.isWarmedUp(book);
 
         // TRANSLATOR: Progress label indicating the start of indexing. {0} is a placeholder for the book's short name.
         String jobName = JSMsg.gettext("Creating index. Processing {0}", book.getInitials());
@@ -193,12 +238,6 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         // Build to another location and rename in the end.
         File tempPath = new File(path + '.' + IndexStatus.CREATING.toString());
 
-        // Ensure that the temp path is gone
-        // It is not good for it to have been leftover from before.
-        if (tempPath.exists()) {
-            FileUtil.delete(tempPath);
-        }
-
         // Lock on metadata to allow creation of multiple indexes, so long as they are on different books.
         // Otherwise lock on a single object to make this serial
         Object mutex = policy.isSerial() ? CREATING : book.getBookMetaData();
@@ -211,31 +250,83 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
 
                 book.setIndexStatus(IndexStatus.CREATING);
 
+                Key keys = book.getGlobalKeyList();
+
+                // Carry on from where an interrupted build got to, if it can be trusted.
+                // Otherwise ensure that the temp path is gone, as it is not good for
+                // it to have been leftover from before.
+                int resumeAt = getResumePoint(tempPath, keys, errors);
+                if (resumeAt < 0) {
+                    InstalledIndex.instance().removeIndexCheckpoint(book);
+                    if (tempPath.exists()) {
+                        FileUtil.delete(tempPath);
+                    }
+                } else {
+                    log.info("Resuming the index of {} after {} keys", book.getInitials(), Integer.toString(resumeAt));
+                }
+
                 IndexWriter writer = null;
+                boolean built = false;
+                boolean saved = false;
                 try {
                     // Write the core index to disk.
                     final Directory destination = FSDirectory.open(new File(tempPath.getCanonicalPath()));
-                    writer = new IndexWriter(destination, analyzer, true, IndexWriter.MaxFieldLength.UNLIMITED);
+                    writer = new IndexWriter(destination, analyzer, resumeAt < 0, IndexWriter.MaxFieldLength.UNLIMITED);
                     writer.setRAMBufferSizeMB(policy.getRAMBufferSize());
 
-                    generateSearchIndexImpl(job, errors, writer, book.getGlobalKeyList(), 0, policy);
-
+                    IndexProgress progress = new IndexProgress(job, keys.getCardinality());
+                    IndexCheckpoint checkpoint = new IndexCheckpoint(writer, Math.max(resumeAt, 0), errors);
+                    int threads = policy.getThreadCount();
+                    if (threads > 1) {
+                        generateSearchIndexParallel(progress, checkpoint, errors, writer, keys, policy, threads);
+                    } else {
+                        generateSearchIndexImpl(progress, checkpoint, errors, writer, keys, new DocumentBuilder(policy, true));
+                    }
+                    built = !job.isFinished() && !Thread.currentThread().isInterrupted();
+                    // Even a finished build is checkpointed, in case it cannot be installed
+                    checkpoint.save();
+                    saved = true;
                 } finally {
                     if (writer != null) {
-                        writer.close();
+                        if (saved) {
+                            writer.close();
+                        } else {
+                            // Throw away what was added since the last checkpoint
+                            writer.rollback();
+                        }
                     }
                 }
 
                 job.setCancelable(false);
-                if (!job.isFinished()) {
+                if (built) {
+                    // When an index in use is being rebuilt, move the old one out of the way.
+                    // Searches still running on it have its files open.
+                    File oldPath = new File(path + '.' + IndexStatus.INVALID.toString());
+                    boolean replacing = finalPath.exists();
+                    if (replacing) {
+                        if (oldPath.exists()) {
+                            FileUtil.delete(oldPath);
+                        }
+                        if (!finalPath.renameTo(oldPath)) {
+                            // TRANSLATOR: The search index could not be moved to it's final location.
+                            throw new BookException(JSMsg.gettext("Installation failed."));
+                        }
+                    }
                     if (!tempPath.renameTo(finalPath)) {
+                        if (replacing) {
+                            oldPath.renameTo(finalPath);
+                        }
                         // TRANSLATOR: The search index could not be moved to it's final location.
                         throw new BookException(JSMsg.gettext("Installation failed."));
                     }
+                    if (replacing) {
+                        FileUtil.delete(oldPath);
+                    }
                 }
 
                 if (finalPath.exists()) {
                     finalStatus = IndexStatus.DONE;
+                    InstalledIndex.instance().removeIndexCheckpoint(book);
                 }
 
                 if (!errors.isEmpty()) {
@@ -257,7 +348,8 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
                 book.setIndexStatus(finalStatus);
                 job.done();
                 // Ensure that the temp path is gone - errors can leave it there and cause further problems.
-                if (tempPath.exists()) {
+                // A build that saved a checkpoint leaves it so that it can be resumed.
+                if (tempPath.exists() && InstalledIndex.instance().getIndexCheckpoint(book) == null) {
                     FileUtil.delete(tempPath);
                 }
             }
@@ -265,75 +357,324 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     }
 
     /**
-     * Initializes the directory and searcher.
+     * Work out how many keys an interrupted build of the index had finished.
+     * The checkpoint recorded in the InstalledIndex properties must match the
+     * one stored with the last commit of the partial index, and must name
+     * the key at that position in the book. The keys that could not be
+     * indexed before the checkpoint are stored with it.
+     * 
+     * @param tempPath where the partial index is
+     * @param keys the keys of the book
+     * @param errors gets the keys that could not be indexed before the
+     *            checkpoint, when the build can be resumed
+     * @return the number of leaf keys already in the index, or -1 to start
+     *         again
+     */
+    private int getResumePoint(File tempPath, Key keys, List<Key> errors) {
+        String recorded = InstalledIndex.instance().getIndexCheckpoint(book);
+        if (recorded == null || !tempPath.exists()) {
+            return -1;
+        }
+
+        Directory dir = null;
+        try {
+            dir = FSDirectory.open(tempPath);
+            if (!IndexReader.indexExists(dir)) {
+                return -1;
+            }
+            Map<String, String> data = getCommitData(dir);
+            if (!recorded.equals(data.get(CHECKPOINT))) {
+                return -1;
+            }
+            int split = recorded.indexOf(':');
+            int count = Integer.parseInt(recorded.substring(0, split));
+            if (count == 0) {
+                return 0;
+            }
+            Key last = getLeafKey(keys, count);
+            if (last != null && recorded.substring(split + 1).equals(last.getOsisRef())) {
+                restoreErrors(data.get(CHECKPOINT_ERRORS), errors);
+                return count;
+            }
+        } catch (IOException e) {
+            log.warn("Unable to resume the index of {}", book.getInitials(), e);
+        } catch (NumberFormatException e) {
+            log.warn("Bad index checkpoint {} for {}", recorded, book.getInitials());
+        } finally {
+            IOUtil.close(dir);
+        }
+        return -1;
+    }
+
+    /**
+     * Get the data stored with the last commit of an index.
+     * 
+     * @param dir where the index is
+     * @return the data, which is empty if there is no commit
+     * @throws IOException
+     */
+    private static Map<String, String> getCommitData(Directory dir) throws IOException {
+        // The commits are in the order they were made
+        IndexCommit last = null;
+        for (IndexCommit commit : IndexReader.listCommits(dir)) {
+            last = commit;
+        }
+        if (last == null) {
+            return new HashMap<String, String>();
+        }
+        return last.getUserData();
+    }
+
+    /**
+     * Get back the keys that could not be indexed, as stored with a
+     * checkpoint.
+     * 
+     * @param stored the OSIS references of the keys, one per line, or null
+     * @param errors gets the keys
+     */
+    private void restoreErrors(String stored, List<Key> errors) {
+        if (stored == null || stored.length() == 0) {
+            return;
+        }
+        for (String osisRef : stored.split("\n")) {
+            try {
+                errors.add(book.getKey(osisRef));
+            } catch (NoSuchKeyException e) {
+                // It is only reported, so its name will do
+                errors.add(new DefaultLeafKeyList(osisRef));
+            }
+        }
+    }
+
+    /**
+     * Find the leaf key at a position in the order that keys are indexed.
+     * 
+     * @param key the keys of the book
+     * @param position the position, counting from 1
+     * @return the key or null if there are not that many
+     */
+    private static Key getLeafKey(Key key, int position) {
+        int count = 0;
+        LinkedList<Iterator<Key>> stack = new LinkedList<Iterator<Key>>();
+        stack.add(key.iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Key> iter = stack.getLast();
+            if (!iter.hasNext()) {
+                stack.removeLast();
+                continue;
+            }
+            Key subkey = iter.next();
+            if (subkey.canHaveChildren()) {
+                stack.add(subkey.iterator());
+            } else if (++count == position) {
+                return subkey;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Initializes the directory and searcher, and makes them the ones that
+     * new searches use. Searches that are already running finish with the
+     * old ones, which are closed once they are done.
      */
     private void initDirectoryAndSearcher() {
+        Directory directory = null;
+        IndexSearcher searcher = null;
         try {
-            directory = FSDirectory.open(new File(path));
+            directory = openDirectory(new File(path), access);
             searcher = new IndexSearcher(directory, true);
+            // An index in RAM was read in full as it was loaded
+            if (warm && access != IndexAccess.RAM) {
+                warmUp(searcher.getIndexReader());
+            }
+            swap(new SearcherHandle(directory, searcher));
         } catch (IOException ex) {
+            IOUtil.close(searcher);
+            IOUtil.close(directory);
             log.warn("second load failure", ex);
         }
     }
 
+    /**
+     * Make a searcher the current one, releasing the old one.
+     * 
+     * @param handle the new searcher or null for none
+     */
+    private void swap(SearcherHandle handle) {
+        SearcherHandle old = current.getAndSet(handle);
+        if (old != null) {
+            old.release();
+        }
+    }
+
+    /**
+     * Take a reference to the current searcher, which must be released when
+     * the search is done.
+     * 
+     * @return the current searcher
+     * @throws BookException if the index is not open
+     */
+    private SearcherHandle acquireSearcher() throws BookException {
+        while (true) {
+            SearcherHandle handle = current.get();
+            if (handle == null) {
+                // TRANSLATOR: Common error condition: Some error happened while opening a search index.
+                throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."));
+            }
+            // It can only fail if another thread swapped it out just now
+            if (handle.acquire()) {
+                return handle;
+            }
+        }
+    }
+
+    /**
+     * Open the directory holding an index.
+     * 
+     * @param dir where the index is
+     * @param how how to read the index
+     * @return the directory
+     * @throws IOException if the index cannot be opened
+     */
+    private static Directory openDirectory(File dir, IndexAccess how) throws IOException {
+        switch (how) {
+        case NIO:
+            return new NIOFSDirectory(dir);
+        case MMAP:
+            return new MMapDirectory(dir);
+        case RAM:
+            Directory source = FSDirectory.open(dir);
+            try {
+                return new RAMDirectory(source);
+            } finally {
+                source.close();
+            }
+        default:
+            return FSDirectory.open(dir);
+        }
+    }
+
+    /**
+     * Read through the term dictionary and the postings of every term, so
+     * that they are cached before the first search needs them.
+     * 
+     * @param reader the reader of the open index
+     * @throws IOException if the index cannot be read
+     */
+    private void warmUp(IndexReader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        TermEnum terms = reader.terms();
+        TermDocs docs = reader.termDocs();
+        try {
+            while (terms.next()) {
+                docs.seek(terms);
+                while (docs.next()) {
+                    // Reading them is all that is needed
+                }
+            }
+        } finally {
+            docs.close();
+            terms.close();
+        }
+        log.debug("Warmed up the index of {} in {}ms", book.getInitials(), Long.toString(System.currentTimeMillis() - start));
+    }
+
+    /**
+     * @return how the index is being read
+     */
+    IndexAccess getAccess() {
+        return access;
+    }
+
+    /**
+     * @return how the index is read when it is not held in RAM for being
+     *         searched often
+     */
+    IndexAccess getPreferredAccess() {
+        return preferredAccess;
+    }
+
+    /**
+     * Change how the index is read, reopening it if it is open. Searches
+     * that are running finish with the old searcher.
+     * 
+     * @param newAccess how to read the index
+     */
+    synchronized void setAccess(IndexAccess newAccess) {
+        if (newAccess == access) {
+            return;
+        }
+        access = newAccess;
+        if (current.get() != null) {
+            initDirectoryAndSearcher();
+        }
+        log.info("Reading the index of {} as {}", book.getInitials(), newAccess);
+    }
+
+    /**
+     * Open the index again after it has been rebuilt in place. Searches
+     * that are running finish with the old searcher.
+     */
+    synchronized void reopen() {
+        initDirectoryAndSearcher();
+    }
+
+    /**
+     * @return the number of bytes taken by the index on disk
+     */
+    long getSize() {
+        long size = 0;
+        File[] files = new File(path).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Tell this index which indexes may be held in RAM, and so which to tell
+     * when it is searched.
+     * 
+     * @param resident the indexes that share a RAM budget, or null
+     */
+    void setResidentIndexes(ResidentIndexes resident) {
+        this.resident = resident;
+    }
+
     /* (non-Javadoc)
-     * @see org.crosswire.jsword.index.Index#find(java.lang.String)
+     * @see org.crosswire.jsword.index.Index#find(java.lang.String, org.crosswire.jsword.index.search.SearchModifier)
      */
-    public Key find(String search) throws BookException {
-        String v11nName = book.getBookMetaData().getProperty("Versification").toString();
-        Versification v11n = Versifications.instance().getVersification(v11nName);
+    public Key find(String search, SearchModifier modifier) throws BookException {
+        searched();
+        SearcherHandle handle = acquireSearcher();
+        try {
+            return find(handle, search, modifier);
+        } finally {
+            handle.release();
+        }
+    }
 
-        SearchModifier modifier = getSearchModifier();
+    /**
+     * Find the verses matching a query string.
+     * 
+     * @param handle the searcher to use
+     * @param search the query string
+     * @param modifier how to modify the search and its results, or null
+     * @return the matching verses
+     * @throws BookException if the search fails
+     */
+    private Key find(SearcherHandle handle, String search, SearchModifier modifier) throws BookException {
+        Versification v11n = getVersification();
         Key results = null;
 
         if (search != null) {
             Throwable theCause = null;
             try {
-                Analyzer analyzer = new LuceneAnalyzer(book);
-
-                QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, analyzer);
-                parser.setAllowLeadingWildcard(true);
-                Query query = parser.parse(search);
-                log.info("ParsedQuery- {}", query.toString());
-
-                // For ranking we use a PassageTally
-                if (modifier != null && modifier.isRanked()) {
-                    PassageTally tally = new PassageTally(v11n);
-                    tally.raiseEventSuppresion();
-                    tally.raiseNormalizeProtection();
-                    results = tally;
-
-                    TopScoreDocCollector collector = TopScoreDocCollector.create(modifier.getMaxResults(), false);
-                    searcher.search(query, collector);
-                    tally.setTotal(collector.getTotalHits());
-                    ScoreDoc[] hits = collector.topDocs().scoreDocs;
-                    for (int i = 0; i < hits.length; i++) {
-                        int docId = hits[i].doc;
-                        Document doc = searcher.doc(docId);
-                        Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
-                        // PassageTally understands a score of 0 as the verse
-                        // not participating
-                        int score = (int) (hits[i].score * 100 + 1);
-                        tally.add(key, score);
-                    }
-                    tally.lowerNormalizeProtection();
-                    tally.lowerEventSuppressionAndTest();
-                } else {
-                    results = book.createEmptyKeyList();
-                    // If we have an abstract passage,
-                    // make sure it does not try to fire change events.
-                    AbstractPassage passage = null;
-                    if (results instanceof AbstractPassage) {
-                        passage = (AbstractPassage) results;
-                        passage.raiseEventSuppresion();
-                        passage.raiseNormalizeProtection();
-                    }
-                    searcher.search(query, new VerseCollector(v11n, searcher, results));
-                    if (passage != null) {
-                        passage.lowerNormalizeProtection();
-                        passage.lowerEventSuppressionAndTest();
-                    }
-                }
+                Query query = createQueryParser().parse(search);
+                results = search(handle, query, null, modifier, v11n);
             } catch (IOException e) {
                 // The VerseCollector may throw IOExceptions that merely wrap a NoSuchVerseException
                 Throwable cause = e.getCause();
@@ -360,6 +701,188 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
         return results;
     }
 
+    /**
+     * Find the verses matching a whole tree of queries with a single search
+     * of the index. Passage ranges in the tree become a filter on the verses.
+     * The tree must have been accepted by {@link LuceneQueryPlanner#plan}.
+     * 
+     * @param tree the query tree
+     * @param modifier how to modify the search and its results, or null
+     * @return the matching verses, or null if this index cannot search the
+     *         tree in one go and it has to be searched a branch at a time
+     * @throws BookException if the search fails
+     */
+    Key findPlanned(org.crosswire.jsword.index.query.Query tree, SearchModifier modifier) throws BookException {
+        searched();
+        SearcherHandle handle = acquireSearcher();
+        try {
+            return findPlanned(handle, tree, modifier);
+        } finally {
+            handle.release();
+        }
+    }
+
+    /**
+     * Find the verses matching a tree of queries.
+     * 
+     * @param handle the searcher to use
+     * @param tree the query tree
+     * @param modifier how to modify the search and its results, or null
+     * @return the matching verses, or null if the tree has to be searched a
+     *         branch at a time
+     * @throws BookException if the search fails
+     */
+    private Key findPlanned(SearcherHandle handle, org.crosswire.jsword.index.query.Query tree, SearchModifier modifier) throws BookException {
+        Versification v11n = getVersification();
+        List<String> included = new ArrayList<String>();
+        List<String> excluded = new ArrayList<String>();
+
+        Throwable theCause = null;
+        try {
+            Query query = LuceneQueryPlanner.compile(tree, createQueryParser(), included, excluded);
+
+            Filter filter = null;
+            if (!included.isEmpty() || !excluded.isEmpty()) {
+                VerseOrdinals ordinals = getVerseOrdinals(handle, v11n);
+                if (ordinals == null) {
+                    return null;
+                }
+                BitSet allowed = getAllowedOrdinals(v11n, included, excluded);
+                filter = new VerseOrdinalFilter(handle.getReader(), ordinals, allowed);
+            }
+
+            return search(handle, query, filter, modifier, v11n);
+        } catch (IOException e) {
+            // The VerseCollector may throw IOExceptions that merely wrap a NoSuchVerseException
+            Throwable cause = e.getCause();
+            theCause = cause instanceof NoSuchVerseException ? cause : e;
+        } catch (NoSuchVerseException e) {
+            theCause = e;
+        } catch (ParseException e) {
+            theCause = e;
+        }
+
+        // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+        throw new BookException(JSMsg.gettext("Search failed."), theCause);
+    }
+
+    /**
+     * Run a Lucene query against the index.
+     * 
+     * @param handle the searcher to use
+     * @param query the query
+     * @param filter which documents may match, or null for all
+     * @param modifier how to modify the search and its results, or null
+     * @param v11n the versification of the book
+     * @return the matching verses
+     */
+    private Key search(SearcherHandle handle, Query query, Filter filter, SearchModifier modifier, Versification v11n) throws IOException, NoSuchVerseException {
+        log.info("ParsedQuery- {}", query.toString());
+        IndexSearcher searcher = handle.getSearcher();
+        VerseOrdinals ordinals = getVerseOrdinals(handle, v11n);
+        Key results = null;
+
+        // For ranking we use a PassageTally
+        if (modifier != null && modifier.isRanked()) {
+            PassageTally tally = new PassageTally(v11n);
+            tally.raiseEventSuppresion();
+            tally.raiseNormalizeProtection();
+            results = tally;
+
+            TopScoreDocCollector collector = TopScoreDocCollector.create(modifier.getMaxResults(), false);
+            searcher.search(query, filter, collector);
+            tally.setTotal(collector.getTotalHits());
+            ScoreDoc[] hits = collector.topDocs().scoreDocs;
+            for (int i = 0; i < hits.length; i++) {
+                int docId = hits[i].doc;
+                Key key = null;
+                int ordinal = ordinals == null ? -1 : ordinals.getOrdinal(docId);
+                if (ordinal >= 0) {
+                    key = v11n.decodeOrdinal(ordinal);
+                } else {
+                    Document doc = searcher.doc(docId);
+                    key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
+                }
+                // PassageTally understands a score of 0 as the verse
+                // not participating
+                int score = (int) (hits[i].score * 100 + 1);
+                tally.add(key, score);
+            }
+            tally.lowerNormalizeProtection();
+            tally.lowerEventSuppressionAndTest();
+        } else {
+            results = book.createEmptyKeyList();
+            // If we have an abstract passage,
+            // make sure it does not try to fire change events.
+            AbstractPassage passage = null;
+            if (results instanceof AbstractPassage) {
+                passage = (AbstractPassage) results;
+                passage.raiseEventSuppresion();
+                passage.raiseNormalizeProtection();
+            }
+            searcher.search(query, filter, new VerseCollector(v11n, searcher, results, ordinals));
+            if (passage != null) {
+                passage.lowerNormalizeProtection();
+                passage.lowerEventSuppressionAndTest();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Work out which verses a search may return: those in every included
+     * range, or all verses if there are none, less those in any excluded
+     * range.
+     */
+    private BitSet getAllowedOrdinals(Versification v11n, List<String> included, List<String> excluded) throws BookException {
+        int size = v11n.maximumOrdinal() + 1;
+        BitSet allowed = new BitSet(size);
+        if (included.isEmpty()) {
+            allowed.set(0, size);
+        } else {
+            allowed.or(getOrdinals(included.get(0), size));
+            for (int i = 1; i < included.size(); i++) {
+                allowed.and(getOrdinals(included.get(i), size));
+            }
+        }
+        for (String range : excluded) {
+            allowed.andNot(getOrdinals(range, size));
+        }
+        return allowed;
+    }
+
+    private BitSet getOrdinals(String range, int size) throws BookException {
+        BitSet ordinals = new BitSet(size);
+        try {
+            for (Key key : getKey(range)) {
+                if (key instanceof Verse) {
+                    ordinals.set(((Verse) key).getOrdinal());
+                }
+            }
+        } catch (NoSuchKeyException e) {
+            // TRANSLATOR: User error condition: The passage range could not be understood. {0} is a placeholder for the passage.
+            throw new BookException(JSMsg.gettext("Syntax Error: Invalid passage \"{0}\"", range), e);
+        }
+        return ordinals;
+    }
+
+    /**
+     * @return the versification of the book
+     */
+    private Versification getVersification() {
+        String v11nName = book.getBookMetaData().getProperty("Versification").toString();
+        return Versifications.instance().getVersification(v11nName);
+    }
+
+    /**
+     * @return a parser for queries against this index
+     */
+    private QueryParser createQueryParser() {
+        QueryParser parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, getQueryAnalyzer());
+        parser.setAllowLeadingWildcard(true);
+        return parser;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.index.Index#getKey(java.lang.String)
      */
@@ -370,154 +893,525 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     /* (non-Javadoc)
      * @see org.crosswire.jsword.index.Index#close()
      */
-    public final void close() {
-        IOUtil.close(searcher);
-        searcher = null;
-        IOUtil.close(directory);
-        directory = null;
+    public final synchronized void close() {
+        // Searches that are running keep the searcher open until they finish
+        swap(null);
+    }
+
+    /**
+     * Count a search against the RAM budget, if there is one.
+     */
+    private void searched() {
+        ResidentIndexes current = resident;
+        if (current != null) {
+            current.searched(this);
+        }
+    }
+
+    /**
+     * Get the analyzer used to parse queries. It only creates new token
+     * streams, so one can be shared by all searches of the index.
+     * 
+     * @return the analyzer
+     */
+    private Analyzer getQueryAnalyzer() {
+        Analyzer analyzer = queryAnalyzer;
+        if (analyzer == null) {
+            analyzer = new LuceneAnalyzer(book);
+            queryAnalyzer = analyzer;
+        }
+        return analyzer;
+    }
+
+    /**
+     * Get the table of verse ordinals for a searcher, loading or building
+     * it on first use. Only the indexes of verse keyed books have one.
+     * 
+     * @param handle the searcher
+     * @param v11n the versification of the book
+     * @return the table or null if there is none
+     */
+    private VerseOrdinals getVerseOrdinals(SearcherHandle handle, Versification v11n) {
+        if (book instanceof AbstractPassageBook) {
+            return handle.getVerseOrdinals(v11n, new File(path));
+        }
+        return null;
     }
 
     /**
      * Dig down into a Key indexing as we go.
-     * @param policy 
-     */
-    private void generateSearchIndexImpl(Progress job, List<Key> errors, IndexWriter writer, Key key, int count, IndexPolicy policy) throws BookException, IOException {
-        String v11nName = null;
-        if (book.getBookMetaData().getProperty("Versification") != null) {
-            v11nName = book.getBookMetaData().getProperty("Versification").toString();
-        }
-        Versification v11n = Versifications.instance().getVersification(v11nName);
-        boolean includeStrongs = book.getBookMetaData().hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
-        boolean includeXrefs = book.getBookMetaData().hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
-        boolean includeNotes = book.getBookMetaData().hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
-        boolean includeHeadings = book.getBookMetaData().hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
-        boolean includeMorphology = book.getBookMetaData().hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
-
-        String oldRootName = "";
-        int percent = 0;
-        String rootName = "";
-        BookData data = null;
-        Element osis = null;
-
-        // Set up for reuse.
-        Document doc = new Document();
-        Field keyField = new Field(FIELD_KEY, "", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO);
-        Field bodyField = new Field(FIELD_BODY, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field bodyStemField = new Field(FIELD_BODY_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field introField = new Field(FIELD_INTRO, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field introStemField = new Field(FIELD_INTRO_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field strongField = new Field(FIELD_STRONG, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.YES);
-        Field xrefField = new Field(FIELD_XREF, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field noteField = new Field(FIELD_NOTE, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field headingField = new Field(FIELD_HEADING, "", Field.Store.YES, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field headingStemField = new Field(FIELD_HEADING_STEM, "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-        Field morphologyField  = new Field(FIELD_MORPHOLOGY , "", Field.Store.NO, Field.Index.ANALYZED, Field.TermVector.NO);
-
-        int size = key.getCardinality();
-        int subCount = count;
-        log.debug("Number of keys = {}", Integer.toString(size));
+     */
+    private void generateSearchIndexImpl(IndexProgress progress, IndexCheckpoint checkpoint, List<Key> errors, IndexWriter writer, Key key, DocumentBuilder builder) throws IOException {
+        log.debug("Number of keys = {}", Integer.toString(key.getCardinality()));
         for (Key subkey : key) {
             // Bibles and verse based commentaries don't have keys with children.
             // However, tree keyed Books do. So we only index the leaf keys.
             // FIXME(DMS): Should not use recursion!!!!
             if (subkey.canHaveChildren()) {
-                generateSearchIndexImpl(job, errors, writer, subkey, subCount, policy);
+                generateSearchIndexImpl(progress, checkpoint, errors, writer, subkey, builder);
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                continue;
+            }
+
+            if (checkpoint.skip()) {
+                progress.step(subkey);
                 continue;
             }
 
-            data = new BookData(book, subkey);
+            Document doc = builder.build(subkey, errors);
+            if (doc != null) {
+                writer.addDocument(doc);
+            }
+
+            progress.step(subkey);
+            checkpoint.step(subkey);
+
+            // This could take a long time ...
+            Thread.yield();
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Index the keys using a pool of worker threads. The leaf keys are cut
+     * into runs of consecutive keys. Each run is read and turned into Lucene
+     * Documents by a worker, while this thread adds the finished Documents
+     * to the writer in key order. This keeps the order of the index the same
+     * as when it is built by a single thread.
+     */
+    private void generateSearchIndexParallel(IndexProgress progress, IndexCheckpoint checkpoint, List<Key> errors, IndexWriter writer, Key keys, IndexPolicy policy, int threads) throws IOException {
+        log.debug("Indexing {} using {} threads", book.getInitials(), Integer.toString(threads));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new IndexThreadFactory(book.getInitials()));
+        try {
+            IndexPipeline pipeline = new IndexPipeline(executor, progress, checkpoint, errors, writer, policy, threads * PENDING_RUNS_PER_THREAD);
+            pipeline.feed(keys);
+            pipeline.finish();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Feeds runs of leaf keys to the workers and writes out the results in
+     * the order the runs were handed out. At most a fixed number of runs are
+     * outstanding at any time, so a slow writer holds back the readers rather
+     * than letting finished Documents pile up in memory.
+     */
+    private final class IndexPipeline {
+        IndexPipeline(ExecutorService executor, IndexProgress progress, IndexCheckpoint checkpoint, List<Key> errors, IndexWriter writer, IndexPolicy policy, int maxPending) {
+            this.executor = executor;
+            this.progress = progress;
+            this.checkpoint = checkpoint;
+            this.errors = errors;
+            this.writer = writer;
+            this.policy = policy;
+            this.maxPending = maxPending;
+            this.pending = new LinkedList<Future<IndexRun>>();
+            this.run = new ArrayList<Key>(RUN_SIZE);
+        }
+
+        /**
+         * Collect the leaf keys of this key into runs, handing each full run
+         * to the workers.
+         */
+        void feed(Key key) throws IOException {
+            for (Key subkey : key) {
+                if (cancelled) {
+                    return;
+                }
+                if (subkey.canHaveChildren()) {
+                    feed(subkey);
+                    continue;
+                }
+                if (checkpoint.skip()) {
+                    progress.step(subkey);
+                    continue;
+                }
+                run.add(subkey);
+                if (run.size() == RUN_SIZE) {
+                    submit();
+                }
+            }
+        }
+
+        /**
+         * Hand out the last partial run and write out all that remain.
+         */
+        void finish() throws IOException {
+            if (!cancelled && !run.isEmpty()) {
+                submit();
+            }
+            while (!cancelled && !pending.isEmpty()) {
+                drain();
+            }
+        }
+
+        private void submit() throws IOException {
+            final List<Key> work = run;
+            run = new ArrayList<Key>(RUN_SIZE);
+            pending.add(executor.submit(new Callable<IndexRun>() {
+                public IndexRun call() {
+                    DocumentBuilder builder = new DocumentBuilder(policy, false);
+                    IndexRun result = new IndexRun(work);
+                    for (Key subkey : work) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            break;
+                        }
+                        result.documents.add(builder.build(subkey, result.errors));
+                    }
+                    return result;
+                }
+            }));
+            while (!cancelled && pending.size() >= maxPending) {
+                drain();
+            }
+        }
 
+        /**
+         * Wait for the oldest run and add its Documents to the index.
+         */
+        private void drain() throws IOException {
+            Future<IndexRun> future = pending.removeFirst();
+            IndexRun result = null;
             try {
-                osis = data.getOsisFragment(false);
+                result = future.get();
+            } catch (InterruptedException e) {
+                // The job was cancelled. Leave the flag for the caller.
+                Thread.currentThread().interrupt();
+                cancelled = true;
+                return;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                IOException ioe = new IOException(cause.getMessage());
+                ioe.initCause(cause);
+                throw ioe;
+            }
+
+            int count = result.documents.size();
+            for (int i = 0; i < count; i++) {
+                Document doc = result.documents.get(i);
+                Key subkey = result.keys.get(i);
+                if (doc != null) {
+                    writer.addDocument(doc);
+                } else if (result.errors.contains(subkey)) {
+                    // Keep the errors in step with the checkpoint
+                    errors.add(subkey);
+                }
+                progress.step(subkey);
+                checkpoint.step(subkey);
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                cancelled = true;
+            }
+        }
+
+        private final ExecutorService executor;
+        private final IndexProgress progress;
+        private final IndexCheckpoint checkpoint;
+        private final List<Key> errors;
+        private final IndexWriter writer;
+        private final IndexPolicy policy;
+        private final int maxPending;
+        private final LinkedList<Future<IndexRun>> pending;
+        private List<Key> run;
+        private boolean cancelled;
+    }
+
+    /**
+     * The Documents made by a worker for a run of keys. A Document is null
+     * when the key had nothing to index.
+     */
+    private static final class IndexRun {
+        IndexRun(List<Key> keys) {
+            this.keys = keys;
+            this.documents = new ArrayList<Document>(keys.size());
+            this.errors = new ArrayList<Key>();
+        }
+
+        final List<Key> keys;
+        final List<Document> documents;
+        final List<Key> errors;
+    }
+
+    /**
+     * Names the worker threads after the Book being indexed. The workers are
+     * daemons so that an abandoned index run does not keep the VM alive.
+     */
+    private static final class IndexThreadFactory implements ThreadFactory {
+        IndexThreadFactory(String initials) {
+            this.initials = initials;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Index " + initials + '-' + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        private final String initials;
+        private final AtomicInteger count = new AtomicInteger();
+    }
+
+    /**
+     * Commits the index being built from time to time and records how far
+     * it got, so that an interrupted build can carry on from there. The
+     * record is the number of leaf keys indexed and the last of them. It is
+     * kept with the commit and in the InstalledIndex properties. The keys
+     * that could not be indexed so far are kept with the commit, so that they
+     * are still reported when the build is resumed. Only the thread adding
+     * Documents to the index uses it.
+     */
+    private final class IndexCheckpoint {
+        IndexCheckpoint(IndexWriter writer, int resumeAt, List<Key> errors) {
+            this.writer = writer;
+            this.resumeAt = resumeAt;
+            this.errors = errors;
+            this.lastName = "";
+            this.lastSaved = System.currentTimeMillis();
+        }
+
+        /**
+         * Skip the keys indexed before the build was interrupted.
+         * 
+         * @return true if the next key is already in the index
+         */
+        boolean skip() {
+            if (count < resumeAt) {
+                count++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Note that a key has been added to the index, saving a checkpoint if
+         * it has been a while since the last.
+         * 
+         * @param subkey the key that was added
+         * @throws IOException if the index cannot be committed
+         */
+        void step(Key subkey) throws IOException {
+            count++;
+            lastName = subkey.getOsisRef();
+            if (System.currentTimeMillis() - lastSaved >= CHECKPOINT_INTERVAL) {
+                save();
+            }
+        }
+
+        /**
+         * Commit what has been added and record how far that is.
+         * 
+         * @throws IOException if the index cannot be committed
+         */
+        void save() throws IOException {
+            // Resuming without adding anything leaves the old checkpoint as it was
+            if (count == resumeAt && resumeAt > 0) {
+                return;
+            }
+            String value = Integer.toString(count) + ':' + lastName;
+            Map<String, String> data = new HashMap<String, String>();
+            data.put(CHECKPOINT, value);
+            if (!errors.isEmpty()) {
+                StringBuilder buf = new StringBuilder();
+                for (Key error : errors) {
+                    if (buf.length() > 0) {
+                        buf.append('\n');
+                    }
+                    buf.append(error.getOsisRef());
+                }
+                data.put(CHECKPOINT_ERRORS, buf.toString());
+            }
+            writer.commit(data);
+            InstalledIndex.instance().storeIndexCheckpoint(book, value);
+            lastSaved = System.currentTimeMillis();
+        }
+
+        private final IndexWriter writer;
+        private final int resumeAt;
+        private final List<Key> errors;
+        private int count;
+        private String lastName;
+        private long lastSaved;
+    }
+
+    /**
+     * Reports indexing progress to the job. Progress is only reported from
+     * the thread adding Documents to the index.
+     */
+    private static final class IndexProgress {
+        IndexProgress(Progress job, int size) {
+            this.job = job;
+            this.size = size;
+            this.rootName = "";
+        }
+
+        void step(Key subkey) {
+            String name = subkey.getRootName();
+            if (!name.equals(rootName)) {
+                rootName = name;
+                // Note, this does not cause progress to be updated
+                // It will show up the next time progress is updated.
+                job.setSectionName(name);
+            }
+
+            count++;
+            if (size <= 0) {
+                return;
+            }
+            int oldPercent = percent;
+            percent = Math.min(WORK_ESTIMATE, WORK_ESTIMATE * count / size);
+
+            // Only send out a max of 95 progress updates
+            if (oldPercent != percent) {
+                job.setWork(percent);
+            }
+        }
+
+        private final Progress job;
+        private final int size;
+        private String rootName;
+        private int count;
+        private int percent;
+    }
+
+    /**
+     * Turns the entries of the Book into Lucene Documents. When reusing, the
+     * same Document and Fields are refilled for each key, which is only safe
+     * when each Document is added to the index before the next is built.
+     */
+    private final class DocumentBuilder {
+        DocumentBuilder(IndexPolicy policy, boolean reuse) {
+            BookMetaData bmd = book.getBookMetaData();
+            String v11nName = null;
+            if (bmd.getProperty("Versification") != null) {
+                v11nName = bmd.getProperty("Versification").toString();
+            }
+            this.v11n = Versifications.instance().getVersification(v11nName);
+            this.includeStrongs = bmd.hasFeature(FeatureType.STRONGS_NUMBERS) && policy.isStrongsIndexed();
+            this.includeXrefs = bmd.hasFeature(FeatureType.SCRIPTURE_REFERENCES) && policy.isXrefIndexed();
+            this.includeNotes = bmd.hasFeature(FeatureType.FOOTNOTES) && policy.isNoteIndexed();
+            this.includeHeadings = bmd.hasFeature(FeatureType.HEADINGS) && policy.isTitleIndexed();
+            this.includeMorphology = bmd.hasFeature(FeatureType.MORPHOLOGY) && policy.isMorphIndexed();
+            this.reuse = reuse;
+            this.fields = new Field[FIELD_NAMES.length];
+            if (reuse) {
+                reusable = new Document();
+            }
+        }
+
+        /**
+         * Build the Document for a leaf key.
+         * 
+         * @param subkey the key to index
+         * @param errors where to record keys that could not be read
+         * @return the Document or null if there is nothing to index
+         */
+        Document build(Key subkey, List<Key> errors) {
+            Element osis = null;
+            try {
+                osis = new BookData(book, subkey).getOsisFragment(false);
             } catch (BookException e) {
                 errors.add(subkey);
-                continue;
+                return null;
             }
 
-            // Remove all fields from the document
-            doc.getFields().clear();
+            Document doc = reusable;
+            if (doc == null) {
+                doc = new Document();
+            } else {
+                // Remove all fields from the document
+                doc.getFields().clear();
+            }
 
             // Do the actual indexing
             // Always add the key
+            Field keyField = getField(KEY);
             keyField.setValue(subkey.getOsisRef());
             doc.add(keyField);
 
             final String canonicalText = OSISUtil.getCanonicalText(osis);
             if (subkey instanceof Verse && ((Verse) subkey).getVerse() == 0) {
-                addField(doc, introField, canonicalText);
-                addField(doc, introStemField, canonicalText);
+                addField(doc, INTRO, canonicalText);
+                addField(doc, INTRO_STEM, canonicalText);
             } else {
-                addField(doc, bodyField, canonicalText);
-                addField(doc, bodyStemField, canonicalText);
+                addField(doc, BODY, canonicalText);
+                addField(doc, BODY_STEM, canonicalText);
             }
 
             if (includeStrongs) {
-                addField(doc, strongField, OSISUtil.getStrongsNumbers(osis));
+                addField(doc, STRONG, OSISUtil.getStrongsNumbers(osis));
             }
 
             if (includeXrefs) {
                 // We pass book and key because the xref may not be valid and it needs to be reported.
-                addField(doc, xrefField, OSISUtil.getReferences(this.book, subkey, v11n, osis));
+                addField(doc, XREF, OSISUtil.getReferences(book, subkey, v11n, osis));
             }
 
             if (includeNotes) {
-                addField(doc, noteField, OSISUtil.getNotes(osis));
+                addField(doc, NOTE, OSISUtil.getNotes(osis));
             }
 
             if (includeHeadings) {
                 final String headings = OSISUtil.getHeadings(osis);
-                addField(doc, headingField, headings);
-                addField(doc, headingStemField, headings);
+                addField(doc, HEADING, headings);
+                addField(doc, HEADING_STEM, headings);
             }
 
             if (includeMorphology) {
-                addField(doc, morphologyField, OSISUtil.getMorphologiesWithStrong(osis));
+                addField(doc, MORPHOLOGY, OSISUtil.getMorphologiesWithStrong(osis));
             }
 
             // Add the document if we added more than just the key.
-            if (doc.getFields().size() > 1) {
-                writer.addDocument(doc);
-            }
+            return doc.getFields().size() > 1 ? doc : null;
+        }
 
-            // report progress
-            rootName = subkey.getRootName();
-            if (!rootName.equals(oldRootName)) {
-                oldRootName = rootName;
-                // Note, this does not cause progress to be updated
-                // It will show up the next time progress is updated.
-                job.setSectionName(rootName);
-            }
-
-            subCount++;
-            int oldPercent = percent;
-            percent = WORK_ESTIMATE * subCount / size;
-
-            // Only send out a max of 95 progress updates
-            if (oldPercent != percent) {
-                job.setWork(percent);
+        /**
+         * Add the text to the Field and put the Field in the document,
+         * ignoring null and empty text.
+         * 
+         * @param doc The Document to which the Field should be added
+         * @param which The Field to add
+         * @param text The text for the field
+         */
+        private void addField(Document doc, int which, String text) {
+            if (text != null && text.length() > 0) {
+                Field field = getField(which);
+                field.setValue(text);
+                doc.add(field);
             }
+        }
 
-            // This could take a long time ...
-            Thread.yield();
-            if (Thread.currentThread().isInterrupted()) {
-                break;
+        private Field getField(int which) {
+            Field field = fields[which];
+            if (field == null) {
+                field = new Field(FIELD_NAMES[which], "", FIELD_STORE[which], FIELD_INDEX[which], FIELD_TERM_VECTOR[which]);
+                if (reuse) {
+                    fields[which] = field;
+                }
             }
+            return field;
         }
-    }
 
-    /**
-     * Add the text to the Field and put the Field in the document,
-     * ignoring null and empty text.
-     * 
-     * @param doc The Document to which the Field should be added
-     * @param field The Field to add
-     * @param text The text for the field
-     */
-    private void addField(Document doc, Field field, String text) {
-        if (text != null && text.length() > 0) {
-            field.setValue(text);
-            doc.add(field);
-        }
+        private final Versification v11n;
+        private final boolean includeStrongs;
+        private final boolean includeXrefs;
+        private final boolean includeNotes;
+        private final boolean includeHeadings;
+        private final boolean includeMorphology;
+        private final boolean reuse;
+        private final Field[] fields;
+        private Document reusable;
     }
 
     /**
@@ -529,7 +1423,8 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
      * @return the searcher
      */
     public Searcher getSearcher() {
-        return searcher;
+        SearcherHandle handle = current.get();
+        return handle == null ? null : handle.getSearcher();
     }
 
     /**
@@ -543,14 +1438,95 @@ public class LuceneIndex extends AbstractIndex implements Closeable {
     private String path;
 
     /**
-     * The Lucene directory for the path.
+     * The Lucene search engine, with its directory
+     */
+    private final AtomicReference<SearcherHandle> current = new AtomicReference<SearcherHandle>();
+
+    /**
+     * The analyzer for queries, made on first use.
+     */
+    private volatile Analyzer queryAnalyzer;
+
+    /**
+     * How the index is read just now
+     */
+    private volatile IndexAccess access;
+
+    /**
+     * How the index is read when it is not held in RAM by the budget
+     */
+    private IndexAccess preferredAccess;
+
+    /**
+     * Whether to read through the index as soon as it is opened
+     */
+    private boolean warm;
+
+    /**
+     * The indexes sharing a RAM budget, or null
+     */
+    private volatile ResidentIndexes resident;
+
+    /**
+     * The number of milliseconds between checkpoints of an index being built.
+     */
+    private static final long CHECKPOINT_INTERVAL = 60000L;
+
+    /**
+     * The name under which a checkpoint is kept with a commit.
+     */
+    private static final String CHECKPOINT = "jsword.checkpoint";
+
+    /**
+     * The name under which the keys that could not be indexed are stored
+     * with a commit.
+     */
+    private static final String CHECKPOINT_ERRORS = "jsword.checkpoint.errors";
+
+    /**
+     * The number of consecutive keys given to a worker at a time.
+     */
+    private static final int RUN_SIZE = 32;
+
+    /**
+     * The number of runs per worker that may be waiting to be written.
+     */
+    private static final int PENDING_RUNS_PER_THREAD = 2;
+
+    /**
+     * The positions of the fields in the tables below.
      */
-    private Directory directory;
+    private static final int KEY = 0;
+    private static final int BODY = 1;
+    private static final int BODY_STEM = 2;
+    private static final int INTRO = 3;
+    private static final int INTRO_STEM = 4;
+    private static final int STRONG = 5;
+    private static final int XREF = 6;
+    private static final int NOTE = 7;
+    private static final int HEADING = 8;
+    private static final int HEADING_STEM = 9;
+    private static final int MORPHOLOGY = 10;
 
     /**
-     * The Lucene search engine
+     * How each of the fields is created.
      */
-    private Searcher searcher;
+    private static final String[] FIELD_NAMES = {
+        FIELD_KEY, FIELD_BODY, FIELD_BODY_STEM, FIELD_INTRO, FIELD_INTRO_STEM, FIELD_STRONG,
+        FIELD_XREF, FIELD_NOTE, FIELD_HEADING, FIELD_HEADING_STEM, FIELD_MORPHOLOGY,
+    };
+    private static final Field.Store[] FIELD_STORE = {
+        Field.Store.YES, Field.Store.YES, Field.Store.NO, Field.Store.YES, Field.Store.NO, Field.Store.NO,
+        Field.Store.NO, Field.Store.NO, Field.Store.YES, Field.Store.NO, Field.Store.NO,
+    };
+    private static final Field.Index[] FIELD_INDEX = {
+        Field.Index.NOT_ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED,
+        Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED, Field.Index.ANALYZED,
+    };
+    private static final Field.TermVector[] FIELD_TERM_VECTOR = {
+        Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.YES,
+        Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO, Field.TermVector.NO,
+    };
 
     /**
      * A synchronization lock point to prevent us from doing 2 index runs at a
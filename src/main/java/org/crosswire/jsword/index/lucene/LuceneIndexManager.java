@@ -22,8 +22,12 @@ package org.crosswire.jsword.index.lucene;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.crosswire.common.util.CWProject;
 import org.crosswire.common.util.FileUtil;
@@ -39,6 +43,7 @@ import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexPolicy;
 import org.crosswire.jsword.index.IndexPolicyAdapter;
 import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.search.SearchCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +65,7 @@ public class LuceneIndexManager implements IndexManager {
      */
     public LuceneIndexManager() {
         policy = new IndexPolicyAdapter();
+        resident = new ResidentIndexes(policy.getResidentBudget());
         try {
             baseFolderURI = CWProject.instance().getWritableProjectSubdir(DIR_LUCENE, false);
         } catch (IOException ex) {
@@ -87,16 +93,60 @@ public class LuceneIndexManager implements IndexManager {
     /* (non-Javadoc)
      * @see org.crosswire.jsword.index.IndexManager#getIndex(org.crosswire.jsword.book.Book)
      */
-    public Index getIndex(Book book) throws BookException {
+    public Index getIndex(final Book book) throws BookException {
+        Index reply = INDEXES.get(book);
+        if (reply != null) {
+            return reply;
+        }
+
+        // Only one thread opens the index of a book. The others wait for it.
+        FutureTask<Index> opener = new FutureTask<Index>(new Callable<Index>() {
+            public Index call() throws BookException {
+                return openIndex(book);
+            }
+        });
+        FutureTask<Index> running = OPENING.putIfAbsent(book, opener);
+        if (running == null) {
+            running = opener;
+            opener.run();
+        }
+
         try {
-            Index reply = INDEXES.get(book);
-            if (reply == null) {
-                URI storage = getStorageArea(book);
-                reply = new LuceneIndex(book, storage);
-                INDEXES.put(book, reply);
+            return running.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof BookException) {
+                throw (BookException) cause;
             }
+            // TRANSLATOR: Common error condition: Some error happened while opening a search index.
+            throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            // TRANSLATOR: Common error condition: Some error happened while opening a search index.
+            throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), ex);
+        } finally {
+            OPENING.remove(book, running);
+        }
+    }
 
+    /**
+     * Open the index of a book, unless another thread got there first.
+     * 
+     * @param book the book
+     * @return the index of the book
+     * @throws BookException if the index cannot be opened
+     */
+    private Index openIndex(Book book) throws BookException {
+        Index reply = INDEXES.get(book);
+        if (reply != null) {
             return reply;
+        }
+
+        try {
+            URI storage = getStorageArea(book);
+            LuceneIndex index = new LuceneIndex(book, storage, policy.getIndexAccess(book), policy.isWarmedUp(book));
+            putIndex(book, index);
+            return index;
         } catch (IOException ex) {
             // TRANSLATOR: Common error condition: Some error happened while opening a search index.
             throw new BookException(JSMsg.gettext("Failed to initialize Lucene search engine."), ex);
@@ -140,7 +190,7 @@ public class LuceneIndexManager implements IndexManager {
 
         try {
             URI storage = getStorageArea(book);
-            Index index = new LuceneIndex(book, storage, this.policy);
+            LuceneIndex index = new LuceneIndex(book, storage, this.policy);
 
             //todo update Installed IndexVersion for newly created index
             // todo implement: Installed.Index.Version.Book.XXX value add/update in metadata file after creation, use value getLatestIndexVersion(book)
@@ -148,7 +198,16 @@ public class LuceneIndexManager implements IndexManager {
             // We were successful if the directory exists.
             if (NetUtil.getAsFile(storage).exists()) {
                 finalStatus = IndexStatus.DONE;
-                INDEXES.put(book, index);
+                Index open = INDEXES.get(book);
+                if (open instanceof LuceneIndex) {
+                    // The index was rebuilt while in use. Everyone holding
+                    // the old index gets the new searcher.
+                    ((LuceneIndex) open).reopen();
+                    index.close();
+                } else {
+                    putIndex(book, index);
+                }
+                SearchCache.instance().invalidate(book);
 
                 //update IndexVersion
                 InstalledIndex.instance().storeLatestVersionAsInstalledIndexMetadata(book);
@@ -170,6 +229,11 @@ public class LuceneIndexManager implements IndexManager {
             URI storage = getStorageArea(book);
             File zip = NetUtil.getAsFile(tempDest);
             IOUtil.unpackZip(zip, NetUtil.getAsFile(storage));
+            Index open = INDEXES.get(book);
+            if (open instanceof LuceneIndex) {
+                ((LuceneIndex) open).reopen();
+            }
+            SearchCache.instance().invalidate(book);
             //todo Index.Version management??
         } catch (IOException ex) {
             // TRANSLATOR: The search index could not be moved to it's final location.
@@ -187,10 +251,13 @@ public class LuceneIndexManager implements IndexManager {
         // directory.
         File tempPath = null;
         try {
-            // TODO(joe): This needs some checks that it isn't being used
-            //temporary fix, which closes the index - non-thread safe since someone could theoretically come in and activate this again!
-            Index index = INDEXES.get(book);
+            // Searches that are running finish before the index is really
+            // closed. New ones can no longer find it.
+            Index index = INDEXES.remove(book);
             if (index != null) {
+                if (index instanceof LuceneIndex) {
+                    resident.remove((LuceneIndex) index);
+                }
                 index.close();
             }
 
@@ -210,10 +277,11 @@ public class LuceneIndexManager implements IndexManager {
             }
             book.setIndexStatus(IndexStatus.UNDONE);
             book.resetSearcher();
-            INDEXES.remove(book);
+            SearchCache.instance().invalidate(book);
 
             //Delete index Version metadata (InstalledIndex)
             InstalledIndex.instance().removeFromInstalledIndexMetadata(book);
+            InstalledIndex.instance().removeIndexCheckpoint(book);
 
         } catch (IOException ex) {
             // TRANSLATOR: Error condition: The index could not be deleted.
@@ -239,7 +307,25 @@ public class LuceneIndexManager implements IndexManager {
         } else {
             this.policy = new IndexPolicyAdapter();
         }
+        resident.setBudget(this.policy.getResidentBudget());
+    }
 
+    /**
+     * Remember the open index of a book and count its searches against the
+     * RAM budget.
+     * 
+     * @param book the book
+     * @param index the open index of the book
+     */
+    private void putIndex(Book book, LuceneIndex index) {
+        resident.add(index);
+        Index old = INDEXES.put(book, index);
+        if (old != null && old != index) {
+            if (old instanceof LuceneIndex) {
+                resident.remove((LuceneIndex) old);
+            }
+            old.close();
+        }
     }
 
     /**
@@ -267,10 +353,20 @@ public class LuceneIndexManager implements IndexManager {
     private IndexPolicy policy;
     private URI baseFolderURI;
 
+    /**
+     * The indexes that share the RAM budget of the policy
+     */
+    private final ResidentIndexes resident;
+
     /**
      * The created indexes
      */
-    protected static final Map<Book, Index> INDEXES = new HashMap<Book, Index>();
+    protected static final Map<Book, Index> INDEXES = new ConcurrentHashMap<Book, Index>();
+
+    /**
+     * The indexes being opened just now
+     */
+    private static final ConcurrentMap<Book, FutureTask<Index>> OPENING = new ConcurrentHashMap<Book, FutureTask<Index>>();
 
     /**
      * The lucene search index directory
@@ -0,0 +1,202 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.util.List;
+
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.query.AndNotQuery;
+import org.crosswire.jsword.index.query.AndQuery;
+import org.crosswire.jsword.index.query.BaseQuery;
+import org.crosswire.jsword.index.query.BinaryQuery;
+import org.crosswire.jsword.index.query.OrQuery;
+import org.crosswire.jsword.index.query.Query;
+import org.crosswire.jsword.index.query.RangeQuery;
+import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * Turns a tree of AND, OR and AND NOT queries into one Lucene query, so that
+ * the whole tree is evaluated by a single search of the index instead of
+ * each branch producing a Key to be combined with the others.
+ * 
+ * <p>A passage range that is ANDed with the rest of the query becomes a
+ * filter over verse ordinals. A range that is taken away with AND NOT
+ * becomes an excluded range. Trees with a blur, or with a range anywhere
+ * else, are searched as before.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class LuceneQueryPlanner {
+    /**
+     * Prevent instantiation
+     */
+    private LuceneQueryPlanner() {
+    }
+
+    /**
+     * Plan how a query is to be searched.
+     * 
+     * @param query the query as built by the query builder
+     * @return a query that searches the index once if the tree allows it,
+     *         otherwise the query itself
+     */
+    static Query plan(Query query) {
+        if (query instanceof BinaryQuery && canCompile(query, true)) {
+            return new PlannedQuery(query);
+        }
+        return query;
+    }
+
+    /**
+     * Build the Lucene query for a tree that {@link #plan(Query)} accepted.
+     * 
+     * @param query the tree
+     * @param parser the parser for the text of each base query
+     * @param included gathers the ranges that all results must be in
+     * @param excluded gathers the ranges that no result may be in
+     * @return the Lucene query
+     * @throws ParseException if the text of a base query is not valid
+     */
+    static org.apache.lucene.search.Query compile(Query query, QueryParser parser, List<String> included, List<String> excluded) throws ParseException {
+        if (query instanceof BaseQuery) {
+            return parser.parse(((BaseQuery) query).getQuery());
+        }
+
+        BinaryQuery binary = (BinaryQuery) query;
+        Query left = binary.getLeftQuery();
+        Query right = binary.getRightQuery();
+
+        if (query instanceof AndQuery) {
+            if (left instanceof RangeQuery) {
+                included.add(((RangeQuery) left).getQuery());
+                return compile(right, parser, included, excluded);
+            }
+            if (right instanceof RangeQuery) {
+                included.add(((RangeQuery) right).getQuery());
+                return compile(left, parser, included, excluded);
+            }
+            return combine(compile(left, parser, included, excluded), BooleanClause.Occur.MUST,
+                           compile(right, parser, included, excluded), BooleanClause.Occur.MUST);
+        }
+
+        if (query instanceof AndNotQuery) {
+            if (right instanceof RangeQuery) {
+                excluded.add(((RangeQuery) right).getQuery());
+                return compile(left, parser, included, excluded);
+            }
+            return combine(compile(left, parser, included, excluded), BooleanClause.Occur.MUST,
+                           compile(right, parser, included, excluded), BooleanClause.Occur.MUST_NOT);
+        }
+
+        // Only an OR is left
+        return combine(compile(left, parser, included, excluded), BooleanClause.Occur.SHOULD,
+                       compile(right, parser, included, excluded), BooleanClause.Occur.SHOULD);
+    }
+
+    private static org.apache.lucene.search.Query combine(org.apache.lucene.search.Query left, BooleanClause.Occur leftOccur, org.apache.lucene.search.Query right, BooleanClause.Occur rightOccur) {
+        BooleanQuery combined = new BooleanQuery();
+        combined.add(left, leftOccur);
+        combined.add(right, rightOccur);
+        return combined;
+    }
+
+    /**
+     * Whether a tree can be turned into one Lucene query.
+     * 
+     * @param query the tree
+     * @param rangesAllowed whether a range here would restrict the whole
+     *            result, as it does at the top and under AND
+     * @return true if the tree can be compiled
+     */
+    private static boolean canCompile(Query query, boolean rangesAllowed) {
+        if (query instanceof BaseQuery) {
+            return true;
+        }
+
+        if (!(query instanceof AndQuery || query instanceof AndNotQuery || query instanceof OrQuery)) {
+            return false;
+        }
+
+        BinaryQuery binary = (BinaryQuery) query;
+        Query left = binary.getLeftQuery();
+        Query right = binary.getRightQuery();
+
+        if (query instanceof AndQuery) {
+            if (left instanceof RangeQuery) {
+                return rangesAllowed && canCompile(right, true);
+            }
+            if (right instanceof RangeQuery) {
+                return rangesAllowed && canCompile(left, true);
+            }
+            return canCompile(left, rangesAllowed) && canCompile(right, rangesAllowed);
+        }
+
+        if (query instanceof AndNotQuery) {
+            if (right instanceof RangeQuery) {
+                return rangesAllowed && canCompile(left, true);
+            }
+            // What is taken away cannot itself be restricted by a range
+            return canCompile(left, rangesAllowed) && canCompile(right, false);
+        }
+
+        // Neither side of an OR restricts the other
+        return canCompile(left, false) && canCompile(right, false);
+    }
+
+    /**
+     * A query tree that a LuceneIndex can search in one go. Any other index,
+     * or one that cannot filter by verse, searches the tree as before.
+     */
+    private static final class PlannedQuery implements Query {
+        PlannedQuery(Query query) {
+            this.query = query;
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index.Index)
+         */
+        @Deprecated
+        public Key find(Index index) throws BookException {
+            return find(index, index.getSearchModifier());
+        }
+
+        /* (non-Javadoc)
+         * @see org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index.Index, org.crosswire.jsword.index.search.SearchModifier)
+         */
+        public Key find(Index index, SearchModifier modifier) throws BookException {
+            if (index instanceof LuceneIndex) {
+                Key results = ((LuceneIndex) index).findPlanned(query, modifier);
+                if (results != null) {
+                    return results;
+                }
+            }
+            return query.find(index, modifier);
+        }
+
+        private final Query query;
+    }
+}
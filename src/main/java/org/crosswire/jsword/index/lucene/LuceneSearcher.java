@@ -78,11 +78,10 @@ public class LuceneSearcher implements Searcher {
      * .index.search.SearchRequest)
      */
     public Key search(SearchRequest request) throws BookException {
-        index.setSearchModifier(request.getSearchModifier());
-        Query query = QueryBuilderFactory.getQueryBuilder().parse(request.getRequest());
-        Key results = search(query);
-        index.setSearchModifier(null);
-        return results;
+        Query query = LuceneQueryPlanner.plan(QueryBuilderFactory.getQueryBuilder().parse(request.getRequest()));
+        // The modifier goes with this search only, leaving the index free
+        // to serve other searches at the same time.
+        return query.find(index, request.getSearchModifier());
     }
 
     /*
@@ -92,8 +91,11 @@ public class LuceneSearcher implements Searcher {
      * org.crosswire.jsword.index.search.Searcher#search(org.crosswire.jsword
      * .index.query.Query)
      */
+    @SuppressWarnings("deprecation")
     public Key search(Query query) throws BookException {
-        return query.find(index);
+        // Callers of this form may still set the modifier on the index.
+        // Until Index.setSearchModifier is removed, it must be honored.
+        return LuceneQueryPlanner.plan(query).find(index, index.getSearchModifier());
     }
 
     /**
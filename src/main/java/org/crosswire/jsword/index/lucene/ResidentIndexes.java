@@ -0,0 +1,288 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.crosswire.jsword.index.IndexAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides which indexes are loaded into RAM, so that the books searched
+ * most often are answered from memory while the total stays within a
+ * budget. Every so many searches the indexes are ranked by how often they
+ * have been searched, and as many as fit are loaded into RAM. The others go
+ * back to being read as their IndexPolicy says. Counts are halved after
+ * each ranking, so that recent searches count for more.
+ * 
+ * <p>Indexes are loaded and released on a background thread, one at a
+ * time. Searches carry on with the index as it was until the new reader is
+ * ready and swapped in. Counting a search takes no lock, and with no budget
+ * searches are not counted at all.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class ResidentIndexes {
+    /**
+     * Create an empty set of indexes sharing a budget.
+     * 
+     * @param budget the most bytes of index to hold in RAM
+     */
+    ResidentIndexes(long budget) {
+        this(budget, Executors.newSingleThreadExecutor(new LoaderThreadFactory()));
+    }
+
+    /**
+     * Create an empty set of indexes sharing a budget, whose indexes are
+     * loaded and released by the given executor.
+     * 
+     * @param budget the most bytes of index to hold in RAM
+     * @param loader runs the changes of access, in the order given
+     */
+    ResidentIndexes(long budget, Executor loader) {
+        this.budget = budget;
+        this.loader = loader;
+        this.tallies = new ConcurrentHashMap<LuceneIndex, Tally>();
+        this.searches = new AtomicInteger();
+    }
+
+    /**
+     * @param budget the most bytes of index to hold in RAM
+     */
+    void setBudget(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Start counting the searches of an index.
+     * 
+     * @param index the index
+     */
+    void add(LuceneIndex index) {
+        tallies.put(index, new Tally());
+        index.setResidentIndexes(this);
+    }
+
+    /**
+     * Stop counting the searches of an index.
+     * 
+     * @param index the index
+     */
+    void remove(LuceneIndex index) {
+        index.setResidentIndexes(null);
+        tallies.remove(index);
+    }
+
+    /**
+     * Count a search of an index, ranking the indexes when it is time.
+     * Indexes are reopened on the loader, so the search is not held up.
+     * 
+     * @param index the index being searched
+     */
+    void searched(LuceneIndex index) {
+        // With no budget there is nothing to do, once any held are released
+        if (budget <= 0 && !holding) {
+            return;
+        }
+        Tally tally = tallies.get(index);
+        if (tally == null) {
+            return;
+        }
+        tally.searches.incrementAndGet();
+        int count = searches.incrementAndGet();
+        if (count < RANK_INTERVAL || !searches.compareAndSet(count, 0)) {
+            return;
+        }
+
+        // Look at the disk before taking the lock
+        Map<LuceneIndex, Long> sizes = measure();
+        final List<LuceneIndex> release = new ArrayList<LuceneIndex>();
+        final List<LuceneIndex> load = new ArrayList<LuceneIndex>();
+        synchronized (this) {
+            rank(sizes, release, load);
+        }
+
+        if (release.isEmpty() && load.isEmpty()) {
+            return;
+        }
+
+        try {
+            loader.execute(new Runnable() {
+                public void run() {
+                    // Free memory before using more
+                    for (LuceneIndex each : release) {
+                        each.setAccess(each.getPreferredAccess());
+                        resized(each);
+                    }
+                    for (LuceneIndex each : load) {
+                        each.setAccess(IndexAccess.RAM);
+                        resized(each);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Unable to change which indexes are held in RAM", e);
+        }
+    }
+
+    /**
+     * Get the size of each index that might be loaded into RAM. Sizes are
+     * kept from one ranking to the next, so that the index directories are
+     * only listed when an index is new or has been reopened.
+     * 
+     * @return the size in bytes of each index
+     */
+    private Map<LuceneIndex, Long> measure() {
+        Map<LuceneIndex, Long> sizes = new HashMap<LuceneIndex, Long>();
+        for (Map.Entry<LuceneIndex, Tally> entry : tallies.entrySet()) {
+            LuceneIndex index = entry.getKey();
+            if (index.getPreferredAccess() == IndexAccess.RAM) {
+                continue;
+            }
+            Tally tally = entry.getValue();
+            long size = tally.size;
+            if (size < 0) {
+                size = index.getSize();
+                tally.size = size;
+            }
+            sizes.put(index, Long.valueOf(size));
+        }
+        return sizes;
+    }
+
+    /**
+     * Forget the size of an index, as reopening it may have changed it.
+     * 
+     * @param index the index that was reopened
+     */
+    private void resized(LuceneIndex index) {
+        Tally tally = tallies.get(index);
+        if (tally != null) {
+            tally.size = -1;
+        }
+    }
+
+    /**
+     * Work out which indexes are to be loaded into RAM and which released.
+     * 
+     * @param sizes the size of each index that might be loaded
+     * @param release gets the indexes to go back to their preferred access
+     * @param load gets the indexes to be loaded into RAM
+     */
+    private void rank(Map<LuceneIndex, Long> sizes, List<LuceneIndex> release, List<LuceneIndex> load) {
+        // Take the counts once, as searches carry on counting
+        final Map<LuceneIndex, Long> counts = new HashMap<LuceneIndex, Long>();
+        for (Map.Entry<LuceneIndex, Tally> entry : tallies.entrySet()) {
+            AtomicLong searched = entry.getValue().searches;
+            long count = searched.get();
+            // Halve the count, keeping the searches made since it was taken
+            searched.addAndGet(-(count - count / 2));
+            counts.put(entry.getKey(), Long.valueOf(count));
+        }
+        List<LuceneIndex> ranked = new ArrayList<LuceneIndex>(counts.keySet());
+        Collections.sort(ranked, new Comparator<LuceneIndex>() {
+            public int compare(LuceneIndex o1, LuceneIndex o2) {
+                return counts.get(o2).compareTo(counts.get(o1));
+            }
+        });
+
+        long remaining = budget;
+        boolean held = false;
+        for (LuceneIndex index : ranked) {
+            Long size = sizes.get(index);
+            if (size == null) {
+                // The policy already keeps it in RAM, or it was added since
+                continue;
+            }
+
+            boolean resident = false;
+            if (counts.get(index).longValue() > 0 && size.longValue() <= remaining) {
+                remaining -= size.longValue();
+                resident = true;
+                held = true;
+            }
+
+            IndexAccess current = index.getAccess();
+            if (resident && current != IndexAccess.RAM) {
+                load.add(index);
+            } else if (!resident && current == IndexAccess.RAM) {
+                release.add(index);
+            }
+        }
+        holding = held;
+    }
+
+    /**
+     * The searches of an index since the last ranking, halved at each
+     * ranking, and the size of the index if known.
+     */
+    private static final class Tally {
+        final AtomicLong searches = new AtomicLong();
+        volatile long size = -1;
+    }
+
+    /**
+     * Create a daemon thread so that an idle loader does not keep the JVM alive.
+     */
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Resident index loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * The number of searches between each ranking
+     */
+    private static final int RANK_INTERVAL = 64;
+
+    private final Executor loader;
+    private final Map<LuceneIndex, Tally> tallies;
+    private final AtomicInteger searches;
+    private volatile long budget;
+
+    /**
+     * Whether the last ranking left any index in RAM
+     */
+    private volatile boolean holding;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(ResidentIndexes.class);
+}
@@ -0,0 +1,139 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An open index: the directory, the searcher over it and the verse ordinals
+ * of its documents. It is reference counted. The LuceneIndex holds one
+ * reference for as long as this is its current searcher, and each search
+ * holds another while it runs. The searcher and directory are closed when
+ * the last reference is released, so swapping in a new searcher never
+ * closes one that a search is still using.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class SearcherHandle {
+    /**
+     * Wrap a newly opened searcher, with one reference held by the caller.
+     * 
+     * @param directory the directory holding the index
+     * @param searcher the searcher over the directory
+     */
+    SearcherHandle(Directory directory, IndexSearcher searcher) {
+        this.directory = directory;
+        this.searcher = searcher;
+        this.refs = new AtomicInteger(1);
+    }
+
+    /**
+     * Take another reference, unless the searcher has already been closed.
+     * 
+     * @return true if a reference was taken
+     */
+    boolean acquire() {
+        while (true) {
+            int count = refs.get();
+            if (count <= 0) {
+                return false;
+            }
+            if (refs.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Give up a reference, closing the searcher and the directory when it
+     * was the last.
+     */
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            IOUtil.close(searcher);
+            IOUtil.close(directory);
+        }
+    }
+
+    /**
+     * @return the searcher
+     */
+    IndexSearcher getSearcher() {
+        return searcher;
+    }
+
+    /**
+     * @return the reader of the searcher
+     */
+    IndexReader getReader() {
+        return searcher.getIndexReader();
+    }
+
+    /**
+     * Get the table of verse ordinals for this searcher, loading or building
+     * it on first use.
+     * 
+     * @param v11n the versification of the book
+     * @param dir where the index is stored
+     * @return the table or null if it could not be had
+     */
+    synchronized VerseOrdinals getVerseOrdinals(Versification v11n, File dir) {
+        if (ordinals == null && !ordinalsFailed) {
+            try {
+                ordinals = VerseOrdinals.open(getReader(), v11n, dir);
+            } catch (IOException e) {
+                // Searching still works, it just has to read each hit.
+                log.warn("Unable to build the verse ordinals for {}", dir, e);
+                ordinalsFailed = true;
+            }
+        }
+        return ordinals;
+    }
+
+    private final Directory directory;
+    private final IndexSearcher searcher;
+    private final AtomicInteger refs;
+
+    /**
+     * The verse ordinals of the documents, once they have been needed.
+     */
+    private VerseOrdinals ordinals;
+
+    /**
+     * Whether the verse ordinals could not be had.
+     */
+    private boolean ordinalsFailed;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(SearcherHandle.class);
+}
@@ -24,8 +24,10 @@ import java.io.IOException;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Searcher;
+import org.crosswire.jsword.passage.BitwisePassage;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchVerseException;
 import org.crosswire.jsword.passage.VerseFactory;
@@ -52,6 +54,28 @@ public class VerseCollector extends Collector {
         this.results = results;
     }
 
+    /**
+     * Create a collector for the searcher that populates results, using a
+     * table of verse ordinals to avoid loading each hit from the index.
+     * 
+     * @param v11n
+     *            the versification to which referenced pertains
+     * @param searcher 
+     * @param results 
+     * @param ordinals
+     *            the verse of each document of the searcher, or null
+     */
+    VerseCollector(Versification v11n, IndexSearcher searcher, Key results, VerseOrdinals ordinals) {
+        this.v11n = v11n;
+        this.searcher = searcher;
+        this.results = results;
+        this.ordinals = ordinals;
+        // Bits can only be set directly when the ordinals agree.
+        if (results instanceof BitwisePassage && ((BitwisePassage) results).getVersification().equals(v11n)) {
+            this.passage = (BitwisePassage) results;
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -70,6 +94,18 @@ public class VerseCollector extends Collector {
      */
     @Override
     public void collect(int docId) throws IOException {
+        if (ordinals != null) {
+            int ordinal = ordinals.getOrdinal(docBase + docId);
+            if (ordinal >= 0) {
+                if (passage != null) {
+                    passage.addVersifiedOrdinal(ordinal);
+                } else {
+                    results.addAll(v11n.decodeOrdinal(ordinal));
+                }
+                return;
+            }
+        }
+
         Document doc = searcher.doc(docBase + docId);
         try {
             Key key = VerseFactory.fromString(v11n, doc.get(LuceneIndex.FIELD_KEY));
@@ -113,4 +149,6 @@ public class VerseCollector extends Collector {
     private Versification v11n;
     private Searcher searcher;
     private Key results;
+    private VerseOrdinals ordinals;
+    private BitwisePassage passage;
 }
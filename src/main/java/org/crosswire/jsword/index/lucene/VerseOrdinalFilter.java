@@ -0,0 +1,93 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.OpenBitSet;
+import org.apache.lucene.util.ReaderUtil;
+
+/**
+ * A Lucene Filter that only lets through the documents of allowed verses.
+ * This is how a passage range becomes part of a single Lucene search rather
+ * than a second set of results to intersect afterwards.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class VerseOrdinalFilter extends Filter {
+    /**
+     * Create a filter for the segments of a reader.
+     * 
+     * @param reader the top level reader being searched
+     * @param ordinals the verse of each document of the reader
+     * @param allowed the ordinals of the verses to let through
+     */
+    VerseOrdinalFilter(IndexReader reader, VerseOrdinals ordinals, BitSet allowed) {
+        this.ordinals = ordinals;
+        this.allowed = allowed;
+        this.docBases = new IdentityHashMap<IndexReader, Integer>();
+
+        // Lucene asks for each segment in turn, so find where each starts.
+        List<IndexReader> segments = new ArrayList<IndexReader>();
+        ReaderUtil.gatherSubReaders(segments, reader);
+        int docBase = 0;
+        for (IndexReader segment : segments) {
+            docBases.put(segment, Integer.valueOf(docBase));
+            docBase += segment.maxDoc();
+        }
+        docBases.put(reader, Integer.valueOf(0));
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.lucene.search.Filter#getDocIdSet(org.apache.lucene.index.IndexReader)
+     */
+    @Override
+    public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+        Integer docBase = docBases.get(reader);
+        if (docBase == null) {
+            // Not a segment of the reader this filter was made for.
+            return DocIdSet.EMPTY_DOCIDSET;
+        }
+
+        int base = docBase.intValue();
+        int maxDoc = reader.maxDoc();
+        OpenBitSet docs = new OpenBitSet(maxDoc);
+        for (int i = 0; i < maxDoc; i++) {
+            int ordinal = ordinals.getOrdinal(base + i);
+            if (ordinal >= 0 && allowed.get(ordinal)) {
+                docs.fastSet(i);
+            }
+        }
+        return docs;
+    }
+
+    private final VerseOrdinals ordinals;
+    private final BitSet allowed;
+    private final Map<IndexReader, Integer> docBases;
+}
@@ -0,0 +1,219 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A table from the document number of each entry in an index to the ordinal
+ * of the verse it holds. With it, a hit can be turned into a verse without
+ * loading the stored document and parsing its key.
+ * 
+ * <p>The table is built from the terms of the key field, so each key is
+ * parsed once however many documents there are. It is kept in the index
+ * directory, marked with the version of the index, and is only rebuilt when
+ * the index changes.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class VerseOrdinals {
+    /**
+     * Create a table of verse ordinals.
+     * 
+     * @param ordinals the verse ordinal of each document, or -1 if the
+     *            document does not hold a single verse
+     */
+    private VerseOrdinals(int[] ordinals) {
+        this.ordinals = ordinals;
+    }
+
+    /**
+     * Get the ordinal of the verse held by a document.
+     * 
+     * @param docId the document number in the top level reader
+     * @return the ordinal or -1 if the document is not a single verse
+     */
+    int getOrdinal(int docId) {
+        return docId >= 0 && docId < ordinals.length ? ordinals[docId] : -1;
+    }
+
+    /**
+     * Load the table for an index, or build and store it if it is missing or
+     * was built for another version of the index.
+     * 
+     * @param reader the top level reader of the index
+     * @param v11n the versification of the book
+     * @param dir the directory of the index
+     * @return the table
+     * @throws IOException if the index cannot be read
+     */
+    static VerseOrdinals open(IndexReader reader, Versification v11n, File dir) throws IOException {
+        File store = new File(dir, FILE_ORDINALS);
+        VerseOrdinals table = load(store, reader, v11n);
+        if (table == null) {
+            table = build(reader, v11n);
+            table.store(store, reader, v11n);
+        }
+        return table;
+    }
+
+    /**
+     * Build the table by walking the terms of the key field.
+     * 
+     * @param reader the top level reader of the index
+     * @param v11n the versification of the book
+     * @return the table
+     * @throws IOException if the index cannot be read
+     */
+    static VerseOrdinals build(IndexReader reader, Versification v11n) throws IOException {
+        int[] ordinals = new int[reader.maxDoc()];
+        Arrays.fill(ordinals, -1);
+
+        TermEnum terms = reader.terms(new Term(LuceneIndex.FIELD_KEY, ""));
+        TermDocs docs = reader.termDocs();
+        try {
+            do {
+                Term term = terms.term();
+                if (term == null || !LuceneIndex.FIELD_KEY.equals(term.field())) {
+                    break;
+                }
+                int ordinal = toOrdinal(v11n, term.text());
+                if (ordinal < 0) {
+                    continue;
+                }
+                docs.seek(terms);
+                while (docs.next()) {
+                    ordinals[docs.doc()] = ordinal;
+                }
+            } while (terms.next());
+        } finally {
+            terms.close();
+            docs.close();
+        }
+
+        return new VerseOrdinals(ordinals);
+    }
+
+    private static int toOrdinal(Versification v11n, String osisRef) {
+        try {
+            return VerseFactory.fromString(v11n, osisRef).getOrdinal();
+        } catch (NoSuchVerseException e) {
+            return -1;
+        }
+    }
+
+    private static VerseOrdinals load(File store, IndexReader reader, Versification v11n) {
+        if (!store.canRead()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(store)));
+            int count = reader.maxDoc();
+            if (in.readInt() != MAGIC || in.readLong() != reader.getVersion()
+                    || !in.readUTF().equals(v11n.getName()) || in.readInt() != count)
+            {
+                log.debug("Stale verse ordinals in {}", store.getPath());
+                return null;
+            }
+
+            int[] ordinals = new int[count];
+            for (int i = 0; i < count; i++) {
+                ordinals[i] = in.readInt();
+            }
+            return new VerseOrdinals(ordinals);
+        } catch (IOException e) {
+            log.warn("Unable to load verse ordinals from {}", store.getPath(), e);
+            return null;
+        } finally {
+            IOUtil.close(in);
+        }
+    }
+
+    /**
+     * Store the table, marked with the version of the index. Failure to store
+     * is logged, as the table can be rebuilt.
+     */
+    private void store(File store, IndexReader reader, Versification v11n) {
+        // Write to the side so that a reader never sees a partial table
+        File temp = new File(store.getPath() + ".tmp");
+        DataOutputStream out = null;
+        boolean written = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeLong(reader.getVersion());
+            out.writeUTF(v11n.getName());
+            out.writeInt(ordinals.length);
+            for (int i = 0; i < ordinals.length; i++) {
+                out.writeInt(ordinals[i]);
+            }
+            out.close();
+            out = null;
+            written = true;
+        } catch (IOException e) {
+            log.warn("Unable to store verse ordinals in {}", store.getPath(), e);
+        } finally {
+            IOUtil.close(out);
+        }
+
+        if (!written || !(temp.renameTo(store) || (store.delete() && temp.renameTo(store)))) {
+            if (!temp.delete()) {
+                temp.deleteOnExit();
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x4A53564F;
+
+    /**
+     * The name of the table in the index directory. Lucene ignores files
+     * that it does not recognize.
+     */
+    private static final String FILE_ORDINALS = "verse-ordinals.dat";
+
+    private final int[] ordinals;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(VerseOrdinals.class);
+}
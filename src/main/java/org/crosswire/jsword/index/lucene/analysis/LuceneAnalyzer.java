@@ -42,7 +42,7 @@ import org.slf4j.LoggerFactory;
  * @see gnu.lgpl.License The GNU Lesser General Public License for details.
  * @author DM Smith
  */
-public class LuceneAnalyzer extends Analyzer {
+public final class LuceneAnalyzer extends Analyzer {
 
     public LuceneAnalyzer(Book book) {
         // The default analysis
@@ -18,6 +18,10 @@
  */
 package org.crosswire.jsword.index.query;
 
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.passage.Key;
+
 /**
  * A binary query has a left query and right query.
  * 
@@ -50,6 +54,18 @@ public abstract class AbstractBinaryQuery implements BinaryQuery {
         return rightQuery;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index)
+     */
+    @Deprecated
+    public Key find(Index index) throws BookException {
+        return find(index, index.getSearchModifier());
+    }
+
     private Query leftQuery;
     private Query rightQuery;
 }
@@ -19,6 +19,10 @@
  */
 package org.crosswire.jsword.index.query;
 
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.passage.Key;
+
 /**
  * A base query is the smallest unit of search that the index can perform.
  * 
@@ -43,5 +47,17 @@ public abstract class AbstractQuery implements Query {
         return query;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index)
+     */
+    @Deprecated
+    public Key find(Index index) throws BookException {
+        return find(index, index.getSearchModifier());
+    }
+
     private String query;
 }
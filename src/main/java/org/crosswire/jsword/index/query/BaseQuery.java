@@ -20,6 +20,7 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
 
 /**
@@ -43,10 +44,10 @@ public class BaseQuery extends AbstractQuery {
      * (non-Javadoc)
      * 
      * @see
-     * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index, org.crosswire.jsword.index.search.SearchModifier)
      */
-    public Key find(Index index) throws BookException {
-        return index.find(getQuery());
+    public Key find(Index index, SearchModifier modifier) throws BookException {
+        return index.find(getQuery(), modifier);
     }
 }
@@ -21,6 +21,7 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
 
 /**
@@ -43,8 +44,20 @@ public class NullQuery implements Query {
      * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
      * .search.Index)
      */
+    @Deprecated
     public Key find(Index index) throws BookException {
         return index.find(null);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index, org.crosswire.jsword.index.search.SearchModifier)
+     */
+    public Key find(Index index, SearchModifier modifier) throws BookException {
+        return index.find(null, modifier);
+    }
+
 }
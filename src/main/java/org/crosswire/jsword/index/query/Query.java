@@ -21,6 +21,7 @@ package org.crosswire.jsword.index.query;
 
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
 
 /**
@@ -31,12 +32,29 @@ import org.crosswire.jsword.passage.Key;
  */
 public interface Query {
     /**
-     * Find the keys that match the query in the index
+     * Find the keys that match the query in the index, using whatever
+     * modifier has been set on the index.
      * 
      * @param index
      *            the index to search
      * @return the set of keys that match
      * @throws BookException
+     * @deprecated use {@link #find(Index, SearchModifier)}
      */
+    @Deprecated
     Key find(Index index) throws BookException;
+
+    /**
+     * Find the keys that match the query in the index. The modifier applies
+     * to this search alone, so that any number of searches may use the same
+     * index at once.
+     * 
+     * @param index
+     *            the index to search
+     * @param modifier
+     *            how to modify the search and its results, or null
+     * @return the set of keys that match
+     * @throws BookException
+     */
+    Key find(Index index, SearchModifier modifier) throws BookException;
 }
@@ -21,6 +21,7 @@ package org.crosswire.jsword.index.query;
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.search.SearchModifier;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 
@@ -46,10 +47,10 @@ public class RangeQuery extends AbstractQuery {
      * (non-Javadoc)
      * 
      * @see
-     * org.crosswire.jsword.index.search.parse.Query#find(org.crosswire.jsword
-     * .index.search.Index)
+     * org.crosswire.jsword.index.query.Query#find(org.crosswire.jsword.index
+     * .Index, org.crosswire.jsword.index.search.SearchModifier)
      */
-    public Key find(Index index) throws BookException {
+    public Key find(Index index, SearchModifier modifier) throws BookException {
         String range = getQuery();
         try {
             return index.getKey(range);
@@ -0,0 +1,77 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.query.Query;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * A Searcher that answers repeated search requests from the
+ * {@link SearchCache}, passing the others on to the real Searcher.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class CachingSearcher implements Searcher {
+    /**
+     * Wrap a searcher of a book.
+     * 
+     * @param book the book being searched
+     * @param searcher the searcher that does the work
+     */
+    CachingSearcher(Book book, Searcher searcher) {
+        this.book = book;
+        this.searcher = searcher;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.search.Searcher#init(org.crosswire.jsword.index.Index)
+     */
+    public void init(Index index) {
+        searcher.init(index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.search.Searcher#search(org.crosswire.jsword.index.search.SearchRequest)
+     */
+    public Key search(SearchRequest request) throws BookException {
+        SearchCache cache = SearchCache.instance();
+        Key results = cache.get(book, request);
+        if (results == null) {
+            long generation = cache.getGeneration();
+            results = searcher.search(request);
+            cache.put(book, request, results, generation);
+        }
+        return results;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.index.search.Searcher#search(org.crosswire.jsword.index.query.Query)
+     */
+    public Key search(Query request) throws BookException {
+        return searcher.search(request);
+    }
+
+    private final Book book;
+    private final Searcher searcher;
+}
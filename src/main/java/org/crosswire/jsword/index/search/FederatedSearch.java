@@ -0,0 +1,391 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.VersificationsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Search many books at once, for example all the installed Bibles or all
+ * the commentaries. Each book is searched with {@link Book#find(SearchRequest)}
+ * on a pool with a fixed number of threads, so repeated searches are still
+ * answered from the {@link SearchCache}.
+ * 
+ * <p>When the results are passages they are merged into one, mapped into a
+ * common versification if one has been set. The results of a ranked search
+ * are merged into a single PassageTally from which only the best verses
+ * across all the books are kept.</p>
+ * 
+ * <p>A book that takes longer than the timeout, counted from when its search
+ * started, is abandoned. {@link #cancel()} abandons every search in
+ * progress, as does interrupting the thread that is waiting for them.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class FederatedSearch {
+    /**
+     * Create a FederatedSearch with a thread for each processor.
+     */
+    public FederatedSearch() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a FederatedSearch that searches at most threadCount books at a
+     * time.
+     * 
+     * @param threadCount the number of books to search at once
+     */
+    public FederatedSearch(int threadCount) {
+        executor = Executors.newFixedThreadPool(Math.max(1, threadCount), new SearchThreadFactory());
+        running = new HashSet<BookSearch>();
+    }
+
+    /**
+     * Set the versification into which the results are mapped before they
+     * are merged. When it is null, results are only merged if they all share
+     * a versification.
+     * 
+     * @param v11n the common versification or null
+     */
+    public void setVersification(Versification v11n) {
+        this.v11n = v11n;
+    }
+
+    /**
+     * @return the common versification or null
+     */
+    public Versification getVersification() {
+        return v11n;
+    }
+
+    /**
+     * Set how long a single book may take to answer.
+     * 
+     * @param timeout the longest time to wait, 0 to wait as long as it takes
+     * @param unit the unit of the timeout
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeout = unit.toNanos(Math.max(0, timeout));
+    }
+
+    /**
+     * Search each of the books for the same request.
+     * 
+     * @param books the books to search
+     * @param request the search request
+     * @return the results of the search
+     */
+    public FederatedSearchResult search(Collection<? extends Book> books, SearchRequest request) {
+        List<BookSearch> searches = new ArrayList<BookSearch>(books.size());
+        List<Book> searched = new ArrayList<Book>(books.size());
+        for (Book book : books) {
+            searched.add(book);
+            searches.add(new BookSearch(book, request));
+        }
+
+        synchronized (running) {
+            running.addAll(searches);
+        }
+
+        FederatedSearchResult result = new FederatedSearchResult(searched);
+        try {
+            for (BookSearch search : searches) {
+                executor.execute(search);
+            }
+
+            for (BookSearch search : searches) {
+                if (!collect(search, result)) {
+                    result.setCancelled(true);
+                    cancel(searches);
+                    break;
+                }
+            }
+        } finally {
+            synchronized (running) {
+                running.removeAll(searches);
+            }
+        }
+
+        result.setMerged(merge(result, request.getSearchModifier()));
+        return result;
+    }
+
+    /**
+     * Abandon all the searches that are in progress. Their results will not
+     * be complete.
+     */
+    public void cancel() {
+        synchronized (running) {
+            cancel(running);
+        }
+    }
+
+    /**
+     * Stop the threads. Searches already in progress are abandoned.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Wait for the search of one book and record its outcome.
+     * 
+     * @param search the search of the book
+     * @param result where to record the outcome
+     * @return false if the search was interrupted
+     */
+    private boolean collect(BookSearch search, FederatedSearchResult result) {
+        Book book = search.getBook();
+        try {
+            result.addResult(book, await(search));
+        } catch (TimeoutException e) {
+            search.cancel(true);
+            log.warn("Search of {} timed out", book.getInitials());
+            result.addTimedOut(book);
+        } catch (CancellationException e) {
+            // The search was cancelled, so only partial results are wanted
+            result.setCancelled(true);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BookException) {
+                result.addFailure(book, (BookException) cause);
+            } else {
+                // TRANSLATOR: Error condition: An unexpected error happened that caused search to fail.
+                result.addFailure(book, new BookException(JSMsg.gettext("Search failed."), cause));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wait until a search is done or has run for longer than the timeout.
+     * Time spent waiting for a thread does not count against the book.
+     * 
+     * @param search the search of the book
+     * @return the result of the search
+     * @throws TimeoutException if the search took too long
+     * @throws InterruptedException if the waiting thread was interrupted
+     * @throws ExecutionException if the search failed
+     */
+    private Key await(BookSearch search) throws TimeoutException, InterruptedException, ExecutionException {
+        if (timeout == 0) {
+            return search.get();
+        }
+
+        while (true) {
+            long wait = timeout;
+            if (search.isStarted()) {
+                wait = search.getStarted() + timeout - System.nanoTime();
+                if (wait <= 0 && !search.isDone()) {
+                    throw new TimeoutException();
+                }
+            }
+            try {
+                return search.get(Math.max(wait, 0), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Check again now that it has had longer to start
+            }
+        }
+    }
+
+    /**
+     * Merge the results of the books into a single Passage.
+     * 
+     * @param result the results of the books
+     * @param modifier how the search was modified
+     * @return the merged result or null if the results are not all Passages
+     *         in a versification that can be shared
+     */
+    private Key merge(FederatedSearchResult result, SearchModifier modifier) {
+        Collection<Key> keys = result.getResults().values();
+        Versification target = v11n;
+        for (Key key : keys) {
+            if (!(key instanceof Passage)) {
+                return null;
+            }
+            Versification keyV11n = ((Passage) key).getVersification();
+            if (target == null) {
+                target = keyV11n;
+            } else if (v11n == null && !target.equals(keyV11n)) {
+                return null;
+            }
+        }
+
+        if (target == null) {
+            return null;
+        }
+
+        VersificationsMapper mapper = VersificationsMapper.instance();
+        if (modifier == null || !modifier.isRanked()) {
+            Passage merged = (Passage) PassageKeyFactory.instance().createEmptyKeyList(target);
+            for (Key key : keys) {
+                merged.addAll(mapper.map((Passage) key, target));
+            }
+            return merged;
+        }
+
+        PassageTally merged = new PassageTally(target);
+        merged.raiseEventSuppresion();
+        merged.raiseNormalizeProtection();
+        int total = 0;
+        for (Key key : keys) {
+            if (key instanceof PassageTally) {
+                PassageTally tally = (PassageTally) key;
+                total += tally.getTotal();
+                Iterator<Key> iter = tally.iterator();
+                while (iter.hasNext()) {
+                    Verse verse = (Verse) iter.next();
+                    merged.add(mapper.mapVerse(verse, target), tally.getTallyOf(verse));
+                }
+            } else {
+                Passage passage = mapper.map((Passage) key, target);
+                total += passage.countVerses();
+                merged.addAll(passage);
+            }
+        }
+        merged.lowerNormalizeProtection();
+        merged.lowerEventSuppressionAndTest();
+
+        merged.setTotal(total);
+        merged.setOrdering(PassageTally.Order.TALLY);
+        int max = modifier.getMaxResults();
+        if (max > 0 && max < Integer.MAX_VALUE) {
+            merged.trimVerses(max);
+        }
+        return merged;
+    }
+
+    /**
+     * Cancel searches.
+     * 
+     * @param searches the searches to cancel
+     */
+    private static void cancel(Collection<BookSearch> searches) {
+        for (BookSearch search : searches) {
+            search.cancel(true);
+        }
+    }
+
+    /**
+     * The search of a single book, which remembers when it started.
+     */
+    private static final class BookSearch extends FutureTask<Key> {
+        BookSearch(final Book book, final SearchRequest request) {
+            super(new Callable<Key>() {
+                public Key call() throws BookException {
+                    return book.find(request);
+                }
+            });
+            this.book = book;
+        }
+
+        @Override
+        public void run() {
+            startTime = System.nanoTime();
+            started = true;
+            super.run();
+        }
+
+        /**
+         * @return the book being searched
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * @return whether the search has started
+         */
+        public boolean isStarted() {
+            return started;
+        }
+
+        /**
+         * @return when the search started, as given by System.nanoTime(),
+         *         if it has started
+         */
+        public long getStarted() {
+            return startTime;
+        }
+
+        private final Book book;
+        private volatile long startTime;
+        private volatile boolean started;
+    }
+
+    /**
+     * Create daemon threads so that an idle pool does not keep the JVM alive.
+     */
+    private static final class SearchThreadFactory implements ThreadFactory {
+        /* (non-Javadoc)
+         * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+         */
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Search-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        private static final AtomicInteger COUNT = new AtomicInteger();
+    }
+
+    private final ExecutorService executor;
+    private final Set<BookSearch> running;
+    private volatile Versification v11n;
+    private volatile long timeout;
+
+    /**
+     * The log stream
+     */
+    private static final Logger log = LoggerFactory.getLogger(FederatedSearch.class);
+}
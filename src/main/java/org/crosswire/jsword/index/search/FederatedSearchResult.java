@@ -0,0 +1,142 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.passage.Key;
+
+/**
+ * The outcome of searching several books with a {@link FederatedSearch}: the
+ * result of each book, why the others gave no result and, when the results
+ * are passages, all of them merged into one.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class FederatedSearchResult {
+    /**
+     * Create an empty result for the books being searched.
+     * 
+     * @param books the books in the order they were given
+     */
+    FederatedSearchResult(List<Book> books) {
+        this.books = Collections.unmodifiableList(new ArrayList<Book>(books));
+        this.results = new LinkedHashMap<Book, Key>();
+        this.failures = new LinkedHashMap<Book, BookException>();
+        this.timedOut = new ArrayList<Book>();
+    }
+
+    /**
+     * @return the books that were searched
+     */
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    /**
+     * Get the result from one book.
+     * 
+     * @param book the book that was searched
+     * @return the result or null if the book gave no result
+     */
+    public Key getResult(Book book) {
+        return results.get(book);
+    }
+
+    /**
+     * @return the result of each book that gave one, in the order of the books
+     */
+    public Map<Book, Key> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return the books whose search failed and why
+     */
+    public Map<Book, BookException> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return the books that did not answer in time
+     */
+    public List<Book> getTimedOut() {
+        return Collections.unmodifiableList(timedOut);
+    }
+
+    /**
+     * The results of all the books as one Passage in a common versification.
+     * A ranked search gives a PassageTally holding only the best verses
+     * across all the books.
+     * 
+     * @return the merged result or null if the results could not be merged
+     */
+    public Key getMerged() {
+        return merged;
+    }
+
+    /**
+     * @return true if the search was cancelled before every book answered
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return true if every book gave a result
+     */
+    public boolean isComplete() {
+        return results.size() == books.size();
+    }
+
+    void addResult(Book book, Key result) {
+        results.put(book, result);
+    }
+
+    void addFailure(Book book, BookException failure) {
+        failures.put(book, failure);
+    }
+
+    void addTimedOut(Book book) {
+        timedOut.add(book);
+    }
+
+    void setMerged(Key merged) {
+        this.merged = merged;
+    }
+
+    void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    private final List<Book> books;
+    private final Map<Book, Key> results;
+    private final Map<Book, BookException> failures;
+    private final List<Book> timedOut;
+    private Key merged;
+    private boolean cancelled;
+}
@@ -0,0 +1,442 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.passage.AbstractPassage;
+import org.crosswire.jsword.passage.BitwisePassage;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A cache of recent search results, keyed by the book, the normalized search
+ * request and how the search was modified.
+ * 
+ * <p>Results are held compactly: a set of verse ordinals for plain results
+ * and parallel arrays of ordinals and scores for ranked results. Each hit in
+ * the cache builds a new Key, so the caller is free to change it. Only
+ * results that are Passages are cached. When the cache is full, the least
+ * recently used result is dropped.</p>
+ * 
+ * <p>The cache must be told when the index of a book changes, by calling
+ * {@link #invalidate(Book)}. A search that was running when the cache was
+ * invalidated does not store its result.</p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public final class SearchCache {
+    /**
+     * Create an empty cache
+     */
+    private SearchCache() {
+        results = new LinkedHashMap<CacheKey, CachedResult>(16, 0.75f, true);
+        maxEntries = DEFAULT_MAX_ENTRIES;
+        enabled = true;
+    }
+
+    /**
+     * @return the singleton
+     */
+    public static SearchCache instance() {
+        return instance;
+    }
+
+    /**
+     * Get a new copy of the result of an earlier search.
+     * 
+     * @param book the book that was searched
+     * @param request the search request
+     * @return the result or null if it is not in the cache
+     */
+    public Key get(Book book, SearchRequest request) {
+        CacheKey key = CacheKey.create(book, request);
+        if (key == null || !enabled) {
+            return null;
+        }
+
+        CachedResult result = null;
+        synchronized (results) {
+            result = results.get(key);
+        }
+
+        if (result == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return result.restore(book);
+    }
+
+    /**
+     * Remember the result of a search. The result is ignored if the cache
+     * has been invalidated since the search started or if it is not a
+     * Passage.
+     * 
+     * @param book the book that was searched
+     * @param request the search request
+     * @param result the result of the search
+     * @param generation the value of {@link #getGeneration()} when the search
+     *            started
+     */
+    public void put(Book book, SearchRequest request, Key result, long generation) {
+        CacheKey key = CacheKey.create(book, request);
+        if (key == null || !enabled || !(result instanceof Passage)) {
+            return;
+        }
+
+        CachedResult cached = null;
+        if (result instanceof PassageTally) {
+            cached = new TallyResult((PassageTally) result);
+        } else {
+            cached = new OrdinalResult((Passage) result);
+        }
+
+        synchronized (results) {
+            if (generation != this.generation) {
+                return;
+            }
+            results.put(key, cached);
+            trim();
+        }
+    }
+
+    /**
+     * Get a value that changes whenever the cache is invalidated. Take this
+     * before starting a search and pass it to
+     * {@link #put(Book, SearchRequest, Key, long)}.
+     * 
+     * @return the current generation of the cache
+     */
+    public long getGeneration() {
+        synchronized (results) {
+            return generation;
+        }
+    }
+
+    /**
+     * Forget all the results for a book, for example when its index has been
+     * created, deleted or replaced.
+     * 
+     * @param book the book whose results are no longer valid
+     */
+    public void invalidate(Book book) {
+        synchronized (results) {
+            generation++;
+            Iterator<CacheKey> iter = results.keySet().iterator();
+            while (iter.hasNext()) {
+                if (iter.next().book.equals(book)) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget all the results.
+     */
+    public void clear() {
+        synchronized (results) {
+            generation++;
+            results.clear();
+        }
+    }
+
+    /**
+     * @return whether search results are cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether search results are cached. Disabling the cache empties it.
+     * 
+     * @param enabled whether search results are cached
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * @return the most results that are kept
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Set the most results that are kept, dropping the least recently used
+     * if there are now too many.
+     * 
+     * @param maxEntries the most results to keep
+     */
+    public void setMaxEntries(int maxEntries) {
+        synchronized (results) {
+            this.maxEntries = Math.max(0, maxEntries);
+            trim();
+        }
+    }
+
+    /**
+     * @return the number of results in the cache
+     */
+    public int size() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * @return the number of searches that were answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of searches that were not in the cache
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of results dropped to make room for others
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the fraction of searches answered from the cache, from 0 to 1
+     */
+    public double getHitRate() {
+        long found = hits.get();
+        long total = found + misses.get();
+        return total == 0 ? 0.0 : (double) found / total;
+    }
+
+    /**
+     * Reset the hit, miss and eviction counts.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    /**
+     * Drop the least recently used results until there is room.
+     * The caller must hold the lock on results.
+     */
+    private void trim() {
+        Iterator<CacheKey> iter = results.keySet().iterator();
+        while (results.size() > maxEntries && iter.hasNext()) {
+            iter.next();
+            iter.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * What a cached result is filed under.
+     */
+    private static final class CacheKey {
+        private CacheKey(Book book, String query, boolean ranked, int maxResults) {
+            this.book = book;
+            this.query = query;
+            this.ranked = ranked;
+            this.maxResults = maxResults;
+            this.hash = (31 * (31 * book.hashCode() + query.hashCode()) + (ranked ? 1 : 0)) * 31 + maxResults;
+        }
+
+        /**
+         * @return the key or null if the request cannot be cached
+         */
+        static CacheKey create(Book book, SearchRequest request) {
+            if (book == null || request == null || request.getRequest() == null) {
+                return null;
+            }
+
+            // Spacing does not change the meaning of a search
+            String query = WHITESPACE.matcher(request.getRequest().trim()).replaceAll(" ");
+            SearchModifier modifier = request.getSearchModifier();
+            boolean ranked = modifier != null && modifier.isRanked();
+            int maxResults = modifier == null ? Integer.MAX_VALUE : modifier.getMaxResults();
+            return new CacheKey(book, query, ranked, maxResults);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) obj;
+            return ranked == that.ranked && maxResults == that.maxResults && query.equals(that.query) && book.equals(that.book);
+        }
+
+        private final Book book;
+        private final String query;
+        private final boolean ranked;
+        private final int maxResults;
+        private final int hash;
+    }
+
+    /**
+     * A search result held in a compact form.
+     */
+    private interface CachedResult {
+        /**
+         * @param book the book that was searched
+         * @return a new copy of the result
+         */
+        Key restore(Book book);
+    }
+
+    /**
+     * An unranked result held as the set of the ordinals of its verses.
+     */
+    private static final class OrdinalResult implements CachedResult {
+        OrdinalResult(Passage passage) {
+            v11n = passage.getVersification();
+            ordinals = new BitSet(v11n.maximumOrdinal() + 1);
+            for (Key key : passage) {
+                ordinals.set(((Verse) key).getOrdinal());
+            }
+        }
+
+        public Key restore(Book book) {
+            Key key = book.createEmptyKeyList();
+            AbstractPassage passage = null;
+            if (key instanceof AbstractPassage) {
+                passage = (AbstractPassage) key;
+                passage.raiseEventSuppresion();
+                passage.raiseNormalizeProtection();
+            }
+
+            boolean direct = key instanceof BitwisePassage && v11n.equals(((Passage) key).getVersification());
+            for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+                if (direct) {
+                    ((BitwisePassage) key).addVersifiedOrdinal(i);
+                } else {
+                    key.addAll(v11n.decodeOrdinal(i));
+                }
+            }
+
+            if (passage != null) {
+                passage.lowerNormalizeProtection();
+                passage.lowerEventSuppressionAndTest();
+            }
+            return key;
+        }
+
+        private final Versification v11n;
+        private final BitSet ordinals;
+    }
+
+    /**
+     * A ranked result held as the ordinals of its verses and their scores.
+     */
+    private static final class TallyResult implements CachedResult {
+        TallyResult(PassageTally tally) {
+            v11n = tally.getVersification();
+            order = tally.getOrdering();
+            total = tally.getTotal();
+            int count = tally.countVerses();
+            ordinals = new int[count];
+            scores = new int[count];
+            int i = 0;
+            for (Key key : tally) {
+                if (i == count) {
+                    break;
+                }
+                Verse verse = (Verse) key;
+                ordinals[i] = verse.getOrdinal();
+                scores[i] = tally.getTallyOf(verse);
+                i++;
+            }
+            size = i;
+        }
+
+        public Key restore(Book book) {
+            PassageTally tally = new PassageTally(v11n);
+            tally.raiseEventSuppresion();
+            tally.raiseNormalizeProtection();
+            for (int i = 0; i < size; i++) {
+                tally.add(v11n.decodeOrdinal(ordinals[i]), scores[i]);
+            }
+            tally.setTotal(total);
+            tally.setOrdering(order);
+            tally.lowerNormalizeProtection();
+            tally.lowerEventSuppressionAndTest();
+            return tally;
+        }
+
+        private final Versification v11n;
+        private final PassageTally.Order order;
+        private final int total;
+        private final int[] ordinals;
+        private final int[] scores;
+        private final int size;
+    }
+
+    /**
+     * The number of results kept unless told otherwise.
+     */
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * The results, in order of use, least recent first.
+     */
+    private final Map<CacheKey, CachedResult> results;
+    private int maxEntries;
+    private long generation;
+    private volatile boolean enabled;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final SearchCache instance = new SearchCache();
+}
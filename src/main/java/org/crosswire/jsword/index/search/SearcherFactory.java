@@ -44,7 +44,8 @@ public final class SearcherFactory {
     }
 
     /**
-     * Create a new Searcher.
+     * Create a new Searcher. Repeated search requests are answered from the
+     * {@link SearchCache}.
      * 
      * @param book the book
      * @return the searcher
@@ -58,7 +59,7 @@ public final class SearcherFactory {
             Searcher parser = PluginUtil.getImplementation(Searcher.class);
             parser.init(index);
 
-            return parser;
+            return new CachingSearcher(book, parser);
         } catch (IOException e) {
             log.error("createSearcher failed", e);
             throw new InstantiationException();
@@ -1213,16 +1213,28 @@ public abstract class AbstractPassage implements Passage {
             }
         } else {
             // otherwise use ranges
+            // These are runs of consecutive ordinals rather than the
+            // VerseRanges of rangeIterator(), which can span a verse 0
+            // that is not in the passage.
+            int[] runs = new int[2 * countVerses()];
+            int n = 0;
+            for (Key aKey : this) {
+                int ord = ((Verse) aKey).getOrdinal();
+                if (n > 0 && runs[n - 2] + runs[n - 1] == ord) {
+                    runs[n - 1]++;
+                } else {
+                    runs[n++] = ord;
+                    runs[n++] = 1;
+                }
+            }
+
             // write the Passage type and the number of ranges
             out.writeInt(RANGED);
-            out.writeInt(countRanges(RestrictionType.NONE));
+            out.writeInt(n / 2);
 
-            // write the verse ordinals in a loop
-            Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
-            while (it.hasNext()) {
-                VerseRange range = it.next();
-                out.writeInt(range.getStart().getOrdinal());
-                out.writeInt(range.getCardinality());
+            // write the start ordinal and verse count of each in a loop
+            for (int i = 0; i < n; i++) {
+                out.writeInt(runs[i]);
             }
         }
 
@@ -1270,7 +1282,7 @@ public abstract class AbstractPassage implements Passage {
         switch (type) {
         case BITWISE:
             BitSet store = (BitSet) is.readObject();
-            for (int i = 0; i < v11n.maximumOrdinal(); i++) {
+            for (int i = 0; i <= v11n.maximumOrdinal(); i++) {
                 if (store.get(i)) {
                     add(v11n.decodeOrdinal(i));
                 }
@@ -0,0 +1,1490 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * A Passage that chooses how to store its verses as it changes, rather than
+ * leaving the caller to choose between the other implementations. The
+ * attributes of the style are:
+ * <ul>
+ * <li>Fast manipulation, including addAll, removeAll and retainAll
+ * <li>Fast getName(), countVerses() and getVerseAt()
+ * <li>Small for small Passages and for large Passages
+ * </ul>
+ * 
+ * <p>
+ * The ordinals of the versification are split into blocks of 1024, in the
+ * manner of a Roaring bitmap. Each block that has any verses in it has a
+ * container that holds them in whichever of three forms is the smallest: a
+ * sorted array of offsets when there are only a few verses, a list of runs
+ * of offsets when the verses are mostly whole chapters or books, or a
+ * bitmap when they are many and scattered. Containers change form as verses
+ * are added and removed, and optimizeReads() makes every container take its
+ * smallest form. Set operations between two AdaptivePassages work a block
+ * at a time, and a block of bitmap is only 16 words long.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class AdaptivePassage extends AbstractPassage {
+    /**
+     * Create an empty AdaptivePassage. There are no ctors from either Verse or
+     * VerseRange so you need to do new <code>AdaptivePassage().add(...);</code>
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     */
+    public AdaptivePassage(Versification v11n) {
+        super(v11n);
+        blocks = new Container[(v11n.maximumOrdinal() >> BLOCK_SHIFT) + 1];
+    }
+
+    /**
+     * Create a Verse from a human readable string. The opposite of getName(),
+     * Given any AdaptivePassage v1, and the following
+     * <code>AdaptivePassage v2 = new AdaptivePassage(v1.getName());</code> Then
+     * <code>v1.equals(v2);</code> Theoretically, since there are many ways of
+     * representing a AdaptivePassage as text string comparison along the lines
+     * of: <code>v1.getName().equals(v2.getName())</code> could be false.
+     * However since getName() is standardized this will be true. We don't need
+     * to worry about thread safety in a ctor since we don't exist yet.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the AdaptivePassage
+     * @param basis
+     *           The basis by which to interpret refs
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected AdaptivePassage(Versification v11n, String refs, Key basis) throws NoSuchVerseException {
+        super(v11n, refs);
+        blocks = new Container[(v11n.maximumOrdinal() >> BLOCK_SHIFT) + 1];
+        addVerses(refs, basis);
+    }
+
+    /**
+     * Create a Verse from a human readable string. The opposite of getName(),
+     * Given any AdaptivePassage v1, and the following
+     * <code>AdaptivePassage v2 = new AdaptivePassage(v1.getName());</code> Then
+     * <code>v1.equals(v2);</code> Theoretically, since there are many ways of
+     * representing a AdaptivePassage as text string comparison along the lines
+     * of: <code>v1.getName().equals(v2.getName())</code> could be false.
+     * However since getName() is standardized this will be true. We don't need
+     * to worry about thread safety in a ctor since we don't exist yet.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param refs
+     *            A String containing the text of the AdaptivePassage
+     * @throws NoSuchVerseException
+     *             If the string is not parsable
+     */
+    protected AdaptivePassage(Versification v11n, String refs) throws NoSuchVerseException {
+        this(v11n, refs, null);
+    }
+
+    @Override
+    public AdaptivePassage clone() {
+        // This gets us a shallow copy
+        AdaptivePassage copy = (AdaptivePassage) super.clone();
+
+        copy.blocks = new Container[blocks.length];
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                copy.blocks[i] = blocks[i].clone();
+            }
+        }
+
+        return copy;
+    }
+
+    @Override
+    public int countVerses() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Key> iterator() {
+        return new VerseIterator();
+    }
+
+    @Override
+    public Iterator<VerseRange> rangeIterator(RestrictionType restrict) {
+        if (RestrictionType.NONE.equals(restrict)) {
+            return new RangeIterator();
+        }
+        return super.rangeIterator(restrict);
+    }
+
+    @Override
+    public Verse getVerseAt(int offset) throws ArrayIndexOutOfBoundsException {
+        if (offset < 0 || offset >= count) {
+            throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(count)));
+        }
+
+        // Skip whole blocks by their cardinality
+        int remaining = offset;
+        for (int i = 0; i < blocks.length; i++) {
+            Container block = blocks[i];
+            if (block != null) {
+                int size = block.cardinality();
+                if (remaining < size) {
+                    return getVersification().decodeOrdinal((i << BLOCK_SHIFT) + block.select(remaining));
+                }
+                remaining -= size;
+            }
+        }
+
+        // cannot get here as count is the sum of the cardinalities
+        assert false;
+        return null;
+    }
+
+    @Override
+    public boolean contains(Key obj) {
+        if (obj instanceof Verse) {
+            return containsOrdinal(((Verse) obj).getOrdinal());
+        }
+
+        if (obj instanceof VerseRange) {
+            VerseRange range = (VerseRange) obj;
+            return containsOrdinals(range.getStart().getOrdinal(), range.getEnd().getOrdinal());
+        }
+
+        for (Key aKey : obj) {
+            if (!containsOrdinal(((Verse) aKey).getOrdinal())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean containsAll(Passage that) {
+        if (!isCompatible(that)) {
+            return super.containsAll(that);
+        }
+
+        // Compare a block at a time
+        Container[] thatBlocks = ((AdaptivePassage) that).blocks;
+        long[] words = new long[BLOCK_WORDS];
+        long[] thatWords = new long[BLOCK_WORDS];
+        for (int i = 0; i < blocks.length; i++) {
+            Container thatBlock = thatBlocks[i];
+            if (thatBlock == null) {
+                continue;
+            }
+
+            Container block = blocks[i];
+            if (block == null || block.cardinality() < thatBlock.cardinality()) {
+                return false;
+            }
+
+            Arrays.fill(words, 0L);
+            Arrays.fill(thatWords, 0L);
+            block.toWords(words);
+            thatBlock.toWords(thatWords);
+            for (int j = 0; j < BLOCK_WORDS; j++) {
+                if ((thatWords[j] & ~words[j]) != 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#add(org.crosswire.jsword.passage.Key)
+     */
+    public void add(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        if (obj instanceof VerseRange) {
+            VerseRange range = (VerseRange) obj;
+            firstVerse = range.getStart();
+            lastVerse = range.getEnd();
+            addOrdinals(firstVerse.getOrdinal(), lastVerse.getOrdinal());
+        } else {
+            for (Key aKey : obj) {
+                lastVerse = (Verse) aKey;
+                if (firstVerse == null) {
+                    firstVerse = lastVerse;
+                }
+                addOrdinal(lastVerse.getOrdinal());
+            }
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalAdded(this, firstVerse, lastVerse);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
+     */
+    public void remove(Key obj) {
+        optimizeWrites();
+
+        Verse firstVerse = null;
+        Verse lastVerse = null;
+        if (obj instanceof VerseRange) {
+            VerseRange range = (VerseRange) obj;
+            firstVerse = range.getStart();
+            lastVerse = range.getEnd();
+            removeOrdinals(firstVerse.getOrdinal(), lastVerse.getOrdinal());
+        } else {
+            for (Key aKey : obj) {
+                lastVerse = (Verse) aKey;
+                if (firstVerse == null) {
+                    firstVerse = lastVerse;
+                }
+                removeOrdinal(lastVerse.getOrdinal());
+            }
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            fireIntervalRemoved(this, firstVerse, lastVerse);
+        }
+    }
+
+    @Override
+    public void addAll(Key key) {
+        //check for key empty. This avoids the AIOBounds with that.getVerseAt, during event firing
+        if (key.isEmpty()) {
+            //nothing to add
+            return;
+        }
+
+        optimizeWrites();
+
+        if (key instanceof Verse) {
+            addOrdinal(((Verse) key).getOrdinal());
+        } else {
+            combine(toBlocks(key), OR);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalAdded(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalAdded(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalAdded(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(Key key) {
+        optimizeWrites();
+
+        if (key instanceof Verse) {
+            removeOrdinal(((Verse) key).getOrdinal());
+        } else {
+            combine(toBlocks(key), AND_NOT);
+        }
+
+        // we do an extra check here because the cost of calculating the
+        // params is non-zero and may be wasted
+        if (suppressEvents == 0 && !key.isEmpty()) {
+            if (key instanceof Passage) {
+                Passage that = (Passage) key;
+                fireIntervalRemoved(this, that.getVerseAt(0), that.getVerseAt(that.countVerses() - 1));
+            } else if (key instanceof VerseRange) {
+                VerseRange that = (VerseRange) key;
+                fireIntervalRemoved(this, that.getStart(), that.getEnd());
+            } else if (key instanceof Verse) {
+                Verse that = (Verse) key;
+                fireIntervalRemoved(this, that, that);
+            }
+        }
+    }
+
+    @Override
+    public void retainAll(Key key) {
+        optimizeWrites();
+
+        combine(toBlocks(key), AND);
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    @Override
+    public void clear() {
+        optimizeWrites();
+
+        Arrays.fill(blocks, null);
+        count = 0;
+
+        fireIntervalRemoved(this, null, null);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    @Override
+    public void blur(int verses, RestrictionType restrict) {
+        blur(verses, restrict, true, true);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType, boolean, boolean)
+     */
+    @Override
+    public void blur(int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
+        assert verses >= 0;
+        optimizeWrites();
+        raiseEventSuppresion();
+        raiseNormalizeProtection();
+
+        Versification v11n = getVersification();
+        int maximumOrdinal = v11n.maximumOrdinal();
+        int down = blurDown ? verses : 0;
+        int up = blurUp ? verses : 0;
+        boolean chapter = RestrictionType.CHAPTER.equals(restrict);
+        AdaptivePassage blurred = new AdaptivePassage(v11n);
+
+        // Work on runs of adjacent verses rather than on single verses, so
+        // that each run is added as a range however wide the blur is.
+        int start = nextSetOrdinal(0);
+        while (start >= 0) {
+            int end = nextClearOrdinal(start) - 1;
+
+            int newStart;
+            int newEnd;
+            if (chapter) {
+                // Clamp to the chapter of each end of the run, just as
+                // RestrictionType.CHAPTER does for a range.
+                Verse first = v11n.decodeOrdinal(start);
+                Verse last = v11n.decodeOrdinal(end);
+                newStart = start - Math.min(down, first.getVerse());
+                newEnd = end + Math.min(up, v11n.getLastVerse(last.getBook(), last.getChapter()) - last.getVerse());
+            } else {
+                newStart = Math.max(1, start - down);
+                newEnd = Math.min(maximumOrdinal, end + up);
+            }
+            blurred.addOrdinals(newStart, newEnd);
+
+            start = nextSetOrdinal(end + 1);
+        }
+
+        blocks = blurred.blocks;
+        count = blurred.count;
+
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
+
+    /**
+     * Put every block into the smallest of its possible forms. Blocks that
+     * grow one verse at a time become bitmaps, and stay that way even when
+     * they would be better held as runs until this is called.
+     * 
+     * @see org.crosswire.jsword.passage.AbstractPassage#optimizeReads()
+     */
+    @Override
+    public void optimizeReads() {
+        long[] words = new long[BLOCK_WORDS];
+        for (int i = 0; i < blocks.length; i++) {
+            if (blocks[i] != null) {
+                Arrays.fill(words, 0L);
+                blocks[i].toWords(words);
+                blocks[i] = Container.fromWords(words);
+            }
+        }
+    }
+
+    /**
+     * Is the verse with this ordinal in the passage?
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     * @return true if it is present
+     */
+    private boolean containsOrdinal(int ordinal) {
+        int index = ordinal >> BLOCK_SHIFT;
+        if (ordinal < 0 || index >= blocks.length) {
+            return false;
+        }
+        Container block = blocks[index];
+        return block != null && block.contains(ordinal & BLOCK_MASK);
+    }
+
+    /**
+     * Are all the verses with ordinals from first to last in the passage?
+     * 
+     * @param first
+     *            the ordinal of the first verse
+     * @param last
+     *            the ordinal of the last verse
+     * @return true if they are all present
+     */
+    private boolean containsOrdinals(int first, int last) {
+        if (first < 0 || (last >> BLOCK_SHIFT) >= blocks.length) {
+            return false;
+        }
+        for (int i = first >> BLOCK_SHIFT; i <= last >> BLOCK_SHIFT; i++) {
+            Container block = blocks[i];
+            int from = Math.max(first, i << BLOCK_SHIFT) & BLOCK_MASK;
+            int to = Math.min(last, (i << BLOCK_SHIFT) + BLOCK_MASK) & BLOCK_MASK;
+            if (block == null || !block.containsAll(from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the verse with this ordinal to the passage.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     */
+    private void addOrdinal(int ordinal) {
+        int index = ordinal >> BLOCK_SHIFT;
+        Container block = blocks[index];
+        if (block == null) {
+            block = new ArrayContainer();
+        }
+        int before = block.cardinality();
+        block = block.add(ordinal & BLOCK_MASK);
+        count += block.cardinality() - before;
+        blocks[index] = block;
+    }
+
+    /**
+     * Remove the verse with this ordinal from the passage.
+     * 
+     * @param ordinal
+     *            the ordinal of the verse
+     */
+    private void removeOrdinal(int ordinal) {
+        int index = ordinal >> BLOCK_SHIFT;
+        Container block = blocks[index];
+        if (block != null) {
+            count -= block.cardinality();
+            block = block.remove(ordinal & BLOCK_MASK);
+            if (block != null) {
+                count += block.cardinality();
+            }
+            blocks[index] = block;
+        }
+    }
+
+    /**
+     * Add the verses with ordinals from first to last to the passage, a
+     * block at a time.
+     * 
+     * @param first
+     *            the ordinal of the first verse
+     * @param last
+     *            the ordinal of the last verse
+     */
+    private void addOrdinals(int first, int last) {
+        updateOrdinals(first, last, true);
+    }
+
+    /**
+     * Remove the verses with ordinals from first to last from the passage,
+     * a block at a time.
+     * 
+     * @param first
+     *            the ordinal of the first verse
+     * @param last
+     *            the ordinal of the last verse
+     */
+    private void removeOrdinals(int first, int last) {
+        updateOrdinals(first, last, false);
+    }
+
+    /**
+     * Add or remove the verses with ordinals from first to last.
+     */
+    private void updateOrdinals(int first, int last, boolean add) {
+        long[] words = new long[BLOCK_WORDS];
+        for (int i = first >> BLOCK_SHIFT; i <= last >> BLOCK_SHIFT; i++) {
+            Container block = blocks[i];
+            if (block == null && !add) {
+                continue;
+            }
+
+            Arrays.fill(words, 0L);
+            if (block != null) {
+                count -= block.cardinality();
+                block.toWords(words);
+            }
+
+            int from = Math.max(first, i << BLOCK_SHIFT) & BLOCK_MASK;
+            int to = Math.min(last, (i << BLOCK_SHIFT) + BLOCK_MASK) & BLOCK_MASK;
+            for (int j = from >> 6; j <= to >> 6; j++) {
+                // the bits of word j from from to to
+                long mask = -1L;
+                if (j == from >> 6) {
+                    mask &= -1L << from;
+                }
+                if (j == to >> 6) {
+                    mask &= -1L >>> (63 - (to & 63));
+                }
+                if (add) {
+                    words[j] |= mask;
+                } else {
+                    words[j] &= ~mask;
+                }
+            }
+
+            block = Container.fromWords(words);
+            if (block != null) {
+                count += block.cardinality();
+            }
+            blocks[i] = block;
+        }
+    }
+
+    /**
+     * Combine the blocks of another passage into this one, a block at a time.
+     * 
+     * @param thatBlocks
+     *            the blocks of the other passage
+     * @param op
+     *            one of OR, AND or AND_NOT
+     */
+    private void combine(Container[] thatBlocks, int op) {
+        long[] words = new long[BLOCK_WORDS];
+        long[] thatWords = new long[BLOCK_WORDS];
+        for (int i = 0; i < blocks.length; i++) {
+            Container block = blocks[i];
+            Container thatBlock = thatBlocks[i];
+
+            // Most blocks can be settled without looking inside them
+            if (thatBlock == null) {
+                if (op == AND && block != null) {
+                    count -= block.cardinality();
+                    blocks[i] = null;
+                }
+                continue;
+            }
+            if (block == null) {
+                if (op == OR) {
+                    block = thatBlock.clone();
+                    count += block.cardinality();
+                    blocks[i] = block;
+                }
+                continue;
+            }
+
+            Arrays.fill(words, 0L);
+            Arrays.fill(thatWords, 0L);
+            block.toWords(words);
+            thatBlock.toWords(thatWords);
+            for (int j = 0; j < BLOCK_WORDS; j++) {
+                if (op == OR) {
+                    words[j] |= thatWords[j];
+                } else if (op == AND) {
+                    words[j] &= thatWords[j];
+                } else {
+                    words[j] &= ~thatWords[j];
+                }
+            }
+
+            count -= block.cardinality();
+            block = Container.fromWords(words);
+            if (block != null) {
+                count += block.cardinality();
+            }
+            blocks[i] = block;
+        }
+    }
+
+    /**
+     * Get the verses of a key as blocks so that they can be combined with
+     * the blocks of this passage. Another AdaptivePassage gives up its own
+     * blocks, the ranges of a VerseRange or RangedPassage are added a block
+     * at a time, and anything else is walked a verse at a time.
+     * 
+     * @param key
+     *            the key to convert
+     * @return the blocks of the key, which must not be modified
+     */
+    private Container[] toBlocks(Key key) {
+        if (isCompatible(key)) {
+            return ((AdaptivePassage) key).blocks;
+        }
+
+        AdaptivePassage that = new AdaptivePassage(getVersification());
+        if (key instanceof Verse) {
+            that.addOrdinal(((Verse) key).getOrdinal());
+        } else if (key instanceof VerseRange) {
+            VerseRange range = (VerseRange) key;
+            that.addOrdinals(range.getStart().getOrdinal(), range.getEnd().getOrdinal());
+        } else if (key instanceof RangedPassage) {
+            // Only a RangedPassage holds every verse of its ranges. The
+            // ranges of other passages can span a verse 0 they do not hold.
+            Iterator<VerseRange> it = ((RangedPassage) key).rangeIterator(RestrictionType.NONE);
+            while (it.hasNext()) {
+                VerseRange range = it.next();
+                that.addOrdinals(range.getStart().getOrdinal(), range.getEnd().getOrdinal());
+            }
+        } else {
+            for (Key aKey : key) {
+                that.addOrdinal(((Verse) aKey).getOrdinal());
+            }
+        }
+        return that.blocks;
+    }
+
+    /**
+     * Is the key an AdaptivePassage whose blocks line up with ours?
+     */
+    private boolean isCompatible(Key key) {
+        return key instanceof AdaptivePassage && ((AdaptivePassage) key).blocks.length == blocks.length;
+    }
+
+    /**
+     * Find the first ordinal at or after from that is in the passage.
+     * 
+     * @param from
+     *            the ordinal to start looking at
+     * @return the next ordinal in the passage, or -1 if there is none
+     */
+    private int nextSetOrdinal(int from) {
+        int offset = from & BLOCK_MASK;
+        for (int i = from >> BLOCK_SHIFT; i < blocks.length; i++) {
+            Container block = blocks[i];
+            if (block != null) {
+                int next = block.nextSetBit(offset);
+                if (next >= 0) {
+                    return (i << BLOCK_SHIFT) + next;
+                }
+            }
+            offset = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * Find the first ordinal at or after from that is not in the passage.
+     * 
+     * @param from
+     *            the ordinal to start looking at
+     * @return the next ordinal not in the passage
+     */
+    private int nextClearOrdinal(int from) {
+        int offset = from & BLOCK_MASK;
+        for (int i = from >> BLOCK_SHIFT; i < blocks.length; i++) {
+            Container block = blocks[i];
+            if (block == null) {
+                return (i << BLOCK_SHIFT) + offset;
+            }
+            int next = block.nextClearBit(offset);
+            if (next < BLOCK_SIZE) {
+                return (i << BLOCK_SHIFT) + next;
+            }
+            offset = 0;
+        }
+        return blocks.length << BLOCK_SHIFT;
+    }
+
+    /**
+     * Iterate over the Verses
+     */
+    private final class VerseIterator implements Iterator<Key> {
+        /**
+         * Find the first verse
+         */
+        VerseIterator() {
+            current = -1;
+            next = nextSetOrdinal(0);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            current = next;
+            next = nextSetOrdinal(current + 1);
+
+            return getVersification().decodeOrdinal(current);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws IllegalStateException {
+            if (current < 0) {
+                throw new IllegalStateException();
+            }
+            removeOrdinal(current);
+            current = -1;
+        }
+
+        /**
+         * The Verse last returned by next(), or -1
+         */
+        private int current;
+
+        /**
+         * What is the next Verse to be considered
+         */
+        private int next;
+    }
+
+    /**
+     * Iterate over the unrestricted ranges by finding runs of ordinals,
+     * rather than by looking at each verse in turn.
+     */
+    private final class RangeIterator implements Iterator<VerseRange> {
+        /**
+         * Find the first verse
+         */
+        RangeIterator() {
+            next = nextSetOrdinal(0);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public VerseRange next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Versification v11n = getVersification();
+            int first = next;
+            int last = nextClearOrdinal(first) - 1;
+            next = nextSetOrdinal(last + 1);
+
+            // Consecutive ordinals are always adjacent verses. Runs that are
+            // further apart may still be, when all that is between them is
+            // a verse 0, and those are joined just as they are for every
+            // other Passage.
+            while (next >= 0 && v11n.isAdjacentVerse(v11n.decodeOrdinal(last), v11n.decodeOrdinal(next))) {
+                last = nextClearOrdinal(next) - 1;
+                next = nextSetOrdinal(last + 1);
+            }
+
+            return new VerseRange(v11n, v11n.decodeOrdinal(first), v11n.decodeOrdinal(last));
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * The first ordinal of the next range, or -1
+         */
+        private int next;
+    }
+
+    /**
+     * The verses of one block of ordinals, as offsets from the start of the
+     * block. Adding or removing an offset returns the container that now
+     * holds the block, which need not be the same one, and is null when the
+     * block is empty.
+     */
+    private abstract static class Container implements Cloneable {
+        /**
+         * @return the number of offsets in the container
+         */
+        abstract int cardinality();
+
+        /**
+         * @param offset
+         *            the offset to look for
+         * @return whether the offset is in the container
+         */
+        abstract boolean contains(int offset);
+
+        /**
+         * @param from
+         *            the first offset to look for
+         * @param to
+         *            the last offset to look for
+         * @return whether every offset from first to last is in the container
+         */
+        abstract boolean containsAll(int from, int to);
+
+        /**
+         * @param from
+         *            the offset to start looking at
+         * @return the first offset at or after from, or -1
+         */
+        abstract int nextSetBit(int from);
+
+        /**
+         * @param from
+         *            the offset to start looking at
+         * @return the first offset at or after from that is not in the
+         *         container, which may be BLOCK_SIZE
+         */
+        abstract int nextClearBit(int from);
+
+        /**
+         * @param index
+         *            which offset is wanted, counting from 0
+         * @return the offset
+         */
+        abstract int select(int index);
+
+        /**
+         * Set the bits of the offsets in the container.
+         * 
+         * @param words
+         *            a bitmap of BLOCK_WORDS words
+         */
+        abstract void toWords(long[] words);
+
+        /**
+         * @param offset
+         *            the offset to add
+         * @return the container that holds the block now
+         */
+        abstract Container add(int offset);
+
+        /**
+         * @param offset
+         *            the offset to remove
+         * @return the container that holds the block now, or null if it is
+         *         empty
+         */
+        abstract Container remove(int offset);
+
+        @Override
+        protected Container clone() {
+            Container copy = null;
+            try {
+                copy = (Container) super.clone();
+            } catch (CloneNotSupportedException e) {
+                assert false : e;
+            }
+            return copy;
+        }
+
+        /**
+         * Choose the smallest container for a bitmap of a block. An array
+         * costs 2 bytes an offset, runs cost 4 bytes a run and a bitmap
+         * costs 8 bytes a word. When they are equal a bitmap is preferred,
+         * then an array.
+         * 
+         * @param words
+         *            a bitmap of BLOCK_WORDS words
+         * @return the new container, or null if the bitmap is empty
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            int runs = 0;
+            long carry = 0;
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                long word = words[i];
+                cardinality += Long.bitCount(word);
+                // A run starts at each bit that is set after one that is not
+                runs += Long.bitCount(word & ~((word << 1) | carry));
+                carry = word >>> 63;
+            }
+
+            if (cardinality == 0) {
+                return null;
+            }
+            int runSize = 4 * runs;
+            int arraySize = 2 * cardinality;
+            int bitmapSize = 8 * BLOCK_WORDS;
+            if (runSize < arraySize && runSize < bitmapSize) {
+                return new RunContainer(words, runs, cardinality);
+            }
+            if (arraySize < bitmapSize) {
+                return new ArrayContainer(words, cardinality);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+    }
+
+    /**
+     * A sorted array of offsets, for blocks with few verses.
+     */
+    private static final class ArrayContainer extends Container {
+        /**
+         * An empty container
+         */
+        ArrayContainer() {
+            values = new short[4];
+        }
+
+        /**
+         * A container for the bits of a bitmap
+         */
+        ArrayContainer(long[] words, int cardinality) {
+            values = new short[cardinality];
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (short) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        boolean contains(int offset) {
+            return Arrays.binarySearch(values, 0, size, (short) offset) >= 0;
+        }
+
+        @Override
+        boolean containsAll(int from, int to) {
+            // The offsets are distinct and sorted, so from to to are all
+            // present if to is as far along as from is
+            int index = Arrays.binarySearch(values, 0, size, (short) from);
+            int last = index + to - from;
+            return index >= 0 && last < size && values[last] == to;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int index = Arrays.binarySearch(values, 0, size, (short) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < size ? values[index] : -1;
+        }
+
+        @Override
+        int nextClearBit(int from) {
+            int index = Arrays.binarySearch(values, 0, size, (short) from);
+            if (index < 0) {
+                return from;
+            }
+            while (index + 1 < size && values[index + 1] == values[index] + 1) {
+                index++;
+            }
+            return values[index] + 1;
+        }
+
+        @Override
+        int select(int index) {
+            return values[index];
+        }
+
+        @Override
+        void toWords(long[] words) {
+            for (int i = 0; i < size; i++) {
+                words[values[i] >> 6] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        Container add(int offset) {
+            int index = Arrays.binarySearch(values, 0, size, (short) offset);
+            if (index >= 0) {
+                return this;
+            }
+
+            if (size == ARRAY_MAX) {
+                long[] words = new long[BLOCK_WORDS];
+                toWords(words);
+                Container bitmap = new BitmapContainer(words, size);
+                return bitmap.add(offset);
+            }
+
+            if (size == values.length) {
+                short[] grown = new short[Math.min(ARRAY_MAX, size * 2)];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            index = -index - 1;
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = (short) offset;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(int offset) {
+            int index = Arrays.binarySearch(values, 0, size, (short) offset);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return size == 0 ? null : this;
+        }
+
+        @Override
+        protected ArrayContainer clone() {
+            ArrayContainer copy = (ArrayContainer) super.clone();
+            copy.values = values.clone();
+            return copy;
+        }
+
+        /**
+         * The offsets, in order
+         */
+        private short[] values;
+
+        /**
+         * How many of values are in use
+         */
+        private int size;
+    }
+
+    /**
+     * A bitmap of offsets, for blocks with many scattered verses.
+     */
+    private static final class BitmapContainer extends Container {
+        /**
+         * A container for a copy of a bitmap
+         */
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words.clone();
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int offset) {
+            return (words[offset >> 6] & (1L << offset)) != 0;
+        }
+
+        @Override
+        boolean containsAll(int from, int to) {
+            return nextClearBit(from) > to;
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int i = from >> 6;
+            long word = words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BLOCK_WORDS) {
+                    return -1;
+                }
+                word = words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int nextClearBit(int from) {
+            int i = from >> 6;
+            long word = ~words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BLOCK_WORDS) {
+                    return BLOCK_SIZE;
+                }
+                word = ~words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int select(int index) {
+            int remaining = index;
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                long word = words[i];
+                int bits = Long.bitCount(word);
+                if (remaining < bits) {
+                    for (; remaining > 0; remaining--) {
+                        word &= word - 1;
+                    }
+                    return (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+                remaining -= bits;
+            }
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        @Override
+        void toWords(long[] bits) {
+            for (int i = 0; i < BLOCK_WORDS; i++) {
+                bits[i] |= words[i];
+            }
+        }
+
+        @Override
+        Container add(int offset) {
+            long bit = 1L << offset;
+            if ((words[offset >> 6] & bit) == 0) {
+                words[offset >> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(int offset) {
+            long bit = 1L << offset;
+            if ((words[offset >> 6] & bit) != 0) {
+                words[offset >> 6] &= ~bit;
+                cardinality--;
+                if (cardinality < ARRAY_MAX) {
+                    return fromWords(words);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        protected BitmapContainer clone() {
+            BitmapContainer copy = (BitmapContainer) super.clone();
+            copy.words = words.clone();
+            return copy;
+        }
+
+        /**
+         * A bit for each offset
+         */
+        private long[] words;
+
+        /**
+         * The number of bits set in words
+         */
+        private int cardinality;
+    }
+
+    /**
+     * A sorted list of runs of offsets, for blocks that are mostly whole
+     * chapters or books. The runs are never changed in place; adding or
+     * removing an offset makes a new container.
+     */
+    private static final class RunContainer extends Container {
+        /**
+         * A container for the runs of a bitmap
+         */
+        RunContainer(long[] words, int runs, int cardinality) {
+            this.starts = new short[runs];
+            this.ends = new short[runs];
+            this.cardinality = cardinality;
+            int run = 0;
+            int offset = nextSet(words, 0);
+            while (offset >= 0) {
+                starts[run] = (short) offset;
+                offset = nextClear(words, offset);
+                ends[run++] = (short) (offset - 1);
+                offset = nextSet(words, offset);
+            }
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(int offset) {
+            int run = findRun(offset);
+            return run >= 0 && offset <= ends[run];
+        }
+
+        @Override
+        boolean containsAll(int from, int to) {
+            int run = findRun(from);
+            return run >= 0 && to <= ends[run];
+        }
+
+        @Override
+        int nextSetBit(int from) {
+            int run = findRun(from);
+            if (run >= 0 && from <= ends[run]) {
+                return from;
+            }
+            return run + 1 < starts.length ? starts[run + 1] : -1;
+        }
+
+        @Override
+        int nextClearBit(int from) {
+            int run = findRun(from);
+            if (run >= 0 && from <= ends[run]) {
+                return ends[run] + 1;
+            }
+            return from;
+        }
+
+        @Override
+        int select(int index) {
+            int remaining = index;
+            for (int run = 0; run < starts.length; run++) {
+                int length = ends[run] - starts[run] + 1;
+                if (remaining < length) {
+                    return starts[run] + remaining;
+                }
+                remaining -= length;
+            }
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+
+        @Override
+        void toWords(long[] words) {
+            for (int run = 0; run < starts.length; run++) {
+                int from = starts[run];
+                int to = ends[run];
+                for (int j = from >> 6; j <= to >> 6; j++) {
+                    long mask = -1L;
+                    if (j == from >> 6) {
+                        mask &= -1L << from;
+                    }
+                    if (j == to >> 6) {
+                        mask &= -1L >>> (63 - (to & 63));
+                    }
+                    words[j] |= mask;
+                }
+            }
+        }
+
+        @Override
+        Container add(int offset) {
+            if (contains(offset)) {
+                return this;
+            }
+            long[] words = new long[BLOCK_WORDS];
+            toWords(words);
+            words[offset >> 6] |= 1L << offset;
+            return fromWords(words);
+        }
+
+        @Override
+        Container remove(int offset) {
+            if (!contains(offset)) {
+                return this;
+            }
+            long[] words = new long[BLOCK_WORDS];
+            toWords(words);
+            words[offset >> 6] &= ~(1L << offset);
+            return fromWords(words);
+        }
+
+        /**
+         * Find the last run that starts at or before offset.
+         * 
+         * @param offset
+         *            the offset to look for
+         * @return the index of the run, or -1 if every run starts after it
+         */
+        private int findRun(int offset) {
+            int low = 0;
+            int high = starts.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= offset) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return high;
+        }
+
+        private static int nextSet(long[] words, int from) {
+            if (from >= BLOCK_SIZE) {
+                return -1;
+            }
+            int i = from >> 6;
+            long word = words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BLOCK_WORDS) {
+                    return -1;
+                }
+                word = words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        private static int nextClear(long[] words, int from) {
+            int i = from >> 6;
+            long word = ~words[i] & (-1L << from);
+            while (word == 0) {
+                if (++i == BLOCK_WORDS) {
+                    return BLOCK_SIZE;
+                }
+                word = ~words[i];
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        /**
+         * The first offset of each run
+         */
+        private short[] starts;
+
+        /**
+         * The last offset of each run
+         */
+        private short[] ends;
+
+        /**
+         * The number of offsets in all the runs
+         */
+        private int cardinality;
+    }
+
+    /**
+     * Call the support mechanism in AbstractPassage
+     * 
+     * @param out
+     *            The stream to write our state to
+     * @serialData Write the ordinal number of this verse
+     * @see AbstractPassage#writeObjectSupport(ObjectOutputStream)
+     * @throws IOException
+     *             if the read fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        // Save off the versification by name
+        out.writeUTF(getVersification().getName());
+
+        writeObjectSupport(out);
+    }
+
+    /**
+     * Call the support mechanism in AbstractPassage
+     * 
+     * @param in
+     *            The stream to read our state from
+     * @throws IOException
+     *             if the read fails
+     * @throws ClassNotFoundException
+     *             If the read data is incorrect
+     * @serialData Write the ordinal number of this verse
+     * @see AbstractPassage#readObjectSupport(ObjectInputStream)
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        optimizeWrites();
+
+        in.defaultReadObject();
+
+        // Read the versification by name
+        String v11nName = in.readUTF();
+        Versification v11n = Versifications.instance().getVersification(v11nName);
+
+        blocks = new Container[(v11n.maximumOrdinal() >> BLOCK_SHIFT) + 1];
+        count = 0;
+
+        readObjectSupport(in);
+    }
+
+    /**
+     * Each block holds this many bits worth of ordinals
+     */
+    private static final int BLOCK_SHIFT = 10;
+
+    /**
+     * The number of ordinals in a block
+     */
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /**
+     * The offset of an ordinal within its block
+     */
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    /**
+     * The number of words in the bitmap of a block
+     */
+    private static final int BLOCK_WORDS = BLOCK_SIZE >> 6;
+
+    /**
+     * The most offsets held in an array before it is no smaller than a bitmap
+     */
+    private static final int ARRAY_MAX = BLOCK_WORDS * 4;
+
+    /**
+     * Ways of combining the blocks of two passages
+     */
+    private static final int OR = 0;
+    private static final int AND = 1;
+    private static final int AND_NOT = 2;
+
+    /**
+     * To make serialization work across new versions
+     */
+    private static final long serialVersionUID = 5349807285744373154L;
+
+    /**
+     * The container of each block of ordinals, or null for an empty block
+     */
+    private transient Container[] blocks;
+
+    /**
+     * The number of verses in all the blocks
+     */
+    private transient int count;
+}
@@ -223,12 +223,7 @@ public class BitwisePassage extends AbstractPassage {
 
         optimizeWrites();
 
-        if (key instanceof BitwisePassage) {
-            BitwisePassage thatRef = (BitwisePassage) key;
-            store.or(thatRef.store);
-        } else {
-            super.addAll(key);
-        }
+        store.or(toStore(key));
 
         // we do an extra check here because the cost of calculating the
         // params is non-zero and may be wasted
@@ -250,13 +245,7 @@ public class BitwisePassage extends AbstractPassage {
     public void removeAll(Key key) {
         optimizeWrites();
 
-        if (key instanceof BitwisePassage) {
-            BitwisePassage thatRef = (BitwisePassage) key;
-
-            store.andNot(thatRef.store);
-        } else {
-            super.removeAll(key);
-        }
+        store.andNot(toStore(key));
 
         // we do an extra check here because the cost of calculating the
         // params is non-zero and may be wasted
@@ -278,21 +267,7 @@ public class BitwisePassage extends AbstractPassage {
     public void retainAll(Key key) {
         optimizeWrites();
 
-        BitSet thatStore = null;
-        if (key instanceof BitwisePassage) {
-            thatStore = ((BitwisePassage) key).store;
-        } else {
-            Versification v11n = getVersification();
-            thatStore = new BitSet(v11n.maximumOrdinal() + 1);
-
-            for (Key aKey : key) {
-                int ord = ((Verse) aKey).getOrdinal();
-                if (store.get(ord)) {
-                    thatStore.set(ord);
-                }
-            }
-        }
-        store.and(thatStore);
+        store.and(toStore(key));
 
         fireIntervalRemoved(this, null, null);
     }
@@ -321,34 +296,93 @@ public class BitwisePassage extends AbstractPassage {
     public synchronized void blur(int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) {
         assert verses >= 0;
         optimizeWrites();
+        raiseEventSuppresion();
         raiseNormalizeProtection();
 
-        if (!restrict.equals(RestrictionType.NONE)) {
-            super.blur(verses, restrict);
-        } else {
-            optimizeWrites();
-            raiseEventSuppresion();
-            raiseNormalizeProtection();
+        Versification v11n = getVersification();
+        int maximumOrdinal = v11n.maximumOrdinal();
+        int down = blurDown ? verses : 0;
+        int up = blurUp ? verses : 0;
+        boolean chapter = RestrictionType.CHAPTER.equals(restrict);
+        BitSet newStore = new BitSet(maximumOrdinal + 1);
+
+        // Work on runs of adjacent verses rather than on single verses, so
+        // that each run costs one word-level set() however wide the blur is.
+        int start = store.nextSetBit(0);
+        while (start >= 0) {
+            int end = store.nextClearBit(start) - 1;
+
+            int newStart;
+            int newEnd;
+            if (chapter) {
+                // Clamp to the chapter of each end of the run, just as
+                // RestrictionType.CHAPTER does for a range.
+                Verse first = v11n.decodeOrdinal(start);
+                Verse last = v11n.decodeOrdinal(end);
+                newStart = start - Math.min(down, first.getVerse());
+                newEnd = end + Math.min(up, v11n.getLastVerse(last.getBook(), last.getChapter()) - last.getVerse());
+            } else {
+                newStart = Math.max(1, start - down);
+                newEnd = Math.min(maximumOrdinal, end + up);
+            }
+            newStore.set(newStart, newEnd + 1);
 
-            int maximumOrdinal = getVersification().maximumOrdinal();
-            BitSet newStore = new BitSet(maximumOrdinal + 1);
+            start = end < maximumOrdinal ? store.nextSetBit(end + 1) : -1;
+        }
 
-            for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i + 1)) {
-                int start = Math.max(1, i - (blurDown ? verses : 0));
-                int end = Math.min(maximumOrdinal, i + (blurUp ? verses : 0));
+        store = newStore;
 
-                for (int j = start; j <= end; j++) {
-                    newStore.set(j);
-                }
-            }
+        lowerNormalizeProtection();
+        if (lowerEventSuppressionAndTest()) {
+            fireIntervalAdded(this, null, null);
+        }
+    }
 
-            store = newStore;
+    /**
+     * Get the verses of a key as a BitSet of ordinals so that they can be
+     * combined with the store a word at a time. Another BitwisePassage
+     * gives up its own store, the ranges of a VerseRange or RangedPassage are
+     * set a run at a time, and anything else is walked a verse at a time.
+     * 
+     * @param key
+     *            the key to convert
+     * @return the ordinals in the key, which must not be modified
+     */
+    private BitSet toStore(Key key) {
+        if (key instanceof BitwisePassage) {
+            return ((BitwisePassage) key).store;
+        }
 
-            lowerNormalizeProtection();
-            if (lowerEventSuppressionAndTest()) {
-                fireIntervalAdded(this, null, null);
+        BitSet thatStore = new BitSet(getVersification().maximumOrdinal() + 1);
+        if (key instanceof Verse) {
+            thatStore.set(((Verse) key).getOrdinal());
+        } else if (key instanceof VerseRange) {
+            setRange(thatStore, (VerseRange) key);
+        } else if (key instanceof RangedPassage) {
+            // Only a RangedPassage holds every verse of its ranges. The
+            // ranges of other passages can span a verse 0 they do not hold.
+            Iterator<VerseRange> it = ((RangedPassage) key).rangeIterator(RestrictionType.NONE);
+            while (it.hasNext()) {
+                setRange(thatStore, it.next());
+            }
+        } else {
+            for (Key aKey : key) {
+                thatStore.set(((Verse) aKey).getOrdinal());
             }
         }
+        return thatStore;
+    }
+
+    /**
+     * Set the ordinals of a range in a BitSet.
+     * 
+     * @param bits
+     *            the BitSet to update
+     * @param range
+     *            the verses to set
+     */
+    private static void setRange(BitSet bits, VerseRange range) {
+        bits.set(range.getStart().getOrdinal(), range.getEnd().getOrdinal() + 1);
     }
 
     /**
@@ -0,0 +1,794 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.crosswire.jsword.JSMsg;
+import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+
+/**
+ * An immutable copy of a Passage, which can be cached and shared between
+ * threads without locking.
+ * 
+ * <p>
+ * The verses are held in the more compact of two forms, chosen by density:
+ * sorted arrays of the first and last ordinal of each run when the
+ * verses are in a few long runs, or a bitmap with a bit for each ordinal
+ * when they are scattered. Either way all the state is set in the
+ * constructor and never changes, and any attempt to alter the passage
+ * throws an IllegalStateException. Unlike AbstractPassage, it keeps no
+ * listeners, parent or event counters, as there is nothing to tell anyone.
+ * </p>
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+final class FrozenPassage implements Passage {
+    /**
+     * Make an immutable copy of a Passage.
+     * 
+     * @param ref
+     *            The Passage to copy
+     */
+    FrozenPassage(Passage ref) {
+        this(ref.getVersification(), toBitSet(ref));
+    }
+
+    /**
+     * Build a FrozenPassage from a bit for each ordinal in it.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param store
+     *            The ordinals in the passage, which must not be changed
+     *            afterwards
+     */
+    private FrozenPassage(Versification v11n, BitSet store) {
+        this.v11n = v11n;
+
+        // Count the runs of consecutive ordinals
+        int runs = 0;
+        for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(store.nextClearBit(i))) {
+            runs++;
+        }
+
+        // A run costs two ints and 64 ordinals of bitmap cost two ints,
+        // so use whichever needs fewer.
+        int words = (v11n.maximumOrdinal() >> 6) + 1;
+        if (runs > words) {
+            this.bits = store;
+            this.starts = null;
+            this.ends = null;
+        } else {
+            this.bits = null;
+            this.starts = new int[runs];
+            this.ends = new int[runs];
+            int run = 0;
+            for (int i = store.nextSetBit(0); i >= 0; i = store.nextSetBit(i)) {
+                starts[run] = i;
+                i = store.nextClearBit(i);
+                ends[run++] = i - 1;
+            }
+        }
+        this.verseCount = store.cardinality();
+
+        // Ranges are counted the way every other Passage counts them,
+        // where the last verse of a chapter and the first verse of the
+        // next are adjacent even though the verse 0 between them is not.
+        int ranges = 0;
+        for (Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE); it.hasNext(); it.next()) {
+            ranges++;
+        }
+        this.rangeCount = ranges;
+    }
+
+    /**
+     * Get the ordinals of the verses in a Passage, whatever order they come in.
+     */
+    private static BitSet toBitSet(Passage ref) {
+        BitSet store = new BitSet(ref.getVersification().maximumOrdinal() + 1);
+        for (Key key : ref) {
+            store.set(((Verse) key).getOrdinal());
+        }
+        return store;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#getVersification()
+     */
+    public Versification getVersification() {
+        return v11n;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#reversify(org.crosswire.jsword.versification.Versification)
+     */
+    public Passage reversify(Versification newVersification) {
+        if (v11n.equals(newVersification)) {
+            return this;
+        }
+        throw new UnsupportedOperationException();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#isWhole()
+     */
+    public boolean isWhole() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.VerseKey#getWhole()
+     */
+    public Passage getWhole() {
+        throw new UnsupportedOperationException();
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Iterable#iterator()
+     */
+    public Iterator<Key> iterator() {
+        return new VerseIterator();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#rangeIterator(org.crosswire.jsword.passage.RestrictionType)
+     */
+    public Iterator<VerseRange> rangeIterator(RestrictionType restrict) {
+        return new AbstractPassage.VerseRangeIterator(v11n, iterator(), restrict);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#isEmpty()
+     */
+    public boolean isEmpty() {
+        return verseCount == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#countVerses()
+     */
+    public int countVerses() {
+        return verseCount;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getCardinality()
+     */
+    public int getCardinality() {
+        return verseCount;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#countRanges(org.crosswire.jsword.passage.RestrictionType)
+     */
+    public int countRanges(RestrictionType restrict) {
+        if (restrict.equals(RestrictionType.NONE)) {
+            return rangeCount;
+        }
+
+        int count = 0;
+        for (Iterator<VerseRange> it = rangeIterator(restrict); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#hasRanges(org.crosswire.jsword.passage.RestrictionType)
+     */
+    public boolean hasRanges(RestrictionType restrict) {
+        if (restrict.equals(RestrictionType.NONE)) {
+            return rangeCount > 1;
+        }
+
+        Iterator<VerseRange> it = rangeIterator(restrict);
+        if (it.hasNext()) {
+            it.next();
+            return it.hasNext();
+        }
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#booksInPassage()
+     */
+    public int booksInPassage() {
+        BibleBook currentBook = null;
+        int bookCount = 0;
+        for (Key key : this) {
+            Verse verse = (Verse) key;
+            if (currentBook != verse.getBook()) {
+                currentBook = verse.getBook();
+                bookCount++;
+            }
+        }
+        return bookCount;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#getVerseAt(int)
+     */
+    public Verse getVerseAt(int offset) throws ArrayIndexOutOfBoundsException {
+        if (offset >= 0 && offset < verseCount) {
+            if (bits == null) {
+                int remaining = offset;
+                for (int i = 0; i < starts.length; i++) {
+                    int size = ends[i] - starts[i] + 1;
+                    if (remaining < size) {
+                        return v11n.decodeOrdinal(starts[i] + remaining);
+                    }
+                    remaining -= size;
+                }
+            }
+
+            int ord = bits.nextSetBit(0);
+            for (int i = 0; i < offset; i++) {
+                ord = bits.nextSetBit(ord + 1);
+            }
+            return v11n.decodeOrdinal(ord);
+        }
+
+        throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(verseCount)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#get(int)
+     */
+    public Key get(int index) {
+        return getVerseAt(index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#getRangeAt(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    public VerseRange getRangeAt(int offset, RestrictionType restrict) throws ArrayIndexOutOfBoundsException {
+        Iterator<VerseRange> it = rangeIterator(restrict);
+        for (int i = 0; it.hasNext(); i++) {
+            VerseRange range = it.next();
+            if (i == offset) {
+                return range;
+            }
+        }
+
+        throw new ArrayIndexOutOfBoundsException(JSOtherMsg.lookupText("Index out of range (Given {0,number,integer}, Max {1,number,integer}).", Integer.valueOf(offset), Integer.valueOf(verseCount)));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#indexOf(org.crosswire.jsword.passage.Key)
+     */
+    public int indexOf(Key that) {
+        int index = 0;
+        for (Key key : this) {
+            if (key.equals(that)) {
+                return index;
+            }
+            index++;
+        }
+        return -1;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#contains(org.crosswire.jsword.passage.Key)
+     */
+    public boolean contains(Key key) {
+        if (key instanceof Verse) {
+            int ord = ((Verse) key).getOrdinal();
+            return containsOrdinals(ord, ord);
+        }
+
+        if (key instanceof VerseRange) {
+            VerseRange range = (VerseRange) key;
+            return containsOrdinals(range.getStart().getOrdinal(), range.getEnd().getOrdinal());
+        }
+
+        return containsAll(KeyUtil.getPassage(key));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#containsAll(org.crosswire.jsword.passage.Passage)
+     */
+    public boolean containsAll(Passage that) {
+        // The ranges of a Passage can span a verse 0 that it does not
+        // contain, so check verse by verse.
+        for (Key key : that) {
+            int ord = ((Verse) key).getOrdinal();
+            if (!containsOrdinals(ord, ord)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Are all the ordinals from first to last in this passage?
+     */
+    private boolean containsOrdinals(int first, int last) {
+        if (bits != null) {
+            return first >= 0 && bits.nextClearBit(first) > last;
+        }
+
+        // Find the last run that starts at or before first
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= first) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high >= 0 && ends[high] >= last;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#canHaveChildren()
+     */
+    public boolean canHaveChildren() {
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getChildCount()
+     */
+    public int getChildCount() {
+        return 0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getParent()
+     */
+    public Key getParent() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getName()
+     */
+    public String getName() {
+        StringBuilder retcode = new StringBuilder();
+        Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
+        Verse current = null;
+        while (it.hasNext()) {
+            VerseRange range = it.next();
+            if (current != null) {
+                retcode.append(AbstractPassage.REF_PREF_DELIM);
+            }
+            retcode.append(range.getName(current));
+            current = range.getStart();
+        }
+        return retcode.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getName(org.crosswire.jsword.passage.Key)
+     */
+    public String getName(Key base) {
+        return getName();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getRootName()
+     */
+    public String getRootName() {
+        Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
+        if (it.hasNext()) {
+            return it.next().getRootName();
+        }
+        return getName();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getOsisRef()
+     */
+    public String getOsisRef() {
+        StringBuilder retcode = new StringBuilder();
+        Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
+        while (it.hasNext()) {
+            if (retcode.length() > 0) {
+                retcode.append(AbstractPassage.REF_OSIS_DELIM);
+            }
+            retcode.append(it.next().getOsisRef());
+        }
+        return retcode.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#getOsisID()
+     */
+    public String getOsisID() {
+        StringBuilder retcode = new StringBuilder();
+        Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
+        while (it.hasNext()) {
+            if (retcode.length() > 0) {
+                retcode.append(AbstractPassage.REF_OSIS_DELIM);
+            }
+            retcode.append(it.next().getOsisID());
+        }
+        return retcode.toString();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#getOverview()
+     */
+    public String getOverview() {
+        // TRANSLATOR: The same message as AbstractPassage.getOverview(). See there for how it works.
+        return JSMsg.gettext("{0,number,integer} {0,choice,0#verses|1#verse|1<verses} in {1,number,integer} {1,choice,0#books|1#book|1<books}",
+                Integer.valueOf(verseCount), Integer.valueOf(booksInPassage()
+                ));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#writeDescription(java.io.Writer)
+     */
+    public void writeDescription(Writer out) throws IOException {
+        BufferedWriter bout = new BufferedWriter(out);
+        bout.write(v11n.getName());
+        bout.newLine();
+
+        Iterator<VerseRange> it = rangeIterator(RestrictionType.NONE);
+        while (it.hasNext()) {
+            bout.write(it.next().getName());
+            bout.newLine();
+        }
+
+        bout.flush();
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#optimizeReads()
+     */
+    public void optimizeReads() {
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(Key obj) {
+        Passage thatref = (Passage) obj;
+        if (thatref.countVerses() == 0) {
+            if (verseCount == 0) {
+                return 0;
+            }
+            // that is empty so he should come before me
+            return -1;
+        }
+
+        if (verseCount == 0) {
+            // we are empty be he isn't so we are first
+            return 1;
+        }
+
+        return v11n.distance(thatref.getVerseAt(0), getVerseAt(0));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        // Like AbstractPassage, any kind of Passage may be equal to this one
+        if (!(obj instanceof Passage)) {
+            return false;
+        }
+        if (obj instanceof FrozenPassage) {
+            FrozenPassage that = (FrozenPassage) obj;
+            if (verseCount != that.verseCount || rangeCount != that.rangeCount) {
+                return false;
+            }
+        }
+        return ((Passage) obj).getOsisRef().equals(getOsisRef());
+    }
+
+    @Override
+    public int hashCode() {
+        // The state never changes, so the hash need only be worked out once
+        int hash = hashValue;
+        if (hash == 0) {
+            hash = getOsisRef().hashCode();
+            hashValue = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * A FrozenPassage cannot change, so it is its own copy.
+     * 
+     * @return this FrozenPassage
+     */
+    @Override
+    public FrozenPassage clone() {
+        return this;
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#trimVerses(int)
+     */
+    public Passage trimVerses(int count) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#trimRanges(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    public Passage trimRanges(int count, RestrictionType restrict) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#add(org.crosswire.jsword.passage.Key)
+     */
+    public void add(Key key) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#remove(org.crosswire.jsword.passage.Key)
+     */
+    public void remove(Key key) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#addAll(org.crosswire.jsword.passage.Key)
+     */
+    public void addAll(Key key) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#removeAll(org.crosswire.jsword.passage.Key)
+     */
+    public void removeAll(Key key) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#retainAll(org.crosswire.jsword.passage.Key)
+     */
+    public void retainAll(Key key) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#clear()
+     */
+    public void clear() {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType)
+     */
+    public void blur(int by, RestrictionType restrict) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Key#blur(int, org.crosswire.jsword.passage.RestrictionType, boolean, boolean)
+     */
+    public void blur(int by, RestrictionType restrict, boolean blurDown, boolean blurUp) {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /* (non-Javadoc)
+     * @see org.crosswire.jsword.passage.Passage#readDescription(java.io.Reader)
+     */
+    public void readDescription(Reader in) throws IOException, NoSuchVerseException {
+        throw new IllegalStateException(JSOtherMsg.lookupText("Cannot alter a read-only passage"));
+    }
+
+    /**
+     * A FrozenPassage never changes, so there is nothing to listen to.
+     * 
+     * @param li
+     *            The listener, which is not kept
+     */
+    public void addPassageListener(PassageListener li) {
+    }
+
+    /**
+     * A FrozenPassage never changes, so there is nothing to listen to.
+     * 
+     * @param li
+     *            The listener, which was not kept
+     */
+    public void removePassageListener(PassageListener li) {
+    }
+
+    /**
+     * Serialize the runs of ordinals, rather than the working state.
+     * 
+     * @return the serialized form of this FrozenPassage
+     * @throws ObjectStreamException
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        int[] runs = new int[verseCount * 2];
+        int n = 0;
+        Iterator<Key> it = iterator();
+        while (it.hasNext()) {
+            int ord = ((Verse) it.next()).getOrdinal();
+            if (n > 0 && runs[n - 1] == ord - 1) {
+                runs[n - 1] = ord;
+            } else {
+                runs[n++] = ord;
+                runs[n++] = ord;
+            }
+        }
+        int[] trimmed = new int[n];
+        System.arraycopy(runs, 0, trimmed, 0, n);
+        return new SerializedForm(v11n.getName(), trimmed);
+    }
+
+    /**
+     * The form in which a FrozenPassage is serialized.
+     */
+    private static final class SerializedForm implements Serializable {
+        SerializedForm(String v11nName, int[] ranges) {
+            this.v11nName = v11nName;
+            this.ranges = ranges;
+        }
+
+        /**
+         * Rebuild the FrozenPassage
+         * 
+         * @return the FrozenPassage
+         * @throws ObjectStreamException
+         */
+        private Object readResolve() throws ObjectStreamException {
+            Versification v11n = Versifications.instance().getVersification(v11nName);
+            BitSet store = new BitSet(v11n.maximumOrdinal() + 1);
+            for (int i = 0; i + 1 < ranges.length; i += 2) {
+                store.set(ranges[i], ranges[i + 1] + 1);
+            }
+            return new FrozenPassage(v11n, store);
+        }
+
+        /**
+         * The name of the versification
+         */
+        private String v11nName;
+
+        /**
+         * Pairs of first and last ordinals of each run of verses
+         */
+        private int[] ranges;
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = -2263484066389394447L;
+    }
+
+    /**
+     * Iterate over the verses, from either form of storage.
+     */
+    private final class VerseIterator implements Iterator<Key> {
+        /**
+         * Find the first verse
+         */
+        protected VerseIterator() {
+            if (bits != null) {
+                next = bits.nextSetBit(0);
+            } else if (starts.length > 0) {
+                next = starts[0];
+            } else {
+                next = -1;
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#hasNext()
+         */
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#next()
+         */
+        public Key next() throws NoSuchElementException {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+
+            Key retcode = v11n.decodeOrdinal(next);
+            if (bits != null) {
+                next = bits.nextSetBit(next + 1);
+            } else if (next < ends[range]) {
+                next++;
+            } else if (++range < starts.length) {
+                next = starts[range];
+            } else {
+                next = -1;
+            }
+
+            return retcode;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.Iterator#remove()
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+
+        /** The ordinal of the next verse, or -1 when there are no more */
+        private int next;
+
+        /** The index of the run containing next, when stored as runs */
+        private int range;
+    }
+
+    /**
+     * The Versification to which this Passage belongs
+     */
+    private final transient Versification v11n;
+
+    /**
+     * The number of verses
+     */
+    private final int verseCount;
+
+    /**
+     * The number of unrestricted ranges
+     */
+    private final int rangeCount;
+
+    /**
+     * The first ordinal of each run, or null when stored as a bitmap
+     */
+    private final int[] starts;
+
+    /**
+     * The last ordinal of each run, or null when stored as a bitmap
+     */
+    private final int[] ends;
+
+    /**
+     * A bit for each ordinal in the passage, or null when stored as runs
+     */
+    private final BitSet bits;
+
+    /**
+     * The lazily computed hash code
+     */
+    private transient int hashValue;
+
+    /**
+     * Serialization ID
+     */
+    private static final long serialVersionUID = 6470524391632479112L;
+}
@@ -19,6 +19,8 @@
  */
 package org.crosswire.jsword.passage;
 
+import java.util.Locale;
+
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 
@@ -55,6 +57,45 @@ public final class KeyUtil {
         }
     }
 
+    /**
+     * Get the keys whose names are at or after from and before to, comparing
+     * the names in lower case for the locale. Every key is looked at, so
+     * books that can do better should.
+     * 
+     * @param keys
+     *            The keys to look through
+     * @param from
+     *            The first name to find
+     * @param to
+     *            The name before which to stop
+     * @param maxCount
+     *            The most keys to return
+     * @param locale
+     *            The locale used to fold the names to lower case
+     * @return The matching keys
+     */
+    public static Key getKeysInRange(Key keys, String from, String to, int maxCount, Locale locale) {
+        Key result = new DefaultKeyList();
+        if (keys == null || maxCount < 1) {
+            return result;
+        }
+
+        String start = from.toLowerCase(locale);
+        String end = to.toLowerCase(locale);
+        int count = 0;
+        for (Key key : keys) {
+            String name = key.getName().toLowerCase(locale);
+            if (name.compareTo(start) >= 0 && name.compareTo(end) < 0) {
+                result.addAll(key);
+                // Have we seen enough?
+                if (++count >= maxCount) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Cast a Key to a Verse. Only those keys that are a Verse or can
      * contain Verses (i.e. Passage and VerseRange) may be cast to one.
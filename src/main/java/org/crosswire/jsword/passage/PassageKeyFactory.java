@@ -22,8 +22,14 @@ package org.crosswire.jsword.passage;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.crosswire.jsword.JSOtherMsg;
+import org.crosswire.jsword.internationalisation.LocaleProviderManager;
+import org.crosswire.jsword.versification.BibleNames;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
 
@@ -102,7 +108,13 @@ public final class PassageKeyFactory {
      * @return the Passage with all the Verses in the Versification
      */
     public Key getGlobalKeyList(Versification v11n) {
-        return new ReadOnlyPassage(KeyUtil.getPassage(v11n.getAllVerses()), true);
+        // The whole Bible is frozen once per Versification and then shared.
+        Passage all = globalKeyLists.get(v11n);
+        if (all == null) {
+            all = new FrozenPassage(KeyUtil.getPassage(v11n.getAllVerses()));
+            globalKeyLists.put(v11n, all);
+        }
+        return new ReadOnlyPassage(all, true);
     }
 
     /**
@@ -156,6 +168,51 @@ public final class PassageKeyFactory {
      *             If the passageReference has anything that could not be understood as a Verse
      */
     public Passage getKey(Versification v11n, String passageReference, Key basis) throws NoSuchKeyException {
+        // A basis changes how a reference is understood,
+        // so only references that stand on their own are cached.
+        if (basis != null || passageReference == null || parseCacheSize <= 0) {
+            return parse(v11n, passageReference, basis);
+        }
+
+        // Book names are looked up in the user's locale, so that is part of the key.
+        ParseKey cacheKey = new ParseKey(v11n, LocaleProviderManager.getLocale(), passageReference);
+        int generation = BibleNames.instance().getGeneration();
+        Passage cached = null;
+        synchronized (parseCache) {
+            // Anything parsed before book names changed may now mean something else
+            if (generation != parseCacheGeneration) {
+                parseCache.clear();
+                parseCacheGeneration = generation;
+            }
+            cached = parseCache.get(cacheKey);
+        }
+        if (cached != null) {
+            return (Passage) cached.clone();
+        }
+
+        Passage ref = parse(v11n, passageReference, null);
+        synchronized (parseCache) {
+            if (generation == parseCacheGeneration) {
+                parseCache.put(cacheKey, (Passage) ref.clone());
+            }
+        }
+        return ref;
+    }
+
+    /**
+     * Parse the passageReference, trying harder each time it fails.
+     * 
+     * @param v11n
+     *            The Versification to which this Passage belongs.
+     * @param passageReference
+     *            A String containing the text for the Passage
+     * @param basis
+     *           The basis by which to interpret passageReference
+     * @return a new Passage filled with the desired Verses
+     * @throws NoSuchKeyException
+     *             If the passageReference has anything that could not be understood as a Verse
+     */
+    private Passage parse(Versification v11n, String passageReference, Key basis) throws NoSuchKeyException {
         // since normalization is relatively expensive
         // don't try it unless it solves a problem.
         try {
@@ -195,6 +252,42 @@ public final class PassageKeyFactory {
      */
     public static void setDefaultType(PassageType newDefaultType) {
         PassageKeyFactory.defaultType = newDefaultType;
+        clearParseCache();
+    }
+
+    /**
+     * Set how many of the most recently parsed references are remembered, so
+     * that parsing them again only costs a copy of the Passage. A size of 0
+     * turns the cache off.
+     * 
+     * @param size
+     *            The number of references to remember.
+     */
+    public static void setParseCacheSize(int size) {
+        synchronized (parseCache) {
+            parseCacheSize = size;
+            parseCache.clear();
+        }
+    }
+
+    /**
+     * Get how many of the most recently parsed references are remembered.
+     * 
+     * @return the size of the parse cache
+     */
+    public static int getParseCacheSize() {
+        return parseCacheSize;
+    }
+
+    /**
+     * Forget all remembered references. This should be called when something
+     * changes how references are understood. Changes to how BibleNames
+     * understands book names are noticed without this.
+     */
+    public static void clearParseCache() {
+        synchronized (parseCache) {
+            parseCache.clear();
+        }
     }
 
     /**
@@ -214,6 +307,7 @@ public final class PassageKeyFactory {
      * <li>PassageType.SIZE
      * <li>PassageType.MIX
      * <li>PassageType.TALLY
+     * <li>PassageType.ADAPTIVE
      * </ul>
      * 
      * @param newDefaultType
@@ -259,6 +353,24 @@ public final class PassageKeyFactory {
         return new ReadOnlyPassage(ref, ignore);
     }
 
+    /**
+     * Get an immutable copy of a Passage. Unlike a synchronized or read-only
+     * Passage, which proxy to the original, the copy is independent of the
+     * original, needs no locking and is stored compactly, so it can be cached
+     * and shared freely between threads. Any attempt to alter it throws an
+     * IllegalStateException.
+     * 
+     * @param ref
+     *            The passage to copy
+     * @return An immutable copy of the passage
+     */
+    public static Passage getFrozenPassage(Passage ref) {
+        if (ref instanceof FrozenPassage) {
+            return ref;
+        }
+        return new FrozenPassage(ref);
+    }
+
     /**
      * Convert us to a binary representation. There are some distinctly
      * endianist happenings here, but that is OK because we are reading the
@@ -652,11 +764,81 @@ public final class PassageKeyFactory {
         return buf.toString();
     }
 
+    /**
+     * The key to a parsed reference. The same reference can mean different
+     * verses in different versifications and different locales.
+     */
+    private static final class ParseKey {
+        ParseKey(Versification v11n, Locale locale, String reference) {
+            this.v11n = v11n;
+            this.locale = locale;
+            this.reference = reference;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 + v11n.hashCode();
+            result = 31 * result + (locale == null ? 0 : locale.hashCode());
+            return 31 * result + reference.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ParseKey)) {
+                return false;
+            }
+            ParseKey that = (ParseKey) obj;
+            return v11n.equals(that.v11n)
+                    && (locale == null ? that.locale == null : locale.equals(that.locale))
+                    && reference.equals(that.reference);
+        }
+
+        private Versification v11n;
+        private Locale locale;
+        private String reference;
+    }
+
     /**
      * The default type
      */
     private static PassageType defaultType = PassageType.SPEED;
 
+    /**
+     * The frozen whole Bible for each Versification
+     */
+    private static final Map<Versification, Passage> globalKeyLists = new ConcurrentHashMap<Versification, Passage>();
+
+    /**
+     * The number of parsed references to remember
+     */
+    private static volatile int parseCacheSize = 256;
+
+    /**
+     * The generation of book name lookup that the parse cache was filled
+     * under. Guarded by parseCache.
+     */
+    private static int parseCacheGeneration;
+
+    /**
+     * The most recently parsed references, least recently used first. The
+     * Passages held here are private copies, which are cloned on the way out
+     * so that callers are free to change what they get.
+     */
+    private static final Map<ParseKey, Passage> parseCache = new LinkedHashMap<ParseKey, Passage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ParseKey, Passage> eldest) {
+            return size() > parseCacheSize;
+        }
+
+        /**
+         * Serialization ID
+         */
+        private static final long serialVersionUID = 3257289127069386032L;
+    };
+
     /**
      * How we create Passages
      */
@@ -23,6 +23,7 @@ package org.crosswire.jsword.passage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -235,7 +236,7 @@ public class PassageTally extends AbstractPassage {
                 maxCount = Integer.MAX_VALUE;
             }
 
-            Iterator<Key> it = new OrderedVerseIterator(getVersification(), board);
+            Iterator<Key> it = new OrderedVerseIterator(getVersification(), rank(board, size, maxCount));
             Key current = null;
             int count = 0;
 
@@ -280,7 +281,7 @@ public class PassageTally extends AbstractPassage {
             maxCount = Integer.MAX_VALUE;
         }
 
-        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), board);
+        OrderedVerseIterator it = new OrderedVerseIterator(getVersification(), rank(board, size, maxCount));
         int count = 0;
 
         while (it.hasNext() && count < maxCount) {
@@ -309,7 +310,7 @@ public class PassageTally extends AbstractPassage {
         if (order == Order.BIBLICAL) {
             return new VerseIterator();
         }
-        return new OrderedVerseIterator(getVersification(), board);
+        return new OrderedVerseIterator(getVersification(), rank(board, size, Integer.MAX_VALUE));
     }
 
     @Override
@@ -363,6 +364,28 @@ public class PassageTally extends AbstractPassage {
         return tally > 0 ? pos : -1;
     }
 
+    /**
+     * Get the <code>count</code> highest ranked verses in this tally, highest
+     * first, with ties broken by Biblical order. Unlike iterating in
+     * Order.TALLY, this only ranks as many verses as are asked for and does
+     * not create a Verse for each of them, so it is the cheap way to get at
+     * the best few hits of a large search.
+     * 
+     * @param count
+     *            The maximum number of verses to return
+     * @return The ordinals and tallies of the highest ranked verses
+     */
+    public Ranking topVerses(int count) {
+        long[] ranked = rank(board, size, count);
+        int[] ordinals = new int[ranked.length];
+        int[] tallies = new int[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            ordinals[i] = unpackOrdinal(ranked[i]);
+            tallies[i] = unpackTally(ranked[i]);
+        }
+        return new Ranking(getVersification(), ordinals, tallies);
+    }
+
     /**
      * Add/Increment this verses in the rankings
      * 
@@ -535,26 +558,44 @@ public class PassageTally extends AbstractPassage {
     public Passage trimVerses(int count) {
         optimizeWrites();
 
-        int i = 0;
-        boolean overflow = false;
-
-        Passage remainder = this.clone();
+        if (size <= count) {
+            return null;
+        }
 
-        for (Key verse : this) {
-            i++;
-            if (i > count) {
-                remove(verse);
-                overflow = true;
-            } else {
-                remainder.remove(verse);
+        // Work out which verses survive without ordering the rest
+        boolean[] keep = new boolean[board.length];
+        if (order == Order.BIBLICAL) {
+            int kept = 0;
+            for (int i = 0; i < board.length && kept < count; i++) {
+                if (board[i] != 0) {
+                    keep[i] = true;
+                    kept++;
+                }
+            }
+        } else {
+            for (long packed : rank(board, size, count)) {
+                keep[unpackOrdinal(packed)] = true;
             }
-
         }
 
-        if (overflow) {
-            return remainder;
+        PassageTally remainder = this.clone();
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != 0) {
+                if (keep[i]) {
+                    remainder.kill(i);
+                } else {
+                    kill(i);
+                }
+            }
         }
-        return null;
+
+        // Either half may have lost the verse with the highest tally
+        resetMax();
+        remainder.resetMax();
+
+        fireIntervalRemoved(this, null, null);
+
+        return remainder;
     }
 
     /**
@@ -643,6 +684,125 @@ public class PassageTally extends AbstractPassage {
         }
     }
 
+    /**
+     * Select the <code>limit</code> highest ranked entries of a board, best
+     * first. Each entry is a verse packed into a long by {@link #pack(int, int)}
+     * so that a plain numeric comparison gives the tally order, which lets us
+     * use a primitive heap and sort rather than a tree of objects.
+     * 
+     * @param board
+     *            The tallies to rank
+     * @param count
+     *            The number of non-zero entries in the board
+     * @param limit
+     *            The maximum number of entries to return
+     * @return the packed entries, highest rank first
+     */
+    private static long[] rank(int[] board, int count, int limit) {
+        if (limit >= count) {
+            // Everything is wanted, so a straight sort is cheapest
+            long[] all = new long[count];
+            int n = 0;
+            for (int i = 0; i < board.length && n < count; i++) {
+                if (board[i] != 0) {
+                    all[n++] = pack(i, board[i]);
+                }
+            }
+            Arrays.sort(all, 0, n);
+            return reverse(all, n);
+        }
+
+        // Keep the best limit entries in a min-heap, whose root is the
+        // weakest entry still in the running.
+        long[] heap = new long[Math.max(limit, 0)];
+        int n = 0;
+        for (int i = 0; i < board.length && heap.length > 0; i++) {
+            if (board[i] != 0) {
+                long packed = pack(i, board[i]);
+                if (n < heap.length) {
+                    heap[n] = packed;
+                    siftUp(heap, n++);
+                } else if (packed > heap[0]) {
+                    heap[0] = packed;
+                    siftDown(heap, n);
+                }
+            }
+        }
+        Arrays.sort(heap, 0, n);
+        return reverse(heap, n);
+    }
+
+    /**
+     * Restore the heap property after adding an entry at the bottom.
+     */
+    private static void siftUp(long[] heap, int pos) {
+        int child = pos;
+        long entry = heap[child];
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[child] = heap[parent];
+            child = parent;
+        }
+        heap[child] = entry;
+    }
+
+    /**
+     * Restore the heap property after replacing the root.
+     */
+    private static void siftDown(long[] heap, int n) {
+        int parent = 0;
+        long entry = heap[0];
+        int half = n >>> 1;
+        while (parent < half) {
+            int child = 2 * parent + 1;
+            if (child + 1 < n && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (entry <= heap[child]) {
+                break;
+            }
+            heap[parent] = heap[child];
+            parent = child;
+        }
+        heap[parent] = entry;
+    }
+
+    /**
+     * Copy the first n entries of an ascending array into descending order.
+     */
+    private static long[] reverse(long[] sorted, int n) {
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = sorted[n - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * Pack a verse and its tally so that a higher tally gives a larger
+     * number, and for equal tallies an earlier verse gives a larger number.
+     * 
+     * @param ord
+     *            the ordinal of the verse
+     * @param tally
+     *            the rank of the verse
+     * @return the packed entry
+     */
+    private static long pack(int ord, int tally) {
+        return ((long) tally << 32) | (Integer.MAX_VALUE - ord);
+    }
+
+    private static int unpackOrdinal(long packed) {
+        return Integer.MAX_VALUE - (int) packed;
+    }
+
+    private static int unpackTally(long packed) {
+        return (int) (packed >>> 32);
+    }
+
     /**
      * Sometimes we end up not knowing what the max is - this makes sure we know
      * accurately. Same with size.
@@ -889,36 +1049,34 @@ public class PassageTally extends AbstractPassage {
      */
     private static final class OrderedVerseIterator implements Iterator<Key> {
         /**
-         * Find the first unused verse
+         * Iterate over verses that have already been ranked
+         * 
+         * @param v11n
+         *            the versification to which the verses belong
+         * @param ranked
+         *            the packed verses, highest rank first
          */
-        protected OrderedVerseIterator(Versification v11n, int[] board) {
+        protected OrderedVerseIterator(Versification v11n, long[] ranked) {
             referenceSystem = v11n;
-            TreeSet<TalliedVerse> output = new TreeSet<TalliedVerse>();
-
-            int vib = board.length - 1;
-            for (int i = 0; i <= vib; i++) {
-                if (board[i] != 0) {
-                    output.add(new TalliedVerse(i, board[i]));
-                }
-            }
-
-            it = output.iterator();
-            last = null;
+            this.ranked = ranked;
+            next = 0;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#hasNext()
          */
         public boolean hasNext() {
-            return it.hasNext();
+            return next < ranked.length;
         }
 
         /* (non-Javadoc)
          * @see java.util.Iterator#next()
          */
         public Key next() throws NoSuchElementException {
-            last = it.next();
-            return referenceSystem.decodeOrdinal(last.ord);
+            if (next >= ranked.length) {
+                throw new NoSuchElementException();
+            }
+            return referenceSystem.decodeOrdinal(unpackOrdinal(ranked[next++]));
         }
 
         /* (non-Javadoc)
@@ -934,8 +1092,8 @@ public class PassageTally extends AbstractPassage {
          *             if hasNext() == false
          */
         public int lastRank() throws NoSuchElementException {
-            if (last != null) {
-                return last.tally;
+            if (next > 0) {
+                return unpackTally(ranked[next - 1]);
             }
             throw new NoSuchElementException(JSOtherMsg.lookupText("nextElement() has not been called yet."));
         }
@@ -944,82 +1102,16 @@ public class PassageTally extends AbstractPassage {
          * The Versification is needed to decode board positions.
          */
         private Versification referenceSystem;
-        /**
-         * So that we can get at the ranking of the given verse
-         */
-        private TalliedVerse last;
 
         /**
-         * The Iterator we are converting
-         */
-        private Iterator<TalliedVerse> it;
-    }
-
-    /**
-     * Hack to make this work with J2SE 1.1 as well as J2SE 1.2 This compared 2
-     * Integers
-     */
-    private static class TalliedVerse implements Comparable<TalliedVerse> {
-        /**
-         * Convenience ctor to set the public variables
-         * 
-         * @param ord
-         *            the verse id
-         * @param tally
-         *            the rank of the verse
-         */
-        protected TalliedVerse(int ord, int tally) {
-            this.ord = ord;
-            this.tally = tally;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = 31 + ord;
-            return 31 * result + tally;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TalliedVerse other = (TalliedVerse) obj;
-            if (tally != other.tally) {
-                return false;
-            }
-            if (ord != other.ord) {
-                return false;
-            }
-            return true;
-        }
-
-        /* (non-Javadoc)
-         * @see java.lang.Comparable#compareTo(java.lang.Object)
-         */
-        public int compareTo(TalliedVerse that) {
-            if (that.tally == this.tally) {
-                return this.ord - that.ord;
-            }
-
-            return that.tally - this.tally;
-        }
-
-        /**
-         * The verse id
+         * The packed verses in the order they are returned
          */
-        protected int ord;
+        private long[] ranked;
 
         /**
-         * The rank of the verse
+         * The position of the next verse to return
          */
-        protected int tally;
+        private int next;
     }
 
     /**
@@ -1045,12 +1137,10 @@ public class PassageTally extends AbstractPassage {
 
                 // Calculate the maximum rank for a verse
                 int rank = 0;
-                Iterator<Key> iter = range.iterator();
-                while (iter.hasNext()) {
-                    Verse verse = (Verse) iter.next();
-                    int temp = board[verse.getOrdinal()];
-                    if (temp > rank) {
-                        rank = temp;
+                int last = range.getEnd().getOrdinal();
+                for (int ord = range.getStart().getOrdinal(); ord <= last; ord++) {
+                    if (board[ord] > rank) {
+                        rank = board[ord];
                     }
                 }
 
@@ -1164,4 +1254,78 @@ public class PassageTally extends AbstractPassage {
          */
         protected int tally;
     }
+
+    /**
+     * The highest ranked verses of a tally, as returned by
+     * {@link PassageTally#topVerses(int)}. The verses are held as ordinals so
+     * that a Verse is only made for the ones that are actually looked at.
+     * 
+     * @author DM Smith
+     */
+    public static final class Ranking {
+        /**
+         * Create a Ranking from parallel arrays of ordinals and tallies.
+         * 
+         * @param v11n
+         *            the versification to which the ordinals belong
+         * @param ordinals
+         *            the verse ordinals, highest ranked first
+         * @param tallies
+         *            the tally of each verse
+         */
+        protected Ranking(Versification v11n, int[] ordinals, int[] tallies) {
+            this.v11n = v11n;
+            this.ordinals = ordinals;
+            this.tallies = tallies;
+        }
+
+        /**
+         * @return the number of verses in this ranking
+         */
+        public int size() {
+            return ordinals.length;
+        }
+
+        /**
+         * @param i
+         *            the position in the ranking, 0 being the highest
+         * @return the ordinal of the verse at that position
+         */
+        public int getOrdinal(int i) {
+            return ordinals[i];
+        }
+
+        /**
+         * @param i
+         *            the position in the ranking, 0 being the highest
+         * @return the tally of the verse at that position
+         */
+        public int getTally(int i) {
+            return tallies[i];
+        }
+
+        /**
+         * @param i
+         *            the position in the ranking, 0 being the highest
+         * @return the verse at that position
+         */
+        public Verse getVerse(int i) {
+            return v11n.decodeOrdinal(ordinals[i]);
+        }
+
+        /**
+         * The versification needed to decode the ordinals
+         */
+        private Versification v11n;
+
+        /**
+         * The verse ordinals, highest ranked first
+         */
+        private int[] ordinals;
+
+        /**
+         * The tally of each verse
+         */
+        private int[] tallies;
+    }
 }
@@ -121,6 +121,25 @@ public enum PassageType {
         public Passage createEmptyPassage(Versification v11n) {
             return new PassageTally(v11n);
         }
+    },
+
+    /**
+     * Optimize the Passage for any size, by letting it choose how to store
+     * its verses as it changes
+     */
+    ADAPTIVE {
+        @Override
+        public Passage createPassage(Versification v11n, String passage, Key basis) throws NoSuchVerseException {
+            if (passage == null || passage.length() == 0) {
+                return createEmptyPassage(v11n);
+            }
+            return new AdaptivePassage(v11n, passage, basis);
+        }
+
+        @Override
+        public Passage createEmptyPassage(Versification v11n) {
+            return new AdaptivePassage(v11n);
+        }
     };
 
     /**
@@ -134,6 +134,10 @@ public final class Verse implements VerseKey<Verse> {
      * going to be the same. So you should use Versification, Book, Chapter and Verse
      * in preference to an int ordinal whenever possible. Ordinal numbers are 1
      * based and not 0 based.
+     * <p>
+     * Prefer {@link Versification#decodeOrdinal(int)}, which hands out a
+     * shared instance rather than creating a new Verse each time.
+     * </p>
      * 
      * @param v11n
      *            The versification to which this verse belongs
@@ -163,7 +167,7 @@ public final class Verse implements VerseKey<Verse> {
         if (isWhole()) {
             return this;
         }
-        return new Verse(v11n, book, chapter, verse);
+        return v11n.decodeOrdinal(ordinal);
     }
 
     @Override
@@ -506,6 +510,19 @@ public final class Verse implements VerseKey<Verse> {
         this.verse = decoded.verse;
     }
 
+    /**
+     * Replace a deserialized whole Verse with the shared instance held by its
+     * Versification.
+     * 
+     * @return the Verse to use in place of this one
+     */
+    private Object readResolve() {
+        if (isWhole()) {
+            return v11n.decodeOrdinal(ordinal);
+        }
+        return this;
+    }
+
     /* (non-Javadoc)
      * @see org.crosswire.jsword.passage.Key#canHaveChildren()
      */
@@ -19,12 +19,14 @@
  */
 package org.crosswire.jsword.versification;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.TreeMap;
 
 import org.crosswire.common.util.CWClassLoader;
 import org.crosswire.common.util.ClassUtil;
@@ -219,6 +221,20 @@ public final class BibleNames {
 
     public void setEnableFuzzy(Boolean enableFuzzy) {
         this.enableFuzzy = enableFuzzy;
+        // References that were parsed with the old setting may now mean something else
+        generation++;
+    }
+
+    /**
+     * Get a number that changes whenever book names may be understood
+     * differently than before, such as when fuzzy matching is turned on or
+     * off. Anyone remembering the result of a lookup can compare this with
+     * the value it had at the time to know when to forget it.
+     *
+     * @return the current generation of book name lookup
+     */
+    public int getGeneration() {
+        return generation;
     }
 
     /**
@@ -290,62 +306,35 @@ public final class BibleNames {
         BibleBook getBook(String find, boolean fuzzy) {
             String match = BookName.normalize(find, locale);
 
-            BookName bookName = fullNT.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
-            }
-
-            bookName = shortNT.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
-            }
-
-            bookName = altNT.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
-            }
-
-            bookName = fullOT.get(match);
+            BookName bookName = names.get(match);
             if (bookName != null) {
                 return bookName.getBook();
             }
 
-            bookName = shortOT.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
-            }
-
-            bookName = altOT.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
-            }
-
-            bookName = fullNC.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
+            if (!fuzzy) {
+                return null;
             }
 
-            bookName = shortNC.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
+            // Find the earliest book that has a name beginning with match
+            // or that match begins with. This gives the same answer as
+            // trying BookName.match() against each book in turn.
+            int best = Integer.MAX_VALUE;
+            int pos = Arrays.binarySearch(prefixNames, match);
+            if (pos < 0) {
+                pos = -pos - 1;
             }
-
-            bookName = altNC.get(match);
-            if (bookName != null) {
-                return bookName.getBook();
+            for (int i = pos; i < prefixNames.length && prefixNames[i].startsWith(match); i++) {
+                best = Math.min(best, prefixRanks[i]);
             }
 
-            if (!fuzzy) {
-                return null;
-            }
-
-            for (BookName aBook : books.values()) {
-                if (aBook.match(match)) {
-                    return aBook.getBook();
+            for (int len = match.length(); len > 0; len--) {
+                Integer rank = stemNames.get(match.substring(0, len));
+                if (rank != null && rank.intValue() < best) {
+                    best = rank.intValue();
                 }
             }
 
-            return null;
+            return best == Integer.MAX_VALUE ? null : rankedBooks[best].getBook();
         }
 
         /**
@@ -375,25 +364,25 @@ public final class BibleNames {
             String shortClassName = ClassUtil.getShortClassName(className);
             ResourceBundle resources = ResourceBundle.getBundle(shortClassName, locale, CWClassLoader.instance(BibleNames.class));
 
-            fullNT = new HashMap<String, BookName>(ntCount);
-            shortNT = new HashMap<String, BookName>(ntCount);
-            altNT = new HashMap<String, BookName>(ntCount);
+            Map<String, BookName> fullNT = new HashMap<String, BookName>(ntCount);
+            Map<String, BookName> shortNT = new HashMap<String, BookName>(ntCount);
+            Map<String, BookName> altNT = new HashMap<String, BookName>(ntCount);
             for (int i = BibleBook.MATT.ordinal(); i <= BibleBook.REV.ordinal(); ++i) {
                 BibleBook book = bibleBooks[i];
                 store(resources, book, fullNT, shortNT, altNT);
             }
 
-            fullOT = new HashMap<String, BookName>(otCount);
-            shortOT = new HashMap<String, BookName>(otCount);
-            altOT = new HashMap<String, BookName>(otCount);
+            Map<String, BookName> fullOT = new HashMap<String, BookName>(otCount);
+            Map<String, BookName> shortOT = new HashMap<String, BookName>(otCount);
+            Map<String, BookName> altOT = new HashMap<String, BookName>(otCount);
             for (int i = BibleBook.GEN.ordinal(); i <= BibleBook.MAL.ordinal(); ++i) {
                 BibleBook book = bibleBooks[i];
                 store(resources, book, fullOT, shortOT, altOT);
             }
 
-            fullNC = new HashMap<String, BookName>(ncCount);
-            shortNC = new HashMap<String, BookName>(ncCount);
-            altNC = new HashMap<String, BookName>(ncCount);
+            Map<String, BookName> fullNC = new HashMap<String, BookName>(ncCount);
+            Map<String, BookName> shortNC = new HashMap<String, BookName>(ncCount);
+            Map<String, BookName> altNC = new HashMap<String, BookName>(ncCount);
             store(resources, BibleBook.INTRO_BIBLE, fullNC, shortNC, altNC);
             store(resources, BibleBook.INTRO_OT, fullNC, shortNC, altNC);
             store(resources, BibleBook.INTRO_NT, fullNC, shortNC, altNC);
@@ -401,6 +390,61 @@ public final class BibleNames {
                 BibleBook book = bibleBooks[i];
                 store(resources, book, fullNC, shortNC, altNC);
             }
+
+            // Merge the names into one map so that a lookup is a single probe.
+            // Later maps overwrite earlier ones, so the order is lowest
+            // precedence first.
+            names = new HashMap<String, BookName>();
+            names.putAll(altNC);
+            names.putAll(shortNC);
+            names.putAll(fullNC);
+            names.putAll(altOT);
+            names.putAll(shortOT);
+            names.putAll(fullOT);
+            names.putAll(altNT);
+            names.putAll(shortNT);
+            names.putAll(fullNT);
+
+            indexFuzzyNames();
+        }
+
+        /**
+         * Build the indexes used for fuzzy matching. A book is ranked by its
+         * position in books, and for each name only the earliest book having
+         * it is kept.
+         */
+        private void indexFuzzyNames() {
+            rankedBooks = books.values().toArray(new BookName[books.size()]);
+            Map<String, Integer> prefixes = new TreeMap<String, Integer>();
+            stemNames = new HashMap<String, Integer>();
+            for (int i = 0; i < rankedBooks.length; i++) {
+                BookName bookName = rankedBooks[i];
+                Integer rank = Integer.valueOf(i);
+                addName(prefixes, bookName.getNormalizedLongName(), rank);
+                addName(prefixes, bookName.getNormalizedShortName(), rank);
+                if (bookName.getNormalizedShortName().length() > 0) {
+                    addName(stemNames, bookName.getNormalizedShortName(), rank);
+                }
+                for (String alternate : bookName.getNormalizedAlternateNames()) {
+                    addName(prefixes, alternate, rank);
+                    addName(stemNames, alternate, rank);
+                }
+            }
+
+            prefixNames = new String[prefixes.size()];
+            prefixRanks = new int[prefixes.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : prefixes.entrySet()) {
+                prefixNames[i] = entry.getKey();
+                prefixRanks[i] = entry.getValue().intValue();
+                i++;
+            }
+        }
+
+        private void addName(Map<String, Integer> map, String name, Integer rank) {
+            if (!map.containsKey(name)) {
+                map.put(name, rank);
+            }
         }
 
         private void store(ResourceBundle resources, BibleBook book, Map fullMap, Map shortMap, Map altMap) {
@@ -454,64 +498,45 @@ public final class BibleNames {
         private LinkedHashMap<BibleBook, BookName> books;
 
         /**
-         * The full names of the New Testament books of the Bible normalized,
-         * generated at runtime
-         */
-        private Map<String, BookName> fullNT;
-
-        /**
-         * The full names of the Old Testament books of the Bible normalized,
-         * generated at runtime
-         */
-        private Map<String, BookName> fullOT;
-
-        /**
-         * The full names of the Deuterocanonical books of the Bible normalized,
-         * generated at runtime
-         */
-        private Map<String, BookName> fullNC;
-
-        /**
-         * Standard shortened names for the New Testament books of the Bible,
-         * normalized, generated at runtime.
-         */
-        private Map<String, BookName> shortNT;
-
-        /**
-         * Standard shortened names for the Old Testament books of the Bible
-         * normalized, generated at runtime.
+         * All the normalized full, short and alternate names of the books,
+         * generated at runtime. Where a name is used by more than one book,
+         * full names are preferred to short names and short names to
+         * alternates, and the New Testament to the Old Testament to the
+         * other books.
          */
-        private Map<String, BookName> shortOT;
+        private Map<String, BookName> names;
 
         /**
-         * Standard shortened names for the Deuterocanonical books of the Bible
-         * normalized, generated at runtime.
+         * The BookNames in the order that fuzzy matching prefers them.
          */
-        private Map<String, BookName> shortNC;
+        private BookName[] rankedBooks;
 
         /**
-         * Alternative shortened names for the New Testament books of the Bible
-         * normalized, generated at runtime.
+         * The sorted normalized names that a fuzzy match may be the start of.
          */
-        private Map<String, BookName> altNT;
+        private String[] prefixNames;
 
         /**
-         * Alternative shortened names for the Old Testament books of the Bible
-         * normalized, generated at runtime.
+         * The rank of the earliest book having each of prefixNames.
          */
-        private Map<String, BookName> altOT;
+        private int[] prefixRanks;
 
         /**
-         * Alternative shortened names for the Deuterocanonical books of the
-         * Bible normalized, generated at runtime.
+         * The normalized short and alternate names that a fuzzy match may
+         * begin with, and the rank of the earliest book having each.
          */
-        private Map<String, BookName> altNC;
+        private Map<String, Integer> stemNames;
     }
 
     /** we cache the Localized Bible Names because there is quite a bit of processing going on for each individual Locale */
     private transient Map<Locale, NameList> localizedBibleNames;
     private Boolean enableFuzzy = true;
 
+    /**
+     * Changed whenever book names may be understood differently.
+     */
+    private volatile int generation;
+
     /** English BibleNames, or null when using the program's default locale */
     private static NameList englishBibleNames;
 
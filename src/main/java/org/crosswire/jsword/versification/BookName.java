@@ -20,7 +20,6 @@
 package org.crosswire.jsword.versification;
 
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 import org.crosswire.common.util.StringUtil;
 import org.crosswire.jsword.book.CaseType;
@@ -155,6 +154,13 @@ public final class BookName {
         return normalizedShortName;
     }
 
+    /**
+     * @return the normalized alternate names, which may be empty
+     */
+    String[] getNormalizedAlternateNames() {
+        return alternateNames == null ? StringUtil.EMPTY_STRING_ARRAY : alternateNames;
+    }
+
     /**
      * Match the normalized name as closely as possible. It will match if:
      * <ol>
@@ -243,7 +249,17 @@ public final class BookName {
      * @return the normalized string
      */
     public static String normalize(String str, Locale locale) {
-        return normPattern.matcher(str).replaceAll("").toLowerCase(locale);
+        // Strip spaces and periods (but not commas) without a regex,
+        // as this is called for every book name that is looked up.
+        int len = str.length();
+        StringBuilder buf = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            if (c != '.' && c != ' ') {
+                buf.append(c);
+            }
+        }
+        return buf.toString().toLowerCase(locale);
     }
 
     /**
@@ -317,9 +333,6 @@ public final class BookName {
         return BookName.bookCase;
     }
 
-    /** remove spaces and some punctuation in Book Name (make sure , is allowed) */
-    private static Pattern normPattern = Pattern.compile("[. ]");
-
     private BibleBook book;
     private String longName;
     private String normalizedLongName;
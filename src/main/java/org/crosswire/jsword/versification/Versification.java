@@ -23,6 +23,7 @@ import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.crosswire.jsword.JSMsg;
 import org.crosswire.jsword.JSOtherMsg;
@@ -691,11 +692,7 @@ public class Versification implements ReferenceSystem, Serializable {
      * @return The new Verse
      */
     public Verse subtract(Verse verse, int n) {
-        int newVerse = verse.getVerse() - n;
-        // Try the simple case of the verse being in the same chapter
-        if (newVerse >= 0) {
-            return new Verse(verse.getVersification(), verse.getBook(), verse.getChapter(), newVerse);
-        }
+        // Ordinals are dense, so this also covers the same chapter
         return decodeOrdinal(verse.getOrdinal() - n);
     }
 
@@ -712,31 +709,8 @@ public class Versification implements ReferenceSystem, Serializable {
             return null;
         }
 
-        BibleBook nextBook = verse.getBook();
-        int nextChapter = verse.getChapter();
-        int nextVerse = verse.getVerse() + 1;
-        if (nextVerse > getLastVerse(nextBook, nextChapter)) {
-            // Go to an introduction.
-            nextVerse = 0;
-            // of the next chapter
-            nextChapter += 1;
-            // check to see that the chapter is valid for the book
-            if (nextChapter > getLastChapter(nextBook)) {
-                // To to an introduction
-                nextChapter = 0;
-                // of the next book
-                nextBook = bookList.getNextBook(verse.getBook());
-            }
-        }
-
-        // nextBook is null when we try to increment past the last verse
-        // The test at the beginning is designed to prevent that
-        if (nextBook == null) {
-            assert false;
-            return null;
-        }
-
-        return new Verse(this, nextBook, nextChapter, nextVerse);
+        // Ordinals are dense, including the introductions to each book and chapter
+        return decodeOrdinal(verse.getOrdinal() + 1);
     }
 
     /**
@@ -749,11 +723,7 @@ public class Versification implements ReferenceSystem, Serializable {
      * @return The new verse
      */
     public Verse add(Verse verse, int n) {
-        int newVerse = verse.getVerse() + n;
-        // Try the simple case of the verse being in the same chapter
-        if (newVerse <= getLastVerse(verse.getBook(), verse.getChapter())) {
-            return new Verse(verse.getVersification(), verse.getBook(), verse.getChapter(), newVerse);
-        }
+        // Ordinals are dense, so this also covers the same chapter
         return decodeOrdinal(verse.getOrdinal() + n);
     }
 
@@ -935,6 +905,10 @@ public class Versification implements ReferenceSystem, Serializable {
      * Where does this verse come in the Bible. This will unwind the value returned by getOrdinal(Verse).
      * If the ordinal value is less than 0 or greater than the last verse in this Versification,
      * then constrain it to the first or last verse in this Versification.
+     * <p>
+     * Verses are immutable, so the same Verse is returned each time a given
+     * ordinal is asked for, rather than creating a new one on every call.
+     * </p>
      *
      * @param ordinal
      *            The ordinal number of the verse
@@ -949,6 +923,46 @@ public class Versification implements ReferenceSystem, Serializable {
             ord = ntMaxOrdinal;
         }
 
+        AtomicReferenceArray<Verse> cache = getVerseCache();
+        Verse verse = cache.get(ord);
+        if (verse == null) {
+            // Should two threads race to fill the slot, the first one wins
+            verse = createVerse(ord);
+            if (!cache.compareAndSet(ord, null, verse)) {
+                verse = cache.get(ord);
+            }
+        }
+        return verse;
+    }
+
+    /**
+     * Get the flyweight cache of Verses, creating it on first use. It is
+     * created lazily as it is not serialized.
+     *
+     * @return the cache of Verses indexed by ordinal
+     */
+    private AtomicReferenceArray<Verse> getVerseCache() {
+        AtomicReferenceArray<Verse> cache = verseCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = verseCache;
+                if (cache == null) {
+                    cache = new AtomicReferenceArray<Verse>(ntMaxOrdinal + 1);
+                    verseCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Create the Verse for an ordinal that is known to be in range.
+     *
+     * @param ord
+     *            The ordinal number of the verse
+     * @return A new Verse
+     */
+    private Verse createVerse(int ord) {
         // Handle three special cases
         // Book/Module introduction
         if (ord == 0) {
@@ -1315,6 +1329,12 @@ public class Versification implements ReferenceSystem, Serializable {
      * The number of chapters in the NT, not counting chapter 0
      */
     private int ntChapterCount;
+
+    /**
+     * The Verses that have been decoded so far, indexed by ordinal.
+     */
+    private transient volatile AtomicReferenceArray<Verse> verseCache;
+
     /**
      * Serialization ID
      */
@@ -35,6 +35,7 @@ import org.junit.runners.Suite.SuiteClasses;
     org.crosswire.jsword.book.AllTests.class,
     org.crosswire.jsword.book.filter.thml.AllTests.class,
     org.crosswire.jsword.book.sword.AllTests.class,
+    org.crosswire.jsword.book.sword.state.AllTests.class,
     org.crosswire.jsword.bridge.AllTests.class,
     org.crosswire.jsword.index.lucene.analysis.AllTests.class,
     org.crosswire.jsword.passage.AllTests.class,
@@ -0,0 +1,165 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.processing.RawTextToXmlProcessor;
+import org.crosswire.jsword.book.sword.state.OpenFileState;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Content;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class AbstractBackendTest {
+    @Before
+    public void setUp() throws Exception {
+        String conf = "[Test]\nDataPath=./modules/texts/rawtext/test/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nLang=en\n";
+        backend = new StubBackend(new SwordBookMetaData(conf.getBytes(), "Test"));
+    }
+
+    @Test
+    public void testBulkReadFailsWithRuntimeException() throws Exception {
+        backend.bulkFailure = new ArrayIndexOutOfBoundsException();
+        Assert.assertEquals("[Gen.1.1, Gen.1.2, Gen.1.3]", read("Gen 1:1-3").toString());
+    }
+
+    @Test
+    public void testBulkReadReturnsTooFew() throws Exception {
+        backend.bulkResult = new String[] { "Gen.1.1" };
+        Assert.assertEquals("[Gen.1.1, Gen.1.2, Gen.1.3]", read("Gen 1:1-3").toString());
+    }
+
+    @Test
+    public void testBadEntryInRange() throws Exception {
+        backend.bulkFailure = new StringIndexOutOfBoundsException();
+        backend.badVerse = "Gen.1.2";
+        Assert.assertEquals("[Gen.1.1, Gen.1.3]", read("Gen 1:1-3").toString());
+    }
+
+    @Test(expected = BookException.class)
+    public void testBadEntryInRangeNotIgnored() throws Exception {
+        backend.setIgnoreReadErrors(false);
+        backend.bulkFailure = new StringIndexOutOfBoundsException();
+        backend.badVerse = "Gen.1.2";
+        read("Gen 1:1-3");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBulkReadBugNotHidden() throws Exception {
+        backend.bulkFailure = new IllegalStateException();
+        read("Gen 1:1-3");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVerseReadBugNotHidden() throws Exception {
+        backend.bulkFailure = new StringIndexOutOfBoundsException();
+        backend.brokenVerse = "Gen.1.2";
+        read("Gen 1:1-3");
+    }
+
+    private List<String> read(String ref) throws Exception {
+        final List<String> texts = new ArrayList<String>();
+        backend.readToOsis(PassageKeyFactory.instance().getKey(backend.getVersification(), ref), new RawTextToXmlProcessor() {
+            public void init(List<Content> partialDom) {
+            }
+
+            public void preRange(VerseRange range, List<Content> partialDom) {
+            }
+
+            public void postVerse(Key verse, List<Content> partialDom, String rawText) {
+                texts.add(rawText);
+            }
+        });
+        return texts;
+    }
+
+    /**
+     * A backend whose verses hold their own OSIS ids, and which can be made to
+     * fail when reading a range at once or when reading a particular verse.
+     */
+    private static class StubBackend extends AbstractBackend<OpenFileState> {
+        StubBackend(SwordBookMetaData sbmd) {
+            super(sbmd);
+        }
+
+        Versification getVersification() {
+            return Versifications.instance().getVersification(getBookMetaData().getProperty(BookMetaData.KEY_VERSIFICATION));
+        }
+
+        public OpenFileState initState() {
+            return null;
+        }
+
+        @Override
+        public boolean contains(Key key) {
+            return true;
+        }
+
+        public String readRawContent(OpenFileState state, Key key) throws IOException {
+            if (key.getOsisID().equals(badVerse)) {
+                throw new ArrayIndexOutOfBoundsException("Truncated entry");
+            }
+            if (key.getOsisID().equals(brokenVerse)) {
+                throw new IllegalStateException("Not a corrupt entry");
+            }
+            return key.getOsisID();
+        }
+
+        @Override
+        public String[] readRawContents(OpenFileState state, VerseRange range) throws BookException, IOException {
+            if (bulkFailure != null) {
+                throw bulkFailure;
+            }
+            if (bulkResult != null) {
+                return bulkResult;
+            }
+            return super.readRawContents(state, range);
+        }
+
+        public void setRawText(OpenFileState state, Key key, String text) {
+        }
+
+        public void setAliasKey(OpenFileState state, Key alias, Key source) {
+        }
+
+        RuntimeException bulkFailure;
+        String[] bulkResult;
+        String badVerse;
+        String brokenVerse;
+    }
+
+    private StubBackend backend;
+}
@@ -31,12 +31,20 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses({
+    AbstractBackendTest.class,
     BackendTest.class,
     ConfigEntryTableTest.class,
+    GenBookBackendTest.class,
+    RawBackendTest.class,
     RawFileBackendTest.class,
+    RawLDBackendTest.class,
+    ResidentKeyIndexTest.class,
+    ResidentTreeIndexTest.class,
     SwordBookDriverTest.class,
     SwordBookMetaDataTest.class,
-    SwordBookTest.class
+    SwordBookTest.class,
+    SwordUtilTest.class,
+    VersePresenceTest.class
 })
 public class AllTests {
 }
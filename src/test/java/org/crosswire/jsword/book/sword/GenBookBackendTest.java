@@ -0,0 +1,124 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.TreeKey;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class GenBookBackendTest {
+    @Before
+    public void setUp() throws Exception {
+        library = File.createTempFile("genbooktest", "");
+        library.delete();
+        File dataPath = new File(library, "modules/genbook/rawgenbook/genbooktest");
+        dataPath.mkdirs();
+        idxFile = new File(dataPath, "genbooktest.idx");
+        datFile = new File(dataPath, "genbooktest.dat");
+        bdtFile = new File(dataPath, "genbooktest.bdt");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+        GenBookBackend backend = createBackend();
+        Key root = new TreeKey("", null);
+        Key part1 = new TreeKey("Part 1", root);
+        Assert.assertEquals("First chapter", backend.getRawText(new TreeKey("Chapter 1", part1)));
+        Assert.assertEquals("Second chapter", backend.getRawText(new TreeKey("Chapter 2", part1)));
+        Assert.assertEquals(0, backend.getRawTextLength(new TreeKey("Chapter 3", part1)));
+        Assert.assertEquals(4, backend.readIndex().getCardinality());
+    }
+
+    @Test
+    public void testRewrittenBook() throws Exception {
+        GenBookBackend backend = createBackend();
+        Key part1 = new TreeKey("Part 1", new TreeKey("", null));
+        Key chapter3 = new TreeKey("Chapter 3", part1);
+        Assert.assertEquals(0, backend.getRawTextLength(chapter3));
+
+        // The book is re-installed with another chapter
+        writeBook("First chapter", "Second chapter", "Third chapter");
+        datFile.setLastModified(datFile.lastModified() + 10000);
+        FileCheck.filesChanged();
+        Assert.assertEquals("Third chapter".length(), backend.getRawTextLength(chapter3));
+        Assert.assertEquals("Third chapter", backend.getRawText(chapter3));
+        Assert.assertEquals(5, backend.readIndex().getCardinality());
+    }
+
+    private GenBookBackend createBackend() throws Exception {
+        writeBook("First chapter", "Second chapter");
+        File confFile = new File(library, "genbooktest.conf");
+        // Each test has its own book, as open file states are pooled by book
+        write(confFile, ("[GenBookTest" + library.getName() + "]\nDataPath=./modules/genbook/rawgenbook/genbooktest/genbooktest\nModDrv=RawGenBook\nEncoding=UTF-8\nSourceType=OSIS\nLang=en\n").getBytes("UTF-8"));
+        return new GenBookBackend(new SwordBookMetaData(confFile, library.toURI()));
+    }
+
+    /**
+     * Write a book of one part, having a chapter for each text.
+     */
+    private void writeBook(String... texts) throws IOException {
+        ResidentTreeIndexTest.TreeWriter writer = new ResidentTreeIndexTest.TreeWriter();
+        writer.add("", -1, -1, -1);
+        writer.add("Part 1", 0, -1, -1);
+        StringBuilder bdt = new StringBuilder();
+        for (int i = 0; i < texts.length; i++) {
+            writer.add("Chapter " + (i + 1), 1, bdt.length(), texts[i].length());
+            bdt.append(texts[i]);
+        }
+        write(idxFile, writer.getIdx());
+        write(datFile, writer.getDat());
+        write(bdtFile, bdt.toString().getBytes("UTF-8"));
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    private File library;
+    private File idxFile;
+    private File datFile;
+    private File bdtFile;
+}
@@ -0,0 +1,169 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.state.OpenFileStateManager;
+import org.crosswire.jsword.book.sword.state.RawBackendState;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Testament;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class RawBackendTest {
+    @Before
+    public void setUp() throws Exception {
+        v11n = Versifications.instance().getVersification("KJV");
+        library = File.createTempFile("rawtest", "");
+        library.delete();
+        File dataPath = new File(library, "modules/texts/rawtext/rawtest");
+        dataPath.mkdirs();
+
+        // Genesis 1 of a RawText module, each verse holding its verse number
+        int last = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, 1, 31).getOrdinal());
+        byte[] index = new byte[(last + 1) * 6];
+        StringBuilder text = new StringBuilder();
+        for (int verse = 1; verse <= 31; verse++) {
+            int entry = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, 1, verse).getOrdinal()) * 6;
+            String content = "Verse " + verse + '.';
+            encode(index, entry, text.length(), 4);
+            encode(index, entry + 4, content.length(), 2);
+            text.append(content);
+        }
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), index);
+        write(new File(dataPath, SwordConstants.FILE_OT), text.toString().getBytes("UTF-8"));
+
+        File conf = new File(library, "rawtest.conf");
+        write(conf, "[RawTest]\nDataPath=./modules/texts/rawtext/rawtest/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nVersification=KJV\nLang=en\n".getBytes("UTF-8"));
+        backend = new RawBackend<RawBackendState>(new SwordBookMetaData(conf, library.toURI()), 2);
+
+        manager = OpenFileStateManager.instance();
+        wasShared = manager.isShareStates();
+        manager.setShareStates(true);
+    }
+
+    @After
+    public void tearDown() {
+        manager.setShareStates(wasShared);
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final RawBackendState shared = backend.initState();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int offset = t;
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 500; i++) {
+                            int verse = (i + offset) % 31 + 1;
+                            Verse key = new Verse(v11n, BibleBook.GEN, 1, verse);
+                            Assert.assertEquals("Verse " + verse + '.', backend.getRawText(key));
+                            Assert.assertEquals("Verse " + verse + '.', backend.readRawContent(shared, key));
+                            if (verse < 31) {
+                                VerseRange range = new VerseRange(v11n, key, new Verse(v11n, BibleBook.GEN, 1, verse + 1));
+                                String[] texts = backend.readRawContents(shared, range);
+                                Assert.assertEquals("Verse " + (verse + 1) + '.', texts[1]);
+                            }
+                            // RawBackend is read only, writing must not disturb the readers of the shared state
+                            backend.setRawText(shared, key, "Changed");
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        manager.release(shared);
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.get(0));
+        }
+    }
+
+    @Test
+    public void testSharedState() throws Exception {
+        RawBackendState first = backend.initState();
+        RawBackendState second = backend.initState();
+        try {
+            Assert.assertSame(first, second);
+            Assert.assertTrue(first.isShared());
+            Assert.assertEquals("Verse 3.", backend.readRawContent(first, new Verse(v11n, BibleBook.GEN, 1, 3)));
+            // Reads do not use the file pointer, which other threads may share
+            Assert.assertEquals(0, first.getIdxRaf(Testament.OLD).getFilePointer());
+            Assert.assertEquals(0, first.getTextRaf(Testament.OLD).getFilePointer());
+        } finally {
+            manager.release(first);
+            manager.release(second);
+        }
+    }
+
+    private static void encode(byte[] buffer, int start, int value, int size) {
+        for (int i = 0; i < size; i++) {
+            buffer[start + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    private Versification v11n;
+    private File library;
+    private RawBackend<RawBackendState> backend;
+    private OpenFileStateManager manager;
+    private boolean wasShared;
+}
@@ -0,0 +1,171 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.sword.state.RawLDBackendState;
+import org.crosswire.jsword.passage.DefaultLeafKeyList;
+import org.crosswire.jsword.passage.Key;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class RawLDBackendTest {
+    @Before
+    public void setUp() throws Exception {
+        library = File.createTempFile("rawldtest", "");
+        library.delete();
+        File dataPath = new File(library, "modules/lexdict/rawld/rawldtest");
+        dataPath.mkdirs();
+        idxFile = new File(dataPath, "dict" + SwordConstants.EXTENSION_INDEX);
+        datFile = new File(dataPath, "dict" + SwordConstants.EXTENSION_DATA);
+    }
+
+    @After
+    public void tearDown() {
+        if (bmd != null) {
+            ResidentKeyIndex.remove(bmd);
+        }
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testRewrittenDictionary() throws Exception {
+        RawLDBackend<RawLDBackendState> backend = createBackend("", "ABBA", "ABIDE");
+        Assert.assertEquals(2, backend.getCardinality());
+        Assert.assertTrue(backend.getRawText(new DefaultLeafKeyList("ABIDE")).endsWith("Text of ABIDE"));
+
+        // The dictionary is re-installed with another entry
+        writeDictionary("ABBA", "ABBOT", "ABIDE");
+        idxFile.setLastModified(idxFile.lastModified() + 10000);
+        FileCheck.filesChanged();
+        Assert.assertEquals(3, backend.getCardinality());
+        Assert.assertEquals("ABBOT", backend.get(1).getName());
+        Assert.assertTrue(backend.getRawText(new DefaultLeafKeyList("ABBOT")).endsWith("Text of ABBOT"));
+        Assert.assertTrue(backend.getRawText(new DefaultLeafKeyList("ABIDE")).endsWith("Text of ABIDE"));
+    }
+
+    @Test
+    public void testPrefix() throws Exception {
+        RawLDBackend<RawLDBackendState> backend = createBackend("", "ABBA", "ABBOT", "ABIDE", "BABEL");
+        Assert.assertEquals("[ABBA, ABBOT]", names(backend.getKeysWithPrefix("abb", 10)));
+        Assert.assertEquals("[ABBA]", names(backend.getKeysWithPrefix("Ab", 1)));
+        Assert.assertEquals("[]", names(backend.getKeysWithPrefix("c", 10)));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        RawLDBackend<RawLDBackendState> backend = createBackend("", "ABBA", "ABBOT", "ABIDE", "BABEL");
+        Assert.assertEquals("[ABBOT, ABIDE]", names(backend.getKeysInRange("abbo", "b", 10)));
+        Assert.assertEquals("[ABBA, ABBOT, ABIDE, BABEL]", names(backend.getKeysInRange("", "c", 10)));
+    }
+
+    @Test
+    public void testStrongsPrefix() throws Exception {
+        RawLDBackend<RawLDBackendState> backend = createBackend("Feature=GreekDef\n", "G00001", "G00002", "G00010", "G00100", "G01000");
+        // A Strong's Number is padded as when it is looked up
+        Assert.assertEquals("[G00001]", names(backend.getKeysWithPrefix("G1", 10)));
+        Assert.assertEquals("[G00010]", names(backend.getKeysWithPrefix("G10", 10)));
+        // Otherwise the prefix is taken as it is
+        Assert.assertEquals("[G00001, G00002]", names(backend.getKeysWithPrefix("g0000", 10)));
+    }
+
+    @Test
+    public void testStrongsRange() throws Exception {
+        RawLDBackend<RawLDBackendState> backend = createBackend("Feature=GreekDef\n", "G00001", "G00002", "G00010", "G00100", "G01000");
+        Assert.assertEquals("[G00002, G00010]", names(backend.getKeysInRange("G2", "G100", 10)));
+        Assert.assertEquals("[G00100, G01000]", names(backend.getKeysInRange("G00100", "G1001", 10)));
+    }
+
+    @Test
+    public void testCaseSensitivePrefix() throws Exception {
+        // Upper case sorts before lower case
+        RawLDBackend<RawLDBackendState> backend = createBackend("CaseSensitiveKeys=true\n", "ABBOT", "BABEL", "abba", "abide");
+        Assert.assertEquals("[ABBOT, abba]", names(backend.getKeysWithPrefix("Abb", 10)));
+        Assert.assertEquals("[ABBOT, abba, abide]", names(backend.getKeysInRange("ab", "b", 10)));
+    }
+
+    private RawLDBackend<RawLDBackendState> createBackend(String conf, String... keys) throws Exception {
+        writeDictionary(keys);
+        File confFile = new File(library, "rawldtest.conf");
+        // Each test has its own book, as open file states are pooled by book
+        write(confFile, ("[RawLDTest" + library.getName() + "]\nDataPath=./modules/lexdict/rawld/rawldtest/dict\nModDrv=RawLD\nEncoding=UTF-8\nSourceType=TEI\nLang=en\n" + conf).getBytes("UTF-8"));
+        bmd = new SwordBookMetaData(confFile, library.toURI());
+        ResidentKeyIndex.remove(bmd);
+        return new RawLDBackend<RawLDBackendState>(bmd, 2);
+    }
+
+    private static String names(Key keys) {
+        List<String> names = new ArrayList<String>();
+        for (Key key : keys) {
+            names.add(key.getName());
+        }
+        return names.toString();
+    }
+
+    /**
+     * Write a RawLD dictionary, whose entries are in the order given.
+     */
+    private void writeDictionary(String... keys) throws IOException {
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (String key : keys) {
+            byte[] entry = (key + "\r\nText of " + key).getBytes("UTF-8");
+            int offset = data.size();
+            index.write(new byte[] {
+                    (byte) offset, (byte) (offset >> 8), (byte) (offset >> 16), (byte) (offset >> 24),
+                    (byte) entry.length, (byte) (entry.length >> 8)
+            });
+            data.write(entry);
+        }
+        write(idxFile, index.toByteArray());
+        write(datFile, data.toByteArray());
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    private File library;
+    private File idxFile;
+    private File datFile;
+    private SwordBookMetaData bmd;
+}
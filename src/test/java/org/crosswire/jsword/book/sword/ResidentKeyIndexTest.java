@@ -0,0 +1,142 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.BookMetaData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class ResidentKeyIndexTest {
+    @Before
+    public void setUp() throws Exception {
+        String conf = "[KeyTest]\nDataPath=./modules/lexdict/rawld/keytest/\nModDrv=RawLD\nEncoding=UTF-8\nSourceType=TEI\nLang=en\n";
+        bmd = new SwordBookMetaData(conf.getBytes(), "KeyTest");
+        idxFile = File.createTempFile("keytest", ".idx");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(idxFile);
+            out.write(new byte[12]);
+        } finally {
+            IOUtil.close(out);
+        }
+        keys = new ResidentKeyIndex(new String[] {
+                "", "ABBA", "ABBOT", "ABIDE", "ΑΒΓ"
+        }, new int[] {
+                0, 10, 20, 30, 40
+        }, new int[] {
+                0, 10, 10, 10, 12
+        });
+        keys.setSource(idxFile.length(), idxFile.lastModified());
+    }
+
+    @After
+    public void tearDown() {
+        ResidentKeyIndex.remove(bmd);
+        if (!idxFile.delete()) {
+            idxFile.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testAccessors() {
+        Assert.assertEquals(5, keys.size());
+        Assert.assertEquals("ABBOT", keys.getKey(2));
+        Assert.assertEquals(30, keys.getIndex(3).getOffset());
+        Assert.assertEquals(12, keys.getIndex(4).getSize());
+        Assert.assertEquals(10, keys.getSize(1));
+    }
+
+    @Test
+    public void testStoreLoad() {
+        keys.store(bmd);
+        ResidentKeyIndex loaded = ResidentKeyIndex.load(bmd, idxFile);
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(keys.size(), loaded.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Assert.assertEquals(keys.getKey(i), loaded.getKey(i));
+            Assert.assertEquals(keys.getIndex(i).getOffset(), loaded.getIndex(i).getOffset());
+            Assert.assertEquals(keys.getSize(i), loaded.getSize(i));
+        }
+    }
+
+    @Test
+    public void testStale() throws IOException {
+        keys.store(bmd);
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(idxFile, true);
+            out.write(new byte[6]);
+        } finally {
+            IOUtil.close(out);
+        }
+        Assert.assertNull(ResidentKeyIndex.load(bmd, idxFile));
+    }
+
+    @Test
+    public void testIsCurrent() throws IOException {
+        Assert.assertTrue(keys.isCurrent(idxFile));
+        append();
+        // The file is not looked at again within the interval
+        Assert.assertTrue(keys.isCurrent(idxFile));
+        FileCheck.filesChanged();
+        Assert.assertFalse(keys.isCurrent(idxFile));
+        Assert.assertFalse(keys.isCurrent(idxFile));
+    }
+
+    @Test
+    public void testIsCurrentNoInterval() throws IOException {
+        long interval = FileCheck.getInterval();
+        FileCheck.setInterval(0);
+        try {
+            Assert.assertTrue(keys.isCurrent(idxFile));
+            append();
+            Assert.assertFalse(keys.isCurrent(idxFile));
+        } finally {
+            FileCheck.setInterval(interval);
+        }
+    }
+
+    private void append() throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(idxFile, true);
+            out.write(new byte[6]);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    private BookMetaData bmd;
+    private File idxFile;
+    private ResidentKeyIndex keys;
+}
@@ -0,0 +1,208 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class ResidentTreeIndexTest {
+    @Test
+    public void testLookup() throws Exception {
+        ResidentTreeIndex tree = createTree();
+        Assert.assertEquals(6, tree.size());
+        Assert.assertEquals(0, tree.getRoot());
+        Assert.assertEquals("", tree.getName(0));
+        Assert.assertEquals(-1, tree.getParent(0));
+
+        int part1 = tree.getChild(0, "Part 1");
+        int part2 = tree.getChild(0, "Part 2");
+        Assert.assertEquals(1, part1);
+        Assert.assertEquals(2, part2);
+        Assert.assertEquals(0, tree.getParent(part2));
+        Assert.assertEquals(3, tree.getChild(part1, "Chapter 1"));
+        Assert.assertEquals(4, tree.getChild(part1, "Chapter 2"));
+
+        // Only children of the node are found
+        Assert.assertEquals(-1, tree.getChild(0, "Chapter 1"));
+        Assert.assertEquals(-1, tree.getChild(part2, "Chapter 1"));
+        Assert.assertEquals(-1, tree.getChild(part1, "Chapter 3"));
+    }
+
+    @Test
+    public void testNavigation() throws Exception {
+        ResidentTreeIndex tree = createTree();
+        Assert.assertEquals(1, tree.getFirstChild(0));
+        Assert.assertEquals(2, tree.getNextSibling(1));
+        Assert.assertEquals(-1, tree.getNextSibling(2));
+        Assert.assertEquals(3, tree.getFirstChild(1));
+        Assert.assertEquals(4, tree.getNextSibling(3));
+        Assert.assertEquals(5, tree.getNextSibling(4));
+        Assert.assertEquals(-1, tree.getFirstChild(3));
+    }
+
+    @Test
+    public void testData() throws Exception {
+        ResidentTreeIndex tree = createTree();
+        Assert.assertEquals(100, tree.getDataStart(3));
+        Assert.assertEquals(20, tree.getDataSize(3));
+        Assert.assertEquals(120, tree.getDataStart(4));
+        Assert.assertEquals(30, tree.getDataSize(4));
+        // Nodes without text
+        Assert.assertEquals(-1, tree.getDataStart(1));
+        Assert.assertEquals(-1, tree.getDataSize(1));
+    }
+
+    @Test
+    public void testNames() throws Exception {
+        ResidentTreeIndex tree = createTree();
+        // Names are trimmed
+        Assert.assertEquals("Part 2", tree.getName(2));
+        // Of children with the same name, the first is found
+        Assert.assertEquals("Chapter 1", tree.getName(5));
+        Assert.assertEquals(3, tree.getChild(1, "Chapter 1"));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ResidentTreeIndex tree = new ResidentTreeIndex(new byte[0], new byte[0], "UTF-8", "test");
+        Assert.assertEquals(0, tree.size());
+        Assert.assertEquals(-1, tree.getRoot());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadOffset() throws Exception {
+        TreeWriter writer = new TreeWriter();
+        writer.add("", -1, -1, -1);
+        byte[] dat = writer.getDat();
+        ResidentTreeIndex tree = new ResidentTreeIndex(writer.getIdx(), new byte[dat.length - 12], "UTF-8", "test");
+        Assert.assertNull(tree);
+    }
+
+    private static ResidentTreeIndex createTree() throws IOException {
+        TreeWriter writer = new TreeWriter();
+        writer.add("", -1, -1, -1);
+        writer.add("Part 1", 0, -1, -1);
+        writer.add(" Part 2 ", 0, 150, 10);
+        writer.add("Chapter 1", 1, 100, 20);
+        writer.add("Chapter 2", 1, 120, 30);
+        writer.add("Chapter 1", 1, 160, 40);
+        return new ResidentTreeIndex(writer.getIdx(), writer.getDat(), "UTF-8", "test");
+    }
+
+    /**
+     * Write the .idx and .dat files of a General Book. The nodes are added
+     * in order, each after its parent, and the siblings are in the order they
+     * are added.
+     */
+    static final class TreeWriter {
+        /**
+         * @param name the name of the node
+         * @param parent the parent of the node, or -1 for the root
+         * @param start the start of the text in the .bdt file, or -1 for none
+         * @param size the size of the text in the .bdt file
+         */
+        void add(String name, int parent, int start, int size) {
+            names.add(name);
+            parents.add(Integer.valueOf(parent));
+            starts.add(Integer.valueOf(start));
+            sizes.add(Integer.valueOf(size));
+        }
+
+        byte[] getIdx() throws IOException {
+            ByteArrayOutputStream idx = new ByteArrayOutputStream();
+            int offset = 0;
+            for (int i = 0; i < names.size(); i++) {
+                writeInt(idx, offset);
+                offset += getRecord(i).length;
+            }
+            return idx.toByteArray();
+        }
+
+        byte[] getDat() throws IOException {
+            ByteArrayOutputStream dat = new ByteArrayOutputStream();
+            for (int i = 0; i < names.size(); i++) {
+                dat.write(getRecord(i));
+            }
+            return dat.toByteArray();
+        }
+
+        private byte[] getRecord(int node) throws IOException {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            writeInt(record, toOffset(parents.get(node).intValue()));
+            writeInt(record, toOffset(find(node + 1, parents.get(node).intValue())));
+            writeInt(record, toOffset(find(node + 1, node)));
+            record.write(names.get(node).getBytes("UTF-8"));
+            record.write(0);
+            if (starts.get(node).intValue() == -1) {
+                record.write(new byte[] { 0, 0 });
+            } else {
+                record.write(new byte[] { 8, 0 });
+                writeInt(record, starts.get(node).intValue());
+                writeInt(record, sizes.get(node).intValue());
+            }
+            return record.toByteArray();
+        }
+
+        /**
+         * Find the first node from the start that has the parent.
+         */
+        private int find(int start, int parent) {
+            if (parent == -1) {
+                return -1;
+            }
+            for (int i = start; i < names.size(); i++) {
+                if (parents.get(i).intValue() == parent) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Nodes refer to each other by their offset in the .idx file.
+         */
+        private static int toOffset(int node) {
+            return node == -1 ? -1 : node * 4;
+        }
+
+        private static void writeInt(ByteArrayOutputStream out, int value) {
+            out.write(value);
+            out.write(value >> 8);
+            out.write(value >> 16);
+            out.write(value >> 24);
+        }
+
+        private List<String> names = new ArrayList<String>();
+        private List<Integer> parents = new ArrayList<Integer>();
+        private List<Integer> starts = new ArrayList<Integer>();
+        private List<Integer> sizes = new ArrayList<Integer>();
+    }
+}
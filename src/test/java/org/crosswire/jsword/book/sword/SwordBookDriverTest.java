@@ -19,7 +19,16 @@
  */
 package org.crosswire.jsword.book.sword;
 
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookDriverParentTst;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.sword.state.BlockCache;
+import org.junit.Assert;
+import org.junit.Test;
 
 /**
  * JUnit Test.
@@ -28,4 +37,36 @@ import org.crosswire.jsword.book.BookDriverParentTst;
  * @author Joe Walker
  */
 public class SwordBookDriverTest extends BookDriverParentTst {
+    @Test
+    public void testRegisterForgetsOldVersion() throws Exception {
+        File library = File.createTempFile("drivertest", "");
+        library.delete();
+        File mods = new File(library, SwordConstants.DIR_CONF);
+        mods.mkdirs();
+        new File(library, "modules/texts/rawtext/drivertest").mkdirs();
+        File conf = new File(mods, "drivertest.conf");
+        FileOutputStream out = new FileOutputStream(conf);
+        try {
+            out.write("[DriverTest]\nDataPath=./modules/texts/rawtext/drivertest/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nVersification=KJV\nLang=en\n".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+
+        SwordBookMetaData sbmd = new SwordBookMetaData(conf, library.toURI());
+        sbmd.setDriver(SwordBookDriver.instance());
+        BlockCache cache = BlockCache.instance();
+        try {
+            // A block of the version that is about to be replaced
+            cache.put(sbmd, null, 0, new byte[] { 1, 2, 3 });
+            SwordBookDriver.registerNewBook(sbmd);
+            Assert.assertNull(cache.get(sbmd, null, 0));
+        } finally {
+            Book book = Books.installed().getBook("DriverTest");
+            if (book != null) {
+                Books.installed().removeBook(book);
+            }
+            cache.remove(sbmd);
+            FileUtil.delete(library);
+        }
+    }
 }
@@ -0,0 +1,80 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class SwordUtilTest {
+    @Test
+    public void testDecodeRange() throws Exception {
+        byte[] data = "In the beginning".getBytes("UTF-8");
+        Assert.assertEquals("the", SwordUtil.decode("test", data, 3, 3, "UTF-8"));
+        Assert.assertEquals("In", SwordUtil.decode("test", data, 2, "UTF-8"));
+        Assert.assertEquals("In the beginning", SwordUtil.decode("test", data, "UTF-8"));
+        Assert.assertEquals("", SwordUtil.decode("test", data, 5, 0, "UTF-8"));
+    }
+
+    @Test
+    public void testDecodeOutOfRange() throws Exception {
+        byte[] data = "In the beginning".getBytes("UTF-8");
+        Assert.assertEquals("", SwordUtil.decode("test", data, 10, 7, "UTF-8"));
+        Assert.assertEquals("", SwordUtil.decode("test", data, -1, 3, "UTF-8"));
+        Assert.assertEquals("", SwordUtil.decode("test", data, 3, -1, "UTF-8"));
+        Assert.assertEquals("", SwordUtil.decode("test", data, Integer.MAX_VALUE, 2, "UTF-8"));
+    }
+
+    @Test
+    public void testClean1252() {
+        byte[] data = {
+                'a', 0x01, 'b', (byte) 0x81, 'c', 0x09, (byte) 0xE9
+        };
+        byte[] original = data.clone();
+        Assert.assertEquals("a b c\t\u00e9", SwordUtil.decode("test", data, "WINDOWS-1252"));
+        // The cleaning is done on a copy
+        Assert.assertArrayEquals(original, data);
+    }
+
+    @Test
+    public void testClean1252Range() {
+        byte[] data = {
+                0x01, 'a', (byte) 0x8D, 'b', 0x02
+        };
+        byte[] original = data.clone();
+        // Only the range is cleaned
+        Assert.assertEquals("a b", SwordUtil.decode("test", data, 1, 3, "WINDOWS-1252"));
+        Assert.assertArrayEquals(original, data);
+    }
+
+    @Test
+    public void testClean1252Clean() {
+        byte[] data = {
+                'a', ' ', (byte) 0xE9, '\r', '\n'
+        };
+        Assert.assertEquals("a \u00e9\r\n", SwordUtil.decode("test", data, "WINDOWS-1252"));
+        Assert.assertEquals(" \u00e9", SwordUtil.decode("test", data, 1, 2, "WINDOWS-1252"));
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class VersePresenceTest {
+    @Before
+    public void setUp() throws Exception {
+        library = File.createTempFile("versetest", "");
+        library.delete();
+        dataPath = new File(library, "modules/texts/rawtext/versetest");
+        dataPath.mkdirs();
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), new byte[60]);
+        write(new File(dataPath, SwordConstants.FILE_OT), new byte[10]);
+
+        File conf = new File(library, "versetest.conf");
+        // Each test has its own book, as the verse lists are stored by book
+        write(conf, ("[VerseTest" + library.getName() + "]\nDataPath=./modules/texts/rawtext/versetest/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nVersification=KJV\nLang=en\n").getBytes("UTF-8"));
+        bmd = new SwordBookMetaData(conf, library.toURI());
+        VersePresence.remove(bmd);
+    }
+
+    @After
+    public void tearDown() {
+        VersePresence.remove(bmd);
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testBuild() throws Exception {
+        CountingReader reader = new CountingReader(2, 3, 5);
+        VersePresence presence = new VersePresence(bmd);
+        Assert.assertEquals(verses(2, 3, 5), presence.get(reader));
+        Assert.assertEquals(verses(2, 3, 5), presence.get(reader));
+        Assert.assertEquals(1, reader.count);
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        new VersePresence(bmd).get(new CountingReader(2, 3, 5, 70));
+
+        // Another instance, as when the book is next used, loads the stored list
+        CountingReader reader = new CountingReader();
+        Assert.assertEquals(verses(2, 3, 5, 70), new VersePresence(bmd).get(reader));
+        Assert.assertEquals(0, reader.count);
+    }
+
+    @Test
+    public void testStale() throws Exception {
+        new VersePresence(bmd).get(new CountingReader(2, 3, 5));
+
+        // The book is changed
+        File text = new File(dataPath, SwordConstants.FILE_OT);
+        write(text, new byte[20]);
+        text.setLastModified(text.lastModified() + 10000);
+
+        CountingReader reader = new CountingReader(2, 4);
+        Assert.assertEquals(verses(2, 4), new VersePresence(bmd).get(reader));
+        Assert.assertEquals(1, reader.count);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        VersePresence presence = new VersePresence(bmd);
+        presence.get(new CountingReader(2));
+        presence.clear();
+
+        // The stored list is still current
+        CountingReader reader = new CountingReader();
+        Assert.assertEquals(verses(2), presence.get(reader));
+        Assert.assertEquals(0, reader.count);
+    }
+
+    @Test
+    public void testStamp() throws Exception {
+        VersePresence presence = new VersePresence(bmd);
+        long stamp = presence.getStamp();
+        Assert.assertEquals(stamp, new VersePresence(bmd).getStamp());
+
+        File index = new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS);
+        index.setLastModified(index.lastModified() + 10000);
+        Assert.assertTrue(stamp != presence.getStamp());
+    }
+
+    @Test
+    public void testToPassage() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        Assert.assertEquals("Gen.1.1-Gen.1.2", VersePresence.toPassage(verses(4, 5), v11n).getOsisRef());
+    }
+
+    private static BitSet verses(int... ordinals) {
+        BitSet verses = new BitSet();
+        for (int ordinal : ordinals) {
+            verses.set(ordinal);
+        }
+        return verses;
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * A reader of the verses that counts how often it has been used.
+     */
+    private static final class CountingReader implements VersePresence.Reader {
+        CountingReader(int... ordinals) {
+            this.ordinals = ordinals;
+        }
+
+        public BitSet read() throws IOException, BookException {
+            count++;
+            return verses(ordinals);
+        }
+
+        private int[] ordinals;
+        private int count;
+    }
+
+    private File library;
+    private File dataPath;
+    private SwordBookMetaData bmd;
+}
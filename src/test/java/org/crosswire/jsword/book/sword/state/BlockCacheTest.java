@@ -0,0 +1,105 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword.state;
+
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.versification.Testament;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class BlockCacheTest {
+    @Before
+    public void setUp() throws Exception {
+        String kjv = "[KJV]\nDataPath=./modules/texts/ztext/kjv/\nModDrv=zText\nEncoding=UTF-8\nBlockType=BOOK\nCompressType=ZIP\nSourceType=OSIS\nLang=en\n";
+        String esv = "[ESV]\nDataPath=./modules/texts/ztext/esv/\nModDrv=zText\nEncoding=UTF-8\nBlockType=BOOK\nCompressType=ZIP\nSourceType=OSIS\nLang=en\n";
+        bmdKJV = new SwordBookMetaData(kjv.getBytes(), "KJV");
+        bmdESV = new SwordBookMetaData(esv.getBytes(), "ESV");
+        cache = BlockCache.instance();
+        cache.clear();
+        oldMaxBytes = cache.getMaxBytes();
+    }
+
+    @After
+    public void tearDown() {
+        cache.setMaxBytes(oldMaxBytes);
+        cache.clear();
+    }
+
+    @Test
+    public void testGetPut() {
+        byte[] block = new byte[10];
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        Assert.assertNull(cache.get(bmdKJV, Testament.NEW, 1));
+        cache.put(bmdKJV, Testament.NEW, 1, block);
+        Assert.assertSame(block, cache.get(bmdKJV, Testament.NEW, 1));
+        Assert.assertNull(cache.get(bmdKJV, Testament.OLD, 1));
+        Assert.assertNull(cache.get(bmdESV, Testament.NEW, 1));
+        Assert.assertNull(cache.get(bmdKJV, Testament.NEW, 2));
+        Assert.assertEquals(hits + 1, cache.getHits());
+        Assert.assertEquals(misses + 4, cache.getMisses());
+        Assert.assertEquals(10, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        cache.setMaxBytes(25);
+        long evictions = cache.getEvictions();
+        cache.put(bmdKJV, null, 1, new byte[10]);
+        cache.put(bmdKJV, null, 2, new byte[10]);
+        // Touch block 1 so that block 2 is the least recently used
+        Assert.assertNotNull(cache.get(bmdKJV, null, 1));
+        cache.put(bmdKJV, null, 3, new byte[10]);
+        Assert.assertNotNull(cache.get(bmdKJV, null, 1));
+        Assert.assertNull(cache.get(bmdKJV, null, 2));
+        Assert.assertNotNull(cache.get(bmdKJV, null, 3));
+        Assert.assertEquals(evictions + 1, cache.getEvictions());
+        Assert.assertEquals(20, cache.getSize());
+
+        // Too big to cache
+        cache.put(bmdKJV, null, 4, new byte[30]);
+        Assert.assertNull(cache.get(bmdKJV, null, 4));
+        Assert.assertEquals(20, cache.getSize());
+    }
+
+    @Test
+    public void testRemoveBook() {
+        cache.put(bmdKJV, Testament.OLD, 1, new byte[10]);
+        cache.put(bmdESV, Testament.OLD, 1, new byte[5]);
+        cache.remove(bmdKJV);
+        Assert.assertNull(cache.get(bmdKJV, Testament.OLD, 1));
+        Assert.assertNotNull(cache.get(bmdESV, Testament.OLD, 1));
+        Assert.assertEquals(5, cache.getSize());
+    }
+
+    private BlockCache cache;
+    private long oldMaxBytes;
+    private BookMetaData bmdKJV;
+    private BookMetaData bmdESV;
+}
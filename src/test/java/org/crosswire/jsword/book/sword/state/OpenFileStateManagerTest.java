@@ -0,0 +1,335 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.book.sword.state;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.BookMetaData;
+import org.crosswire.jsword.book.sword.StatefulFileBackedBackend;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.passage.Key;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class OpenFileStateManagerTest {
+    @Before
+    public void setUp() throws Exception {
+        String kjv = "[KJV]\nDataPath=./modules/texts/ztext/kjv/\nModDrv=zText\nEncoding=UTF-8\nBlockType=BOOK\nCompressType=ZIP\nSourceType=OSIS\nLang=en\n";
+        String esv = "[ESV]\nDataPath=./modules/texts/ztext/esv/\nModDrv=zText\nEncoding=UTF-8\nBlockType=BOOK\nCompressType=ZIP\nSourceType=OSIS\nLang=en\n";
+        bmdKJV = new SwordBookMetaData(kjv.getBytes(), "KJV");
+        bmdESV = new SwordBookMetaData(esv.getBytes(), "ESV");
+        manager = OpenFileStateManager.instance();
+        file = File.createTempFile("jsword", ".dat");
+
+        // Start without idle states, which may have been left by other tests
+        manager.expire(Long.MAX_VALUE);
+        oldMaxOpenStates = manager.getMaxOpenStates();
+        oldMaxOpenStatesPerBook = manager.getMaxOpenStatesPerBook();
+        oldMaxWait = manager.getMaxWait();
+    }
+
+    @After
+    public void tearDown() {
+        manager.setMaxOpenStates(oldMaxOpenStates);
+        manager.setMaxOpenStatesPerBook(oldMaxOpenStatesPerBook);
+        manager.setMaxWait(oldMaxWait);
+        manager.expire(Long.MAX_VALUE);
+        manager.removeMappings(bmdKJV);
+        file.delete();
+    }
+
+    @Test
+    public void testReleaseAccounting() throws BookException {
+        int open = manager.getOpenStates();
+        long creations = manager.getCreations();
+        long hits = manager.getPoolHits();
+
+        TestState state = getState(bmdKJV);
+        Assert.assertEquals(open + 1, manager.getOpenStates());
+        Assert.assertEquals(creations + 1, manager.getCreations());
+        Assert.assertEquals(0, manager.getIdleStates());
+
+        manager.release(state);
+        Assert.assertEquals(open + 1, manager.getOpenStates());
+        Assert.assertEquals(1, manager.getIdleStates());
+        Assert.assertFalse(state.released);
+
+        // The released state is handed out again
+        Assert.assertSame(state, getState(bmdKJV));
+        Assert.assertEquals(hits + 1, manager.getPoolHits());
+        Assert.assertEquals(creations + 1, manager.getCreations());
+        Assert.assertEquals(0, manager.getIdleStates());
+        manager.release(state);
+
+        // Expiry closes the idle state and gives back its room
+        manager.expire(Long.MAX_VALUE);
+        Assert.assertTrue(state.released);
+        Assert.assertEquals(open, manager.getOpenStates());
+        Assert.assertEquals(0, manager.getIdleStates());
+    }
+
+    @Test
+    public void testClosedStateNotPooled() throws BookException {
+        int open = manager.getOpenStates();
+
+        // An interrupted read closes the state's files while it is in use
+        TestState state = getState(bmdKJV);
+        state.closed = true;
+        manager.release(state);
+        Assert.assertTrue(state.released);
+        Assert.assertEquals(open, manager.getOpenStates());
+        Assert.assertEquals(0, manager.getIdleStates());
+
+        // Or while it is idle
+        state = getState(bmdKJV);
+        manager.release(state);
+        state.closed = true;
+        TestState replacement = getState(bmdKJV);
+        Assert.assertNotSame(state, replacement);
+        Assert.assertTrue(state.released);
+        Assert.assertEquals(open + 1, manager.getOpenStates());
+        manager.release(replacement);
+    }
+
+    @Test
+    public void testExpireKeepsRecentStates() throws BookException {
+        TestState state = getState(bmdKJV);
+        manager.release(state);
+        manager.expire(System.currentTimeMillis());
+        Assert.assertFalse(state.released);
+        Assert.assertEquals(1, manager.getIdleStates());
+    }
+
+    @Test
+    public void testCapBlocksAndWakes() throws Exception {
+        manager.setMaxOpenStatesPerBook(1);
+        long waits = manager.getWaits();
+        final TestState held = getState(bmdKJV);
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+        Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                started.countDown();
+                try {
+                    result.set(getState(bmdKJV));
+                } catch (BookException e) {
+                    result.set(e);
+                }
+            }
+        });
+        waiter.start();
+        started.await();
+
+        // The waiter cannot have a state until the held one is released
+        waiter.join(200);
+        Assert.assertTrue(waiter.isAlive());
+        Assert.assertNull(result.get());
+        Assert.assertEquals(waits + 1, manager.getWaits());
+
+        manager.release(held);
+        waiter.join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertSame(held, result.get());
+        manager.release(held);
+    }
+
+    @Test
+    public void testCapTimeout() throws BookException {
+        manager.setMaxOpenStatesPerBook(1);
+        manager.setMaxWait(100);
+        long timeouts = manager.getTimeouts();
+        TestState held = getState(bmdKJV);
+        try {
+            getState(bmdKJV);
+            Assert.fail("The book has no room for another state");
+        } catch (BookException e) {
+            // expected
+        }
+        Assert.assertEquals(timeouts + 1, manager.getTimeouts());
+        manager.release(held);
+    }
+
+    @Test
+    public void testEvictIdle() throws BookException {
+        manager.setMaxOpenStates(manager.getOpenStates() + 1);
+        long evictions = manager.getEvictions();
+
+        TestState idle = getState(bmdESV);
+        manager.release(idle);
+
+        // There is no room for another state, so the idle state of the other book is closed
+        TestState state = getState(bmdKJV);
+        Assert.assertTrue(idle.released);
+        Assert.assertEquals(evictions + 1, manager.getEvictions());
+        Assert.assertEquals(0, manager.getIdleStates());
+        Assert.assertEquals(manager.getMaxOpenStates(), manager.getOpenStates());
+        manager.release(state);
+    }
+
+    @Test
+    public void testPrewarm() throws BookException {
+        long creations = manager.getCreations();
+        manager.prewarm(new TestBackend(bmdKJV), 3);
+        Assert.assertEquals(creations + 3, manager.getCreations());
+        Assert.assertEquals(3, manager.getIdleStates());
+    }
+
+    @Test
+    public void testMappedBufferShared() throws IOException {
+        write(file, "abc");
+        int count = manager.getMappedFileCount();
+        ByteBuffer first = manager.getMappedBuffer(bmdKJV, file);
+        ByteBuffer second = manager.getMappedBuffer(bmdKJV, file);
+        Assert.assertEquals(count + 1, manager.getMappedFileCount());
+        Assert.assertNotSame(first, second);
+        first.get();
+        Assert.assertEquals(0, second.position());
+        Assert.assertEquals('a', second.get());
+    }
+
+    @Test
+    public void testMappedBufferReplacedWhenChanged() throws IOException {
+        write(file, "abc");
+        Assert.assertEquals('a', manager.getMappedBuffer(bmdKJV, file).get());
+        int count = manager.getMappedFileCount();
+
+        // Re-install the file
+        write(file, "xyz");
+        file.setLastModified(file.lastModified() + 10000);
+        Assert.assertEquals('x', manager.getMappedBuffer(bmdKJV, file).get());
+        Assert.assertEquals(count, manager.getMappedFileCount());
+    }
+
+    @Test
+    public void testRemoveMappings() throws IOException {
+        write(file, "abc");
+        manager.getMappedBuffer(bmdKJV, file);
+        int count = manager.getMappedFileCount();
+        manager.removeMappings(bmdKJV);
+        Assert.assertEquals(count - 1, manager.getMappedFileCount());
+    }
+
+    @Test
+    public void testMappedBufferTooLarge() throws IOException {
+        // A sparse file that is too large for a ByteBuffer
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(Integer.MAX_VALUE + 1L);
+        } finally {
+            raf.close();
+        }
+        int count = manager.getMappedFileCount();
+        try {
+            manager.getMappedBuffer(bmdKJV, file);
+            Assert.fail("A file over 2GB cannot be mapped");
+        } catch (IOException e) {
+            // expected, the caller reads the file instead
+        }
+        Assert.assertEquals(count, manager.getMappedFileCount());
+    }
+
+    TestState getState(final BookMetaData bmd) throws BookException {
+        return manager.getState(bmd, false, new OpenFileStateManager.StateFactory<TestState>() {
+            public TestState create() {
+                return new TestState(bmd);
+            }
+        });
+    }
+
+    private static void write(File target, String content) throws IOException {
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * A state without files, which notes when it is closed.
+     */
+    private static class TestState extends AbstractOpenFileState {
+        TestState(BookMetaData bmd) {
+            super(bmd);
+        }
+
+        public void releaseResources() {
+            released = true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        volatile boolean released;
+        volatile boolean closed;
+    }
+
+    /**
+     * A backend whose states are TestStates.
+     */
+    private class TestBackend implements StatefulFileBackedBackend<TestState> {
+        TestBackend(BookMetaData bmd) {
+            this.bmd = bmd;
+        }
+
+        public TestState initState() throws BookException {
+            return getState(bmd);
+        }
+
+        public String readRawContent(TestState state, Key key) {
+            return "";
+        }
+
+        public void setRawText(TestState state, Key key, String text) {
+        }
+
+        public void setAliasKey(TestState state, Key alias, Key source) {
+        }
+
+        private BookMetaData bmd;
+    }
+
+    private BookMetaData bmdKJV;
+    private BookMetaData bmdESV;
+    private int oldMaxOpenStates;
+    private int oldMaxOpenStatesPerBook;
+    private long oldMaxWait;
+    private OpenFileStateManager manager;
+    private File file;
+}
@@ -0,0 +1,272 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.index.TermPositions;
+import org.apache.lucene.store.FSDirectory;
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.common.util.Reporter;
+import org.crosswire.common.util.ReporterEvent;
+import org.crosswire.common.util.ReporterListener;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.RawBackend;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordConstants;
+import org.crosswire.jsword.book.sword.state.RawBackendState;
+import org.crosswire.jsword.index.IndexPolicy;
+import org.crosswire.jsword.index.IndexPolicyAdapter;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.jdom2.Content;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class LuceneIndexTest {
+    @Before
+    public void setUp() throws Exception {
+        // The installed indexes are recorded in the writable area
+        CWProject.instance().getWritableProjectSubdir(LuceneIndexManager.DIR_LUCENE, true);
+
+        library = File.createTempFile("indextest", "");
+        library.delete();
+        File dataPath = new File(library, "modules/texts/rawtext/indextest");
+        dataPath.mkdirs();
+
+        // Genesis 1-3 of a RawText module, enough for several runs of keys
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        int last = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, 3, 24).getOrdinal());
+        byte[] index = new byte[(last + 1) * 6];
+        StringBuilder text = new StringBuilder();
+        for (int chapter = 1; chapter <= 3; chapter++) {
+            for (int verse = 1; verse <= v11n.getLastVerse(BibleBook.GEN, chapter); verse++) {
+                int entry = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, chapter, verse).getOrdinal()) * 6;
+                String content = WORDS[(chapter * verse) % WORDS.length] + " and " + WORDS[verse % WORDS.length] + " in chapter " + chapter + '.';
+                encode(index, entry, text.length(), 4);
+                encode(index, entry + 4, content.length(), 2);
+                text.append(content);
+            }
+        }
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), index);
+        write(new File(dataPath, SwordConstants.FILE_OT), text.toString().getBytes("UTF-8"));
+
+        File conf = new File(library, "indextest.conf");
+        write(conf, ("[IndexTest" + library.getName() + "]\nDataPath=./modules/texts/rawtext/indextest/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=Plaintext\nVersification=KJV\nLang=en\n").getBytes("UTF-8"));
+        bmd = new SwordBookMetaData(conf, library.toURI());
+        book = new SwordBook(bmd, new RawBackend<RawBackendState>(bmd, 2));
+    }
+
+    @After
+    public void tearDown() {
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testDefaultThreadCount() {
+        Assert.assertEquals(1, new IndexPolicyAdapter().getThreadCount());
+    }
+
+    @Test
+    public void testParallelIndex() throws Exception {
+        File serial = new File(library, "serial");
+        File parallel = new File(library, "parallel");
+        new LuceneIndex(book, serial.toURI(), new ThreadedPolicy(1));
+        new LuceneIndex(book, parallel.toURI(), new ThreadedPolicy(3));
+
+        IndexReader expected = IndexReader.open(FSDirectory.open(serial));
+        IndexReader actual = IndexReader.open(FSDirectory.open(parallel));
+        try {
+            Assert.assertEquals(80, expected.numDocs());
+            assertSameIndex(expected, actual);
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    @Test
+    public void testResumeKeepsErrors() throws Exception {
+        FaultyBook faulty = new FaultyBook(bmd, "Gen.1.5", "Gen.3.2");
+        File storage = new File(library, "resumed");
+        final List<String> reports = new ArrayList<String>();
+        ReporterListener listener = new ReporterListener() {
+            public void reportMessage(ReporterEvent ev) {
+                reports.add(ev.getMessage());
+            }
+
+            public void reportException(ReporterEvent ev) {
+                reports.add(ev.getMessage());
+            }
+        };
+        Reporter.addReporterListener(listener);
+        try {
+            // The build is interrupted after the first error
+            faulty.interruptAt = "Gen.2.10";
+            try {
+                new LuceneIndex(faulty, storage.toURI(), new IndexPolicyAdapter());
+            } catch (BookException e) {
+                // The partial index cannot be opened
+            }
+            Thread.interrupted();
+            Assert.assertFalse(storage.exists());
+            Assert.assertNotNull(InstalledIndex.instance().getIndexCheckpoint(faulty));
+
+            faulty.interruptAt = null;
+            reports.clear();
+            new LuceneIndex(faulty, storage.toURI(), new IndexPolicyAdapter());
+            Assert.assertTrue(storage.exists());
+            Assert.assertEquals(1, reports.size());
+            // The error from before the checkpoint is still reported
+            Assert.assertTrue(reports.get(0), reports.get(0).contains("Genesis 1:5\n"));
+            Assert.assertTrue(reports.get(0), reports.get(0).contains("Genesis 3:2\n"));
+        } finally {
+            Reporter.removeReporterListener(listener);
+            InstalledIndex.instance().removeIndexCheckpoint(faulty);
+        }
+    }
+
+    /**
+     * Both indexes must have the same documents in the same order, with the
+     * same stored fields and the same terms at the same positions.
+     */
+    private static void assertSameIndex(IndexReader expected, IndexReader actual) throws IOException {
+        Assert.assertEquals(expected.maxDoc(), actual.maxDoc());
+        for (int i = 0; i < expected.maxDoc(); i++) {
+            Assert.assertEquals(expected.document(i).toString(), actual.document(i).toString());
+        }
+
+        TermEnum expectedTerms = expected.terms();
+        TermEnum actualTerms = actual.terms();
+        TermPositions expectedPositions = expected.termPositions();
+        TermPositions actualPositions = actual.termPositions();
+        try {
+            while (expectedTerms.next()) {
+                Assert.assertTrue(actualTerms.next());
+                Assert.assertEquals(expectedTerms.term(), actualTerms.term());
+                expectedPositions.seek(expectedTerms);
+                actualPositions.seek(actualTerms);
+                while (expectedPositions.next()) {
+                    Assert.assertTrue(actualPositions.next());
+                    Assert.assertEquals(expectedPositions.doc(), actualPositions.doc());
+                    Assert.assertEquals(expectedPositions.freq(), actualPositions.freq());
+                    for (int i = 0; i < expectedPositions.freq(); i++) {
+                        Assert.assertEquals(expectedPositions.nextPosition(), actualPositions.nextPosition());
+                    }
+                }
+                Assert.assertFalse(actualPositions.next());
+            }
+            Assert.assertFalse(actualTerms.next());
+        } finally {
+            expectedTerms.close();
+            actualTerms.close();
+            expectedPositions.close();
+            actualPositions.close();
+        }
+    }
+
+    private static void encode(byte[] buffer, int start, int value, int size) {
+        for (int i = 0; i < size; i++) {
+            buffer[start + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * An IndexPolicy that indexes with a given number of threads.
+     */
+    private static final class ThreadedPolicy extends IndexPolicyAdapter {
+        ThreadedPolicy(int threads) {
+            this.threads = threads;
+        }
+
+        @Override
+        public int getThreadCount() {
+            return threads;
+        }
+
+        private int threads;
+    }
+
+    /**
+     * A book some of whose verses cannot be read, and which can interrupt
+     * the thread reading it.
+     */
+    private static final class FaultyBook extends SwordBook {
+        FaultyBook(SwordBookMetaData bmd, String... bad) {
+            super(bmd, new RawBackend<RawBackendState>(bmd, 2));
+            this.bad = Arrays.asList(bad);
+        }
+
+        @Override
+        public Iterator<Content> getOsisIterator(Key key, boolean allowEmpty, boolean allowGenTitles) throws BookException {
+            if (bad.contains(key.getOsisRef())) {
+                throw new BookException("Unreadable " + key.getOsisRef());
+            }
+            if (key.getOsisRef().equals(interruptAt)) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getOsisIterator(key, allowEmpty, allowGenTitles);
+        }
+
+        private List<String> bad;
+        private volatile String interruptAt;
+    }
+
+    private static final String[] WORDS = {
+        "light", "darkness", "waters", "firmament", "earth", "heaven", "seed", "fruit", "garden"
+    };
+
+    private File library;
+    private SwordBookMetaData bmd;
+    private Book book;
+}
@@ -0,0 +1,120 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.util.Version;
+import org.crosswire.jsword.index.query.AndNotQuery;
+import org.crosswire.jsword.index.query.AndQuery;
+import org.crosswire.jsword.index.query.BaseQuery;
+import org.crosswire.jsword.index.query.BlurQuery;
+import org.crosswire.jsword.index.query.OrQuery;
+import org.crosswire.jsword.index.query.Query;
+import org.crosswire.jsword.index.query.RangeQuery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the planning of query trees into single Lucene queries.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class LuceneQueryPlannerTest {
+
+    /**
+     * Queries are parsed as LuceneIndex parses them, which is with the Lucene
+     * 2.9 behaviour.
+     */
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        parser = new QueryParser(Version.LUCENE_29, LuceneIndex.FIELD_BODY, new SimpleAnalyzer());
+        included = new ArrayList<String>();
+        excluded = new ArrayList<String>();
+    }
+
+    @Test
+    public void testBaseQueryIsUnchanged() {
+        Query query = new BaseQuery("moses");
+        Assert.assertSame(query, LuceneQueryPlanner.plan(query));
+    }
+
+    @Test
+    public void testBlurIsUnchanged() {
+        Query query = new AndQuery(new RangeQuery("Gen"), new BlurQuery(new BaseQuery("moses"), new BaseQuery("aaron"), 2));
+        Assert.assertSame(query, LuceneQueryPlanner.plan(query));
+    }
+
+    @Test
+    public void testRangeUnderOrIsUnchanged() {
+        Query query = new OrQuery(new AndQuery(new RangeQuery("Gen"), new BaseQuery("moses")), new BaseQuery("aaron"));
+        Assert.assertSame(query, LuceneQueryPlanner.plan(query));
+    }
+
+    @Test
+    public void testIncludedRange() throws ParseException {
+        Query query = new AndQuery(new RangeQuery("Gen"), new BaseQuery("moses"));
+        Assert.assertNotSame(query, LuceneQueryPlanner.plan(query));
+
+        org.apache.lucene.search.Query compiled = LuceneQueryPlanner.compile(query, parser, included, excluded);
+        Assert.assertEquals("content:moses", compiled.toString());
+        Assert.assertEquals(1, included.size());
+        Assert.assertEquals("Gen", included.get(0));
+        Assert.assertTrue(excluded.isEmpty());
+    }
+
+    @Test
+    public void testExcludedRange() throws ParseException {
+        Query query = new AndNotQuery(new BaseQuery("moses"), new RangeQuery("Exod"));
+        Assert.assertNotSame(query, LuceneQueryPlanner.plan(query));
+
+        LuceneQueryPlanner.compile(query, parser, included, excluded);
+        Assert.assertTrue(included.isEmpty());
+        Assert.assertEquals(1, excluded.size());
+        Assert.assertEquals("Exod", excluded.get(0));
+    }
+
+    @Test
+    public void testBooleanTree() throws ParseException {
+        Query query = new AndNotQuery(new OrQuery(new BaseQuery("moses"), new BaseQuery("aaron")), new BaseQuery("pharaoh"));
+        Assert.assertNotSame(query, LuceneQueryPlanner.plan(query));
+
+        org.apache.lucene.search.Query compiled = LuceneQueryPlanner.compile(query, parser, included, excluded);
+        Assert.assertTrue(compiled instanceof BooleanQuery);
+        BooleanClause[] clauses = ((BooleanQuery) compiled).getClauses();
+        Assert.assertEquals(2, clauses.length);
+        Assert.assertEquals(BooleanClause.Occur.MUST, clauses[0].getOccur());
+        Assert.assertEquals(BooleanClause.Occur.MUST_NOT, clauses[1].getOccur());
+        Assert.assertEquals("content:moses content:aaron", clauses[0].getQuery().toString());
+    }
+
+    private QueryParser parser;
+    private List<String> included;
+    private List<String> excluded;
+}
@@ -0,0 +1,102 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.index.AbstractIndex;
+import org.crosswire.jsword.index.query.BaseQuery;
+import org.crosswire.jsword.index.search.DefaultSearchModifier;
+import org.crosswire.jsword.index.search.DefaultSearchRequest;
+import org.crosswire.jsword.index.search.SearchModifier;
+import org.crosswire.jsword.passage.DefaultKeyList;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class LuceneSearcherTest {
+    @Before
+    public void setUp() {
+        index = new RecordingIndex();
+        searcher = new LuceneSearcher();
+        searcher.init(index);
+    }
+
+    @Test
+    public void testRequestModifier() throws Exception {
+        SearchModifier modifier = new DefaultSearchModifier();
+        searcher.search(new DefaultSearchRequest("moses", modifier));
+        Assert.assertEquals("moses", index.query);
+        Assert.assertSame(modifier, index.modifier);
+    }
+
+    @Test
+    public void testNoModifier() throws Exception {
+        searcher.search("moses");
+        Assert.assertEquals("moses", index.query);
+        Assert.assertNull(index.modifier);
+    }
+
+    /**
+     * Callers of the older API set the modifier on the index and search with
+     * a Query.
+     */
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testIndexModifier() throws Exception {
+        SearchModifier modifier = new DefaultSearchModifier();
+        index.setSearchModifier(modifier);
+        searcher.search(new BaseQuery("moses"));
+        Assert.assertEquals("moses", index.query);
+        Assert.assertSame(modifier, index.modifier);
+    }
+
+    /**
+     * An Index that remembers the last search.
+     */
+    private static final class RecordingIndex extends AbstractIndex {
+        public Key find(String search, SearchModifier searchModifier) throws BookException {
+            query = search;
+            modifier = searchModifier;
+            return new DefaultKeyList();
+        }
+
+        public Key getKey(String name) throws NoSuchKeyException {
+            return new DefaultKeyList(null, name);
+        }
+
+        public void close() {
+            // Nothing to close
+        }
+
+        private String query;
+        private SearchModifier modifier;
+    }
+
+    private RecordingIndex index;
+    private LuceneSearcher searcher;
+}
@@ -0,0 +1,246 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.crosswire.common.util.CWProject;
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.sword.RawBackend;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordConstants;
+import org.crosswire.jsword.book.sword.state.RawBackendState;
+import org.crosswire.jsword.index.IndexAccess;
+import org.crosswire.jsword.index.IndexPolicyAdapter;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class ResidentIndexesTest {
+    @Before
+    public void setUp() throws Exception {
+        // The installed indexes are recorded in the writable area
+        CWProject.instance().getWritableProjectSubdir(LuceneIndexManager.DIR_LUCENE, true);
+
+        library = File.createTempFile("residenttest", "");
+        library.delete();
+        first = createIndex("First");
+        second = createIndex("Second");
+        loader = new QueuedExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        // Creating an index may have failed
+        if (first != null) {
+            first.close();
+        }
+        if (second != null) {
+            second.close();
+        }
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testLoadInBackground() throws Exception {
+        ResidentIndexes resident = createResident(first.getSize() + second.getSize());
+        search(resident, first, 64);
+
+        // The search did not load the index itself
+        Assert.assertEquals(1, loader.tasks.size());
+        Assert.assertEquals(IndexAccess.FILE, first.getAccess());
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.RAM, first.getAccess());
+        // An index that was not searched is not loaded
+        Assert.assertEquals(IndexAccess.FILE, second.getAccess());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        // Only one of the indexes fits
+        ResidentIndexes resident = createResident(Math.max(first.getSize(), second.getSize()) + 1);
+        search(resident, first, 40);
+        search(resident, second, 24);
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.RAM, first.getAccess());
+        Assert.assertEquals(IndexAccess.FILE, second.getAccess());
+    }
+
+    @Test
+    public void testNoBudget() throws Exception {
+        ResidentIndexes resident = createResident(0);
+        search(resident, first, 64);
+        Assert.assertTrue(loader.tasks.isEmpty());
+        Assert.assertEquals(IndexAccess.FILE, first.getAccess());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ResidentIndexes resident = createResident(Math.max(first.getSize(), second.getSize()) + 1);
+        search(resident, first, 64);
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.RAM, first.getAccess());
+
+        // The count of the first is halved, so the second now ranks higher
+        search(resident, second, 64);
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.FILE, first.getAccess());
+        Assert.assertEquals(IndexAccess.RAM, second.getAccess());
+    }
+
+    @Test
+    public void testBudgetReduced() throws Exception {
+        ResidentIndexes resident = createResident(first.getSize() + second.getSize());
+        search(resident, first, 32);
+        search(resident, second, 32);
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.RAM, first.getAccess());
+        Assert.assertEquals(IndexAccess.RAM, second.getAccess());
+
+        resident.setBudget(0);
+        search(resident, first, 64);
+        loader.runAll();
+        Assert.assertEquals(IndexAccess.FILE, first.getAccess());
+        Assert.assertEquals(IndexAccess.FILE, second.getAccess());
+    }
+
+    @Test
+    public void testRemoved() throws Exception {
+        ResidentIndexes resident = createResident(first.getSize() + second.getSize());
+        resident.remove(second);
+        search(resident, second, 64);
+        Assert.assertTrue(loader.tasks.isEmpty());
+    }
+
+    @Test
+    public void testSearchWhileResident() throws Exception {
+        // Searching adds the table of verse ordinals to the index
+        ResidentIndexes resident = new ResidentIndexes(first.getSize() * 2);
+        resident.add(first);
+        for (int i = 0; i < 64; i++) {
+            Assert.assertEquals(54, first.find("light", null).getCardinality());
+        }
+        for (int i = 0; i < 100 && first.getAccess() != IndexAccess.RAM; i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(IndexAccess.RAM, first.getAccess());
+        Assert.assertEquals(54, first.find("light", null).getCardinality());
+    }
+
+    private ResidentIndexes createResident(long budget) {
+        ResidentIndexes resident = new ResidentIndexes(budget, loader);
+        resident.add(first);
+        resident.add(second);
+        return resident;
+    }
+
+    private static void search(ResidentIndexes resident, LuceneIndex index, int count) {
+        for (int i = 0; i < count; i++) {
+            resident.searched(index);
+        }
+    }
+
+    /**
+     * Create the index of a book of Genesis 1-3.
+     */
+    private LuceneIndex createIndex(String name) throws Exception {
+        File dataPath = new File(library, "modules/texts/rawtext/" + name);
+        dataPath.mkdirs();
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        int last = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, 3, 24).getOrdinal());
+        byte[] index = new byte[(last + 1) * 6];
+        StringBuilder text = new StringBuilder();
+        for (int chapter = 1; chapter <= 3; chapter++) {
+            for (int verse = 1; verse <= v11n.getLastVerse(BibleBook.GEN, chapter); verse++) {
+                int entry = v11n.getTestamentOrdinal(new Verse(v11n, BibleBook.GEN, chapter, verse).getOrdinal()) * 6;
+                String content = (verse % 3 == 0 ? "darkness" : "light") + " in chapter " + chapter + '.';
+                encode(index, entry, text.length(), 4);
+                encode(index, entry + 4, content.length(), 2);
+                text.append(content);
+            }
+        }
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), index);
+        write(new File(dataPath, SwordConstants.FILE_OT), text.toString().getBytes("UTF-8"));
+
+        File conf = new File(library, name + ".conf");
+        write(conf, ("[" + name + library.getName() + "]\nDataPath=./modules/texts/rawtext/" + name + "/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=Plaintext\nVersification=KJV\nLang=en\n").getBytes("UTF-8"));
+        SwordBookMetaData bmd = new SwordBookMetaData(conf, library.toURI());
+        SwordBook book = new SwordBook(bmd, new RawBackend<RawBackendState>(bmd, 2));
+        return new LuceneIndex(book, new File(library, name + ".index").toURI(), new IndexPolicyAdapter());
+    }
+
+    private static void encode(byte[] buffer, int start, int value, int size) {
+        for (int i = 0; i < size; i++) {
+            buffer[start + i] = (byte) (value >> (8 * i));
+        }
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * An Executor that holds its tasks until they are run by the test.
+     */
+    private static final class QueuedExecutor implements Executor {
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            List<Runnable> todo = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : todo) {
+                task.run();
+            }
+        }
+
+        private List<Runnable> tasks = new ArrayList<Runnable>();
+    }
+
+    private File library;
+    private LuceneIndex first;
+    private LuceneIndex second;
+    private QueuedExecutor loader;
+}
@@ -0,0 +1,91 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test that a searcher stays open until its last reference is released.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class SearcherHandleTest {
+
+    /**
+     * The searcher is opened as LuceneIndex opens it, so that closing it
+     * also closes its reader.
+     */
+    @Before
+    @SuppressWarnings("deprecation")
+    public void setUp() throws IOException {
+        directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, "Gen.1.1", Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+        writer.addDocument(doc);
+        writer.close();
+        handle = new SearcherHandle(directory, new IndexSearcher(directory, true));
+    }
+
+    @Test
+    public void testOpenWhileAcquired() throws IOException {
+        Assert.assertTrue(handle.acquire());
+        // The owner lets go while a search is still running
+        handle.release();
+        Assert.assertEquals(1, search());
+        handle.release();
+        Assert.assertFalse(handle.acquire());
+    }
+
+    @Test
+    public void testClosedWhenReleased() throws IOException {
+        handle.release();
+        try {
+            search();
+            Assert.fail("searcher was not closed");
+        } catch (AlreadyClosedException e) {
+            // expected
+        }
+    }
+
+    private int search() throws IOException {
+        return handle.getSearcher().search(new TermQuery(new Term(LuceneIndex.FIELD_KEY, "Gen.1.1")), 1).totalHits;
+    }
+
+    private Directory directory;
+    private SearcherHandle handle;
+}
@@ -0,0 +1,96 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.lucene;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the table from document number to verse ordinal.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class VerseOrdinalsTest {
+
+    @Before
+    public void setUp() throws IOException {
+        v11n = Versifications.instance().getVersification("KJV");
+        directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(Version.LUCENE_36, new KeywordAnalyzer()));
+        addDocument(writer, "Gen.1.1");
+        addDocument(writer, "Rev.22.21");
+        addDocument(writer, "NotAVerse");
+        addDocument(writer, "Gen.1.1");
+        writer.close();
+        reader = IndexReader.open(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        VerseOrdinals ordinals = VerseOrdinals.build(reader, v11n);
+        int gen11 = new Verse(v11n, BibleBook.GEN, 1, 1).getOrdinal();
+        int rev2221 = new Verse(v11n, BibleBook.REV, 22, 21).getOrdinal();
+        Assert.assertEquals(gen11, ordinals.getOrdinal(0));
+        Assert.assertEquals(rev2221, ordinals.getOrdinal(1));
+        Assert.assertEquals(-1, ordinals.getOrdinal(2));
+        Assert.assertEquals(gen11, ordinals.getOrdinal(3));
+    }
+
+    @Test
+    public void testOutOfRange() throws IOException {
+        VerseOrdinals ordinals = VerseOrdinals.build(reader, v11n);
+        Assert.assertEquals(-1, ordinals.getOrdinal(-1));
+        Assert.assertEquals(-1, ordinals.getOrdinal(4));
+    }
+
+    private void addDocument(IndexWriter writer, String osisRef) throws IOException {
+        Document doc = new Document();
+        doc.add(new Field(LuceneIndex.FIELD_KEY, osisRef, Field.Store.YES, Field.Index.NOT_ANALYZED, Field.TermVector.NO));
+        writer.addDocument(doc);
+    }
+
+    private Versification v11n;
+    private Directory directory;
+    private IndexReader reader;
+}
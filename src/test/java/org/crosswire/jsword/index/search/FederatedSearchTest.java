@@ -0,0 +1,249 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.RawBackend;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordConstants;
+import org.crosswire.jsword.book.sword.state.RawBackendState;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class FederatedSearchTest {
+    @Before
+    public void setUp() throws Exception {
+        library = File.createTempFile("federatedtest", "");
+        library.delete();
+        v11n = Versifications.instance().getVersification("KJV");
+        search = new FederatedSearch(2);
+        release = new CountDownLatch(1);
+        started = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        search.shutdown();
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        Book first = createBook("First", "Gen 1:1-2");
+        Book second = createBook("Second", "Gen 1:2-3");
+        FederatedSearchResult result = search.search(Arrays.asList(first, second), new DefaultSearchRequest("moses"));
+        Assert.assertTrue(result.isComplete());
+        Assert.assertFalse(result.isCancelled());
+        Assert.assertEquals("Gen.1.1-Gen.1.2", result.getResult(first).getOsisRef());
+        Assert.assertEquals("Gen.1.2-Gen.1.3", result.getResult(second).getOsisRef());
+        Assert.assertEquals("Gen.1.1-Gen.1.3", result.getMerged().getOsisRef());
+    }
+
+    @Test
+    public void testRankedMerge() throws Exception {
+        Book first = createBook("First", null);
+        Book second = createBook("Second", null);
+        ((SearchBook) first).result = tally(1, 5, 2, 1);
+        ((SearchBook) second).result = tally(2, 6, 3, 4);
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        modifier.setMaxResults(2);
+
+        FederatedSearchResult result = search.search(Arrays.asList(first, second), new DefaultSearchRequest("moses", modifier));
+        Assert.assertTrue(result.getMerged() instanceof PassageTally);
+        PassageTally merged = (PassageTally) result.getMerged();
+        // Only the best verses across the books are kept
+        Assert.assertEquals(2, merged.countVerses());
+        Assert.assertEquals(7, merged.getTallyOf(new Verse(v11n, BibleBook.GEN, 1, 2)));
+        Assert.assertEquals(5, merged.getTallyOf(new Verse(v11n, BibleBook.GEN, 1, 1)));
+        Assert.assertFalse(merged.contains(new Verse(v11n, BibleBook.GEN, 1, 3)));
+        Assert.assertEquals(4, merged.getTotal());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        Book quick = createBook("Quick", "Gen 1:1");
+        SearchBook slow = createBook("Slow", "Gen 1:2");
+        slow.blocked = true;
+        search.setTimeout(100, TimeUnit.MILLISECONDS);
+
+        FederatedSearchResult result = search.search(Arrays.asList(quick, slow), new DefaultSearchRequest("moses"));
+        Assert.assertFalse(result.isComplete());
+        Assert.assertFalse(result.isCancelled());
+        Assert.assertEquals(Arrays.asList(slow), result.getTimedOut());
+        Assert.assertNull(result.getResult(slow));
+        // The books that did answer are merged
+        Assert.assertEquals("Gen.1.1", result.getMerged().getOsisRef());
+    }
+
+    @Test
+    public void testTimeoutCountsFromStart() throws Exception {
+        // With one thread, the second book waits for the first to finish
+        search.shutdown();
+        search = new FederatedSearch(1);
+        search.setTimeout(300, TimeUnit.MILLISECONDS);
+        SearchBook first = createBook("First", "Gen 1:1");
+        first.delay = 200;
+        SearchBook second = createBook("Second", "Gen 1:2");
+        second.delay = 200;
+
+        FederatedSearchResult result = search.search(Arrays.asList(first, second), new DefaultSearchRequest("moses"));
+        Assert.assertTrue(result.getTimedOut().isEmpty());
+        Assert.assertTrue(result.isComplete());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final Book quick = createBook("Quick", "Gen 1:1");
+        final SearchBook slow = createBook("Slow", "Gen 1:2");
+        slow.blocked = true;
+
+        final FederatedSearchResult[] result = new FederatedSearchResult[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                result[0] = search.search(Arrays.asList(quick, slow), new DefaultSearchRequest("moses"));
+            }
+        });
+        thread.start();
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        search.cancel();
+        thread.join(5000);
+
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(result[0].isCancelled());
+        Assert.assertFalse(result[0].isComplete());
+        Assert.assertNull(result[0].getResult(slow));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Book good = createBook("Good", "Gen 1:1");
+        SearchBook bad = createBook("Bad", "Gen 1:2");
+        bad.failure = new IllegalStateException("broken");
+
+        FederatedSearchResult result = search.search(Arrays.asList(good, bad), new DefaultSearchRequest("moses"));
+        Assert.assertFalse(result.isComplete());
+        BookException failure = result.getFailures().get(bad);
+        Assert.assertNotNull(failure);
+        Assert.assertSame(bad.failure, failure.getCause());
+        Assert.assertEquals("Gen.1.1", result.getMerged().getOsisRef());
+    }
+
+    private PassageTally tally(int verse1, int score1, int verse2, int score2) {
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(new Verse(v11n, BibleBook.GEN, 1, verse1), score1);
+        tally.add(new Verse(v11n, BibleBook.GEN, 1, verse2), score2);
+        tally.setTotal(2);
+        return tally;
+    }
+
+    /**
+     * Create a book whose searches all give the same result.
+     */
+    private SearchBook createBook(String name, String result) throws Exception {
+        File dataPath = new File(library, "modules/texts/rawtext/" + name);
+        dataPath.mkdirs();
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), new byte[0]);
+        write(new File(dataPath, SwordConstants.FILE_OT), new byte[0]);
+        File conf = new File(library, name + ".conf");
+        write(conf, ("[" + name + library.getName() + "]\nDataPath=./modules/texts/rawtext/" + name + "/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nVersification=KJV\nLang=en\n").getBytes("UTF-8"));
+        SwordBookMetaData bmd = new SwordBookMetaData(conf, library.toURI());
+        SearchBook book = new SearchBook(bmd);
+        if (result != null) {
+            book.result = book.getKey(result);
+        }
+        return book;
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * A book that answers searches without an index.
+     */
+    private final class SearchBook extends SwordBook {
+        SearchBook(SwordBookMetaData bmd) {
+            super(bmd, new RawBackend<RawBackendState>(bmd, 2));
+        }
+
+        @Override
+        public Key find(SearchRequest request) throws BookException {
+            try {
+                if (blocked) {
+                    started.countDown();
+                    release.await();
+                }
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+            } catch (InterruptedException e) {
+                throw new BookException("interrupted", e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        private volatile Key result;
+        private volatile boolean blocked;
+        private volatile long delay;
+        private volatile RuntimeException failure;
+    }
+
+    private File library;
+    private Versification v11n;
+    private FederatedSearch search;
+    private CountDownLatch release;
+    private CountDownLatch started;
+}
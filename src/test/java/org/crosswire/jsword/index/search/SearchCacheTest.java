@@ -0,0 +1,240 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.index.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.FileUtil;
+import org.crosswire.common.util.IOUtil;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.sword.RawBackend;
+import org.crosswire.jsword.book.sword.SwordBook;
+import org.crosswire.jsword.book.sword.SwordBookMetaData;
+import org.crosswire.jsword.book.sword.SwordConstants;
+import org.crosswire.jsword.book.sword.state.RawBackendState;
+import org.crosswire.jsword.index.Index;
+import org.crosswire.jsword.index.query.Query;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageTally;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class SearchCacheTest {
+    @Before
+    public void setUp() throws Exception {
+        library = File.createTempFile("cachetest", "");
+        library.delete();
+        File dataPath = new File(library, "modules/texts/rawtext/cachetest");
+        dataPath.mkdirs();
+        write(new File(dataPath, SwordConstants.FILE_OT + SwordConstants.EXTENSION_VSS), new byte[0]);
+        write(new File(dataPath, SwordConstants.FILE_OT), new byte[0]);
+        File conf = new File(library, "cachetest.conf");
+        write(conf, ("[CacheTest" + library.getName() + "]\nDataPath=./modules/texts/rawtext/cachetest/\nModDrv=RawText\nEncoding=UTF-8\nSourceType=OSIS\nVersification=KJV\nLang=en\n").getBytes("UTF-8"));
+        SwordBookMetaData bmd = new SwordBookMetaData(conf, library.toURI());
+        book = new SwordBook(bmd, new RawBackend<RawBackendState>(bmd, 2));
+        v11n = Versifications.instance().getVersification("KJV");
+
+        cache = SearchCache.instance();
+        wasEnabled = cache.isEnabled();
+        maxEntries = cache.getMaxEntries();
+        cache.setEnabled(true);
+        cache.clear();
+        cache.resetStatistics();
+        searcher = new CountingSearcher();
+        caching = new CachingSearcher(book, searcher);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+        cache.setMaxEntries(maxEntries);
+        cache.setEnabled(wasEnabled);
+        FileUtil.delete(library);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        searcher.result = book.getKey("Gen 1:1-3");
+        Key first = caching.search(new DefaultSearchRequest("moses  aaron"));
+        // Spacing does not matter
+        Key second = caching.search(new DefaultSearchRequest(" moses aaron"));
+        Assert.assertEquals(1, searcher.count);
+        Assert.assertEquals("Gen.1.1-Gen.1.3", second.getOsisRef());
+        Assert.assertEquals(first, second);
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        // Each hit is a new copy, which the caller may change
+        Assert.assertNotSame(first, second);
+        second.clear();
+        Assert.assertEquals("Gen.1.1-Gen.1.3", caching.search(new DefaultSearchRequest("moses aaron")).getOsisRef());
+        Assert.assertEquals(1, searcher.count);
+    }
+
+    @Test
+    public void testModifier() throws Exception {
+        searcher.result = book.getKey("Gen 1:1-3");
+        caching.search(new DefaultSearchRequest("moses"));
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        caching.search(new DefaultSearchRequest("moses", modifier));
+        // A ranked search is not the same as an unranked one
+        Assert.assertEquals(2, searcher.count);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testRanked() throws Exception {
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(new Verse(v11n, BibleBook.GEN, 1, 1), 5);
+        tally.add(new Verse(v11n, BibleBook.GEN, 1, 2), 10);
+        tally.setOrdering(PassageTally.Order.TALLY);
+        searcher.result = tally;
+
+        DefaultSearchModifier modifier = new DefaultSearchModifier();
+        modifier.setRanked(true);
+        caching.search(new DefaultSearchRequest("moses", modifier));
+        Key restored = caching.search(new DefaultSearchRequest("moses", modifier));
+        Assert.assertEquals(1, searcher.count);
+        Assert.assertTrue(restored instanceof PassageTally);
+        PassageTally copy = (PassageTally) restored;
+        Assert.assertEquals(PassageTally.Order.TALLY, copy.getOrdering());
+        Assert.assertEquals(10, copy.getTallyOf(new Verse(v11n, BibleBook.GEN, 1, 2)));
+        Assert.assertEquals(5, copy.getTallyOf(new Verse(v11n, BibleBook.GEN, 1, 1)));
+        Assert.assertEquals(new Verse(v11n, BibleBook.GEN, 1, 2), copy.iterator().next());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        cache.setMaxEntries(2);
+        searcher.result = book.getKey("Gen 1:1");
+        caching.search(new DefaultSearchRequest("one"));
+        caching.search(new DefaultSearchRequest("two"));
+        // Use "one" so that "two" is the least recently used
+        caching.search(new DefaultSearchRequest("one"));
+        caching.search(new DefaultSearchRequest("three"));
+        Assert.assertEquals(3, searcher.count);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+
+        caching.search(new DefaultSearchRequest("one"));
+        Assert.assertEquals(3, searcher.count);
+        caching.search(new DefaultSearchRequest("two"));
+        Assert.assertEquals(4, searcher.count);
+    }
+
+    @Test
+    public void testReindex() throws Exception {
+        searcher.result = book.getKey("Gen 1:1");
+        caching.search(new DefaultSearchRequest("moses"));
+
+        // The index of the book is rebuilt
+        cache.invalidate(book);
+        Assert.assertEquals(0, cache.size());
+        searcher.result = book.getKey("Gen 1:2");
+        Assert.assertEquals("Gen.1.2", caching.search(new DefaultSearchRequest("moses")).getOsisRef());
+        Assert.assertEquals(2, searcher.count);
+    }
+
+    @Test
+    public void testReindexDuringSearch() throws Exception {
+        searcher.result = book.getKey("Gen 1:1");
+        // The index of the book is rebuilt while the search is running
+        searcher.reindex = true;
+        caching.search(new DefaultSearchRequest("moses"));
+        Assert.assertEquals(0, cache.size());
+
+        searcher.reindex = false;
+        searcher.result = book.getKey("Gen 1:2");
+        Assert.assertEquals("Gen.1.2", caching.search(new DefaultSearchRequest("moses")).getOsisRef());
+        Assert.assertEquals(2, searcher.count);
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        cache.setEnabled(false);
+        searcher.result = book.getKey("Gen 1:1");
+        caching.search(new DefaultSearchRequest("moses"));
+        caching.search(new DefaultSearchRequest("moses"));
+        Assert.assertEquals(2, searcher.count);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    private static void write(File file, byte[] data) throws IOException {
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            out.write(data);
+        } finally {
+            IOUtil.close(out);
+        }
+    }
+
+    /**
+     * A Searcher that counts its searches, each giving a copy of the result.
+     */
+    private final class CountingSearcher implements Searcher {
+        public void init(Index index) {
+            // There is no index
+        }
+
+        public Key search(SearchRequest request) throws BookException {
+            count++;
+            if (reindex) {
+                cache.invalidate(book);
+            }
+            return result.clone();
+        }
+
+        public Key search(Query request) throws BookException {
+            throw new UnsupportedOperationException();
+        }
+
+        private Key result;
+        private int count;
+        private boolean reindex;
+    }
+
+    private File library;
+    private Book book;
+    private Versification v11n;
+    private SearchCache cache;
+    private boolean wasEnabled;
+    private int maxEntries;
+    private CountingSearcher searcher;
+    private CachingSearcher caching;
+}
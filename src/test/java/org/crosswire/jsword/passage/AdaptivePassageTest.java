@@ -0,0 +1,226 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.crosswire.jsword.book.CaseType;
+import org.crosswire.jsword.versification.BookName;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test. Checks that an AdaptivePassage holds the same verses as a
+ * BitwisePassage as its blocks change between arrays, runs and bitmaps.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class AdaptivePassageTest {
+    /** Control the output of names */
+    private CaseType storedCase;
+    private boolean fullName;
+    private Versification v11n;
+
+    @Before
+    public void setUp() {
+        storedCase = BookName.getDefaultCase();
+        BookName.setCase(CaseType.SENTENCE);
+        fullName = BookName.isFullBookName();
+        BookName.setFullBookName(false);
+        v11n = Versifications.instance().getVersification("KJV");
+    }
+
+    @After
+    public void tearDown() {
+        BookName.setCase(storedCase);
+        BookName.setFullBookName(fullName);
+    }
+
+    @Test
+    public void testShapes() throws Exception {
+        // A few verses, whole books and scattered verses
+        checkSame(create("Gen 1:1, Exo 2:5, Rev 22:21"), createBitwise("Gen 1:1, Exo 2:5, Rev 22:21"));
+        checkSame(create("Gen-Deu, Mat-Joh"), createBitwise("Gen-Deu, Mat-Joh"));
+        checkSame(create("Gen-Rev"), createBitwise("Gen-Rev"));
+
+        AdaptivePassage scattered = new AdaptivePassage(v11n);
+        BitwisePassage bits = new BitwisePassage(v11n);
+        for (int ord = 1; ord <= v11n.maximumOrdinal(); ord += 3) {
+            scattered.add(v11n.decodeOrdinal(ord));
+            bits.add(v11n.decodeOrdinal(ord));
+        }
+        checkSame(scattered, bits);
+        scattered.optimizeReads();
+        checkSame(scattered, bits);
+    }
+
+    @Test
+    public void testRangesAcrossVerseZero() throws Exception {
+        AdaptivePassage ref = create("Gen 1:30-31, Gen 2:1");
+        Assert.assertEquals("Gen 1:30-2:1", ref.getName());
+        Assert.assertEquals(1, ref.countRanges(RestrictionType.NONE));
+        Assert.assertEquals(2, ref.countRanges(RestrictionType.CHAPTER));
+        Assert.assertFalse(ref.contains(VerseRangeFactory.fromString(v11n, "Gen 1:31-2:1")));
+        Assert.assertTrue(ref.containsAll(create("Gen 1:31, Gen 2:1")));
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        Random random = new Random(4);
+        int max = v11n.maximumOrdinal();
+        AdaptivePassage ref = new AdaptivePassage(v11n);
+        BitwisePassage bits = new BitwisePassage(v11n);
+        for (int i = 0; i < 2000; i++) {
+            int first = 1 + random.nextInt(max);
+            int last = Math.min(max, first + random.nextInt(random.nextBoolean() ? 5 : 3000));
+            Key key = new VerseRange(v11n, v11n.decodeOrdinal(first), v11n.decodeOrdinal(last));
+            if (random.nextBoolean()) {
+                key = v11n.decodeOrdinal(first);
+            }
+            if (random.nextInt(3) == 0) {
+                ref.remove(key);
+                bits.remove(key);
+            } else {
+                ref.add(key);
+                bits.add(key);
+            }
+            if (i % 100 == 0) {
+                checkSame(ref, bits);
+                ref.optimizeReads();
+                checkSame(ref, bits);
+            }
+        }
+        checkSame(ref, bits);
+    }
+
+    @Test
+    public void testSetAlgebra() throws Exception {
+        String[] refs = {
+                "Gen 1:1-5, Gen 1:31-2:3, Exo 2", "Gen 1:4-2:1, Exo 2:5, Rev 22", "Gen-Deu", "Exo 2:1-10, Mat-Joh",
+        };
+        for (String left : refs) {
+            for (String right : refs) {
+                // Against another AdaptivePassage, a BitwisePassage and a RangedPassage
+                Passage[] others = { create(right), createBitwise(right), PassageType.MIX.createPassage(v11n, right) };
+                for (Passage other : others) {
+                    AdaptivePassage ref = create(left);
+                    BitwisePassage bits = createBitwise(left);
+                    ref.addAll(other);
+                    bits.addAll(other);
+                    checkSame(ref, bits);
+
+                    ref = create(left);
+                    bits = createBitwise(left);
+                    ref.removeAll(other);
+                    bits.removeAll(other);
+                    checkSame(ref, bits);
+
+                    ref = create(left);
+                    bits = createBitwise(left);
+                    ref.retainAll(other);
+                    bits.retainAll(other);
+                    checkSame(ref, bits);
+
+                    Assert.assertEquals(createBitwise(left).containsAll(other), create(left).containsAll(other));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBlur() throws Exception {
+        String refs = "Gen 1:2, Gen 1:30-2:2, Exo 2:5, Exo 2:9, Exo 2:25";
+        for (RestrictionType restrict : new RestrictionType[] { RestrictionType.NONE, RestrictionType.CHAPTER }) {
+            AdaptivePassage ref = create(refs);
+            BitwisePassage bits = createBitwise(refs);
+            ref.blur(5, restrict, true, false);
+            bits.blur(5, restrict, true, false);
+            checkSame(ref, bits);
+            ref.blur(3, restrict);
+            bits.blur(3, restrict);
+            checkSame(ref, bits);
+        }
+    }
+
+    /**
+     * Check that an AdaptivePassage matches a BitwisePassage in every respect
+     * we can see, including when cloned and after serialization.
+     */
+    private void checkSame(AdaptivePassage ref, BitwisePassage bits) throws Exception {
+        checkVerses(ref, bits);
+        checkVerses(ref.clone(), bits);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(ref);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        Passage copy = (Passage) in.readObject();
+        in.close();
+        checkVerses(copy, bits);
+    }
+
+    private void checkVerses(Passage ref, BitwisePassage bits) {
+        Assert.assertEquals(bits.getName(), ref.getName());
+        Assert.assertEquals(bits, ref);
+        Assert.assertEquals(bits.countVerses(), ref.countVerses());
+        Assert.assertEquals(bits.isEmpty(), ref.isEmpty());
+        for (RestrictionType restrict : new RestrictionType[] { RestrictionType.NONE, RestrictionType.CHAPTER }) {
+            Assert.assertEquals(bits.countRanges(restrict), ref.countRanges(restrict));
+        }
+
+        Iterator<Key> it = ref.iterator();
+        int i = 0;
+        for (Key verse : bits) {
+            Assert.assertTrue(it.hasNext());
+            Assert.assertEquals(verse, it.next());
+            if (i % 97 == 0) {
+                Assert.assertEquals(verse, ref.getVerseAt(i));
+                Assert.assertTrue(ref.contains(verse));
+            }
+            i++;
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(ref.containsAll(bits));
+        Assert.assertTrue(bits.containsAll(ref));
+    }
+
+    private AdaptivePassage create(String refs) throws NoSuchKeyException {
+        AdaptivePassage ref = new AdaptivePassage(v11n);
+        ref.addAll(PassageKeyFactory.instance().getKey(v11n, refs));
+        return ref;
+    }
+
+    private BitwisePassage createBitwise(String refs) throws NoSuchKeyException {
+        BitwisePassage bits = new BitwisePassage(v11n);
+        bits.addAll(PassageKeyFactory.instance().getKey(v11n, refs));
+        return bits;
+    }
+}
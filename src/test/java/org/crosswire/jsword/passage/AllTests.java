@@ -32,6 +32,10 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     AccuracyTypeTest.class,
+    AdaptivePassageTest.class,
+    BitwisePassageTest.class,
+    FrozenPassageTest.class,
+    PassageAdaptiveTest.class,
     PassageConstantsTest.class,
     PassageMixTest.class,
     PassageSizeTest.class,
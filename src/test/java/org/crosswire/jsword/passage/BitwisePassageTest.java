@@ -0,0 +1,153 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import org.crosswire.jsword.book.CaseType;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.BookName;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test. Checks that the word-at-a-time blur and set operations of a
+ * BitwisePassage give the same answers as the range by range ones in
+ * AbstractPassage.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class BitwisePassageTest {
+    /** Control the output of names */
+    private CaseType storedCase;
+    private boolean fullName;
+    private Versification v11n;
+
+    @Before
+    public void setUp() {
+        storedCase = BookName.getDefaultCase();
+        BookName.setCase(CaseType.SENTENCE);
+        fullName = BookName.isFullBookName();
+        BookName.setFullBookName(false);
+        v11n = Versifications.instance().getVersification("KJV");
+    }
+
+    @After
+    public void tearDown() {
+        BookName.setCase(storedCase);
+        BookName.setFullBookName(fullName);
+    }
+
+    @Test
+    public void testBlurNone() throws Exception {
+        checkBlur("Gen 1:30-31, Gen 2:1, Exo 2:5, Exo 2:9", 2, RestrictionType.NONE, true, true);
+        checkBlur("Gen 1:30-31, Gen 2:1, Exo 2:5, Exo 2:9", 3, RestrictionType.NONE, true, false);
+        checkBlur("Gen 1:30-31, Gen 2:1, Exo 2:5, Exo 2:9", 3, RestrictionType.NONE, false, true);
+    }
+
+    @Test
+    public void testBlurChapter() throws Exception {
+        checkBlur("Gen 1:30-31, Gen 2:1, Exo 2:5, Exo 2:9", 2, RestrictionType.CHAPTER, true, true);
+        checkBlur("Gen 1:2, Gen 1:31-2:2, Exo 2:25", 5, RestrictionType.CHAPTER, true, true);
+        checkBlur("Gen 1:2, Gen 1:31-2:2, Exo 2:25", 5, RestrictionType.CHAPTER, false, true);
+        checkBlur("Gen 1:2, Gen 1:31-2:2, Exo 2:25", 5, RestrictionType.CHAPTER, true, false);
+    }
+
+    @Test
+    public void testBlurZero() throws Exception {
+        BitwisePassage bits = create("Gen 1:3, 5");
+        bits.blur(0, RestrictionType.CHAPTER);
+        Assert.assertEquals("Gen 1:3, 5", bits.getName());
+        bits.blur(0, RestrictionType.NONE);
+        Assert.assertEquals("Gen 1:3, 5", bits.getName());
+    }
+
+    @Test
+    public void testAddAll() throws Exception {
+        BitwisePassage bits = create("Gen 1:1-3");
+        bits.addAll(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 5), new Verse(v11n, BibleBook.GEN, 1, 7)));
+        Assert.assertEquals("Gen 1:1-3, 5-7", bits.getName());
+        bits.addAll(createRanged("Gen 1:4, Exo 1:1"));
+        Assert.assertEquals("Gen 1:1-7, Exo 1:1", bits.getName());
+        bits.addAll(new Verse(v11n, BibleBook.GEN, 1, 8));
+        Assert.assertEquals("Gen 1:1-8, Exo 1:1", bits.getName());
+    }
+
+    @Test
+    public void testAddAllAcrossVerseZero() throws Exception {
+        // The range Gen 1:31-2:1 of a DistinctPassage does not hold Gen 2:0
+        DistinctPassage distinct = new DistinctPassage(v11n);
+        distinct.addAll(PassageKeyFactory.instance().getKey(v11n, "Gen 1:31, Gen 2:1"));
+        BitwisePassage bits = create("Gen 1:1");
+        bits.addAll(distinct);
+        Assert.assertEquals(3, bits.countVerses());
+        Assert.assertFalse(bits.contains(new Verse(v11n, BibleBook.GEN, 2, 0)));
+
+        // but the range of a RangedPassage does
+        bits = create("Gen 1:1");
+        bits.addAll(createRanged("Gen 1:31-2:1"));
+        Assert.assertTrue(bits.contains(new Verse(v11n, BibleBook.GEN, 2, 0)));
+    }
+
+    @Test
+    public void testRemoveAll() throws Exception {
+        BitwisePassage bits = create("Gen 1:1-10");
+        bits.removeAll(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 2), new Verse(v11n, BibleBook.GEN, 1, 3)));
+        Assert.assertEquals("Gen 1:1, 4-10", bits.getName());
+        bits.removeAll(createRanged("Gen 1:5-6, Exo 1:1"));
+        Assert.assertEquals("Gen 1:1, 4, 7-10", bits.getName());
+        bits.removeAll(create("Gen 1:10"));
+        Assert.assertEquals("Gen 1:1, 4, 7-9", bits.getName());
+    }
+
+    @Test
+    public void testRetainAll() throws Exception {
+        BitwisePassage bits = create("Gen 1:1-10");
+        bits.retainAll(createRanged("Gen 1:2-4, 8-12, Exo 1:1"));
+        Assert.assertEquals("Gen 1:2-4, 8-10", bits.getName());
+        bits.retainAll(new VerseRange(v11n, new Verse(v11n, BibleBook.GEN, 1, 3), new Verse(v11n, BibleBook.GEN, 1, 9)));
+        Assert.assertEquals("Gen 1:3-4, 8-9", bits.getName());
+        bits.retainAll(new Verse(v11n, BibleBook.GEN, 1, 4));
+        Assert.assertEquals("Gen 1:4", bits.getName());
+    }
+
+    private void checkBlur(String refs, int verses, RestrictionType restrict, boolean blurDown, boolean blurUp) throws Exception {
+        BitwisePassage bits = create(refs);
+        RangedPassage ranged = createRanged(refs);
+        bits.blur(verses, restrict, blurDown, blurUp);
+        ranged.blur(verses, restrict, blurDown, blurUp);
+        Assert.assertEquals(ranged.getName(), bits.getName());
+    }
+
+    private BitwisePassage create(String refs) throws NoSuchKeyException {
+        BitwisePassage bits = new BitwisePassage(v11n);
+        bits.addAll(PassageKeyFactory.instance().getKey(v11n, refs));
+        return bits;
+    }
+
+    private RangedPassage createRanged(String refs) throws NoSuchKeyException {
+        RangedPassage ranged = new RangedPassage(v11n);
+        ranged.addAll(PassageKeyFactory.instance().getKey(v11n, refs));
+        return ranged;
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * Distribution License:
+ * JSword is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License, version 2.1 or later
+ * as published by the Free Software Foundation. This program is distributed
+ * in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * The License is available on the internet at:
+ *      http://www.gnu.org/copyleft/lgpl.html
+ * or by writing to:
+ *      Free Software Foundation, Inc.
+ *      59 Temple Place - Suite 330
+ *      Boston, MA 02111-1307, USA
+ *
+ * © CrossWire Bible Society, 2026
+ *
+ */
+package org.crosswire.jsword.passage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Iterator;
+
+import org.crosswire.jsword.book.CaseType;
+import org.crosswire.jsword.versification.BookName;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * JUnit Test. Checks that a FrozenPassage holds the same verses as the
+ * Passage it was made from, whichever way it stores them.
+ * 
+ * @see gnu.lgpl.License The GNU Lesser General Public License for details.
+ * @author agent
+ */
+public class FrozenPassageTest {
+    /** Control the output of names */
+    private CaseType storedCase;
+    private boolean fullName;
+    private Versification v11n;
+
+    @Before
+    public void setUp() {
+        storedCase = BookName.getDefaultCase();
+        BookName.setCase(CaseType.SENTENCE);
+        fullName = BookName.isFullBookName();
+        BookName.setFullBookName(false);
+        v11n = Versifications.instance().getVersification("KJV");
+    }
+
+    @After
+    public void tearDown() {
+        BookName.setCase(storedCase);
+        BookName.setFullBookName(fullName);
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        checkFrozen(PassageKeyFactory.instance().getKey(v11n, "Gen 1:1-3, Exo 2:5, Rev 22"));
+        checkFrozen(PassageKeyFactory.instance().getKey(v11n, "Gen-Rev"));
+        checkFrozen((Passage) PassageKeyFactory.instance().createEmptyKeyList(v11n));
+    }
+
+    @Test
+    public void testBitmap() throws Exception {
+        // Every other verse gives far more ranges than bitmap words
+        Passage scattered = (Passage) PassageKeyFactory.instance().createEmptyKeyList(v11n);
+        for (int ord = 1; ord < v11n.maximumOrdinal(); ord += 2) {
+            scattered.add(v11n.decodeOrdinal(ord));
+        }
+        checkFrozen(scattered);
+    }
+
+    @Test
+    public void testTally() throws Exception {
+        PassageTally tally = new PassageTally(v11n);
+        tally.add(PassageKeyFactory.instance().getKey(v11n, "Exo 2:5-6"));
+        tally.add(PassageKeyFactory.instance().getKey(v11n, "Gen 1:1, Gen 1:2, Exo 2:5"));
+        tally.setOrdering(PassageTally.Order.TALLY);
+        Passage frozen = PassageKeyFactory.getFrozenPassage(tally);
+        Assert.assertEquals("Gen 1:1-2, Exo 2:5-6", frozen.getName());
+        Assert.assertEquals(4, frozen.countVerses());
+    }
+
+    @Test
+    public void testContains() throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage(PassageKeyFactory.instance().getKey(v11n, "Gen 1:1-3, Exo 2:5, Rev 22"));
+        Assert.assertTrue(frozen.contains(VerseFactory.fromString(v11n, "Gen 1:2")));
+        Assert.assertTrue(frozen.contains(VerseRangeFactory.fromString(v11n, "Rev 22:3-5")));
+        Assert.assertTrue(frozen.contains(PassageKeyFactory.instance().getKey(v11n, "Gen 1:3, Exo 2:5")));
+        Assert.assertFalse(frozen.contains(VerseFactory.fromString(v11n, "Gen 1:4")));
+        Assert.assertFalse(frozen.contains(VerseRangeFactory.fromString(v11n, "Gen 1:3-4")));
+        Assert.assertFalse(frozen.contains(VerseFactory.fromString(v11n, "Exo 2:4")));
+    }
+
+    @Test
+    public void testImmutable() throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage(PassageKeyFactory.instance().getKey(v11n, "Gen 1:1-3"));
+        Assert.assertSame(frozen, frozen.clone());
+        Assert.assertSame(frozen, PassageKeyFactory.getFrozenPassage(frozen));
+        Assert.assertFalse(frozen instanceof AbstractPassage);
+        try {
+            frozen.trimVerses(1);
+            Assert.fail("A frozen passage should not be altered");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            frozen.add(VerseFactory.fromString(v11n, "Gen 1:5"));
+            Assert.fail("A frozen passage should not be altered");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        try {
+            frozen.blur(1, RestrictionType.NONE);
+            Assert.fail("A frozen passage should not be altered");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+        Assert.assertEquals("Gen 1:1-3", frozen.getName());
+    }
+
+    /**
+     * Check that the frozen copy of a passage matches it in every respect we
+     * can see, including after serialization.
+     */
+    private void checkFrozen(Passage ref) throws Exception {
+        Passage frozen = PassageKeyFactory.getFrozenPassage(ref);
+        checkSame(ref, frozen);
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(frozen);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        Passage copy = (Passage) in.readObject();
+        in.close();
+        Assert.assertTrue(copy instanceof FrozenPassage);
+        checkSame(ref, copy);
+    }
+
+    private void checkSame(Passage ref, Passage frozen) {
+        Assert.assertEquals(ref.getName(), frozen.getName());
+        Assert.assertEquals(ref.getOsisRef(), frozen.getOsisRef());
+        Assert.assertEquals(ref.getOsisID(), frozen.getOsisID());
+        Assert.assertEquals(ref.getOverview(), frozen.getOverview());
+        Assert.assertEquals(ref, frozen);
+        Assert.assertEquals(ref.hashCode(), frozen.hashCode());
+        Assert.assertEquals(ref.countVerses(), frozen.countVerses());
+        Assert.assertEquals(0, ref.compareTo(frozen));
+        if (!ref.isEmpty()) {
+            Assert.assertEquals(ref.getRangeAt(0, RestrictionType.NONE), frozen.getRangeAt(0, RestrictionType.NONE));
+        }
+        Assert.assertEquals(ref.isEmpty(), frozen.isEmpty());
+        for (RestrictionType restrict : new RestrictionType[] { RestrictionType.NONE, RestrictionType.CHAPTER }) {
+            Assert.assertEquals(ref.countRanges(restrict), frozen.countRanges(restrict));
+            Assert.assertEquals(ref.hasRanges(restrict), frozen.hasRanges(restrict));
+        }
+
+        Iterator<Key> it = frozen.iterator();
+        int i = 0;
+        for (Key verse : ref) {
+            Assert.assertTrue(it.hasNext());
+            Assert.assertEquals(verse, it.next());
+            if (i % 97 == 0) {
+                Assert.assertEquals(verse, frozen.getVerseAt(i));
+            }
+            i++;
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(frozen.containsAll(ref));
+    }
+}
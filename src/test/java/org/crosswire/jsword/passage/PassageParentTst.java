@@ -19,6 +19,8 @@
  */
 package org.crosswire.jsword.passage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -30,6 +32,7 @@ import java.util.Iterator;
 
 import org.crosswire.jsword.book.CaseType;
 import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.BibleNames;
 import org.crosswire.jsword.versification.BookName;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.system.Versifications;
@@ -369,6 +372,36 @@ import org.junit.Test;
         Assert.assertEquals("", keyf.getKey(v11n, null).toString());
     }
 
+    @Test
+    public void testWriteParseCache() throws Exception {
+        Passage first = keyf.getKey(v11n, "Gen 1:1-3, Rev 22:21");
+        first.add(exoC2V1);
+        Passage second = keyf.getKey(v11n, "Gen 1:1-3, Rev 22:21");
+        Assert.assertTrue(first != second);
+        Assert.assertEquals("Gen 1:1-3, Rev 22:21", second.getName());
+        Assert.assertEquals(keyf.getKey(v11n, "Gen 1:1-3, Rev 22:21").getClass(), first.getClass());
+        Assert.assertEquals("Exo 2:1-3", keyf.getKey(v11n, "1-3", exoC2V1).getName());
+    }
+
+    @Test
+    public void testWriteParseCacheFuzzy() throws Exception {
+        BibleNames names = BibleNames.instance();
+        Boolean fuzzy = names.getEnableFuzzy();
+        try {
+            names.setEnableFuzzy(Boolean.TRUE);
+            Assert.assertEquals("Gen 1:1", keyf.getKey(v11n, "Genes 1:1").getName());
+            names.setEnableFuzzy(Boolean.FALSE);
+            try {
+                keyf.getKey(v11n, "Genes 1:1");
+                Assert.fail("Genes is only a book when matching is fuzzy");
+            } catch (NoSuchKeyException ex) {
+                // expected
+            }
+        } finally {
+            names.setEnableFuzzy(fuzzy);
+        }
+    }
+
     @Test
     public void testWriteGetName() throws Exception {
         Assert.assertEquals("Gen 1:1-3, Rev 22:21", keyf.getKey(v11n, "gen 1 1,gen 1 3,rev 22 21,gen 1 2").getName());
@@ -783,6 +816,36 @@ import org.junit.Test;
         testDat.delete();
     }
 
+    @Test
+    public void testWriteObjectForms() throws Exception {
+        // Few verses are written one by one
+        checkRoundTrip(keyf.getKey(v11n, "Gen 1:1, Exo 2:5, Rev 22:21"));
+
+        // Long ranges are written as runs, even where a range spans a
+        // verse 0 that is not in the passage
+        checkRoundTrip(keyf.getKey(v11n, "Gen 1:30-31, Gen 2:1, Rev 22"));
+
+        // Many scattered verses are written as a bitmap, which has to
+        // include the very last verse
+        Passage scattered = (Passage) keyf.createEmptyKeyList(v11n);
+        for (int i = v11n.maximumOrdinal(); i > 0; i -= 2) {
+            scattered.add(v11n.decodeOrdinal(i));
+        }
+        checkRoundTrip(scattered);
+    }
+
+    private void checkRoundTrip(Passage ref) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(bout);
+        objOut.writeObject(ref);
+        objOut.close();
+        ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        Passage copy = (Passage) objIn.readObject();
+        objIn.close();
+        Assert.assertEquals(ref.countVerses(), copy.countVerses());
+        Assert.assertEquals(ref, copy);
+    }
+
     @Test
     public void testWriteDescription() throws Exception {
         File testDat = new File("test.dat");
@@ -301,6 +301,39 @@ public class PassageTally2Test {
                 temp.getNameAndTally());
     }
 
+    @Test
+    public void testTrimVerses() {
+        temp = tally.clone();
+        Passage remainder = temp.trimVerses(3);
+        Assert.assertEquals("Gen 1:1, 5, 3", temp.getName());
+        Assert.assertEquals("Gen 1:7, 2:1, 3:1", remainder.getName());
+        Assert.assertEquals(3, temp.countVerses());
+        Assert.assertNull(temp.trimVerses(3));
+        Assert.assertNull(empty.clone().trimVerses(3));
+
+        temp = tally.clone();
+        temp.setOrdering(PassageTally.Order.BIBLICAL);
+        remainder = temp.trimVerses(2);
+        Assert.assertEquals("Gen 1:1, 3", temp.getName());
+        Assert.assertEquals("Gen 1:5, 7, 2:1, 3:1", remainder.getName());
+    }
+
+    @Test
+    public void testTopVerses() {
+        PassageTally.Ranking top = tally.topVerses(3);
+        Assert.assertEquals(3, top.size());
+        Assert.assertEquals(genC1V1, top.getVerse(0));
+        Assert.assertEquals(genC1V1.getOrdinal(), top.getOrdinal(0));
+        Assert.assertEquals(3, top.getTally(0));
+        Assert.assertEquals(genC1V5, top.getVerse(1));
+        Assert.assertEquals(2, top.getTally(1));
+        Assert.assertEquals(genC1V3, top.getVerse(2));
+        Assert.assertEquals(1, top.getTally(2));
+        Assert.assertEquals(6, tally.topVerses(10).size());
+        Assert.assertEquals(0, tally.topVerses(0).size());
+        Assert.assertEquals(0, empty.topVerses(3).size());
+    }
+
     @Test
     public void testFlatten() {
         temp = tally.clone();
@@ -19,6 +19,11 @@
  */
 package org.crosswire.jsword.passage;
 
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Assert;
+import org.junit.Test;
+
 /**
  * JUnit Test.
  * 
@@ -29,4 +34,32 @@ public class PassageTallyTest extends PassageParentTst {
     public PassageTallyTest() {
         super(PassageType.TALLY, false);
     }
+
+    @Test
+    public void testTrimVersesResetsMax() throws Exception {
+        Versification v11n = Versifications.instance().getVersification("KJV");
+        PassageKeyFactory keyf = PassageKeyFactory.instance();
+        PassageTally tally = new PassageTally(v11n);
+        tally.addAll(keyf.getKey(v11n, "Gen 1:1, Gen 1:3, Gen 1:5"));
+        tally.addAll(keyf.getKey(v11n, "Gen 1:1, Gen 2:1, Gen 3:1"));
+        tally.addAll(keyf.getKey(v11n, "Gen 1:1, Gen 1:5, Gen 1:7"));
+
+        // The top verses stay, so the remainder has a smaller maximum
+        PassageTally kept = tally.clone();
+        kept.setOrdering(PassageTally.Order.TALLY);
+        PassageTally remainder = (PassageTally) kept.trimVerses(2);
+        Assert.assertEquals("Gen 1:1 (100%), Gen 1:5 (66%)", kept.getNameAndTally());
+        Assert.assertEquals("Gen 1:3 (100%), Gen 1:7 (100%), Gen 2:1 (100%), Gen 3:1 (100%)", remainder.getNameAndTally());
+
+        // The first verses stay, so the kept half loses its maximum
+        tally = new PassageTally(v11n);
+        tally.addAll(keyf.getKey(v11n, "Gen 1:1, Gen 1:2, Gen 2:1"));
+        tally.addAll(keyf.getKey(v11n, "Gen 2:1"));
+        tally.addAll(keyf.getKey(v11n, "Gen 2:1, Gen 3:1"));
+        kept = tally.clone();
+        kept.setOrdering(PassageTally.Order.BIBLICAL);
+        remainder = (PassageTally) kept.trimVerses(2);
+        Assert.assertEquals("Gen 1:1 (100%), Gen 1:2 (100%)", kept.getNameAndTally());
+        Assert.assertEquals("Gen 2:1 (100%), Gen 3:1 (33%)", remainder.getNameAndTally());
+    }
 }
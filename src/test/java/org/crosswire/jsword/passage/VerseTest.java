@@ -19,6 +19,11 @@
  */
 package org.crosswire.jsword.passage;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.crosswire.jsword.versification.BibleBook;
 import org.crosswire.jsword.versification.BookName;
 import org.crosswire.jsword.versification.Versification;
@@ -446,4 +451,50 @@ public class VerseTest {
         Verse v = new Verse(Versifications.instance().getVersification(Versifications.DEFAULT_V11N), 5);
         Assert.assertEquals("Gen 1:2", v.getName());
     }
+
+    @Test
+    public void testDecodeOrdinalShared() {
+        Verse verse = v11n.decodeOrdinal(gen11.getOrdinal());
+        Assert.assertEquals(gen11, verse);
+        Assert.assertSame(verse, v11n.decodeOrdinal(gen11.getOrdinal()));
+        Assert.assertSame(v11n.decodeOrdinal(0), v11n.decodeOrdinal(-1));
+        Assert.assertSame(v11n.decodeOrdinal(v11n.maximumOrdinal()), v11n.decodeOrdinal(v11n.maximumOrdinal() + 1));
+    }
+
+    @Test
+    public void testNextPreviousShared() {
+        Verse verse = v11n.decodeOrdinal(gen11.getOrdinal());
+        Assert.assertSame(v11n.decodeOrdinal(gen12.getOrdinal()), v11n.next(verse));
+        Assert.assertSame(v11n.decodeOrdinal(gen12.getOrdinal()), v11n.add(verse, 1));
+        Assert.assertSame(verse, v11n.subtract(gen12, 1));
+
+        // Across the end of a chapter
+        Verse gen131 = v11n.decodeOrdinal(gen20.getOrdinal() - 1);
+        Assert.assertSame(v11n.decodeOrdinal(gen20.getOrdinal()), v11n.next(gen131));
+        Assert.assertSame(gen131, v11n.subtract(gen20, 1));
+    }
+
+    @Test
+    public void testGetWholeShared() {
+        Assert.assertSame(v11n.decodeOrdinal(gen11.getOrdinal()), gen11s.getWhole());
+        Assert.assertSame(gen11, gen11.getWhole());
+    }
+
+    @Test
+    public void testReadResolveShared() throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bout);
+        out.writeObject(gen11);
+        out.writeObject(gen11s);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()));
+        Verse whole = (Verse) in.readObject();
+        Verse part = (Verse) in.readObject();
+        in.close();
+
+        Assert.assertSame(v11n.decodeOrdinal(gen11.getOrdinal()), whole);
+        Assert.assertEquals(gen11s, part);
+        Assert.assertNotSame(gen11s, part);
+    }
 }